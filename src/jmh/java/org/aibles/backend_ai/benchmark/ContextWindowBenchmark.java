@@ -0,0 +1,137 @@
+package org.aibles.backend_ai.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.CompactionProperties;
+import org.aibles.backend_ai.configuration.properties.ContextCacheProperties;
+import org.aibles.backend_ai.dto.ModelContextWindow;
+import org.aibles.backend_ai.entity.ConversationMessage;
+import org.aibles.backend_ai.entity.MessageKey;
+import org.aibles.backend_ai.repository.ConversationSummaryRepository;
+import org.aibles.backend_ai.repository.MessageRepository;
+import org.aibles.backend_ai.service.ConversationServiceImpl;
+import org.aibles.backend_ai.service.cache.ConversationContextCache;
+import org.aibles.backend_ai.service.context.ContextWindowAssembler;
+import org.aibles.backend_ai.service.context.ConversationCompactor;
+import org.aibles.backend_ai.service.context.TokenEstimator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConversationServiceImpl#generateContextWindow} for a conversation of historyTurns turns, either
+ * served from the context cache or rebuilt from the rows the repository returns. Rebuilding includes
+ * counting the tokens of every turn, assembling includes filling the token budget.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextWindowBenchmark {
+
+    private static final String MODEL = "QWEN2_5";
+
+    private static final String PROMPT = "How do I keep the context window of a long conversation small?";
+
+    @Param({"0", "2", "8", "15"})
+    public int historyTurns;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private ConversationServiceImpl conversationService;
+
+    private ConversationContextCache contextCache;
+
+    private String conversationId;
+
+    @Setup
+    public void setUp() {
+        conversationId = UUID.randomUUID().toString();
+        List<ConversationMessage> rows = messagesNewestFirst(conversationId, historyTurns);
+        contextCache = new ConversationContextCache(new ContextCacheProperties(),
+                ConversationServiceImpl.MAX_CONTEXT_MESSAGES,
+                new SimpleMeterRegistry());
+        MessageRepository messageRepository = (MessageRepository) Proxy.newProxyInstance(
+                MessageRepository.class.getClassLoader(),
+                new Class<?>[]{MessageRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findContextWindowByConversationId")) {
+                        // the real repository hands out a fresh list per query
+                        return Flux.fromIterable(new ArrayList<>(rows));
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        ConversationSummaryRepository summaryRepository = (ConversationSummaryRepository) Proxy.newProxyInstance(
+                ConversationSummaryRepository.class.getClassLoader(),
+                new Class<?>[]{ConversationSummaryRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findById")) {
+                        return Mono.empty();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        CompactionProperties compactionProperties = new CompactionProperties();
+        compactionProperties.setEnabled(false);
+        TokenEstimator tokenEstimator = new TokenEstimator();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConversationCompactor compactor = new ConversationCompactor(compactionProperties,
+                messageRepository,
+                summaryRepository,
+                null,
+                null,
+                contextCache,
+                tokenEstimator,
+                meterRegistry);
+        conversationService = new ConversationServiceImpl(null,
+                null,
+                messageRepository,
+                contextCache,
+                null,
+                null,
+                null,
+                null,
+                summaryRepository,
+                new ContextWindowAssembler(compactionProperties, tokenEstimator, compactor, meterRegistry));
+    }
+
+    @Benchmark
+    public ModelContextWindow generateContextWindow() {
+        if (!cached) {
+            contextCache.invalidate(conversationId);
+        }
+        return conversationService.generateContextWindow(conversationId, MODEL, PROMPT).block();
+    }
+
+    private static List<ConversationMessage> messagesNewestFirst(String conversationId, int turns) {
+        List<ConversationMessage> rows = new ArrayList<>(turns);
+        Instant now = Instant.now();
+        for (int turn = turns; turn > 0; turn--) {
+            MessageKey key = new MessageKey(conversationId, now.minusSeconds(60L * (turns - turn)));
+            rows.add(new ConversationMessage(key,
+                    UUID.randomUUID().toString(),
+                    "Question " + turn + " about keeping prompts short and answers relevant?",
+                    "Answer " + turn + ": " + "keep the window bounded and drop the oldest turns first. ".repeat(8),
+                    false));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,88 @@
+package org.aibles.backend_ai.benchmark;
+
+import org.aibles.backend_ai.dto.response.ConversationMessageDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.ServerSentEventHttpMessageWriter;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes text/event-stream bodies through the same {@link ServerSentEventHttpMessageWriter} WebFlux uses:
+ * a streamed answer of eventCount token events, and eventCount {@link ConversationMessageDto} events.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseSerializationBenchmark {
+
+    private static final ResolvableType EVENT_TYPE = ResolvableType.forClassWithGenerics(ServerSentEvent.class, Object.class);
+
+    @Param({"1", "64", "512"})
+    public int eventCount;
+
+    private ServerSentEventHttpMessageWriter writer;
+
+    private List<ServerSentEvent<Object>> tokenEvents;
+
+    private List<ServerSentEvent<Object>> messageEvents;
+
+    @Setup
+    public void setUp() {
+        writer = new ServerSentEventHttpMessageWriter(new Jackson2JsonEncoder(Jackson2ObjectMapperBuilder.json().build()));
+        tokenEvents = new ArrayList<>(eventCount);
+        messageEvents = new ArrayList<>(eventCount);
+        String conversationId = UUID.randomUUID().toString();
+        for (int i = 0; i < eventCount; i++) {
+            tokenEvents.add(ServerSentEvent.builder((Object) (" tok" + i)).build());
+            messageEvents.add(ServerSentEvent.builder((Object) ConversationMessageDto.builder()
+                    .id(UUID.randomUUID().toString())
+                    .conversationId(conversationId)
+                    .question("Question " + i + " about keeping prompts short?")
+                    .answer("Keep the window bounded and drop the oldest turns first. ".repeat(8))
+                    .createdAt(Instant.now())
+                    .build()).build());
+        }
+    }
+
+    @Benchmark
+    public String tokenEvents() {
+        return write(tokenEvents);
+    }
+
+    @Benchmark
+    public String messageEvents() {
+        return write(messageEvents);
+    }
+
+    private String write(List<ServerSentEvent<Object>> events) {
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        writer.write(Flux.fromIterable(events), EVENT_TYPE, MediaType.TEXT_EVENT_STREAM, response, Collections.emptyMap())
+                .block();
+        return response.getBodyAsString().block();
+    }
+}
@@ -0,0 +1,283 @@
+package org.aibles.backend_ai.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.AdmissionProperties;
+import org.aibles.backend_ai.configuration.properties.ExecutionProperties;
+import org.aibles.backend_ai.configuration.properties.ResponseCacheProperties;
+import org.aibles.backend_ai.configuration.properties.DisconnectProperties;
+import org.aibles.backend_ai.configuration.properties.StreamReplayProperties;
+import org.aibles.backend_ai.constant.ExecutionMode;
+import org.aibles.backend_ai.dto.ModelContextWindow;
+import org.aibles.backend_ai.dto.request.ConversationRequest;
+import org.aibles.backend_ai.dto.response.ConversationDto;
+import org.aibles.backend_ai.dto.response.ConversationMessageDto;
+import org.aibles.backend_ai.dto.response.ConversationPageDto;
+import org.aibles.backend_ai.entity.Conversation;
+import org.aibles.backend_ai.entity.ConversationKey;
+import org.aibles.backend_ai.service.ChatServiceImpl;
+import org.aibles.backend_ai.service.ConversationService;
+import org.aibles.backend_ai.service.cache.ResponseCache;
+import org.aibles.backend_ai.service.chatstream.AnswerChunk;
+import org.aibles.backend_ai.service.chatstream.ChatExecution;
+import org.aibles.backend_ai.service.chatstream.ChatStreamMetrics;
+import org.aibles.backend_ai.service.chatstream.admission.ModelAdmissionScheduler;
+import org.aibles.backend_ai.service.chatstream.replay.TurnReplayRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The token pipeline of {@link ChatServiceImpl#streamAnswer} over a synthetic model stream of tokenCount
+ * tokens. multicastReduce isolates the publish().refCount(2) multicast with the StringBuilder reduce,
+ * singleSubscriber is the same work without the multicast, streamAnswer is the whole service method in the
+ * given execution mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamPipelineBenchmark {
+
+    private static final String MODEL = "QWEN2_5";
+
+    @Param({"32", "256", "1024"})
+    public int tokenCount;
+
+    @Param({"EVENT_LOOP", "VIRTUAL_THREADS"})
+    public ExecutionMode executionMode;
+
+    private String[] tokens;
+
+    private AnswerChunk[] chunks;
+
+    private ChatExecution chatExecution;
+
+    private ChatServiceImpl chatService;
+
+    private ConversationRequest request;
+
+    private String conversationId;
+
+    @Setup
+    public void setUp() {
+        tokens = new String[tokenCount];
+        chunks = new AnswerChunk[tokenCount];
+        for (int i = 0; i < tokenCount; i++) {
+            tokens[i] = i % 5 == 0 ? " the" : " tok" + (i % 97);
+            chunks[i] = AnswerChunk.of(tokens[i]);
+        }
+        request = new ConversationRequest("Summarize the last answer in one paragraph.");
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ExecutionProperties executionProperties = new ExecutionProperties();
+        executionProperties.setMode(executionMode);
+        chatExecution = new ChatExecution(executionProperties);
+        InMemoryConversationService conversationService = new InMemoryConversationService();
+        conversationId = conversationService.saveConversation("benchmark", MODEL).block().getId();
+        chatService = new ChatServiceImpl(conversationService,
+                modelName -> messages -> Flux.fromArray(chunks),
+                new ModelAdmissionScheduler(new AdmissionProperties(), meterRegistry),
+                new ResponseCache(new ResponseCacheProperties(), null, meterRegistry),
+                new ChatStreamMetrics(meterRegistry),
+                chatExecution,
+                new TurnReplayRegistry(new StreamReplayProperties(), new DisconnectProperties(), meterRegistry));
+    }
+
+    @TearDown
+    public void tearDown() {
+        chatExecution.destroy();
+    }
+
+    @Benchmark
+    public String multicastReduce(Blackhole blackhole) {
+        Flux<String> multicast = Flux.fromArray(tokens).publish().refCount(2);
+        multicast.reduce(new StringBuilder(), StringBuilder::append)
+                .subscribe(answer -> blackhole.consume(answer.length()));
+        return multicast.blockLast();
+    }
+
+    @Benchmark
+    public String singleSubscriber(Blackhole blackhole) {
+        StringBuilder answer = new StringBuilder();
+        return Flux.fromArray(tokens)
+                .doOnNext(answer::append)
+                .doOnComplete(() -> blackhole.consume(answer.length()))
+                .blockLast();
+    }
+
+    @Benchmark
+    public String streamAnswer() {
+        return chatService.streamAnswer(conversationId, request, null, null).tokens().blockLast();
+    }
+
+    /**
+     * Keeps conversations and their last turns in memory. The context window is the last CONTEXT_TURNS turns
+     * followed by the new prompt, so once warmed up every call builds a window of the same size.
+     */
+    private static final class InMemoryConversationService implements ConversationService {
+
+        private static final int CONTEXT_TURNS = 4;
+
+        private static final int KEPT_TURNS = 32;
+
+        private final Map<String, StoredConversation> conversations = new ConcurrentHashMap<>();
+
+        @Override
+        public Mono<Conversation> saveConversation(String title, String model) {
+            return Mono.fromSupplier(() -> {
+                final Instant createdAt = Instant.now();
+                ConversationKey conversationKey = new ConversationKey();
+                conversationKey.setMonthBucket(YearMonth.from(createdAt.atZone(ZoneOffset.UTC)).toString());
+                conversationKey.setCreatedAt(createdAt);
+                Conversation conversation = new Conversation(conversationKey, UUID.randomUUID().toString(), title);
+                conversations.put(conversation.getId(), new StoredConversation(conversation, model, new ArrayDeque<>()));
+                return conversation;
+            });
+        }
+
+        @Override
+        public Mono<Void> updateConversationTitle(Conversation conversation, String title) {
+            return Mono.fromRunnable(() -> {
+                conversation.setTitle(title);
+                StoredConversation stored = conversations.get(conversation.getId());
+                if (stored != null) {
+                    stored.conversation().setTitle(title);
+                }
+            });
+        }
+
+        /**
+         * Newest first, the cursor is the creation time of the last conversation of the previous page.
+         */
+        @Override
+        public Mono<ConversationPageDto> findConversationPage(String cursor, Instant toTime, int limit) {
+            return Mono.fromSupplier(() -> {
+                final Instant before = cursor != null ? Instant.parse(cursor) : toTime != null ? toTime : Instant.now();
+                List<ConversationDto> page = conversations.values().stream()
+                        .map(StoredConversation::conversation)
+                        .filter(conversation -> conversation.getKey().getCreatedAt().isBefore(before))
+                        .sorted(Comparator.comparing((Conversation conversation) -> conversation.getKey().getCreatedAt()).reversed())
+                        .limit(limit)
+                        .map(conversation -> ConversationDto.builder()
+                                .id(conversation.getId())
+                                .title(conversation.getTitle())
+                                .createdAt(conversation.getKey().getCreatedAt())
+                                .build())
+                        .toList();
+                return ConversationPageDto.builder()
+                        .conversations(page)
+                        .nextCursor(page.size() < limit ? null : page.get(page.size() - 1).getCreatedAt().toString())
+                        .build();
+            });
+        }
+
+        @Override
+        public Mono<String> findConversationModel(String id) {
+            return Mono.justOrEmpty(conversations.get(id)).map(StoredConversation::model);
+        }
+
+        /**
+         * Newest first, only the last KEPT_TURNS turns are kept.
+         */
+        @Override
+        public Flux<ConversationMessageDto> findMessagesInConversation(String conversationId, Instant toTime) {
+            return Flux.defer(() -> {
+                StoredConversation stored = conversations.get(conversationId);
+                if (stored == null) {
+                    return Flux.empty();
+                }
+                final Instant before = toTime != null ? toTime : Instant.MAX;
+                return Flux.fromIterable(stored.lastTurns(KEPT_TURNS))
+                        .filter(message -> message.getCreatedAt().isBefore(before))
+                        .sort(Comparator.comparing(ConversationMessageDto::getCreatedAt).reversed());
+            });
+        }
+
+        @Override
+        public Mono<ModelContextWindow> generateContextWindow(String conversationId, String model, String newPromptMessage) {
+            return Mono.fromSupplier(() -> {
+                StoredConversation stored = conversations.get(conversationId);
+                List<ConversationMessageDto> turns = stored == null ? List.of() : stored.lastTurns(CONTEXT_TURNS);
+                List<Message> messages = new ArrayList<>(2 * turns.size() + 1);
+                for (ConversationMessageDto turn : turns) {
+                    messages.add(new UserMessage(turn.getQuestion()));
+                    messages.add(new AssistantMessage(turn.getAnswer()));
+                }
+                messages.add(new UserMessage(newPromptMessage));
+                ModelContextWindow modelContextWindow = new ModelContextWindow();
+                modelContextWindow.setModel(model);
+                modelContextWindow.setMessages(messages);
+                return modelContextWindow;
+            });
+        }
+
+        @Override
+        public Mono<Void> saveMessage(String conversationId, String question, String answer, boolean truncated) {
+            return Mono.fromRunnable(() -> {
+                StoredConversation stored = conversations.get(conversationId);
+                if (stored != null) {
+                    stored.add(ConversationMessageDto.builder()
+                            .id(UUID.randomUUID().toString())
+                            .conversationId(conversationId)
+                            .question(question)
+                            .answer(answer)
+                            .truncated(truncated)
+                            .createdAt(Instant.now())
+                            .build());
+                }
+            });
+        }
+
+        private record StoredConversation(Conversation conversation, String model, Deque<ConversationMessageDto> turns) {
+
+            void add(ConversationMessageDto turn) {
+                synchronized (turns) {
+                    turns.addLast(turn);
+                    if (turns.size() > KEPT_TURNS) {
+                        turns.removeFirst();
+                    }
+                }
+            }
+
+            /**
+             * Oldest first.
+             */
+            List<ConversationMessageDto> lastTurns(int count) {
+                synchronized (turns) {
+                    List<ConversationMessageDto> all = new ArrayList<>(turns);
+                    return all.subList(Math.max(0, all.size() - count), all.size());
+                }
+            }
+        }
+    }
+}
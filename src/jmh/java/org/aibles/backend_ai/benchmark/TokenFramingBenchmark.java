@@ -0,0 +1,91 @@
+package org.aibles.backend_ai.benchmark;
+
+import org.aibles.backend_ai.configuration.properties.SseFrameProperties;
+import org.aibles.backend_ai.service.chatstream.TokenFrameCoalescer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.ServerSentEventHttpMessageWriter;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import reactor.core.publisher.Flux;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An answer of tokenCount short tokens written as text/event-stream, one event per token (frameBytes = 0)
+ * or coalesced by {@link TokenFrameCoalescer} into frames of frameBytes. The frames counter reports frames
+ * per second next to answers per second, -prof gc the allocation per answer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenFramingBenchmark {
+
+    private static final ResolvableType EVENT_TYPE = ResolvableType.forClassWithGenerics(ServerSentEvent.class, Object.class);
+
+    @Param({"256", "1024"})
+    public int tokenCount;
+
+    @Param({"0", "64", "256"})
+    public int frameBytes;
+
+    private String[] tokens;
+
+    private TokenFrameCoalescer tokenFrameCoalescer;
+
+    private ServerSentEventHttpMessageWriter writer;
+
+    @Setup
+    public void setUp() {
+        tokens = new String[tokenCount];
+        for (int i = 0; i < tokenCount; i++) {
+            tokens[i] = i % 5 == 0 ? " the" : " tok";
+        }
+        tokenFrameCoalescer = new TokenFrameCoalescer(new SseFrameProperties());
+        writer = new ServerSentEventHttpMessageWriter(new Jackson2JsonEncoder());
+    }
+
+    @Benchmark
+    public String writeAnswer(Frames frames) {
+        Flux<String> answer = frameBytes == 0
+                ? Flux.fromArray(tokens)
+                : tokenFrameCoalescer.coalesce(Flux.fromArray(tokens), null, frameBytes);
+        Flux<ServerSentEvent<Object>> events = answer
+                .doOnNext(frame -> frames.frames++)
+                .map(frame -> ServerSentEvent.builder((Object) frame).build());
+
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        writer.write(events, EVENT_TYPE, MediaType.TEXT_EVENT_STREAM, response, Collections.emptyMap()).block();
+        return response.getBodyAsString().block();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Frames {
+
+        public long frames;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            frames = 0;
+        }
+    }
+}
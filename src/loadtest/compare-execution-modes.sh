@@ -0,0 +1,28 @@
+#!/usr/bin/env bash
+# Runs the load harness against the application once per execution mode, with the synthetic models of the
+# loadtest profile, and keeps one report per mode in target/loadtest-result-<mode>.json.
+# Needs Cassandra on localhost:9042: docker compose -f cassandra-loadtest.yml up -d
+# Extra harness settings go in LOADTEST_ARGS, e.g. LOADTEST_ARGS="-Dloadtest.clients=5000"
+set -euo pipefail
+cd "$(dirname "$0")/../.."
+
+sh ./mvnw -q -DskipTests package
+# the harness build repackages the jar, run a copy
+cp target/backend-ai-0.0.1-SNAPSHOT.jar target/loadtest-app.jar
+
+for mode in EVENT_LOOP VIRTUAL_THREADS; do
+  java -jar target/loadtest-app.jar \
+    --spring.profiles.active=loadtest \
+    --backend-ai.execution.mode="$mode" > "target/loadtest-app-$mode.log" 2>&1 &
+  app=$!
+  trap 'kill "$app" 2>/dev/null || true' EXIT
+  until curl -sf http://localhost:8080/actuator/health > /dev/null; do
+    sleep 1
+  done
+
+  sh ./mvnw -q -Ploadtest verify -DskipTests -Dloadtest.args="-Dloadtest.label=$mode ${LOADTEST_ARGS:-}"
+  cp target/loadtest-result.json "target/loadtest-result-$mode.json"
+
+  kill "$app"
+  wait "$app" || true
+done
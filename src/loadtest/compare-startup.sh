@@ -0,0 +1,66 @@
+#!/usr/bin/env bash
+# Measures time to ready of the plain jar and of the AOT build run from a CDS archive, STARTUP_RUNS starts
+# each (default 5), and writes one line per start to target/startup-result.csv:
+#   build, run, wall seconds from launch until /actuator/health answers, application_ready_time_seconds,
+#   seconds spent in the schema check and its outcome (current, or migrated on a keyspace that was behind)
+# Needs Cassandra on localhost:9042: docker compose -f cassandra.yml up -d
+# Extra application arguments go in APP_ARGS, e.g. APP_ARGS="--spring.cassandra.contact-points=cassandra-1"
+# The AOT build is made for the default profile, pass AOT_PROFILE=loadtest to measure that profile instead
+# and add --spring.profiles.active=loadtest to APP_ARGS.
+set -euo pipefail
+cd "$(dirname "$0")/../.."
+
+runs=${STARTUP_RUNS:-5}
+profile=${AOT_PROFILE:-default}
+jar=backend-ai-0.0.1-SNAPSHOT.jar
+
+sh ./mvnw -q -DskipTests package
+cp "target/$jar" target/startup-jar.jar
+sh ./mvnw -q -Paot -DskipTests -Daot.profile="$profile" package
+rm -rf target/startup-aot
+java -Djarmode=tools -jar "target/$jar" extract --destination target/startup-aot
+# the training run stops once the context is refreshed and dumps the classes it loaded
+(cd target/startup-aot && java -XX:ArchiveClassesAtExit=backend-ai.jsa -Dspring.aot.enabled=true \
+  -Dspring.context.exit=onRefresh -jar "$jar" ${APP_ARGS:-} > ../startup-aot-training.log 2>&1)
+
+metric() {
+  # sum of a sample over its label sets, 0 when absent
+  awk -v name="$1" -v filter="$2" '$1 ~ "^"name"(\\{|$)" && $0 ~ filter { sum += $NF } END { print sum + 0 }' target/startup-metrics.txt
+}
+
+start() {
+  local build=$1
+  local run=$2
+  shift 2
+  local started
+  started=$(date +%s%N)
+  "$@" ${APP_ARGS:-} > "target/startup-$build-$run.log" 2>&1 &
+  app=$!
+  trap 'kill "$app" 2>/dev/null || true' EXIT
+  until curl -sf http://localhost:8080/actuator/health > /dev/null; do
+    if ! kill -0 "$app" 2>/dev/null; then
+      echo "$build run $run exited, see target/startup-$build-$run.log" >&2
+      exit 1
+    fi
+    sleep 0.05
+  done
+  local wall
+  wall=$(awk -v from="$started" -v to="$(date +%s%N)" 'BEGIN { printf "%.3f", (to - from) / 1e9 }')
+  curl -sf http://localhost:8080/actuator/prometheus > target/startup-metrics.txt
+  local outcome=current
+  if [ "$(metric schema_migration_seconds_count 'outcome="migrated"')" != "0" ]; then
+    outcome=migrated
+  fi
+  echo "$build,$run,$wall,$(metric application_ready_time_seconds ''),$(metric schema_migration_seconds_sum ''),$outcome" \
+    >> target/startup-result.csv
+  kill "$app"
+  wait "$app" || true
+}
+
+echo "build,run,wall_seconds,ready_seconds,schema_seconds,schema_outcome" > target/startup-result.csv
+for run in $(seq 1 "$runs"); do
+  start jar "$run" java -jar target/startup-jar.jar
+  start aot-cds "$run" bash -c "cd target/startup-aot && exec java -XX:SharedArchiveFile=backend-ai.jsa \
+    -Dspring.aot.enabled=true -jar $jar \"\$@\"" --
+done
+cat target/startup-result.csv
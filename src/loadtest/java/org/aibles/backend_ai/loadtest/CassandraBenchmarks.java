@@ -0,0 +1,87 @@
+package org.aibles.backend_ai.loadtest;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.config.DriverConfigLoader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.SchemaProperties;
+import org.aibles.backend_ai.configuration.schema.SchemaMigrations;
+import org.aibles.backend_ai.configuration.schema.SchemaMigrator;
+import org.aibles.backend_ai.repository.cql.CqlQuery;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * What the benchmarks that run straight against Cassandra share: the session, set up from `loadtest.cassandra`
+ * and `loadtest.datacenter` with the application's execution profiles and schema, latency sampling and the
+ * JSON report.
+ */
+final class CassandraBenchmarks {
+
+    static final CqlQuery INSERT_CONVERSATION = new CqlQuery(
+            "benchmark-conversation-insert",
+            """
+            INSERT INTO backend_ai.conversation (month_bucket, created_at, id, title) VALUES (?, ?, ?, ?)
+            """,
+            "message-write",
+            true);
+
+    private CassandraBenchmarks() {
+    }
+
+    static CqlSession openSession() throws InterruptedException {
+        String contactPoint = System.getProperty("loadtest.cassandra", "localhost:9042");
+        int separator = contactPoint.lastIndexOf(':');
+        CqlSession session = CqlSession.builder()
+                .addContactPoint(new InetSocketAddress(contactPoint.substring(0, separator),
+                        Integer.parseInt(contactPoint.substring(separator + 1))))
+                .withLocalDatacenter(System.getProperty("loadtest.datacenter", "datacenter1"))
+                .withConfigLoader(DriverConfigLoader.fromClasspath("cassandra-driver"))
+                .build();
+        new SchemaMigrator(session, SchemaMigrations.ALL, new SchemaProperties(), new SimpleMeterRegistry())
+                .afterPropertiesSet();
+        return session;
+    }
+
+    static <T> Mono<T> timed(ConcurrentLinkedQueue<Long> latencies, Mono<T> operation) {
+        return Mono.defer(() -> {
+            final long startedAt = System.nanoTime();
+            return operation.doOnTerminate(() -> latencies.add(System.nanoTime() - startedAt));
+        });
+    }
+
+    static Map<String, Object> latencies(ConcurrentLinkedQueue<Long> nanos) {
+        long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        Map<String, Object> millis = new LinkedHashMap<>();
+        millis.put("p50", percentileMillis(sorted, 0.50));
+        millis.put("p90", percentileMillis(sorted, 0.90));
+        millis.put("p99", percentileMillis(sorted, 0.99));
+        millis.put("max", percentileMillis(sorted, 1.0));
+        return millis;
+    }
+
+    static void writeReport(Map<String, Object> report) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        System.out.println(objectMapper.writeValueAsString(report));
+        File result = new File(System.getProperty("loadtest.result", "target/loadtest-result.json"));
+        if (result.getParentFile() != null) {
+            result.getParentFile().mkdirs();
+        }
+        objectMapper.writeValue(result, report);
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(index, sortedNanos.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,171 @@
+package org.aibles.backend_ai.loadtest;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.CassandraQueryProperties;
+import org.aibles.backend_ai.configuration.properties.ConversationShardProperties;
+import org.aibles.backend_ai.entity.Conversation;
+import org.aibles.backend_ai.repository.ConversationRepositoryCustomImpl;
+import org.aibles.backend_ai.repository.cql.CqlQuery;
+import org.aibles.backend_ai.repository.cql.PreparedQueryExecutor;
+import org.aibles.backend_ai.service.bucket.ConversationBuckets;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures conversation write and list-read throughput for several shard counts, straight against Cassandra.
+ * For every count in `loadtest.shards` it writes `loadtest.conversations` conversations into a month of its own,
+ * spread over the shards the way ConversationServiceImpl.saveConversation spreads them, then reads
+ * `loadtest.reads` pages of `loadtest.page-size` conversations the way the conversation list does: every shard
+ * of the month in parallel, k-way merged newest first. The report is written as JSON to `loadtest.result`.
+ * A single node mostly shows the cost of the extra partition reads per page. The gain of spreading a month over
+ * several partitions shows on a cluster with several nodes, point `loadtest.cassandra` at one.
+ */
+public final class ConversationShardBenchmark {
+
+    private static final CqlQuery DELETE_BUCKET = new CqlQuery(
+            "benchmark-conversation-delete",
+            """
+            DELETE FROM backend_ai.conversation WHERE month_bucket = ?
+            """,
+            "message-write",
+            true);
+
+    private static final YearMonth FIRST_MONTH = YearMonth.of(2000, 1);
+
+    private static final int SHARD_PREFETCH = 32;
+
+    private static final Comparator<Conversation> NEWEST_FIRST =
+            Comparator.comparing((Conversation conversation) -> conversation.getKey().getCreatedAt()).reversed();
+
+    private final Settings settings;
+
+    private final PreparedQueryExecutor executor;
+
+    private final ConversationRepositoryCustomImpl conversationRepository;
+
+    private ConversationShardBenchmark(Settings settings, PreparedQueryExecutor executor) {
+        this.settings = settings;
+        this.executor = executor;
+        this.conversationRepository = new ConversationRepositoryCustomImpl(executor);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        System.out.println("shard benchmark: " + settings);
+
+        List<Map<String, Object>> runs = new ArrayList<>();
+        try (CqlSession session = CassandraBenchmarks.openSession()) {
+            ConversationShardBenchmark benchmark = new ConversationShardBenchmark(settings,
+                    new PreparedQueryExecutor(session, new CassandraQueryProperties(), new SimpleMeterRegistry()));
+            for (int i = 0; i < settings.shards().size(); i++) {
+                runs.add(benchmark.run(settings.shards().get(i), FIRST_MONTH.plusMonths(i)));
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", settings.label());
+        report.put("conversations", settings.conversations());
+        report.put("reads", settings.reads());
+        report.put("page_size", settings.pageSize());
+        report.put("concurrency", settings.concurrency());
+        report.put("runs", runs);
+        CassandraBenchmarks.writeReport(report);
+        System.exit(0);
+    }
+
+    private Map<String, Object> run(int shardCount, YearMonth month) {
+        ConversationShardProperties properties = new ConversationShardProperties();
+        properties.setCount(shardCount);
+        properties.setReadLegacyBucket(false);
+        ConversationBuckets buckets = new ConversationBuckets(properties);
+        System.out.println("shards : " + shardCount + ", month : " + buckets.legacyBucket(month));
+
+        // rows of an earlier run on the same month would be read back as well
+        Flux.fromIterable(buckets.bucketsOf(month))
+                .flatMap(bucket -> executor.execute(DELETE_BUCKET, bucket))
+                .blockLast();
+
+        final Instant monthStart = month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        final long monthMillis = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli()
+                - monthStart.toEpochMilli();
+
+        ConcurrentLinkedQueue<Long> writeNanos = new ConcurrentLinkedQueue<>();
+        final long writesStartedAt = System.nanoTime();
+        Flux.range(0, settings.conversations())
+                .flatMap(i -> CassandraBenchmarks.timed(writeNanos, Mono.defer(() -> {
+                    String id = UUID.randomUUID().toString();
+                    Instant createdAt = monthStart.plusMillis(ThreadLocalRandom.current().nextLong(monthMillis));
+                    return executor.execute(CassandraBenchmarks.INSERT_CONVERSATION, buckets.bucketFor(month, id), createdAt, id, "benchmark " + i);
+                })), settings.concurrency())
+                .blockLast();
+        final double writeSeconds = (System.nanoTime() - writesStartedAt) / 1e9;
+
+        ConcurrentLinkedQueue<Long> readNanos = new ConcurrentLinkedQueue<>();
+        final long readsStartedAt = System.nanoTime();
+        Flux.range(0, settings.reads())
+                .flatMap(i -> CassandraBenchmarks.timed(readNanos, Mono.defer(() -> {
+                    Instant before = monthStart.plusMillis(ThreadLocalRandom.current().nextLong(monthMillis));
+                    return readPage(buckets, month, before);
+                })), settings.concurrency())
+                .blockLast();
+        final double readSeconds = (System.nanoTime() - readsStartedAt) / 1e9;
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("shards", shardCount);
+        run.put("writes_per_second", settings.conversations() / writeSeconds);
+        run.put("write_latency_millis", CassandraBenchmarks.latencies(writeNanos));
+        run.put("pages_per_second", settings.reads() / readSeconds);
+        run.put("page_latency_millis", CassandraBenchmarks.latencies(readNanos));
+        return run;
+    }
+
+    /**
+     * One page of the conversation list, as ConversationServiceImpl.findInMonth reads it.
+     */
+    @SuppressWarnings("unchecked")
+    private Mono<List<Conversation>> readPage(ConversationBuckets buckets, YearMonth month, Instant before) {
+        Publisher<Conversation>[] shards = buckets.bucketsOf(month)
+                .stream()
+                .map(bucket -> conversationRepository.findBy(bucket, before, settings.pageSize()))
+                .toArray(Publisher[]::new);
+        return Flux.mergeComparing(SHARD_PREFETCH, NEWEST_FIRST, shards)
+                .take(settings.pageSize())
+                .collectList();
+    }
+
+    private record Settings(List<Integer> shards,
+                            int conversations,
+                            int reads,
+                            int pageSize,
+                            int concurrency,
+                            String label) {
+
+        private static Settings fromSystemProperties() {
+            return new Settings(
+                    Arrays.stream(System.getProperty("loadtest.shards", "1,2,4,8,16").split(","))
+                            .map(String::trim)
+                            .map(Integer::valueOf)
+                            .toList(),
+                    Integer.getInteger("loadtest.conversations", 50000),
+                    Integer.getInteger("loadtest.reads", 20000),
+                    Integer.getInteger("loadtest.page-size", 20),
+                    Integer.getInteger("loadtest.concurrency", 256),
+                    System.getProperty("loadtest.label", ""));
+        }
+    }
+}
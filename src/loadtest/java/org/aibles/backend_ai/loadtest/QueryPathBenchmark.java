@@ -0,0 +1,219 @@
+package org.aibles.backend_ai.loadtest;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.CassandraQueryProperties;
+import org.aibles.backend_ai.configuration.properties.ConversationShardProperties;
+import org.aibles.backend_ai.entity.Conversation;
+import org.aibles.backend_ai.entity.ConversationMessage;
+import org.aibles.backend_ai.entity.ConversationMetadata;
+import org.aibles.backend_ai.entity.MessageKey;
+import org.aibles.backend_ai.repository.ConversationMetadataRepoCustomImpl;
+import org.aibles.backend_ai.repository.ConversationRepositoryCustomImpl;
+import org.aibles.backend_ai.repository.MessageRepositoryCustomImpl;
+import org.aibles.backend_ai.repository.cql.CqlQuery;
+import org.aibles.backend_ai.repository.cql.PreparedQueryExecutor;
+import org.aibles.backend_ai.service.bucket.ConversationBuckets;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
+import org.springframework.data.cassandra.core.ReactiveCassandraTemplate;
+import org.springframework.data.cassandra.core.cql.session.DefaultBridgedReactiveSession;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Compares the hot-path reads of the prepared data access layer with the same reads run the way the former
+ * Spring Data `@Query` repository methods ran them: an unprepared statement with positional values on the
+ * session's default profile, rows mapped to the entity by the template. It seeds `loadtest.conversations`
+ * conversations of `loadtest.messages` messages each, then runs every query `loadtest.reads` times per path with
+ * `loadtest.concurrency` in flight, after `loadtest.warm-up` unmeasured runs. The report is written as JSON to
+ * `loadtest.result`.
+ */
+public final class QueryPathBenchmark {
+
+    private static final CqlQuery INSERT_METADATA = new CqlQuery(
+            "benchmark-metadata-insert",
+            """
+            INSERT INTO backend_ai.conversation_metadata (conversation_id, model) VALUES (?, ?)
+            """,
+            "message-write",
+            true);
+
+    private static final int CONTEXT_WINDOW = 15;
+
+    private static final int PAGE_SIZE = 20;
+
+    private final Settings settings;
+
+    private final PreparedQueryExecutor executor;
+
+    private final ReactiveCassandraOperations template;
+
+    private final MessageRepositoryCustomImpl messageRepository;
+
+    private final ConversationRepositoryCustomImpl conversationRepository;
+
+    private final ConversationMetadataRepoCustomImpl metadataRepository;
+
+    private final ConversationBuckets buckets = new ConversationBuckets(new ConversationShardProperties());
+
+    private final YearMonth month = ConversationBuckets.monthOf(Instant.now());
+
+    private final List<String> conversationIds = new ArrayList<>();
+
+    private QueryPathBenchmark(Settings settings, CqlSession session) {
+        this.settings = settings;
+        this.executor = new PreparedQueryExecutor(session, new CassandraQueryProperties(), new SimpleMeterRegistry());
+        this.template = new ReactiveCassandraTemplate(new DefaultBridgedReactiveSession(session));
+        this.messageRepository = new MessageRepositoryCustomImpl(executor);
+        this.conversationRepository = new ConversationRepositoryCustomImpl(executor);
+        this.metadataRepository = new ConversationMetadataRepoCustomImpl(executor);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        System.out.println("query path benchmark: " + settings);
+
+        List<Map<String, Object>> queries = new ArrayList<>();
+        try (CqlSession session = CassandraBenchmarks.openSession()) {
+            QueryPathBenchmark benchmark = new QueryPathBenchmark(settings, session);
+            benchmark.seed();
+            for (Query query : benchmark.queries()) {
+                queries.add(benchmark.compare(query));
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", settings.label());
+        report.put("conversations", settings.conversations());
+        report.put("messages", settings.messages());
+        report.put("reads", settings.reads());
+        report.put("concurrency", settings.concurrency());
+        report.put("queries", queries);
+        CassandraBenchmarks.writeReport(report);
+        System.exit(0);
+    }
+
+    private List<Query> queries() {
+        return List.of(
+                new Query("message-context-window",
+                        id -> messageRepository.findContextWindowByConversationId(id, CONTEXT_WINDOW).then(),
+                        id -> template.select(SimpleStatement.newInstance("""
+                                select * from backend_ai.conversation_message where conversation_id = ?
+                                order by created_at desc limit ?
+                                """, id, CONTEXT_WINDOW), ConversationMessage.class).then()),
+                new Query("message-history",
+                        id -> messageRepository.findMessagesBy(id, Instant.now(), CONTEXT_WINDOW).then(),
+                        id -> template.select(SimpleStatement.newInstance("""
+                                select * from backend_ai.conversation_message where conversation_id = ?
+                                and created_at <= ? order by created_at desc limit ?
+                                """, id, Instant.now(), CONTEXT_WINDOW), ConversationMessage.class).then()),
+                new Query("conversation-list",
+                        id -> conversationRepository.findBy(buckets.bucketFor(month, id), Instant.now(), PAGE_SIZE).then(),
+                        id -> template.select(SimpleStatement.newInstance("""
+                                SELECT * FROM backend_ai.conversation WHERE month_bucket = ? AND created_at <= ? LIMIT ?
+                                """, buckets.bucketFor(month, id), Instant.now(), PAGE_SIZE), Conversation.class).then()),
+                new Query("conversation-metadata",
+                        id -> metadataRepository.findMetadata(id).then(),
+                        id -> template.select(SimpleStatement.newInstance("""
+                                SELECT * FROM backend_ai.conversation_metadata WHERE conversation_id = ?
+                                """, id), ConversationMetadata.class).next().then()));
+    }
+
+    private void seed() {
+        final Instant now = Instant.now();
+        for (int i = 0; i < settings.conversations(); i++) {
+            conversationIds.add(UUID.randomUUID().toString());
+        }
+        Flux.fromIterable(conversationIds)
+                .flatMap(id -> {
+                    List<ConversationMessage> messages = new ArrayList<>(settings.messages());
+                    for (int i = 0; i < settings.messages(); i++) {
+                        messages.add(new ConversationMessage(
+                                new MessageKey(id, now.minusSeconds(settings.messages() - i)),
+                                UUID.randomUUID().toString(),
+                                "benchmark question " + i,
+                                "benchmark answer " + i,
+                                false));
+                    }
+                    return Mono.when(
+                            executor.execute(CassandraBenchmarks.INSERT_CONVERSATION, buckets.bucketFor(month, id), now, id, "benchmark"),
+                            executor.execute(INSERT_METADATA, id, "QWEN2_5"),
+                            messageRepository.insertAll(messages));
+                }, settings.concurrency())
+                .blockLast();
+    }
+
+    /**
+     * Runs both paths over the same random conversations. The warm-up prepares the statements and lets the JIT
+     * and the driver's connection pools settle before anything is measured.
+     */
+    private Map<String, Object> compare(Query query) {
+        System.out.println("query : " + query.name());
+        run(query.prepared(), settings.warmUp(), new ConcurrentLinkedQueue<>());
+        run(query.repository(), settings.warmUp(), new ConcurrentLinkedQueue<>());
+
+        ConcurrentLinkedQueue<Long> preparedNanos = new ConcurrentLinkedQueue<>();
+        double preparedSeconds = run(query.prepared(), settings.reads(), preparedNanos);
+        ConcurrentLinkedQueue<Long> repositoryNanos = new ConcurrentLinkedQueue<>();
+        double repositorySeconds = run(query.repository(), settings.reads(), repositoryNanos);
+
+        Map<String, Object> prepared = new LinkedHashMap<>();
+        prepared.put("reads_per_second", settings.reads() / preparedSeconds);
+        prepared.put("latency_millis", CassandraBenchmarks.latencies(preparedNanos));
+        Map<String, Object> repository = new LinkedHashMap<>();
+        repository.put("reads_per_second", settings.reads() / repositorySeconds);
+        repository.put("latency_millis", CassandraBenchmarks.latencies(repositoryNanos));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("query", query.name());
+        result.put("prepared", prepared);
+        result.put("query_annotation", repository);
+        return result;
+    }
+
+    private double run(Function<String, Mono<Void>> read, int times, ConcurrentLinkedQueue<Long> latencies) {
+        final long startedAt = System.nanoTime();
+        Flux.range(0, times)
+                .flatMap(i -> CassandraBenchmarks.timed(latencies, Mono.defer(() ->
+                        read.apply(conversationIds.get(ThreadLocalRandom.current().nextInt(conversationIds.size()))))),
+                        settings.concurrency())
+                .blockLast();
+        return (System.nanoTime() - startedAt) / 1e9;
+    }
+
+    /**
+     * One hot-path read, through the prepared data access layer and as the former repository method ran it.
+     */
+    private record Query(String name, Function<String, Mono<Void>> prepared, Function<String, Mono<Void>> repository) {
+    }
+
+    private record Settings(int conversations,
+                            int messages,
+                            int reads,
+                            int warmUp,
+                            int concurrency,
+                            String label) {
+
+        private static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("loadtest.conversations", 2000),
+                    Integer.getInteger("loadtest.messages", 30),
+                    Integer.getInteger("loadtest.reads", 50000),
+                    Integer.getInteger("loadtest.warm-up", 5000),
+                    Integer.getInteger("loadtest.concurrency", 64),
+                    System.getProperty("loadtest.label", ""));
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package org.aibles.backend_ai.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.aibles.backend_ai.dto.request.ConversationRequest;
+import org.aibles.backend_ai.dto.request.StartConversationRequest;
+import org.aibles.backend_ai.dto.response.ConversationDto;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives concurrent SSE clients against a running instance, normally one started with the loadtest profile.
+ * Every client starts a conversation and streams `rounds` prompts on it through `/api/v1/conversations/{id}:stream`.
+ * The report covers stream throughput, time to first token, heap use and lost message writes, the last two
+ * read from the instance's Prometheus endpoint, and is written as JSON to `loadtest.result`.
+ */
+public final class StreamLoadTest {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> TOKEN_EVENT =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private static final ParameterizedTypeReference<ServerSentEvent<ConversationDto>> CONVERSATION_EVENT =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private static final Duration SCRAPE_INTERVAL = Duration.ofSeconds(1);
+
+    private final Settings settings;
+
+    private final WebClient webClient;
+
+    private final ConcurrentLinkedQueue<Long> firstTokenNanos = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder completedStreams = new LongAdder();
+
+    private final LongAdder failedStreams = new LongAdder();
+
+    private final LongAdder rejectedStreams = new LongAdder();
+
+    private final LongAdder failedStarts = new LongAdder();
+
+    private final LongAdder tokens = new LongAdder();
+
+    private final AtomicLong maxHeapUsed = new AtomicLong();
+
+    private StreamLoadTest(Settings settings) {
+        this.settings = settings;
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(settings.clients() + 16)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(Duration.ofMinutes(1))
+                .build();
+        this.webClient = WebClient.builder()
+                .baseUrl(settings.baseUrl())
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .build();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Settings settings = Settings.fromSystemProperties();
+        System.out.println("load test: " + settings);
+        Map<String, Object> report = new StreamLoadTest(settings).run();
+
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        System.out.println(objectMapper.writeValueAsString(report));
+        File result = new File(settings.result());
+        if (result.getParentFile() != null) {
+            result.getParentFile().mkdirs();
+        }
+        objectMapper.writeValue(result, report);
+        System.exit(0);
+    }
+
+    private Map<String, Object> run() {
+        Disposable heapSampler = Flux.interval(SCRAPE_INTERVAL)
+                .concatMap(tick -> scrapeMetrics().onErrorResume(e -> Mono.empty()))
+                .subscribe(metrics -> maxHeapUsed.accumulateAndGet(heapUsed(metrics), Math::max));
+
+        final Duration spacing = settings.rampUp().dividedBy(Math.max(1, settings.clients()));
+        final long startedAt = System.nanoTime();
+        Flux.range(0, settings.clients())
+                .concatMap(client -> spacing.isZero() ? Mono.just(client) : Mono.delay(spacing).thenReturn(client))
+                .flatMap(client -> runClient(), settings.clients())
+                .blockLast();
+        final double seconds = (System.nanoTime() - startedAt) / 1e9;
+        heapSampler.dispose();
+
+        Map<String, Double> metrics = scrapeMetrics().onErrorReturn(Map.of()).block();
+        return report(seconds, metrics == null ? Map.of() : metrics);
+    }
+
+    private Mono<Void> runClient() {
+        return webClient.post()
+                .uri("/api/v1/conversations:start")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(new StartConversationRequest(settings.prompt(), settings.model()))
+                .retrieve()
+                .bodyToFlux(CONVERSATION_EVENT)
+                .next()
+                .flatMap(event -> Flux.range(0, settings.rounds())
+                        .concatMap(round -> stream(event.data().getId()))
+                        .then())
+                .onErrorResume(e -> {
+                    failedStarts.increment();
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> stream(String conversationId) {
+        return Mono.defer(() -> {
+            final long startedAt = System.nanoTime();
+            final AtomicInteger received = new AtomicInteger();
+            final AtomicInteger errors = new AtomicInteger();
+            return webClient.post()
+                    .uri("/api/v1/conversations/{id}:stream", conversationId)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .bodyValue(new ConversationRequest(settings.prompt()))
+                    .retrieve()
+                    .bodyToFlux(TOKEN_EVENT)
+                    .doOnNext(event -> {
+                        if ("error".equals(event.event())) {
+                            errors.incrementAndGet();
+                            return;
+                        }
+                        if (received.getAndIncrement() == 0) {
+                            firstTokenNanos.add(System.nanoTime() - startedAt);
+                        }
+                    })
+                    .then(Mono.fromRunnable(() -> {
+                        tokens.add(received.get());
+                        if (errors.get() > 0) {
+                            rejectedStreams.increment();
+                        } else {
+                            completedStreams.increment();
+                        }
+                    }))
+                    .onErrorResume(e -> {
+                        tokens.add(received.get());
+                        failedStreams.increment();
+                        return Mono.empty();
+                    })
+                    .then();
+        });
+    }
+
+    private Mono<Map<String, Double>> scrapeMetrics() {
+        return webClient.get()
+                .uri("/actuator/prometheus")
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(StreamLoadTest::parsePrometheus);
+    }
+
+    /**
+     * Sums the samples of every series by name, dropping labels, except for heap memory which is kept apart
+     * from non-heap under its own key.
+     */
+    private static Map<String, Double> parsePrometheus(String exposition) {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        for (String line : exposition.split("\n")) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int labels = line.indexOf('{');
+            int valueStart = line.lastIndexOf(' ');
+            if (valueStart < 0) {
+                continue;
+            }
+            String name = line.substring(0, labels >= 0 ? labels : valueStart);
+            if (name.equals("jvm_memory_used_bytes") && line.contains("area=\"heap\"")) {
+                name = "jvm_memory_used_bytes_heap";
+            }
+            try {
+                metrics.merge(name, Double.parseDouble(line.substring(valueStart + 1)), Double::sum);
+            } catch (NumberFormatException e) {
+                // exemplars and timestamps after the value, not needed here
+            }
+        }
+        return metrics;
+    }
+
+    private static long heapUsed(Map<String, Double> metrics) {
+        return metrics.getOrDefault("jvm_memory_used_bytes_heap", 0d).longValue();
+    }
+
+    private Map<String, Object> report(double seconds, Map<String, Double> metrics) {
+        long[] firstTokens = firstTokenNanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        long streams = completedStreams.sum() + rejectedStreams.sum() + failedStreams.sum();
+
+        Map<String, Object> firstTokenMillis = new LinkedHashMap<>();
+        firstTokenMillis.put("p50", percentileMillis(firstTokens, 0.50));
+        firstTokenMillis.put("p90", percentileMillis(firstTokens, 0.90));
+        firstTokenMillis.put("p99", percentileMillis(firstTokens, 0.99));
+        firstTokenMillis.put("max", percentileMillis(firstTokens, 1.0));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", settings.label());
+        report.put("clients", settings.clients());
+        report.put("model", settings.model());
+        report.put("duration_seconds", seconds);
+        report.put("streams", streams);
+        report.put("streams_completed", completedStreams.sum());
+        report.put("streams_rejected", rejectedStreams.sum());
+        report.put("streams_failed", failedStreams.sum());
+        report.put("conversation_starts_failed", failedStarts.sum());
+        report.put("streams_per_second", streams / seconds);
+        report.put("tokens_per_second", tokens.sum() / seconds);
+        report.put("time_to_first_token_millis", firstTokenMillis);
+        report.put("heap_used_max_bytes", Math.max(maxHeapUsed.get(), heapUsed(metrics)));
+        report.put("heap_used_end_bytes", heapUsed(metrics));
+        report.put("message_writes_dropped", metrics.getOrDefault("conversation_message_write_dropped_total", 0d));
+        report.put("message_writes_overflowed", metrics.getOrDefault("conversation_message_write_overflow_total", 0d));
+        return report;
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(index, sortedNanos.length - 1))] / 1e6;
+    }
+
+    private record Settings(String baseUrl,
+                            int clients,
+                            int rounds,
+                            Duration rampUp,
+                            String model,
+                            String prompt,
+                            String label,
+                            String result) {
+
+        private static Settings fromSystemProperties() {
+            return new Settings(
+                    System.getProperty("loadtest.base-url", "http://localhost:8080"),
+                    Integer.getInteger("loadtest.clients", 2000),
+                    Integer.getInteger("loadtest.rounds", 3),
+                    Duration.parse(System.getProperty("loadtest.ramp-up", "PT30S")),
+                    System.getProperty("loadtest.model", "QWEN2_5"),
+                    System.getProperty("loadtest.prompt", "Explain how a context window is kept small."),
+                    System.getProperty("loadtest.label", ""),
+                    System.getProperty("loadtest.result", "target/loadtest-result.json"));
+        }
+    }
+}
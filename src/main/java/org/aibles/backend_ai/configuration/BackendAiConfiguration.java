@@ -1,34 +1,344 @@
 package org.aibles.backend_ai.configuration;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.aibles.backend_ai.configuration.properties.AdmissionProperties;
+import org.aibles.backend_ai.configuration.properties.BatchProperties;
+import org.aibles.backend_ai.configuration.properties.CompactionProperties;
+import org.aibles.backend_ai.configuration.properties.ContextCacheProperties;
+import org.aibles.backend_ai.configuration.properties.DisconnectProperties;
+import org.aibles.backend_ai.configuration.properties.EdgeProperties;
+import org.aibles.backend_ai.configuration.properties.ExecutionProperties;
+import org.aibles.backend_ai.configuration.properties.ExportProperties;
+import org.aibles.backend_ai.configuration.properties.HedgingProperties;
+import org.aibles.backend_ai.configuration.properties.ConversationPagingProperties;
+import org.aibles.backend_ai.configuration.properties.ConversationShardProperties;
+import org.aibles.backend_ai.configuration.properties.MessageWriteProperties;
+import org.aibles.backend_ai.configuration.properties.ModelCacheProperties;
+import org.aibles.backend_ai.configuration.properties.ModelRegistryProperties;
+import org.aibles.backend_ai.configuration.properties.OllamaPoolProperties;
+import org.aibles.backend_ai.configuration.properties.ResponseCacheProperties;
+import org.aibles.backend_ai.configuration.properties.SseFrameProperties;
+import org.aibles.backend_ai.configuration.properties.StreamReplayProperties;
+import org.aibles.backend_ai.configuration.properties.UsageProperties;
+import org.aibles.backend_ai.filter.EdgeAdmissionFilter;
+import org.aibles.backend_ai.repository.BatchItemRepository;
+import org.aibles.backend_ai.repository.BatchJobRepository;
 import org.aibles.backend_ai.repository.ConversationMetadataRepo;
 import org.aibles.backend_ai.repository.ConversationRepository;
+import org.aibles.backend_ai.repository.ConversationSummaryRepository;
+import org.aibles.backend_ai.repository.ConversationUsageRepository;
 import org.aibles.backend_ai.repository.MessageRepository;
+import org.aibles.backend_ai.repository.ModelUsageRepository;
+import org.aibles.backend_ai.repository.ResponseCacheRepository;
 import org.aibles.backend_ai.service.ChatService;
 import org.aibles.backend_ai.service.ChatServiceImpl;
 import org.aibles.backend_ai.service.ConversationService;
 import org.aibles.backend_ai.service.ConversationServiceImpl;
+import org.aibles.backend_ai.service.batch.BatchItemStore;
+import org.aibles.backend_ai.service.batch.BatchJobRunner;
+import org.aibles.backend_ai.service.batch.BatchJobService;
+import org.aibles.backend_ai.service.bucket.ConversationBuckets;
+import org.aibles.backend_ai.service.bucket.LegacyBucketMigration;
+import org.aibles.backend_ai.service.cache.ConversationContextCache;
+import org.aibles.backend_ai.service.cache.ConversationModelCache;
+import org.aibles.backend_ai.service.cache.ResponseCache;
+import org.aibles.backend_ai.service.chatstream.ChatExecution;
+import org.aibles.backend_ai.service.chatstream.ChatStreamMetrics;
 import org.aibles.backend_ai.service.chatstream.ChatStreamRegistry;
-import org.springframework.ai.ollama.OllamaChatModel;
+import org.aibles.backend_ai.service.chatstream.TokenFrameCoalescer;
+import org.aibles.backend_ai.service.chatstream.admission.ModelAdmissionScheduler;
+import org.aibles.backend_ai.service.chatstream.hedge.HedgingChatStreamRegistry;
+import org.aibles.backend_ai.service.chatstream.ollama.OllamaNodePool;
+import org.aibles.backend_ai.service.chatstream.replay.TurnReplayRegistry;
+import org.aibles.backend_ai.service.context.ContextWindowAssembler;
+import org.aibles.backend_ai.service.context.ConversationCompactor;
+import org.aibles.backend_ai.service.context.TokenEstimator;
+import org.aibles.backend_ai.service.export.ConversationExporter;
+import org.aibles.backend_ai.service.persistence.MessageWriteBehindQueue;
+import org.aibles.backend_ai.service.usage.UsageMeter;
+import org.aibles.backend_ai.service.usage.UsageMeteringChatStreamRegistry;
+import org.aibles.backend_ai.service.usage.UsageService;
+import org.springframework.ai.autoconfigure.ollama.OllamaConnectionDetails;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.config.ServiceLocatorFactoryBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.List;
 
 @Configuration
+@EnableConfigurationProperties({
+        ContextCacheProperties.class,
+        ModelCacheProperties.class,
+        MessageWriteProperties.class,
+        ConversationShardProperties.class,
+        ConversationPagingProperties.class,
+        AdmissionProperties.class,
+        ResponseCacheProperties.class,
+        SseFrameProperties.class,
+        ExecutionProperties.class,
+        StreamReplayProperties.class,
+        DisconnectProperties.class,
+        OllamaPoolProperties.class,
+        HedgingProperties.class,
+        ModelRegistryProperties.class,
+        CompactionProperties.class,
+        ExportProperties.class,
+        BatchProperties.class,
+        EdgeProperties.class,
+        UsageProperties.class
+})
 public class BackendAiConfiguration {
 
+    @Bean
+    public ConversationContextCache conversationContextCache(ContextCacheProperties contextCacheProperties,
+                                                             MeterRegistry meterRegistry) {
+        return new ConversationContextCache(contextCacheProperties,
+                ConversationServiceImpl.MAX_CONTEXT_MESSAGES,
+                meterRegistry);
+    }
+
+    @Bean
+    public ConversationModelCache conversationModelCache(ModelCacheProperties modelCacheProperties,
+                                                         MeterRegistry meterRegistry) {
+        return new ConversationModelCache(modelCacheProperties, meterRegistry);
+    }
+
+    @Bean
+    public MessageWriteBehindQueue messageWriteBehindQueue(MessageRepository messageRepository,
+                                                           MessageWriteProperties messageWriteProperties,
+                                                           MeterRegistry meterRegistry) {
+        return new MessageWriteBehindQueue(messageRepository, messageWriteProperties, meterRegistry);
+    }
+
+    @Bean
+    public ConversationBuckets conversationBuckets(ConversationShardProperties conversationShardProperties) {
+        return new ConversationBuckets(conversationShardProperties);
+    }
+
+    @Bean
+    public ConversationExporter conversationExporter(ConversationRepository conversationRepository,
+                                                     MessageRepository messageRepository,
+                                                     ConversationBuckets conversationBuckets,
+                                                     ExportProperties exportProperties,
+                                                     ConversationPagingProperties conversationPagingProperties,
+                                                     MeterRegistry meterRegistry) {
+        return new ConversationExporter(conversationRepository,
+                messageRepository,
+                conversationBuckets,
+                exportProperties,
+                conversationPagingProperties,
+                meterRegistry);
+    }
+
+    @Bean
+    public LegacyBucketMigration legacyBucketMigration(ConversationRepository conversationRepository,
+                                                       ConversationBuckets conversationBuckets,
+                                                       ConversationShardProperties conversationShardProperties) {
+        return new LegacyBucketMigration(conversationRepository,
+                conversationBuckets,
+                conversationShardProperties.getMigration());
+    }
+
+    @Bean
+    public TokenEstimator tokenEstimator() {
+        return new TokenEstimator();
+    }
+
+    @Bean
+    public ConversationCompactor conversationCompactor(CompactionProperties compactionProperties,
+                                                       MessageRepository messageRepository,
+                                                       ConversationSummaryRepository conversationSummaryRepository,
+                                                       ChatStreamRegistry chatStreamRegistry,
+                                                       ModelAdmissionScheduler modelAdmissionScheduler,
+                                                       ConversationContextCache conversationContextCache,
+                                                       TokenEstimator tokenEstimator,
+                                                       MeterRegistry meterRegistry) {
+        return new ConversationCompactor(compactionProperties,
+                messageRepository,
+                conversationSummaryRepository,
+                chatStreamRegistry,
+                modelAdmissionScheduler,
+                conversationContextCache,
+                tokenEstimator,
+                meterRegistry);
+    }
+
+    @Bean
+    public ContextWindowAssembler contextWindowAssembler(CompactionProperties compactionProperties,
+                                                         TokenEstimator tokenEstimator,
+                                                         ConversationCompactor conversationCompactor,
+                                                         MeterRegistry meterRegistry) {
+        return new ContextWindowAssembler(compactionProperties, tokenEstimator, conversationCompactor, meterRegistry);
+    }
+
     @Bean
     public ConversationService conversationService(
                                            ConversationRepository conversationRepository,
                                            ConversationMetadataRepo conversationMetadataRepo,
-                                           MessageRepository messageRepository) {
-        return new ConversationServiceImpl(conversationRepository, conversationMetadataRepo, messageRepository);
+                                           MessageRepository messageRepository,
+                                           ConversationContextCache conversationContextCache,
+                                           ConversationModelCache conversationModelCache,
+                                           MessageWriteBehindQueue messageWriteBehindQueue,
+                                           ConversationBuckets conversationBuckets,
+                                           ConversationPagingProperties conversationPagingProperties,
+                                           ConversationSummaryRepository conversationSummaryRepository,
+                                           ContextWindowAssembler contextWindowAssembler) {
+        return new ConversationServiceImpl(conversationRepository,
+                conversationMetadataRepo,
+                messageRepository,
+                conversationContextCache,
+                conversationModelCache,
+                messageWriteBehindQueue,
+                conversationBuckets,
+                conversationPagingProperties,
+                conversationSummaryRepository,
+                contextWindowAssembler);
+    }
+
+    @Bean
+    public ModelAdmissionScheduler modelAdmissionScheduler(AdmissionProperties admissionProperties,
+                                                           MeterRegistry meterRegistry) {
+        return new ModelAdmissionScheduler(admissionProperties, meterRegistry);
+    }
+
+    @Bean
+    public ResponseCache responseCache(ResponseCacheProperties responseCacheProperties,
+                                       ResponseCacheRepository responseCacheRepository,
+                                       MeterRegistry meterRegistry) {
+        return new ResponseCache(responseCacheProperties, responseCacheRepository, meterRegistry);
+    }
+
+    @Bean
+    public ChatStreamMetrics chatStreamMetrics(MeterRegistry meterRegistry) {
+        return new ChatStreamMetrics(meterRegistry);
+    }
+
+    @Bean
+    public EdgeAdmissionFilter edgeAdmissionFilter(EdgeProperties edgeProperties,
+                                                   ChatStreamMetrics chatStreamMetrics,
+                                                   MessageWriteBehindQueue messageWriteBehindQueue,
+                                                   MeterRegistry meterRegistry) {
+        return new EdgeAdmissionFilter(edgeProperties, chatStreamMetrics, messageWriteBehindQueue, meterRegistry);
+    }
+
+    @Bean
+    public TokenFrameCoalescer tokenFrameCoalescer(SseFrameProperties sseFrameProperties) {
+        return new TokenFrameCoalescer(sseFrameProperties);
+    }
+
+    @Bean
+    public ChatExecution chatExecution(ExecutionProperties executionProperties) {
+        return new ChatExecution(executionProperties);
+    }
+
+    @Bean
+    public TurnReplayRegistry turnReplayRegistry(StreamReplayProperties streamReplayProperties,
+                                                 DisconnectProperties disconnectProperties,
+                                                 MeterRegistry meterRegistry) {
+        return new TurnReplayRegistry(streamReplayProperties, disconnectProperties, meterRegistry);
+    }
+
+    @Bean
+    @Profile("!" + LoadTestConfiguration.PROFILE)
+    public OllamaNodePool ollamaNodePool(OllamaPoolProperties ollamaPoolProperties,
+                                         OllamaConnectionDetails ollamaConnectionDetails,
+                                         ObjectProvider<RestClient.Builder> restClientBuilder,
+                                         ObjectProvider<WebClient.Builder> webClientBuilder,
+                                         ObjectProvider<ObservationRegistry> observationRegistry,
+                                         MeterRegistry meterRegistry) {
+        return new OllamaNodePool(ollamaPoolProperties,
+                ollamaPoolProperties.getNodes().isEmpty()
+                        ? List.of(ollamaConnectionDetails.getBaseUrl())
+                        : ollamaPoolProperties.getNodes(),
+                restClientBuilder.getIfAvailable(RestClient::builder),
+                webClientBuilder.getIfAvailable(WebClient::builder),
+                observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP),
+                meterRegistry);
+    }
+
+    @Bean
+    public BatchItemStore batchItemStore(BatchItemRepository batchItemRepository, BatchProperties batchProperties) {
+        return new BatchItemStore(batchItemRepository, batchProperties);
+    }
+
+    @Bean
+    public BatchJobRunner batchJobRunner(BatchJobRepository batchJobRepository,
+                                         BatchItemStore batchItemStore,
+                                         ChatStreamRegistry chatStreamRegistry,
+                                         ModelAdmissionScheduler modelAdmissionScheduler,
+                                         BatchProperties batchProperties,
+                                         ModelRegistryProperties modelRegistryProperties,
+                                         MeterRegistry meterRegistry) {
+        return new BatchJobRunner(batchJobRepository,
+                batchItemStore,
+                chatStreamRegistry,
+                modelAdmissionScheduler,
+                batchProperties,
+                modelRegistryProperties,
+                meterRegistry);
+    }
+
+    @Bean
+    public BatchJobService batchJobService(BatchJobRepository batchJobRepository,
+                                           BatchItemStore batchItemStore,
+                                           BatchJobRunner batchJobRunner,
+                                           BatchProperties batchProperties) {
+        return new BatchJobService(batchJobRepository, batchItemStore, batchJobRunner, batchProperties);
+    }
+
+    @Bean
+    public ChatService chatService(ConversationService conversationService,
+                                   ChatStreamRegistry chatStreamRegistry,
+                                   ModelAdmissionScheduler modelAdmissionScheduler,
+                                   ResponseCache responseCache,
+                                   ChatStreamMetrics chatStreamMetrics,
+                                   ChatExecution chatExecution,
+                                   TurnReplayRegistry turnReplayRegistry) {
+        return new ChatServiceImpl(conversationService,
+                chatStreamRegistry,
+                modelAdmissionScheduler,
+                responseCache,
+                chatStreamMetrics,
+                chatExecution,
+                turnReplayRegistry);
+    }
+
+    @Bean
+    public UsageMeter usageMeter(ConversationUsageRepository conversationUsageRepository,
+                                 ModelUsageRepository modelUsageRepository,
+                                 UsageProperties usageProperties,
+                                 MeterRegistry meterRegistry) {
+        return new UsageMeter(conversationUsageRepository, modelUsageRepository, usageProperties, meterRegistry);
+    }
+
+    @Bean
+    public UsageService usageService(ConversationUsageRepository conversationUsageRepository,
+                                     ModelUsageRepository modelUsageRepository,
+                                     UsageProperties usageProperties) {
+        return new UsageService(conversationUsageRepository, modelUsageRepository, usageProperties);
+    }
+
+    @Bean
+    @Primary
+    public ChatStreamRegistry hedgingChatStreamRegistry(@Qualifier("usageMeteringChatStreamRegistry") ChatStreamRegistry chatStreamRegistry,
+                                                        ModelAdmissionScheduler modelAdmissionScheduler,
+                                                        HedgingProperties hedgingProperties,
+                                                        MeterRegistry meterRegistry) {
+        return new HedgingChatStreamRegistry(chatStreamRegistry, modelAdmissionScheduler, hedgingProperties, meterRegistry);
     }
 
     @Bean
-    public ChatService chatService(OllamaChatModel ollamaChatModel,
-                                   ConversationService conversationService,
-                                   ChatStreamRegistry chatStreamRegistry) {
-        return new ChatServiceImpl(ollamaChatModel, conversationService, chatStreamRegistry);
+    public ChatStreamRegistry usageMeteringChatStreamRegistry(@Qualifier("chatStreamFactoryBean") ChatStreamRegistry chatStreamRegistry,
+                                                              UsageMeter usageMeter) {
+        return new UsageMeteringChatStreamRegistry(chatStreamRegistry, usageMeter);
     }
 
     @Bean
@@ -1,11 +1,21 @@
 package org.aibles.backend_ai.configuration;
 
 import com.datastax.oss.driver.api.core.CqlSession;
-import org.springframework.beans.factory.InitializingBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aibles.backend_ai.configuration.properties.CassandraQueryProperties;
+import org.aibles.backend_ai.configuration.properties.SchemaProperties;
+import org.aibles.backend_ai.configuration.schema.SchemaMigrations;
+import org.aibles.backend_ai.configuration.schema.SchemaMigrator;
+import org.aibles.backend_ai.repository.cql.PreparedQueryExecutor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@EnableConfigurationProperties({
+        CassandraQueryProperties.class,
+        SchemaProperties.class
+})
 public class CassandraSchemaConfig {
 
     private final CqlSession cqlSession;
@@ -15,53 +25,13 @@ public class CassandraSchemaConfig {
     }
 
     @Bean
-    public InitializingBean initializingCassandraSchema() {
-        return () -> {
-
-            cqlSession.execute(
-                    """
-                          CREATE KEYSPACE IF NOT EXISTS backend_ai
-                          WITH replication = {'class' : 'SimpleStrategy', 'replication_factor' : 1};
-                          """
-            );
-
-            cqlSession.execute(
-                    "USE backend_ai"
-            );
-
-            cqlSession.execute(
-                    """
-                          CREATE TABLE IF NOT EXISTS conversation(
-                          month_bucket VARCHAR,
-                          id VARCHAR,
-                          title TEXT,
-                          created_at TIMESTAMP,
-                          PRIMARY KEY ((month_bucket), created_at)
-                          ) WITH CLUSTERING ORDER BY (created_at DESC)
-                          """
-            );
-
-            cqlSession.execute(
-                    """
-                            CREATE TABLE IF NOT EXISTS conversation_metadata(
-                            conversation_id VARCHAR PRIMARY KEY,
-                            model VARCHAR
-                            )
-                            """
-            );
+    public PreparedQueryExecutor preparedQueryExecutor(CassandraQueryProperties cassandraQueryProperties,
+                                                       MeterRegistry meterRegistry) {
+        return new PreparedQueryExecutor(cqlSession, cassandraQueryProperties, meterRegistry);
+    }
 
-            cqlSession.execute(
-                    """
-                          CREATE TABLE IF NOT EXISTS conversation_message(
-                          id VARCHAR,
-                          conversation_id VARCHAR,
-                          question TEXT,
-                          answer TEXT,
-                          created_at TIMESTAMP,
-                          PRIMARY KEY ((conversation_id), created_at)
-                          ) WITH CLUSTERING ORDER BY (created_at DESC)
-                          """
-            );
-        };
+    @Bean
+    public SchemaMigrator initializingCassandraSchema(SchemaProperties schemaProperties, MeterRegistry meterRegistry) {
+        return new SchemaMigrator(cqlSession, SchemaMigrations.ALL, schemaProperties, meterRegistry);
     }
 }
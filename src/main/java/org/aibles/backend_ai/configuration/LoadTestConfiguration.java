@@ -0,0 +1,52 @@
+package org.aibles.backend_ai.configuration;
+
+import org.aibles.backend_ai.configuration.properties.SyntheticStreamProperties;
+import org.aibles.backend_ai.constant.AIModel;
+import org.aibles.backend_ai.service.chatstream.synthetic.SyntheticChatStreamService;
+import org.springframework.beans.factory.aot.BeanRegistrationAotProcessor;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Replaces the model backends with {@link SyntheticChatStreamService}s, registered under every AIModel name
+ * so the ChatStreamRegistry resolves them like the real ones.
+ */
+@Configuration
+@Profile(LoadTestConfiguration.PROFILE)
+@EnableConfigurationProperties(SyntheticStreamProperties.class)
+public class LoadTestConfiguration {
+
+    public static final String PROFILE = "loadtest";
+
+    @Bean
+    public static BeanDefinitionRegistryPostProcessor syntheticChatStreamServices() {
+        return new BeanDefinitionRegistryPostProcessor() {
+
+            @Override
+            public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+                for (AIModel model : AIModel.values()) {
+                    AbstractBeanDefinition definition = BeanDefinitionBuilder
+                            .genericBeanDefinition(SyntheticChatStreamService.class)
+                            .addConstructorArgValue(model.name())
+                            .setAutowireMode(AutowireCapableBeanFactory.AUTOWIRE_CONSTRUCTOR)
+                            .getBeanDefinition();
+                    // left out of an AOT build, this processor registers them again at startup from the runtime configuration
+                    definition.setAttribute(BeanRegistrationAotProcessor.IGNORE_REGISTRATION_ATTRIBUTE, true);
+                    registry.registerBeanDefinition(model.name(), definition);
+                }
+            }
+
+            @Override
+            public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+            }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package org.aibles.backend_ai.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aibles.backend_ai.configuration.properties.ModelRegistryProperties;
+import org.aibles.backend_ai.constant.ModelBackend;
+import org.aibles.backend_ai.service.chatstream.model.ModelRegistry;
+import org.aibles.backend_ai.service.chatstream.model.ModelWarmer;
+import org.aibles.backend_ai.service.chatstream.model.OllamaChatStreamService;
+import org.aibles.backend_ai.service.chatstream.model.OpenAiChatStreamService;
+import org.aibles.backend_ai.service.chatstream.ollama.OllamaNodePool;
+import org.springframework.beans.factory.aot.BeanRegistrationAotProcessor;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionBuilder;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+import java.util.Map;
+
+/**
+ * Registers a ChatStreamService for every model declared in backend-ai.model-registry, under the model's name
+ * so the ChatStreamRegistry resolves it, and keeps the Ollama models loaded.
+ */
+@Configuration
+@Profile("!" + LoadTestConfiguration.PROFILE)
+public class ModelRegistryConfiguration {
+
+    private static final Map<ModelBackend, Class<?>> SERVICES = Map.of(
+            ModelBackend.OPENAI, OpenAiChatStreamService.class,
+            ModelBackend.OLLAMA, OllamaChatStreamService.class);
+
+    @Bean
+    public static BeanDefinitionRegistryPostProcessor modelChatStreamServices(Environment environment) {
+        return new BeanDefinitionRegistryPostProcessor() {
+
+            @Override
+            public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+                ModelRegistryProperties properties = Binder.get(environment)
+                        .bind(ModelRegistryProperties.PREFIX, ModelRegistryProperties.class)
+                        .orElseGet(ModelRegistryProperties::new);
+                properties.getModels().forEach((name, model) -> {
+                    if (model.getBackend() == null) {
+                        throw new IllegalStateException("model " + name + " declares no backend");
+                    }
+                    AbstractBeanDefinition definition = BeanDefinitionBuilder
+                            .genericBeanDefinition(SERVICES.get(model.getBackend()))
+                            .addConstructorArgValue(name)
+                            .setAutowireMode(AutowireCapableBeanFactory.AUTOWIRE_CONSTRUCTOR)
+                            .getBeanDefinition();
+                    // left out of an AOT build, this processor registers them again at startup from the runtime configuration
+                    definition.setAttribute(BeanRegistrationAotProcessor.IGNORE_REGISTRATION_ATTRIBUTE, true);
+                    registry.registerBeanDefinition(name, definition);
+                });
+            }
+
+            @Override
+            public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+            }
+        };
+    }
+
+    @Bean
+    public ModelRegistry modelRegistry(ModelRegistryProperties modelRegistryProperties, MeterRegistry meterRegistry) {
+        return new ModelRegistry(modelRegistryProperties, meterRegistry);
+    }
+
+    @Bean
+    public ModelWarmer modelWarmer(ModelRegistry modelRegistry,
+                                   OllamaNodePool ollamaNodePool,
+                                   ModelRegistryProperties modelRegistryProperties) {
+        return new ModelWarmer(modelRegistry, ollamaNodePool, modelRegistryProperties);
+    }
+}
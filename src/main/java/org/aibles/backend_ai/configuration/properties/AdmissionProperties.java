@@ -0,0 +1,74 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.admission")
+public class AdmissionProperties {
+
+    /**
+     * Highest priority a tier may map to, larger values are clamped.
+     */
+    private int maxPriority = 9;
+
+    /**
+     * Priority of client streams whose tier has none. Background work such as conversation compaction runs at
+     * priority 0, this must stay above it so that clients are served first.
+     */
+    private int defaultPriority = 5;
+
+    /**
+     * Header carrying the tier of the client, see tiers. Only read when trustTierHeader is set.
+     */
+    private String tierHeader = "X-Client-Tier";
+
+    /**
+     * Set only behind a gateway that writes tierHeader from the authenticated client and drops any value the
+     * client sent itself. Unset, every client stream gets the same priority.
+     */
+    private boolean trustTierHeader;
+
+    /**
+     * Scheduling priority per client tier, higher values are admitted first when the model is busy. Tiers
+     * without an entry get defaultPriority.
+     */
+    private Map<String, Integer> tiers = new HashMap<>();
+
+    /**
+     * Limits used by models without an entry in models.
+     */
+    private Limits defaults = new Limits();
+
+    /**
+     * Limits per AIModel name.
+     */
+    private Map<String, Limits> models = new HashMap<>();
+
+    public Limits limitsOf(String model) {
+        return models.getOrDefault(model, defaults);
+    }
+
+    @Data
+    public static class Limits {
+
+        /**
+         * Streams generated at the same time.
+         */
+        private int maxInFlight = 4;
+
+        /**
+         * Streams waiting for a slot, further requests are rejected.
+         */
+        private int maxQueued = 64;
+
+        /**
+         * Longest time a stream waits for a slot.
+         */
+        private Duration queueTimeout = Duration.ofSeconds(10);
+    }
+}
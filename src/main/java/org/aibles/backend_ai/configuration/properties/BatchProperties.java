@@ -0,0 +1,89 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.aibles.backend_ai.constant.ModelBackend;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.batch")
+public class BatchProperties {
+
+    /**
+     * Runs queued jobs on this instance. Jobs can still be submitted and read when disabled.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Most prompts one job may hold.
+     */
+    private int maxPrompts = 50_000;
+
+    /**
+     * Prompts of a job in flight at the same time, per backend of the job's model. An instance runs one job
+     * per backend at a time, so this is also the instance's batch load on that backend.
+     */
+    private Map<ModelBackend, Integer> concurrency = new EnumMap<>(Map.of(
+            ModelBackend.OPENAI, 16,
+            ModelBackend.OLLAMA, 4));
+
+    /**
+     * Concurrency of models that are not declared in backend-ai.model-registry.
+     */
+    private int defaultConcurrency = 4;
+
+    /**
+     * Priority of batch prompts in the model admission queues. It must stay below
+     * backend-ai.admission.default-priority so that interactive streams go first, and is kept above the 0 of
+     * conversation compaction so that jobs still progress under steady compaction.
+     */
+    private int priority = 1;
+
+    /**
+     * Attempts per prompt before it is recorded as failed.
+     */
+    private int maxAttempts = 3;
+
+    private Duration retryBackoff = Duration.ofSeconds(2);
+
+    /**
+     * Results are written once this many are finished or flushInterval has passed.
+     */
+    private int writeBatchSize = 32;
+
+    private Duration flushInterval = Duration.ofSeconds(2);
+
+    /**
+     * Largest unlogged batch written at once, below Cassandra's batch_size_fail_threshold.
+     */
+    private DataSize maxBatchBytes = DataSize.ofKilobytes(40);
+
+    /**
+     * Rows read per page when a job's items are scanned.
+     */
+    private int pageSize = 200;
+
+    /**
+     * Time a job stays with an instance that stopped renewing it, after which another instance resumes it.
+     * Running jobs are renewed every pollInterval.
+     */
+    private Duration lease = Duration.ofMinutes(1);
+
+    /**
+     * How often an instance looks for queued jobs and jobs whose owner is gone.
+     */
+    private Duration pollInterval = Duration.ofSeconds(10);
+
+    /**
+     * Jobs and their results are deleted this long after they last changed.
+     */
+    private Duration retention = Duration.ofDays(7);
+
+    public int concurrencyOf(ModelBackend backend) {
+        return backend == null ? defaultConcurrency : concurrency.getOrDefault(backend, defaultConcurrency);
+    }
+}
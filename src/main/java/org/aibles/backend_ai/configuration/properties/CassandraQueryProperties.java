@@ -0,0 +1,17 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.cassandra")
+public class CassandraQueryProperties {
+
+    /**
+     * Driver execution profile per query name, overriding the profile the query declares.
+     */
+    private Map<String, String> queryProfiles = new HashMap<>();
+}
@@ -0,0 +1,70 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.aibles.backend_ai.constant.AIModel;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.compaction")
+public class CompactionProperties {
+
+    /**
+     * Prompt tokens used by models without an entry in tokenBudgets: the summary, the recent turns and the
+     * new question together.
+     */
+    private int tokenBudget = 4096;
+
+    /**
+     * Prompt token budget per AIModel name.
+     */
+    private Map<String, Integer> tokenBudgets = new HashMap<>();
+
+    /**
+     * Folds older turns into the conversation's summary in the background. When disabled, prompts still
+     * respect the token budget and simply leave out the oldest turns.
+     */
+    private boolean enabled = true;
+
+    /**
+     * AIModel name of the model writing the summaries.
+     */
+    private String model = AIModel.QWEN2_5.name();
+
+    /**
+     * Most recent turns that are never folded into the summary.
+     */
+    private int keepRecentTurns = 4;
+
+    /**
+     * Turns outside the summary that make a conversation due for compaction even when they fit the budget.
+     */
+    private int triggerTurns = 10;
+
+    /**
+     * Largest transcript, in tokens, folded into the summary by one run. Longer backlogs take several runs.
+     */
+    private int maxFoldTokens = 6000;
+
+    /**
+     * Target length of a summary.
+     */
+    private int summaryWords = 250;
+
+    /**
+     * Time between two compaction rounds.
+     */
+    private Duration interval = Duration.ofSeconds(30);
+
+    /**
+     * Conversations compacted at the same time.
+     */
+    private int concurrency = 2;
+
+    public int budgetOf(String model) {
+        return tokenBudgets.getOrDefault(model, tokenBudget);
+    }
+}
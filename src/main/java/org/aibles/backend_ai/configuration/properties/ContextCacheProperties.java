@@ -0,0 +1,22 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.context-cache")
+public class ContextCacheProperties {
+
+    /**
+     * Upper bound of the estimated heap used by cached context windows.
+     */
+    private DataSize maxMemory = DataSize.ofMegabytes(64);
+
+    /**
+     * Time after which a cached window is read again from Cassandra, picking up turns saved by other instances.
+     */
+    private Duration ttl = Duration.ofMinutes(30);
+}
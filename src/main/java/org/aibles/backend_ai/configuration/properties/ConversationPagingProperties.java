@@ -0,0 +1,35 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.time.YearMonth;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.conversation-paging")
+public class ConversationPagingProperties {
+
+    /**
+     * Most month buckets read to fill one page. A page that is still short afterwards is returned
+     * with a cursor that continues in the next older month.
+     */
+    private int maxMonthsPerPage = 3;
+
+    /**
+     * When a page starts this close to the beginning of its month, the previous month is read
+     * at the same time.
+     */
+    private Duration prefetchWindow = Duration.ofDays(3);
+
+    /**
+     * Oldest month that can hold conversations, paging stops there. Required, the month the deployment stored
+     * its first conversation.
+     */
+    private YearMonth earliestMonth;
+
+    /**
+     * Largest page a client may ask for.
+     */
+    private int maxPageSize = 100;
+}
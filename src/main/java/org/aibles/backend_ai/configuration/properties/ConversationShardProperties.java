@@ -0,0 +1,37 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.conversation-shards")
+public class ConversationShardProperties {
+
+    /**
+     * Number of partitions each month of conversations is spread over. Reads always cover shards
+     * 0..count-1, so the count may be raised but never lowered.
+     */
+    private int count = 8;
+
+    /**
+     * Also read the unsharded month_bucket written before sharding. Turn off once the legacy
+     * buckets have been migrated.
+     */
+    private boolean readLegacyBucket = true;
+
+    private Migration migration = new Migration();
+
+    @Data
+    public static class Migration {
+
+        /**
+         * Move rows of the unsharded buckets into their shards at startup.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Number of months, counting back from the current one, to migrate.
+         */
+        private int months = 12;
+    }
+}
@@ -0,0 +1,23 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.aibles.backend_ai.constant.DisconnectPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.disconnect")
+public class DisconnectProperties {
+
+    /**
+     * CANCEL stops a generation as soon as no client follows it, GRACE keeps it running for gracePeriod so a
+     * reconnecting client can resume it.
+     */
+    private DisconnectPolicy policy = DisconnectPolicy.GRACE;
+
+    /**
+     * Time an abandoned generation keeps running under the GRACE policy.
+     */
+    private Duration gracePeriod = Duration.ofSeconds(30);
+}
@@ -0,0 +1,113 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.edge")
+public class EdgeProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Header naming the client, see trustClientHeader.
+     */
+    private String clientHeader = "X-Client-Id";
+
+    /**
+     * Set only behind a gateway that writes clientHeader from the authenticated client and drops any value the
+     * client sent itself. Unset, clients are limited by remote address, which server.forward-headers-strategy
+     * (native by default) takes from the proxy's forwarded headers so that it is the client's and not the proxy's.
+     */
+    private boolean trustClientHeader;
+
+    /**
+     * Clients whose buckets are kept, the least recently seen are dropped first.
+     */
+    private long maxClients = 100_000;
+
+    /**
+     * A client's buckets are dropped after this long without a request, it starts again with a full bucket.
+     */
+    private Duration idleClientTtl = Duration.ofMinutes(10);
+
+    /**
+     * Path patterns of the stream class, the requests that start a generation: answer streams and batch
+     * submissions. Every other request under /api/ is a read, conversations:start included as it only
+     * writes the conversation's metadata.
+     */
+    private List<String> streamPaths = new ArrayList<>(List.of(
+            "/api/v1/conversations:startStream",
+            "/api/v1/conversations/{id}:stream",
+            "/api/v1/batches",
+            "/api/v1/batches:upload"));
+
+    /**
+     * Reads: conversation lists, history, exports, usage and batch progress.
+     */
+    private Limits read = new Limits(20, 40, 512);
+
+    /**
+     * Requests matching streamPaths.
+     */
+    private Limits stream = new Limits(1, 5, 256);
+
+    private Shedding shedding = new Shedding();
+
+    @Data
+    public static class Limits {
+
+        /**
+         * Requests per second a client may make on average.
+         */
+        private double rate;
+
+        /**
+         * Requests a client may make at once after being idle.
+         */
+        private int burst;
+
+        /**
+         * Requests of the class served at the same time by this instance, over all clients.
+         */
+        private int maxInFlight;
+
+        public Limits() {
+        }
+
+        public Limits(double rate, int burst, int maxInFlight) {
+            this.rate = rate;
+            this.burst = burst;
+            this.maxInFlight = maxInFlight;
+        }
+    }
+
+    @Data
+    public static class Shedding {
+
+        /**
+         * Streams are shed once the average time to first token of answers goes above this. The share shed
+         * grows with the excess, reaching maxRatio at twice the threshold.
+         */
+        private Duration firstTokenThreshold = Duration.ofSeconds(3);
+
+        private double maxRatio = 0.9;
+
+        /**
+         * Streams are refused while the message write queue is fuller than this share of its capacity, their
+         * answers could not be saved in time.
+         */
+        private double writeBacklogRatio = 0.8;
+
+        /**
+         * Shortest Retry-After sent with a 503, the current time to first token is sent when it is longer.
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        private Duration maxRetryAfter = Duration.ofSeconds(30);
+    }
+}
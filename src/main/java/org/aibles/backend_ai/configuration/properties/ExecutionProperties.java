@@ -0,0 +1,16 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.aibles.backend_ai.constant.ExecutionMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.execution")
+public class ExecutionProperties {
+
+    /**
+     * EVENT_LOOP runs the chat pipeline on the threads signalling it, VIRTUAL_THREADS subscribes model
+     * streams and answer saves on virtual threads for model adapters that block.
+     */
+    private ExecutionMode mode = ExecutionMode.EVENT_LOOP;
+}
@@ -0,0 +1,25 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.export")
+public class ExportProperties {
+
+    /**
+     * Rows read from Cassandra per request. An export holds at most prefetchPages + 1 pages of each table
+     * it reads, whatever the size of the history.
+     */
+    private int pageSize = 200;
+
+    /**
+     * Pages read ahead of the rows being written to the client.
+     */
+    private int prefetchPages = 1;
+
+    /**
+     * Widest time range, in months, a single export of conversations may cover.
+     */
+    private int maxMonths = 12;
+}
@@ -0,0 +1,56 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.hedging")
+public class HedgingProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Hedges per primary AIModel name, models without an entry are never hedged.
+     */
+    private Map<String, Hedge> models = new HashMap<>();
+
+    @Data
+    public static class Hedge {
+
+        /**
+         * AIModel name of the backend started when the primary is slow to its first token.
+         */
+        private String secondary;
+
+        /**
+         * Fixed time to wait for the primary's first token. When unset, the delay is learned as the percentile
+         * of the primary's recent times to first token.
+         */
+        private Duration delay;
+
+        /**
+         * Percentile of the recent times to first token used as the learned delay.
+         */
+        private double percentile = 0.9;
+
+        /**
+         * Delay used until minSamples first tokens have been seen.
+         */
+        private Duration initialDelay = Duration.ofSeconds(2);
+
+        private Duration minDelay = Duration.ofMillis(250);
+
+        private Duration maxDelay = Duration.ofSeconds(10);
+
+        /**
+         * Recent times to first token the percentile is taken from.
+         */
+        private int window = 200;
+
+        private int minSamples = 20;
+    }
+}
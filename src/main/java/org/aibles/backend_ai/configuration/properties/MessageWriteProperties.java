@@ -0,0 +1,41 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.message-write")
+public class MessageWriteProperties {
+
+    /**
+     * Maximum number of finished answers waiting to be written. When the queue is full the
+     * caller writes its message itself instead of queueing it.
+     */
+    private int queueCapacity = 8192;
+
+    /**
+     * Maximum number of messages taken from the queue in one flush.
+     */
+    private int maxBatchSize = 64;
+
+    /**
+     * Longest time a message waits in the queue before it is flushed.
+     */
+    private Duration flushInterval = Duration.ofMillis(50);
+
+    /**
+     * Number of partition writes running at the same time.
+     */
+    private int concurrency = 8;
+
+    private int maxRetries = 5;
+
+    private Duration retryBackoff = Duration.ofMillis(100);
+
+    /**
+     * How long shutdown waits for queued messages to be written.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
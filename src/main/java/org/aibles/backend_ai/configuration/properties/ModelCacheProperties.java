@@ -0,0 +1,31 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.model-cache")
+public class ModelCacheProperties {
+
+    /**
+     * Number of conversation to model mappings kept in memory.
+     */
+    private long maxSize = 100_000;
+
+    /**
+     * Idle time after which a known conversation is dropped from the cache.
+     */
+    private Duration ttl = Duration.ofHours(6);
+
+    /**
+     * Number of unknown conversation ids remembered as missing.
+     */
+    private long missingMaxSize = 50_000;
+
+    /**
+     * How long an unknown conversation id is answered without asking Cassandra again.
+     */
+    private Duration missingTtl = Duration.ofSeconds(30);
+}
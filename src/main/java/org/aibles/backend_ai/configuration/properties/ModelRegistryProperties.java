@@ -0,0 +1,80 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.aibles.backend_ai.constant.ModelBackend;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = ModelRegistryProperties.PREFIX)
+public class ModelRegistryProperties {
+
+    public static final String PREFIX = "backend-ai.model-registry";
+
+    /**
+     * Models per AIModel name, each one is served by a ChatStreamService registered under that name.
+     */
+    private Map<String, ModelDefinition> models = new LinkedHashMap<>();
+
+    private WarmUp warmUp = new WarmUp();
+
+    private KeepAlive keepAlive = new KeepAlive();
+
+    /**
+     * Model loads taking longer than this are counted as cold loads.
+     */
+    private Duration coldLoadThreshold = Duration.ofSeconds(1);
+
+    @Data
+    public static class ModelDefinition {
+
+        private ModelBackend backend;
+
+        /**
+         * Name of the model on its backend, e.g. qwen2.5:3b.
+         */
+        private String model;
+
+        /**
+         * Sampling temperature, the backend's default when unset.
+         */
+        private Double temperature;
+
+        /**
+         * Time an Ollama server keeps the model loaded after a request.
+         */
+        private Duration keepAlive = Duration.ofMinutes(30);
+    }
+
+    @Data
+    public static class WarmUp {
+
+        /**
+         * Loads every Ollama model on every node before the application reports ready.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Longest time startup waits for the models to load, loading continues in the background afterwards.
+         */
+        private Duration timeout = Duration.ofMinutes(2);
+    }
+
+    @Data
+    public static class KeepAlive {
+
+        /**
+         * Time between two keep-alive rounds. A model that served traffic during the last round is not pinged,
+         * its requests already renewed its keep-alive.
+         */
+        private Duration interval = Duration.ofMinutes(5);
+
+        /**
+         * Models idle for longer than this are no longer pinged, so the server may unload them.
+         */
+        private Duration activeWindow = Duration.ofHours(2);
+    }
+}
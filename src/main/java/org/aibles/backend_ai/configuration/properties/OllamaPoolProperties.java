@@ -0,0 +1,72 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.ollama-pool")
+public class OllamaPoolProperties {
+
+    /**
+     * Base URLs of the Ollama nodes. When empty, spring.ai.ollama.base-url is the only node.
+     */
+    private List<String> nodes = new ArrayList<>();
+
+    private HealthCheck healthCheck = new HealthCheck();
+
+    private Affinity affinity = new Affinity();
+
+    private Ejection ejection = new Ejection();
+
+    @Data
+    public static class HealthCheck {
+
+        /**
+         * Time between two probes of a node's /api/tags.
+         */
+        private Duration interval = Duration.ofSeconds(10);
+
+        /**
+         * Probes slower than this count as failed.
+         */
+        private Duration timeout = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Affinity {
+
+        /**
+         * Routes every turn of a conversation to the same node, so that node's prompt cache is reused.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Outstanding streams the preferred node may have above the least loaded node before a turn goes
+         * to the least loaded node instead.
+         */
+        private int maxImbalance = 2;
+    }
+
+    @Data
+    public static class Ejection {
+
+        /**
+         * A node whose average time to first token exceeds this is ejected.
+         */
+        private Duration slowFirstToken = Duration.ofSeconds(10);
+
+        /**
+         * Consecutive failed streams after which a node is ejected.
+         */
+        private int consecutiveFailures = 3;
+
+        /**
+         * Time an ejected node receives no traffic, the health check has to pass before it returns.
+         */
+        private Duration duration = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,51 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.response-cache")
+public class ResponseCacheProperties {
+
+    /**
+     * AIModel names whose answers are cached and shared, other models always generate.
+     */
+    private Set<String> models = new HashSet<>();
+
+    /**
+     * Cache generated conversation titles.
+     */
+    private boolean titles = true;
+
+    private DataSize maxMemory = DataSize.ofMegabytes(32);
+
+    private Duration ttl = Duration.ofHours(1);
+
+    /**
+     * Characters per event when a cached answer is replayed.
+     */
+    private int replayChunkSize = 16;
+
+    /**
+     * Pause between replayed events, zero replays the answer at once.
+     */
+    private Duration replayChunkDelay = Duration.ZERO;
+
+    private Persisted persisted = new Persisted();
+
+    @Data
+    public static class Persisted {
+
+        /**
+         * Also keep answers in the response_cache table, shared by all instances.
+         */
+        private boolean enabled = false;
+
+        private Duration ttl = Duration.ofDays(1);
+    }
+}
@@ -0,0 +1,29 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.schema")
+public class SchemaProperties {
+
+    /**
+     * Apply the pending schema migrations at startup. When false an instance whose schema is behind refuses to
+     * start, for deployments where migrations are run by a separate job.
+     */
+    private boolean migrate = true;
+
+    /**
+     * How long the migration lock is held when its owner dies before releasing it.
+     */
+    private Duration lockTtl = Duration.ofMinutes(2);
+
+    /**
+     * How long an instance waits for another one to finish migrating.
+     */
+    private Duration lockTimeout = Duration.ofMinutes(5);
+
+    private Duration lockPollInterval = Duration.ofSeconds(1);
+}
@@ -0,0 +1,37 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.sse-frames")
+public class SseFrameProperties {
+
+    /**
+     * Coalesce tokens of every stream, not only of requests asking for it.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Longest time a token waits in a frame before it is sent.
+     */
+    private Duration window = Duration.ofMillis(20);
+
+    /**
+     * Frame size that is sent at once without waiting for the window.
+     */
+    private DataSize frameSize = DataSize.ofBytes(256);
+
+    /**
+     * Upper bound of the window a client may ask for.
+     */
+    private Duration maxWindow = Duration.ofMillis(500);
+
+    /**
+     * Upper bound of the frame size a client may ask for.
+     */
+    private DataSize maxFrameSize = DataSize.ofKilobytes(16);
+}
@@ -0,0 +1,27 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.stream-replay")
+public class StreamReplayProperties {
+
+    /**
+     * Upper bound of the estimated heap used by the answers kept for resuming streams.
+     */
+    private DataSize maxMemory = DataSize.ofMegabytes(64);
+
+    /**
+     * Largest answer kept for one turn, longer answers are still streamed but cannot be resumed.
+     */
+    private DataSize maxTurnSize = DataSize.ofKilobytes(512);
+
+    /**
+     * Time a turn stays resumable after it started or finished.
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+}
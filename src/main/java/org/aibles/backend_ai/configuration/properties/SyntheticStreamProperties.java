@@ -0,0 +1,56 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.synthetic-stream")
+public class SyntheticStreamProperties {
+
+    /**
+     * Behavior of models without an entry in models.
+     */
+    private Behavior defaults = new Behavior();
+
+    /**
+     * Behavior per AIModel name.
+     */
+    private Map<String, Behavior> models = new HashMap<>();
+
+    public Behavior behaviorOf(String model) {
+        return models.getOrDefault(model, defaults);
+    }
+
+    @Data
+    public static class Behavior {
+
+        /**
+         * Tokens emitted per second once the first token is out.
+         */
+        private double tokensPerSecond = 40;
+
+        /**
+         * Delay before the first token, the time a real model spends on the prompt.
+         */
+        private Duration firstTokenDelay = Duration.ofMillis(300);
+
+        /**
+         * Relative spread applied to every delay, 0.2 draws each delay from 80% to 120% of its nominal value.
+         */
+        private double jitter = 0.2;
+
+        /**
+         * Share of streams that fail at a random token.
+         */
+        private double failureRate = 0.01;
+
+        /**
+         * Tokens in one answer.
+         */
+        private int answerTokens = 200;
+    }
+}
@@ -0,0 +1,46 @@
+package org.aibles.backend_ai.configuration.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "backend-ai.usage")
+public class UsageProperties {
+
+    /**
+     * When false token usage is neither counted nor written.
+     */
+    private boolean enabled = true;
+
+    /**
+     * How often the usage counted in memory is added to the Cassandra counters.
+     */
+    private Duration flushInterval = Duration.ofSeconds(10);
+
+    /**
+     * Number of (conversation, model, day) counts held in memory that triggers a flush before the interval.
+     */
+    private int maxPendingKeys = 10000;
+
+    /**
+     * Maximum number of counter updates in one batch.
+     */
+    private int maxBatchSize = 50;
+
+    /**
+     * Number of counter batches written at the same time.
+     */
+    private int concurrency = 4;
+
+    /**
+     * Longest range of days one usage query covers.
+     */
+    private int maxQueryDays = 92;
+
+    /**
+     * How long shutdown waits for the last flush.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
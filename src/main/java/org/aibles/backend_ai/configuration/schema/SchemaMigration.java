@@ -0,0 +1,10 @@
+package org.aibles.backend_ai.configuration.schema;
+
+import java.util.List;
+
+/**
+ * One step of the schema. Statements must be idempotent (IF NOT EXISTS), a migration interrupted halfway is
+ * run again from its first statement.
+ */
+public record SchemaMigration(int version, String description, List<String> statements) {
+}
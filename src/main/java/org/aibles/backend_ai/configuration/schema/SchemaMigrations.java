@@ -0,0 +1,150 @@
+package org.aibles.backend_ai.configuration.schema;
+
+import java.util.List;
+
+/**
+ * The schema of the backend_ai keyspace, oldest migration first. A change to the schema is a new migration
+ * at the end of the list, released migrations are never edited.
+ */
+public final class SchemaMigrations {
+
+    public static final String KEYSPACE = "backend_ai";
+
+    /**
+     * Created before any migration runs. schema_version records the applied migrations, schema_lock lets one
+     * instance at a time apply them.
+     */
+    static final List<String> BOOTSTRAP = List.of(
+            """
+                    CREATE KEYSPACE IF NOT EXISTS backend_ai
+                    WITH replication = {'class' : 'SimpleStrategy', 'replication_factor' : 1}
+                    """,
+            """
+                    CREATE TABLE IF NOT EXISTS backend_ai.schema_version(
+                    scope VARCHAR,
+                    version INT,
+                    description TEXT,
+                    applied_at TIMESTAMP,
+                    PRIMARY KEY ((scope), version)
+                    ) WITH CLUSTERING ORDER BY (version DESC)
+                    """,
+            """
+                    CREATE TABLE IF NOT EXISTS backend_ai.schema_lock(
+                    scope VARCHAR PRIMARY KEY,
+                    owner VARCHAR
+                    )
+                    """);
+
+    public static final List<SchemaMigration> ALL = List.of(
+            new SchemaMigration(1, "conversations and messages", List.of(
+                    """
+                            CREATE TABLE IF NOT EXISTS conversation(
+                            month_bucket VARCHAR,
+                            id VARCHAR,
+                            title TEXT,
+                            created_at TIMESTAMP,
+                            PRIMARY KEY ((month_bucket), created_at)
+                            ) WITH CLUSTERING ORDER BY (created_at DESC)
+                            """,
+                    """
+                            CREATE TABLE IF NOT EXISTS conversation_metadata(
+                            conversation_id VARCHAR PRIMARY KEY,
+                            model VARCHAR
+                            )
+                            """,
+                    """
+                            CREATE TABLE IF NOT EXISTS conversation_message(
+                            id VARCHAR,
+                            conversation_id VARCHAR,
+                            question TEXT,
+                            answer TEXT,
+                            created_at TIMESTAMP,
+                            PRIMARY KEY ((conversation_id), created_at)
+                            ) WITH CLUSTERING ORDER BY (created_at DESC)
+                            """)),
+            new SchemaMigration(2, "response cache", List.of(
+                    """
+                            CREATE TABLE IF NOT EXISTS response_cache(
+                            cache_key VARCHAR PRIMARY KEY,
+                            model VARCHAR,
+                            answer TEXT
+                            )
+                            """)),
+            new SchemaMigration(3, "truncated answers", List.of(
+                    """
+                            ALTER TABLE conversation_message ADD IF NOT EXISTS truncated BOOLEAN
+                            """)),
+            new SchemaMigration(4, "conversation summaries", List.of(
+                    """
+                            CREATE TABLE IF NOT EXISTS conversation_summary(
+                            conversation_id VARCHAR PRIMARY KEY,
+                            summary TEXT,
+                            covered_until TIMESTAMP,
+                            covered_turns INT,
+                            tokens INT,
+                            updated_at TIMESTAMP
+                            )
+                            """)),
+            new SchemaMigration(5, "batch jobs", List.of(
+                    """
+                            CREATE TABLE IF NOT EXISTS batch_job(
+                            id VARCHAR PRIMARY KEY,
+                            model VARCHAR,
+                            status VARCHAR,
+                            total INT,
+                            completed INT,
+                            failed INT,
+                            owner VARCHAR,
+                            lease_until TIMESTAMP,
+                            created_at TIMESTAMP,
+                            started_at TIMESTAMP,
+                            updated_at TIMESTAMP
+                            )
+                            """,
+                    """
+                            CREATE TABLE IF NOT EXISTS batch_job_active(
+                            bucket VARCHAR,
+                            job_id VARCHAR,
+                            PRIMARY KEY ((bucket), job_id)
+                            )
+                            """,
+                    """
+                            CREATE TABLE IF NOT EXISTS batch_item(
+                            job_id VARCHAR,
+                            chunk INT,
+                            item_index INT,
+                            prompt TEXT,
+                            answer TEXT,
+                            error TEXT,
+                            status VARCHAR,
+                            latency_ms BIGINT,
+                            completed_at TIMESTAMP,
+                            PRIMARY KEY ((job_id, chunk), item_index)
+                            )
+                            """)),
+            new SchemaMigration(6, "token usage", List.of(
+                    """
+                            CREATE TABLE IF NOT EXISTS conversation_usage(
+                            conversation_id VARCHAR,
+                            day DATE,
+                            model VARCHAR,
+                            prompt_tokens COUNTER,
+                            completion_tokens COUNTER,
+                            requests COUNTER,
+                            PRIMARY KEY ((conversation_id), day, model)
+                            ) WITH CLUSTERING ORDER BY (day DESC, model ASC)
+                            """,
+                    """
+                            CREATE TABLE IF NOT EXISTS model_usage(
+                            day DATE,
+                            model VARCHAR,
+                            prompt_tokens COUNTER,
+                            completion_tokens COUNTER,
+                            requests COUNTER,
+                            PRIMARY KEY ((day), model)
+                            )
+                            """)));
+
+    private SchemaMigrations() {
+    }
+}
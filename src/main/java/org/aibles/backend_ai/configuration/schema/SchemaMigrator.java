@@ -0,0 +1,138 @@
+package org.aibles.backend_ai.configuration.schema;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.SchemaProperties;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings the keyspace to the latest {@link SchemaMigration} at startup and points the session at it. An
+ * instance whose schema is current only reads its version, one query, and runs no DDL, so it does not wait for
+ * schema agreement. Otherwise the pending migrations are applied under a lock taken with a lightweight
+ * transaction, so that instances starting together do not race on the same DDL, and each one is recorded in
+ * schema_version once all its statements went through.
+ */
+@Slf4j
+public class SchemaMigrator implements InitializingBean {
+
+    private static final String SCOPE = SchemaMigrations.KEYSPACE;
+
+    private static final String SELECT_VERSION =
+            "SELECT version FROM " + SchemaMigrations.KEYSPACE + ".schema_version WHERE scope = ? LIMIT 1";
+
+    private static final String INSERT_VERSION =
+            "INSERT INTO schema_version (scope, version, description, applied_at) VALUES (?, ?, ?, ?)";
+
+    private static final String ACQUIRE_LOCK =
+            "INSERT INTO schema_lock (scope, owner) VALUES (?, ?) IF NOT EXISTS USING TTL ?";
+
+    private static final String RELEASE_LOCK =
+            "DELETE FROM schema_lock WHERE scope = ? IF owner = ?";
+
+    private final CqlSession cqlSession;
+
+    private final List<SchemaMigration> migrations;
+
+    private final SchemaProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    public SchemaMigrator(CqlSession cqlSession,
+                          List<SchemaMigration> migrations,
+                          SchemaProperties properties,
+                          MeterRegistry meterRegistry) {
+        this.cqlSession = cqlSession;
+        this.migrations = migrations;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws InterruptedException {
+        final long startedAt = System.nanoTime();
+        final int latest = migrations.get(migrations.size() - 1).version();
+        int version = currentVersion();
+        String outcome = "current";
+        if (version < latest) {
+            if (!properties.isMigrate()) {
+                throw new IllegalStateException("schema of " + SchemaMigrations.KEYSPACE + " is at version " + version
+                        + ", this instance needs " + latest + " and backend-ai.schema.migrate is off");
+            }
+            if (version < 0) {
+                log.info("(afterPropertiesSet)no schema version found, creating the keyspace");
+                SchemaMigrations.BOOTSTRAP.forEach(cqlSession::execute);
+            }
+            cqlSession.execute("USE " + SchemaMigrations.KEYSPACE);
+            version = migrateLocked();
+            outcome = "migrated";
+        } else {
+            cqlSession.execute("USE " + SchemaMigrations.KEYSPACE);
+        }
+        final long nanos = System.nanoTime() - startedAt;
+        Timer.builder("schema.migration")
+                .description("Time spent at startup checking and migrating the Cassandra schema")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        log.info("(afterPropertiesSet)schema version : {}, {} in {} ms", version, outcome, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    /**
+     * @return the latest applied version, 0 when none was applied, -1 when the version table does not exist
+     */
+    private int currentVersion() {
+        try {
+            Row row = cqlSession.execute(SimpleStatement.newInstance(SELECT_VERSION, SCOPE)).one();
+            return row != null ? row.getInt("version") : 0;
+        } catch (InvalidQueryException e) {
+            // the keyspace or the table is missing
+            return -1;
+        }
+    }
+
+    private int migrateLocked() throws InterruptedException {
+        acquireLock();
+        try {
+            // another instance may have migrated while this one waited for the lock
+            int version = Math.max(currentVersion(), 0);
+            for (SchemaMigration migration : migrations) {
+                if (migration.version() <= version) {
+                    continue;
+                }
+                log.info("(migrateLocked)applying version : {}, {}", migration.version(), migration.description());
+                migration.statements().forEach(cqlSession::execute);
+                cqlSession.execute(SimpleStatement.newInstance(INSERT_VERSION,
+                        SCOPE, migration.version(), migration.description(), Instant.now()));
+                version = migration.version();
+            }
+            return version;
+        } finally {
+            cqlSession.execute(SimpleStatement.newInstance(RELEASE_LOCK, SCOPE, owner));
+        }
+    }
+
+    private void acquireLock() throws InterruptedException {
+        final long deadline = System.nanoTime() + properties.getLockTimeout().toNanos();
+        final int ttlSeconds = (int) properties.getLockTtl().toSeconds();
+        while (!cqlSession.execute(SimpleStatement.newInstance(ACQUIRE_LOCK, SCOPE, owner, ttlSeconds)).wasApplied()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("schema lock of " + SchemaMigrations.KEYSPACE + " still held after "
+                        + properties.getLockTimeout());
+            }
+            log.info("(acquireLock)another instance is migrating the schema, waiting");
+            Thread.sleep(properties.getLockPollInterval().toMillis());
+        }
+    }
+}
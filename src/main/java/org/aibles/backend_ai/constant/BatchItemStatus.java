@@ -0,0 +1,8 @@
+package org.aibles.backend_ai.constant;
+
+public enum BatchItemStatus {
+
+    PENDING,
+    DONE,
+    FAILED
+}
@@ -0,0 +1,7 @@
+package org.aibles.backend_ai.constant;
+
+public enum DisconnectPolicy {
+
+    CANCEL,
+    GRACE
+}
@@ -0,0 +1,59 @@
+package org.aibles.backend_ai.controller;
+
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.dto.request.BatchJobRequest;
+import org.aibles.backend_ai.dto.response.BatchItemDto;
+import org.aibles.backend_ai.dto.response.BatchJobDto;
+import org.aibles.backend_ai.service.batch.BatchJobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@RequestMapping("/api/v1")
+@RestController
+public class BatchController {
+
+    private final BatchJobService batchJobService;
+
+    public BatchController(BatchJobService batchJobService) {
+        this.batchJobService = batchJobService;
+    }
+
+    @PostMapping("/batches")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<BatchJobDto> submit(@RequestBody @Valid BatchJobRequest request) {
+        log.info("(submit)model: {}, prompts: {}", request.getModel(), request.getPrompts().size());
+        return batchJobService.submit(request.getModel(), Flux.fromIterable(request.getPrompts()));
+    }
+
+    /**
+     * Takes a file of prompts, one per line.
+     */
+    @PostMapping(path = "/batches:upload", consumes = MediaType.TEXT_PLAIN_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<BatchJobDto> upload(@RequestParam String model, @RequestBody Flux<String> prompts) {
+        log.info("(upload)model: {}", model);
+        return batchJobService.submit(model, prompts);
+    }
+
+    @GetMapping("/batches/{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<BatchJobDto> get(@PathVariable("id") String id) {
+        log.info("(get)id: {}", id);
+        return batchJobService.findJob(id);
+    }
+
+    /**
+     * Results written so far, one JSON object per line.
+     */
+    @GetMapping(path = "/batches/{id}/results", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<BatchItemDto> results(@PathVariable("id") String id) {
+        log.info("(results)id: {}", id);
+        return batchJobService.findResults(id);
+    }
+}
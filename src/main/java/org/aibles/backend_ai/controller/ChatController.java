@@ -6,11 +6,20 @@ import org.aibles.backend_ai.dto.request.ConversationRequest;
 import org.aibles.backend_ai.dto.request.StartConversationRequest;
 import org.aibles.backend_ai.dto.response.ConversationDto;
 import org.aibles.backend_ai.dto.response.ConversationMessageDto;
+import org.aibles.backend_ai.dto.response.ConversationPageDto;
+import org.aibles.backend_ai.dto.response.ExportLineDto;
 import org.aibles.backend_ai.service.ChatService;
 import org.aibles.backend_ai.service.ConversationService;
+import org.aibles.backend_ai.service.chatstream.TokenFrameCoalescer;
+import org.aibles.backend_ai.service.chatstream.admission.AdmissionRejectedException;
+import org.aibles.backend_ai.service.chatstream.replay.AnswerStream;
+import org.aibles.backend_ai.service.chatstream.replay.StreamEventId;
+import org.aibles.backend_ai.service.export.ConversationExporter;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -21,13 +30,27 @@ import java.time.Instant;
 @RestController
 public class ChatController {
 
+    /**
+     * Header the gateway sets to the client's tier, see AdmissionProperties.tierHeader.
+     */
+    private static final String TIER_HEADER = "${backend-ai.admission.tier-header:X-Client-Tier}";
+
     private final ConversationService conversationService;
 
     private final ChatService chatService;
 
-    public ChatController(ConversationService conversationService, ChatService chatService) {
+    private final TokenFrameCoalescer tokenFrameCoalescer;
+
+    private final ConversationExporter conversationExporter;
+
+    public ChatController(ConversationService conversationService,
+                          ChatService chatService,
+                          TokenFrameCoalescer tokenFrameCoalescer,
+                          ConversationExporter conversationExporter) {
         this.conversationService = conversationService;
         this.chatService = chatService;
+        this.tokenFrameCoalescer = tokenFrameCoalescer;
+        this.conversationExporter = conversationExporter;
     }
 
     @PostMapping(path = "/conversations:start", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
@@ -37,19 +60,77 @@ public class ChatController {
         return chatService.startConversation(request);
     }
 
+    @PostMapping(path = "/conversations:startStream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public Flux<ServerSentEvent<Object>> startConversationStream(@RequestBody @Valid StartConversationRequest request,
+                                                                 @RequestParam(required = false) Integer frameMillis,
+                                                                 @RequestParam(required = false) Integer frameBytes,
+                                                                 @RequestHeader(value = TIER_HEADER, required = false)
+                                                                 String tier) {
+        log.info("New conversation stream request: {}", request);
+        return chatService.startConversation(request)
+                .flatMapMany(conversation -> Flux.concat(
+                        Mono.just(ServerSentEvent.builder((Object) conversation).event("conversation").build()),
+                        toEvents(chatService.streamAnswer(conversation.getId(),
+                                        new ConversationRequest(request.getPromptMessage()),
+                                        tier,
+                                        null),
+                                frameMillis,
+                                frameBytes)
+                ));
+    }
+
     @PostMapping(value = "/conversations/{id}:stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @ResponseStatus(HttpStatus.OK)
-    public Flux<String> streamConversation(@PathVariable("id") String id, @RequestBody @Valid ConversationRequest request) {
-        log.info("Streaming conversation request: {}", request);
-        return chatService.streamAnswer(id, request);
+    public Flux<ServerSentEvent<Object>> streamConversation(@PathVariable("id") String id,
+                                                            @RequestBody @Valid ConversationRequest request,
+                                                            @RequestParam(required = false) Integer frameMillis,
+                                                            @RequestParam(required = false) Integer frameBytes,
+                                                            @RequestHeader(value = "Last-Event-ID", required = false)
+                                                            String lastEventId,
+                                                            @RequestHeader(value = TIER_HEADER, required = false)
+                                                            String tier) {
+        log.info("Streaming conversation request: {}, lastEventId: {}", request, lastEventId);
+        return toEvents(chatService.streamAnswer(id, request, tier, StreamEventId.parse(lastEventId)), frameMillis, frameBytes);
+    }
+
+    /**
+     * Every event carries the turn id and the answer length sent so far, see {@link StreamEventId}. The response
+     * is already committed when the stream fails, so a failure ends it with an error event instead of a status.
+     */
+    private Flux<ServerSentEvent<Object>> toEvents(AnswerStream answer, Integer frameMillis, Integer frameBytes) {
+        return Flux.defer(() -> {
+                    final int[] offset = {answer.offset()};
+                    return tokenFrameCoalescer.coalesce(answer.tokens(), frameMillis, frameBytes)
+                            .map(token -> {
+                                offset[0] += token.length();
+                                return ServerSentEvent.builder((Object) token)
+                                        .id(new StreamEventId(answer.turnId(), offset[0]).format())
+                                        .build();
+                            });
+                })
+                .onErrorResume(error -> Mono.just(
+                        ServerSentEvent.builder((Object) errorMessage(error)).event("error").build()));
+    }
+
+    private static String errorMessage(Throwable error) {
+        if (error instanceof AdmissionRejectedException) {
+            return error.getMessage();
+        }
+        if (error instanceof ResponseStatusException statusError && statusError.getReason() != null) {
+            return statusError.getReason();
+        }
+        log.error("(toEvents)stream failed", error);
+        return "The answer could not be generated, please retry later";
     }
 
     @GetMapping("/conversations")
     @ResponseStatus(HttpStatus.OK)
-    public Flux<ConversationDto> get(@RequestParam Instant toTime,
-                                     @RequestParam int limit) {
-        log.info("(getLatestConversations)toTime: {}, limit: {}", toTime, limit);
-        return conversationService.findConversations(toTime, limit);
+    public Mono<ConversationPageDto> get(@RequestParam(required = false) Instant toTime,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam int limit) {
+        log.info("(getLatestConversations)toTime: {}, cursor: {}, limit: {}", toTime, cursor, limit);
+        return conversationService.findConversationPage(cursor, toTime, limit);
     }
 
     @GetMapping("/conversations/{id}")
@@ -61,4 +142,28 @@ public class ChatController {
         log.info("(getLatestMessageInConversations)id: {}, toTime: {}", id, toTime);
         return conversationService.findMessagesInConversation(id, toTime);
     }
+
+    /**
+     * Every conversation created in [fromTime, toTime) with its messages, one JSON object per line. Each line
+     * carries the cursor to resume from after it.
+     */
+    @GetMapping(path = "/conversations:export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<ExportLineDto> exportConversations(@RequestParam Instant fromTime,
+                                                   @RequestParam Instant toTime,
+                                                   @RequestParam(required = false) String cursor) {
+        log.info("(exportConversations)fromTime: {}, toTime: {}, cursor: {}", fromTime, toTime, cursor);
+        return conversationExporter.exportConversations(fromTime, toTime, cursor);
+    }
+
+    /**
+     * The whole history of a conversation, oldest first, one JSON object per line.
+     */
+    @GetMapping(path = "/conversations/{id}:export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<ExportLineDto> exportConversation(@PathVariable("id") String id,
+                                                  @RequestParam(required = false) String cursor) {
+        log.info("(exportConversation)id: {}, cursor: {}", id, cursor);
+        return conversationExporter.exportConversation(id, cursor);
+    }
 }
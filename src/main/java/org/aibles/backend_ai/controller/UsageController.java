@@ -0,0 +1,43 @@
+package org.aibles.backend_ai.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.dto.response.UsageReportDto;
+import org.aibles.backend_ai.service.usage.UsageService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+
+@Slf4j
+@RequestMapping("/api/v1")
+@RestController
+public class UsageController {
+
+    private final UsageService usageService;
+
+    public UsageController(UsageService usageService) {
+        this.usageService = usageService;
+    }
+
+    /**
+     * Token usage of every model, by UTC day.
+     */
+    @GetMapping("/usage")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<UsageReportDto> get(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDay,
+                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDay) {
+        log.info("(get)fromDay: {}, toDay: {}", fromDay, toDay);
+        return usageService.findUsage(fromDay, toDay);
+    }
+
+    @GetMapping("/conversations/{id}/usage")
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<UsageReportDto> getConversationUsage(@PathVariable("id") String id,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDay,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDay) {
+        log.info("(getConversationUsage)id: {}, fromDay: {}, toDay: {}", id, fromDay, toDay);
+        return usageService.findConversationUsage(id, fromDay, toDay);
+    }
+}
@@ -0,0 +1,32 @@
+package org.aibles.backend_ai.dto.request;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.aibles.backend_ai.constant.AIModel;
+
+import java.util.Arrays;
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class BatchJobRequest {
+
+    @NotBlank
+    private String model;
+
+    @NotEmpty
+    private List<String> prompts;
+
+    @AssertTrue(message = "Invalid ai model")
+    private boolean isValidModel() {
+        return Arrays.stream(AIModel.values()).anyMatch(aiModel -> aiModel.name().equals(this.model));
+    }
+}
@@ -0,0 +1,34 @@
+package org.aibles.backend_ai.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemDto {
+
+    private int index;
+
+    private String status;
+
+    private String prompt;
+
+    private String answer;
+
+    private String error;
+
+    private long latencyMs;
+
+    private Instant completedAt;
+}
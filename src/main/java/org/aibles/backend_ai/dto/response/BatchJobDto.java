@@ -0,0 +1,41 @@
+package org.aibles.backend_ai.dto.response;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class BatchJobDto {
+
+    private String id;
+
+    private String model;
+
+    private String status;
+
+    private int total;
+
+    private int completed;
+
+    private int failed;
+
+    /**
+     * Prompts finished per second since the job started.
+     */
+    private double throughput;
+
+    private Instant createdAt;
+
+    private Instant startedAt;
+
+    private Instant updatedAt;
+}
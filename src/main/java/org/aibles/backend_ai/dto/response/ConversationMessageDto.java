@@ -24,5 +24,7 @@ public class ConversationMessageDto {
 
     private String answer;
 
+    private boolean truncated;
+
     private Instant createdAt;
 }
@@ -0,0 +1,43 @@
+package org.aibles.backend_ai.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.aibles.backend_ai.constant.ExportLineType;
+
+import java.time.Instant;
+
+/**
+ * One line of an NDJSON export: a conversation, followed by its messages. The cursor resumes the export
+ * right after this line.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExportLineDto {
+
+    private ExportLineType type;
+
+    private String conversationId;
+
+    private String id;
+
+    private String title;
+
+    private String question;
+
+    private String answer;
+
+    private Boolean truncated;
+
+    private Instant createdAt;
+
+    private String cursor;
+}
@@ -0,0 +1,33 @@
+package org.aibles.backend_ai.dto.response;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Tokens used with one model on one UTC day.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class UsageDto {
+
+    private LocalDate day;
+
+    private String model;
+
+    private long promptTokens;
+
+    private long completionTokens;
+
+    private long totalTokens;
+
+    private long requests;
+}
@@ -0,0 +1,42 @@
+package org.aibles.backend_ai.dto.response;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Token usage over a range of days, in total and per day and model. Usage counted in the last flush interval
+ * is not in it yet.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class UsageReportDto {
+
+    /**
+     * Null for the usage of all conversations and batch jobs.
+     */
+    private String conversationId;
+
+    private LocalDate fromDay;
+
+    private LocalDate toDay;
+
+    private long promptTokens;
+
+    private long completionTokens;
+
+    private long totalTokens;
+
+    private long requests;
+
+    private List<UsageDto> usage;
+}
@@ -0,0 +1,38 @@
+package org.aibles.backend_ai.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+
+@Table(value = "batch_item")
+@Data
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchItem {
+
+    public static final int ITEMS_PER_CHUNK = 1000;
+
+    @PrimaryKey
+    private BatchItemKey key;
+
+    private String prompt;
+
+    private String answer;
+
+    private String error;
+
+    private String status;
+
+    @Column(value = "latency_ms")
+    private long latencyMs;
+
+    @Column(value = "completed_at")
+    private Instant completedAt;
+}
@@ -0,0 +1,34 @@
+package org.aibles.backend_ai.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyClass;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+
+import java.io.Serializable;
+
+/**
+ * Items of a job are split into partitions of {@link BatchItem#ITEMS_PER_CHUNK} so that no partition grows with
+ * the size of the job.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@PrimaryKeyClass
+public class BatchItemKey implements Serializable {
+
+    @PrimaryKeyColumn(value = "job_id", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+    private String jobId;
+
+    @PrimaryKeyColumn(value = "chunk", ordinal = 1, type = PrimaryKeyType.PARTITIONED)
+    private int chunk;
+
+    @PrimaryKeyColumn(value = "item_index", ordinal = 2, type = PrimaryKeyType.CLUSTERED)
+    private int itemIndex;
+
+    public static BatchItemKey of(String jobId, int itemIndex) {
+        return new BatchItemKey(jobId, itemIndex / BatchItem.ITEMS_PER_CHUNK, itemIndex);
+    }
+}
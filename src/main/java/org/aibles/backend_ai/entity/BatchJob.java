@@ -0,0 +1,50 @@
+package org.aibles.backend_ai.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+
+/**
+ * A batch of prompts run offline against one model. The instance named by owner runs the job as long as
+ * leaseUntil is in the future, completed and failed count the items it has written so far.
+ */
+@Table(value = "batch_job")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchJob {
+
+    @PrimaryKey
+    private String id;
+
+    private String model;
+
+    private String status;
+
+    private int total;
+
+    private int completed;
+
+    private int failed;
+
+    private String owner;
+
+    @Column(value = "lease_until")
+    private Instant leaseUntil;
+
+    @Column(value = "created_at")
+    private Instant createdAt;
+
+    @Column(value = "started_at")
+    private Instant startedAt;
+
+    @Column(value = "updated_at")
+    private Instant updatedAt;
+}
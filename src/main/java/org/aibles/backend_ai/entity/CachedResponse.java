@@ -0,0 +1,23 @@
+package org.aibles.backend_ai.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+@Table(value = "response_cache")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CachedResponse {
+
+    @PrimaryKey(value = "cache_key")
+    private String cacheKey;
+
+    private String model;
+
+    private String answer;
+}
@@ -23,6 +23,8 @@ public class ConversationMessage {
 
     private String answer;
 
+    private boolean truncated;
+
     public Instant getCreatedAt() {
         return key.getCreatedAt();
     }
@@ -0,0 +1,38 @@
+package org.aibles.backend_ai.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+
+/**
+ * Rolling summary of the turns of a conversation created up to coveredUntil.
+ */
+@Table(value = "conversation_summary")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConversationSummary {
+
+    @PrimaryKey(value = "conversation_id")
+    private String conversationId;
+
+    private String summary;
+
+    @Column(value = "covered_until")
+    private Instant coveredUntil;
+
+    @Column(value = "covered_turns")
+    private int coveredTurns;
+
+    private int tokens;
+
+    @Column(value = "updated_at")
+    private Instant updatedAt;
+}
@@ -0,0 +1,32 @@
+package org.aibles.backend_ai.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+/**
+ * Tokens a conversation used with a model on a UTC day. The columns are counters, they are only ever
+ * incremented, see {@link org.aibles.backend_ai.repository.ConversationUsageRepositoryCustom}.
+ */
+@Table(value = "conversation_usage")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConversationUsage {
+
+    @PrimaryKey
+    private ConversationUsageKey key;
+
+    @Column(value = "prompt_tokens")
+    private long promptTokens;
+
+    @Column(value = "completion_tokens")
+    private long completionTokens;
+
+    private long requests;
+}
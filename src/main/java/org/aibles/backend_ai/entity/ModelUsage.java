@@ -0,0 +1,32 @@
+package org.aibles.backend_ai.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+/**
+ * Tokens a model used on a UTC day, all conversations and batch jobs together. Counter columns, like
+ * {@link ConversationUsage}.
+ */
+@Table(value = "model_usage")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ModelUsage {
+
+    @PrimaryKey
+    private ModelUsageKey key;
+
+    @Column(value = "prompt_tokens")
+    private long promptTokens;
+
+    @Column(value = "completion_tokens")
+    private long completionTokens;
+
+    private long requests;
+}
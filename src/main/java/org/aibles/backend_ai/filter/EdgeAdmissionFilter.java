@@ -0,0 +1,235 @@
+package org.aibles.backend_ai.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aibles.backend_ai.configuration.properties.EdgeProperties;
+import org.aibles.backend_ai.constant.EdgeClass;
+import org.aibles.backend_ai.service.chatstream.ChatStreamMetrics;
+import org.aibles.backend_ai.service.persistence.MessageWriteBehindQueue;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control in front of the API. Requests are split by route into expensive streams (streamPaths)
+ * and cheap reads (everything else), each class with its own limits, so a flood of one cannot starve the
+ * other. A request first takes an in-flight slot of its class and is refused with 503 when all maxInFlight are
+ * taken, or, for streams, when the message write queue is backed up or answers are slow to their first token.
+ * It then takes a token from its client's bucket of the class and is refused with 429 when there is none.
+ * Both answers carry a Retry-After. With enabled off every request passes through.
+ */
+public class EdgeAdmissionFilter implements WebFilter, Ordered {
+
+    private static final String API_PREFIX = "/api/";
+
+    private static final String REASON_RATE_LIMIT = "rate_limit";
+
+    private static final String REASON_IN_FLIGHT = "in_flight";
+
+    private static final String REASON_WRITE_BACKLOG = "write_backlog";
+
+    private static final String REASON_FIRST_TOKEN = "first_token";
+
+    private final EdgeProperties properties;
+
+    private final ChatStreamMetrics chatStreamMetrics;
+
+    private final MessageWriteBehindQueue messageWriteBehindQueue;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<EdgeClass, Cache<String, TokenBucket>> buckets = new EnumMap<>(EdgeClass.class);
+
+    private final Map<EdgeClass, AtomicInteger> inFlight = new EnumMap<>(EdgeClass.class);
+
+    private final List<PathPattern> streamPaths;
+
+    public EdgeAdmissionFilter(EdgeProperties properties,
+                               ChatStreamMetrics chatStreamMetrics,
+                               MessageWriteBehindQueue messageWriteBehindQueue,
+                               MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.chatStreamMetrics = chatStreamMetrics;
+        this.messageWriteBehindQueue = messageWriteBehindQueue;
+        this.meterRegistry = meterRegistry;
+        this.streamPaths = properties.getStreamPaths()
+                .stream()
+                .map(PathPatternParser.defaultInstance::parse)
+                .toList();
+        for (EdgeClass edgeClass : EdgeClass.values()) {
+            buckets.put(edgeClass, Caffeine.newBuilder()
+                    .maximumSize(properties.getMaxClients())
+                    .expireAfterAccess(properties.getIdleClientTtl())
+                    .build());
+            AtomicInteger counter = new AtomicInteger();
+            inFlight.put(edgeClass, counter);
+            Gauge.builder("edge.in_flight", counter, AtomicInteger::get)
+                    .description("Requests being served, by class")
+                    .tag("class", tagOf(edgeClass))
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 10;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        final ServerHttpRequest request = exchange.getRequest();
+        if (!properties.isEnabled() || !request.getPath().value().startsWith(API_PREFIX)) {
+            return chain.filter(exchange);
+        }
+        final EdgeClass edgeClass = classOf(request);
+        final EdgeProperties.Limits limits = limitsOf(edgeClass);
+        final AtomicInteger served = inFlight.get(edgeClass);
+
+        if (!tryEnter(served, limits.getMaxInFlight())) {
+            return reject(exchange, edgeClass, HttpStatus.SERVICE_UNAVAILABLE, REASON_IN_FLIGHT, overloadRetryAfter());
+        }
+        final Mono<Void> refusal = refusalOf(exchange, edgeClass, limits);
+        if (refusal != null) {
+            served.decrementAndGet();
+            return refusal;
+        }
+        return chain.filter(exchange).doFinally(signalType -> served.decrementAndGet());
+    }
+
+    /**
+     * Takes an in-flight slot unless all are taken. Checking and taking in one compare-and-set keeps
+     * concurrent requests from all passing the check before any of them is counted.
+     */
+    private static boolean tryEnter(AtomicInteger served, int maxInFlight) {
+        while (true) {
+            int current = served.get();
+            if (current >= maxInFlight) {
+                return false;
+            }
+            if (served.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the refusal of a request holding an in-flight slot, null to serve it
+     */
+    private Mono<Void> refusalOf(ServerWebExchange exchange, EdgeClass edgeClass, EdgeProperties.Limits limits) {
+        if (edgeClass == EdgeClass.STREAM) {
+            String reason = shedReason();
+            if (reason != null) {
+                return reject(exchange, edgeClass, HttpStatus.SERVICE_UNAVAILABLE, reason, overloadRetryAfter());
+            }
+        }
+
+        final String client = clientOf(exchange.getRequest());
+        final long now = System.nanoTime();
+        final long waitNanos = buckets.get(edgeClass)
+                .get(client, key -> new TokenBucket(limits.getRate(), limits.getBurst(), now))
+                .tryAcquire(now);
+        if (waitNanos > 0) {
+            return reject(exchange, edgeClass, HttpStatus.TOO_MANY_REQUESTS, REASON_RATE_LIMIT, Duration.ofNanos(waitNanos));
+        }
+        return null;
+    }
+
+    private EdgeClass classOf(ServerHttpRequest request) {
+        for (PathPattern streamPath : streamPaths) {
+            if (streamPath.matches(request.getPath().pathWithinApplication())) {
+                return EdgeClass.STREAM;
+            }
+        }
+        return EdgeClass.READ;
+    }
+
+    /**
+     * @return why a new stream is shed now, null to admit it
+     */
+    private String shedReason() {
+        final EdgeProperties.Shedding shedding = properties.getShedding();
+        if (messageWriteBehindQueue.backlogRatio() > shedding.getWriteBacklogRatio()) {
+            return REASON_WRITE_BACKLOG;
+        }
+        final long threshold = shedding.getFirstTokenThreshold().toNanos();
+        final long firstToken = chatStreamMetrics.recentAnswerFirstToken().toNanos();
+        if (firstToken > threshold) {
+            double ratio = Math.min(shedding.getMaxRatio(), (double) (firstToken - threshold) / threshold);
+            if (ThreadLocalRandom.current().nextDouble() < ratio) {
+                return REASON_FIRST_TOKEN;
+            }
+        }
+        return null;
+    }
+
+    private Duration overloadRetryAfter() {
+        final EdgeProperties.Shedding shedding = properties.getShedding();
+        Duration firstToken = chatStreamMetrics.recentAnswerFirstToken();
+        Duration retryAfter = firstToken.compareTo(shedding.getRetryAfter()) > 0 ? firstToken : shedding.getRetryAfter();
+        return retryAfter.compareTo(shedding.getMaxRetryAfter()) > 0 ? shedding.getMaxRetryAfter() : retryAfter;
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange,
+                              EdgeClass edgeClass,
+                              HttpStatus status,
+                              String reason,
+                              Duration retryAfter) {
+        Counter.builder("edge.rejected")
+                .description("Requests refused at the edge, by class and reason")
+                .tag("class", tagOf(edgeClass))
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        final ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        // Retry-After is in whole seconds, rounded up so that a client retrying on time finds room
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000)));
+        return response.setComplete();
+    }
+
+    /**
+     * The client named by the gateway when its header is trusted, the remote address otherwise. Client names
+     * and addresses are kept apart, a client cannot take over the bucket of an address by naming itself after
+     * it.
+     */
+    private String clientOf(ServerHttpRequest request) {
+        if (properties.isTrustClientHeader()) {
+            String client = request.getHeaders().getFirst(properties.getClientHeader());
+            if (client != null && !client.isBlank()) {
+                return "client:" + client;
+            }
+        }
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        return remoteAddress != null && remoteAddress.getAddress() != null
+                ? remoteAddress.getAddress().getHostAddress()
+                : "unknown";
+    }
+
+    private EdgeProperties.Limits limitsOf(EdgeClass edgeClass) {
+        return edgeClass == EdgeClass.READ ? properties.getRead() : properties.getStream();
+    }
+
+    private static String tagOf(EdgeClass edgeClass) {
+        return edgeClass.name().toLowerCase();
+    }
+}
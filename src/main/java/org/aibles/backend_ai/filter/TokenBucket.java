@@ -0,0 +1,43 @@
+package org.aibles.backend_ai.filter;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Token bucket refilled continuously at rate tokens per second up to burst tokens. Taking a token is a
+ * compare-and-set on an immutable state, so concurrent requests of a client never block each other.
+ */
+class TokenBucket {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final double rate;
+
+    private final int burst;
+
+    private final AtomicReference<State> state;
+
+    TokenBucket(double rate, int burst, long now) {
+        this.rate = rate;
+        this.burst = burst;
+        this.state = new AtomicReference<>(new State(burst, now));
+    }
+
+    /**
+     * @return 0 when a token was taken, otherwise the nanoseconds until one is available
+     */
+    long tryAcquire(long now) {
+        while (true) {
+            State current = state.get();
+            double tokens = Math.min(burst, current.tokens + Math.max(now - current.refilledAt, 0) * rate / NANOS_PER_SECOND);
+            if (tokens < 1) {
+                return (long) Math.ceil((1 - tokens) / rate * NANOS_PER_SECOND);
+            }
+            if (state.compareAndSet(current, new State(tokens - 1, Math.max(now, current.refilledAt)))) {
+                return 0;
+            }
+        }
+    }
+
+    private record State(double tokens, long refilledAt) {
+    }
+}
@@ -0,0 +1,11 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.BatchItem;
+import org.aibles.backend_ai.entity.BatchItemKey;
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BatchItemRepository extends ReactiveCassandraRepository<BatchItem, BatchItemKey>,
+        BatchItemRepositoryCustom {
+}
@@ -0,0 +1,22 @@
+package org.aibles.backend_ai.repository;
+
+import com.datastax.oss.driver.api.core.cql.PagingState;
+import org.aibles.backend_ai.entity.BatchItem;
+import org.aibles.backend_ai.repository.cql.CqlPage;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+public interface BatchItemRepositoryCustom {
+
+    /**
+     * Writes items of one chunk as a single unlogged batch, they expire after ttl.
+     */
+    Mono<Void> insertAll(List<BatchItem> items, Duration ttl);
+
+    /**
+     * One page of the items of a chunk, by index. A null pagingState starts at the first item.
+     */
+    Mono<CqlPage<BatchItem>> findPage(String jobId, int chunk, PagingState pagingState, int pageSize);
+}
@@ -0,0 +1,76 @@
+package org.aibles.backend_ai.repository;
+
+import com.datastax.oss.driver.api.core.cql.PagingState;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.aibles.backend_ai.entity.BatchItem;
+import org.aibles.backend_ai.entity.BatchItemKey;
+import org.aibles.backend_ai.repository.cql.CqlPage;
+import org.aibles.backend_ai.repository.cql.CqlQuery;
+import org.aibles.backend_ai.repository.cql.PreparedQueryExecutor;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+public class BatchItemRepositoryCustomImpl implements BatchItemRepositoryCustom {
+
+    static final CqlQuery INSERT_WITH_TTL = new CqlQuery(
+            "batch-item-insert",
+            """
+            INSERT INTO backend_ai.batch_item (job_id, chunk, item_index, prompt, answer, error, status, latency_ms, completed_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) USING TTL ?
+            """,
+            "message-write",
+            true);
+
+    static final CqlQuery ITEMS = new CqlQuery(
+            "batch-item-page",
+            """
+            SELECT * FROM backend_ai.batch_item WHERE job_id = ? AND chunk = ?
+            """,
+            "export-read",
+            true);
+
+    private final PreparedQueryExecutor executor;
+
+    public BatchItemRepositoryCustomImpl(PreparedQueryExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Mono<Void> insertAll(List<BatchItem> items, Duration ttl) {
+        final int ttlSeconds = (int) ttl.toSeconds();
+        return executor.executeBatch(INSERT_WITH_TTL, items.stream()
+                .map(item -> new Object[]{
+                        item.getKey().getJobId(),
+                        item.getKey().getChunk(),
+                        item.getKey().getItemIndex(),
+                        item.getPrompt(),
+                        item.getAnswer(),
+                        item.getError(),
+                        item.getStatus(),
+                        item.getLatencyMs(),
+                        item.getCompletedAt(),
+                        ttlSeconds
+                })
+                .toList());
+    }
+
+    @Override
+    public Mono<CqlPage<BatchItem>> findPage(String jobId, int chunk, PagingState pagingState, int pageSize) {
+        return executor.selectPage(ITEMS, pagingState, pageSize, jobId, chunk)
+                .map(page -> page.map(BatchItemRepositoryCustomImpl::toItem));
+    }
+
+    static BatchItem toItem(Row row) {
+        return BatchItem.builder()
+                .key(new BatchItemKey(row.getString("job_id"), row.getInt("chunk"), row.getInt("item_index")))
+                .prompt(row.getString("prompt"))
+                .answer(row.getString("answer"))
+                .error(row.getString("error"))
+                .status(row.getString("status"))
+                .latencyMs(row.getLong("latency_ms"))
+                .completedAt(row.getInstant("completed_at"))
+                .build();
+    }
+}
@@ -0,0 +1,13 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.BatchJob;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Once a job is created every change to it goes through the conditional updates of
+ * {@link BatchJobRepositoryCustom}, guarded by the job's owner.
+ */
+@Repository
+public interface BatchJobRepository extends ReactiveCrudRepository<BatchJob, String>, BatchJobRepositoryCustom {
+}
@@ -0,0 +1,47 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.BatchJob;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Every write sets the expiry of the rows it touches to ttl, so a job is deleted ttl after its last change.
+ */
+public interface BatchJobRepositoryCustom {
+
+    /**
+     * Writes a new job and lists it as active. Both rows expire after ttl.
+     */
+    Mono<Void> create(BatchJob job, Duration ttl);
+
+    /**
+     * Ids of the jobs that are not completed yet.
+     */
+    Flux<String> findActiveIds();
+
+    Mono<Void> deactivate(String jobId);
+
+    /**
+     * Takes the job over when its lease is still the one read in expectedLeaseUntil.
+     *
+     * @return whether this owner now holds the job
+     */
+    Mono<Boolean> claim(String jobId,
+                        String owner,
+                        Instant leaseUntil,
+                        Instant expectedLeaseUntil,
+                        Instant startedAt,
+                        Duration ttl);
+
+    /**
+     * Extends the lease and records progress.
+     *
+     * @return false once another owner took the job over
+     */
+    Mono<Boolean> saveProgress(String jobId, String owner, Instant leaseUntil, int completed, int failed, Duration ttl);
+
+    Mono<Boolean> complete(String jobId, String owner, int completed, int failed, Duration ttl);
+}
@@ -0,0 +1,139 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.constant.BatchJobStatus;
+import org.aibles.backend_ai.entity.BatchJob;
+import org.aibles.backend_ai.repository.cql.CqlQuery;
+import org.aibles.backend_ai.repository.cql.PreparedQueryExecutor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+public class BatchJobRepositoryCustomImpl implements BatchJobRepositoryCustom {
+
+    private static final String ACTIVE_BUCKET = "active";
+
+    static final CqlQuery INSERT_WITH_TTL = new CqlQuery(
+            "batch-job-insert",
+            """
+            INSERT INTO backend_ai.batch_job (id, model, status, total, completed, failed, created_at, updated_at)
+            VALUES (?, ?, ?, ?, 0, 0, ?, ?) USING TTL ?
+            """,
+            "message-write",
+            true);
+
+    static final CqlQuery ACTIVATE = new CqlQuery(
+            "batch-job-activate",
+            """
+            INSERT INTO backend_ai.batch_job_active (bucket, job_id) VALUES (?, ?) USING TTL ?
+            """,
+            "message-write",
+            true);
+
+    static final CqlQuery ACTIVE_IDS = new CqlQuery(
+            "batch-job-active",
+            """
+            SELECT job_id FROM backend_ai.batch_job_active WHERE bucket = ?
+            """,
+            "list-read",
+            true);
+
+    static final CqlQuery DEACTIVATE = new CqlQuery(
+            "batch-job-deactivate",
+            """
+            DELETE FROM backend_ai.batch_job_active WHERE bucket = ? AND job_id = ?
+            """,
+            "message-write",
+            true);
+
+    static final CqlQuery CLAIM = new CqlQuery(
+            "batch-job-claim",
+            """
+            UPDATE backend_ai.batch_job USING TTL ? SET owner = ?, lease_until = ?, status = ?, started_at = ?
+            WHERE id = ? IF lease_until = ?
+            """,
+            "message-write",
+            false);
+
+    static final CqlQuery PROGRESS = new CqlQuery(
+            "batch-job-progress",
+            """
+            UPDATE backend_ai.batch_job USING TTL ? SET lease_until = ?, completed = ?, failed = ?, updated_at = ?
+            WHERE id = ? IF owner = ?
+            """,
+            "message-write",
+            false);
+
+    static final CqlQuery COMPLETE = new CqlQuery(
+            "batch-job-complete",
+            """
+            UPDATE backend_ai.batch_job USING TTL ? SET status = ?, lease_until = null, completed = ?, failed = ?, updated_at = ?
+            WHERE id = ? IF owner = ?
+            """,
+            "message-write",
+            false);
+
+    private final PreparedQueryExecutor executor;
+
+    public BatchJobRepositoryCustomImpl(PreparedQueryExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Mono<Void> create(BatchJob job, Duration ttl) {
+        return executor.execute(INSERT_WITH_TTL,
+                        job.getId(),
+                        job.getModel(),
+                        job.getStatus(),
+                        job.getTotal(),
+                        job.getCreatedAt(),
+                        job.getCreatedAt(),
+                        (int) ttl.toSeconds())
+                .then(executor.execute(ACTIVATE, ACTIVE_BUCKET, job.getId(), (int) ttl.toSeconds()));
+    }
+
+    @Override
+    public Flux<String> findActiveIds() {
+        return executor.select(ACTIVE_IDS, ACTIVE_BUCKET).map(row -> row.getString("job_id"));
+    }
+
+    @Override
+    public Mono<Void> deactivate(String jobId) {
+        return executor.execute(DEACTIVATE, ACTIVE_BUCKET, jobId);
+    }
+
+    @Override
+    public Mono<Boolean> claim(String jobId,
+                               String owner,
+                               Instant leaseUntil,
+                               Instant expectedLeaseUntil,
+                               Instant startedAt,
+                               Duration ttl) {
+        return executor.executeConditional(CLAIM,
+                (int) ttl.toSeconds(),
+                owner,
+                leaseUntil,
+                BatchJobStatus.RUNNING.name(),
+                startedAt,
+                jobId,
+                expectedLeaseUntil);
+    }
+
+    @Override
+    public Mono<Boolean> saveProgress(String jobId, String owner, Instant leaseUntil, int completed, int failed, Duration ttl) {
+        return executor.executeConditional(PROGRESS, (int) ttl.toSeconds(), leaseUntil, completed, failed, Instant.now(), jobId, owner);
+    }
+
+    @Override
+    public Mono<Boolean> complete(String jobId, String owner, int completed, int failed, Duration ttl) {
+        return executor.executeConditional(COMPLETE,
+                (int) ttl.toSeconds(),
+                BatchJobStatus.COMPLETED.name(),
+                completed,
+                failed,
+                Instant.now(),
+                jobId,
+                owner);
+    }
+}
@@ -5,5 +5,6 @@ import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface ConversationMetadataRepo extends ReactiveCrudRepository<ConversationMetadata, String> {
+public interface ConversationMetadataRepo extends ReactiveCrudRepository<ConversationMetadata, String>,
+        ConversationMetadataRepoCustom {
 }
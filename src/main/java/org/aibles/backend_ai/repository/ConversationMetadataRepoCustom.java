@@ -0,0 +1,9 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.ConversationMetadata;
+import reactor.core.publisher.Mono;
+
+public interface ConversationMetadataRepoCustom {
+
+    Mono<ConversationMetadata> findMetadata(String conversationId);
+}
@@ -0,0 +1,33 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.ConversationMetadata;
+import org.aibles.backend_ai.repository.cql.CqlQuery;
+import org.aibles.backend_ai.repository.cql.PreparedQueryExecutor;
+import reactor.core.publisher.Mono;
+
+public class ConversationMetadataRepoCustomImpl implements ConversationMetadataRepoCustom {
+
+    static final CqlQuery METADATA_BY_ID = new CqlQuery(
+            "conversation-metadata",
+            """
+            SELECT * FROM backend_ai.conversation_metadata WHERE conversation_id = ?
+            """,
+            "metadata-read",
+            true);
+
+    private final PreparedQueryExecutor executor;
+
+    public ConversationMetadataRepoCustomImpl(PreparedQueryExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Mono<ConversationMetadata> findMetadata(String conversationId) {
+        return executor.select(METADATA_BY_ID, conversationId)
+                .next()
+                .map(row -> ConversationMetadata.builder()
+                        .conversationId(row.getString("conversation_id"))
+                        .model(row.getString("model"))
+                        .build());
+    }
+}
@@ -7,13 +7,12 @@ import org.springframework.data.cassandra.repository.ReactiveCassandraRepository
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 
-import java.time.Instant;
-
 @Repository
-public interface ConversationRepository extends ReactiveCassandraRepository<Conversation, ConversationKey> {
+public interface ConversationRepository extends ReactiveCassandraRepository<Conversation, ConversationKey>,
+        ConversationRepositoryCustom {
 
     @Query("""
-           SELECT * FROM conversation WHERE month_bucket = :monthBucket AND created_at <= :toTime LIMIT :limit
+           SELECT * FROM backend_ai.conversation WHERE month_bucket = :monthBucket
            """)
-    Flux<Conversation> findBy(String monthBucket, Instant toTime, int limit);
+    Flux<Conversation> findAllInBucket(String monthBucket);
 }
@@ -0,0 +1,23 @@
+package org.aibles.backend_ai.repository;
+
+import com.datastax.oss.driver.api.core.cql.PagingState;
+import org.aibles.backend_ai.entity.Conversation;
+import org.aibles.backend_ai.repository.cql.CqlPage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+public interface ConversationRepositoryCustom {
+
+    Flux<Conversation> findBy(String monthBucket, Instant toTime, int limit);
+
+    /**
+     * One page of the conversations of a bucket created in [fromTime, toTime), newest first.
+     */
+    Mono<CqlPage<Conversation>> findPageBetween(String monthBucket,
+                                                Instant fromTime,
+                                                Instant toTime,
+                                                PagingState pagingState,
+                                                int pageSize);
+}
@@ -0,0 +1,61 @@
+package org.aibles.backend_ai.repository;
+
+import com.datastax.oss.driver.api.core.cql.PagingState;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.aibles.backend_ai.entity.Conversation;
+import org.aibles.backend_ai.entity.ConversationKey;
+import org.aibles.backend_ai.repository.cql.CqlPage;
+import org.aibles.backend_ai.repository.cql.CqlQuery;
+import org.aibles.backend_ai.repository.cql.PreparedQueryExecutor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+public class ConversationRepositoryCustomImpl implements ConversationRepositoryCustom {
+
+    static final CqlQuery CONVERSATIONS_BEFORE = new CqlQuery(
+            "conversation-list",
+            """
+            SELECT * FROM backend_ai.conversation WHERE month_bucket = ? AND created_at <= ? LIMIT ?
+            """,
+            "list-read",
+            true);
+
+    static final CqlQuery CONVERSATIONS_BETWEEN = new CqlQuery(
+            "conversation-export",
+            """
+            SELECT * FROM backend_ai.conversation WHERE month_bucket = ? AND created_at >= ? AND created_at < ?
+            """,
+            "export-read",
+            true);
+
+    private final PreparedQueryExecutor executor;
+
+    public ConversationRepositoryCustomImpl(PreparedQueryExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Flux<Conversation> findBy(String monthBucket, Instant toTime, int limit) {
+        return executor.select(CONVERSATIONS_BEFORE, monthBucket, toTime, limit)
+                .map(ConversationRepositoryCustomImpl::toConversation);
+    }
+
+    @Override
+    public Mono<CqlPage<Conversation>> findPageBetween(String monthBucket,
+                                                       Instant fromTime,
+                                                       Instant toTime,
+                                                       PagingState pagingState,
+                                                       int pageSize) {
+        return executor.selectPage(CONVERSATIONS_BETWEEN, pagingState, pageSize, monthBucket, fromTime, toTime)
+                .map(page -> page.map(ConversationRepositoryCustomImpl::toConversation));
+    }
+
+    static Conversation toConversation(Row row) {
+        return new Conversation(
+                new ConversationKey(row.getString("month_bucket"), row.getInstant("created_at")),
+                row.getString("id"),
+                row.getString("title"));
+    }
+}
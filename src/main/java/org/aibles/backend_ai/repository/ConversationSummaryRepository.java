@@ -0,0 +1,9 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.ConversationSummary;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ConversationSummaryRepository extends ReactiveCrudRepository<ConversationSummary, String> {
+}
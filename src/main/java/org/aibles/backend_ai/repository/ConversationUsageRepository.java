@@ -0,0 +1,15 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.ConversationUsage;
+import org.aibles.backend_ai.entity.ConversationUsageKey;
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * conversation_usage holds counters, which cannot be saved as entities: they are incremented by
+ * {@link ConversationUsageRepositoryCustom}.
+ */
+@Repository
+public interface ConversationUsageRepository extends ReactiveCassandraRepository<ConversationUsage, ConversationUsageKey>,
+        ConversationUsageRepositoryCustom {
+}
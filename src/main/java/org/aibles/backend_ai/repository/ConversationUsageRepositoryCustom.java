@@ -0,0 +1,22 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.ConversationUsage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ConversationUsageRepositoryCustom {
+
+    /**
+     * Adds the counts of each usage to its counters, as a single counter batch. Only meant for usages of the
+     * same conversation.
+     */
+    Mono<Void> incrementAll(List<ConversationUsage> usages);
+
+    /**
+     * Usage of a conversation from fromDay to toDay included, newest day first.
+     */
+    Flux<ConversationUsage> findBetween(String conversationId, LocalDate fromDay, LocalDate toDay);
+}
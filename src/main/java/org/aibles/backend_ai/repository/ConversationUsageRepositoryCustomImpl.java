@@ -0,0 +1,68 @@
+package org.aibles.backend_ai.repository;
+
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.aibles.backend_ai.entity.ConversationUsage;
+import org.aibles.backend_ai.entity.ConversationUsageKey;
+import org.aibles.backend_ai.repository.cql.CqlQuery;
+import org.aibles.backend_ai.repository.cql.PreparedQueryExecutor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class ConversationUsageRepositoryCustomImpl implements ConversationUsageRepositoryCustom {
+
+    static final CqlQuery INCREMENT = new CqlQuery(
+            "conversation-usage-increment",
+            """
+            UPDATE backend_ai.conversation_usage
+            SET prompt_tokens = prompt_tokens + ?, completion_tokens = completion_tokens + ?, requests = requests + ?
+            WHERE conversation_id = ? AND day = ? AND model = ?
+            """,
+            "message-write",
+            false);
+
+    static final CqlQuery USAGE_BETWEEN = new CqlQuery(
+            "conversation-usage-between",
+            """
+            SELECT * FROM backend_ai.conversation_usage WHERE conversation_id = ? AND day >= ? AND day <= ?
+            """,
+            "list-read",
+            true);
+
+    private final PreparedQueryExecutor executor;
+
+    public ConversationUsageRepositoryCustomImpl(PreparedQueryExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Mono<Void> incrementAll(List<ConversationUsage> usages) {
+        return executor.executeCounterBatch(INCREMENT, usages.stream()
+                .map(usage -> new Object[]{
+                        usage.getPromptTokens(),
+                        usage.getCompletionTokens(),
+                        usage.getRequests(),
+                        usage.getKey().getConversationId(),
+                        usage.getKey().getDay(),
+                        usage.getKey().getModel()
+                })
+                .toList());
+    }
+
+    @Override
+    public Flux<ConversationUsage> findBetween(String conversationId, LocalDate fromDay, LocalDate toDay) {
+        return executor.select(USAGE_BETWEEN, conversationId, fromDay, toDay)
+                .map(ConversationUsageRepositoryCustomImpl::toUsage);
+    }
+
+    static ConversationUsage toUsage(Row row) {
+        return ConversationUsage.builder()
+                .key(new ConversationUsageKey(row.getString("conversation_id"), row.getLocalDate("day"), row.getString("model")))
+                .promptTokens(row.getLong("prompt_tokens"))
+                .completionTokens(row.getLong("completion_tokens"))
+                .requests(row.getLong("requests"))
+                .build();
+    }
+}
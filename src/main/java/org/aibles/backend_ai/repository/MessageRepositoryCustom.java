@@ -0,0 +1,32 @@
+package org.aibles.backend_ai.repository;
+
+import com.datastax.oss.driver.api.core.cql.PagingState;
+import org.aibles.backend_ai.entity.ConversationMessage;
+import org.aibles.backend_ai.repository.cql.CqlPage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface MessageRepositoryCustom {
+
+    Flux<ConversationMessage> findContextWindowByConversationId(String conversationId, int maxWindow);
+
+    Flux<ConversationMessage> findMessagesBy(String conversationId, Instant toTime, int limit);
+
+    /**
+     * Messages created after the given time, oldest first.
+     */
+    Flux<ConversationMessage> findMessagesAfter(String conversationId, Instant fromTime, int limit);
+
+    /**
+     * One page of all messages of a conversation, oldest first. A null pagingState starts at the first message.
+     */
+    Mono<CqlPage<ConversationMessage>> findMessagePage(String conversationId, PagingState pagingState, int pageSize);
+
+    /**
+     * Writes messages of one conversation as a single unlogged batch.
+     */
+    Mono<Void> insertAll(List<ConversationMessage> messages);
+}
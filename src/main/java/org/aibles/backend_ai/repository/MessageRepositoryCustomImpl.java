@@ -0,0 +1,110 @@
+package org.aibles.backend_ai.repository;
+
+import com.datastax.oss.driver.api.core.cql.PagingState;
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.aibles.backend_ai.entity.ConversationMessage;
+import org.aibles.backend_ai.entity.MessageKey;
+import org.aibles.backend_ai.repository.cql.CqlPage;
+import org.aibles.backend_ai.repository.cql.CqlQuery;
+import org.aibles.backend_ai.repository.cql.PreparedQueryExecutor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+
+public class MessageRepositoryCustomImpl implements MessageRepositoryCustom {
+
+    static final CqlQuery CONTEXT_WINDOW = new CqlQuery(
+            "message-context-window",
+            """
+            select * from backend_ai.conversation_message where conversation_id = ? order by created_at desc limit ?
+            """,
+            "history-read",
+            true);
+
+    static final CqlQuery MESSAGES_BEFORE = new CqlQuery(
+            "message-history",
+            """
+            select * from backend_ai.conversation_message where conversation_id = ?
+            and created_at <= ? order by created_at desc limit ?
+            """,
+            "history-read",
+            true);
+
+    static final CqlQuery MESSAGES_AFTER = new CqlQuery(
+            "message-history-after",
+            """
+            select * from backend_ai.conversation_message where conversation_id = ?
+            and created_at > ? order by created_at asc limit ?
+            """,
+            "history-read",
+            true);
+
+    static final CqlQuery MESSAGES_EXPORT = new CqlQuery(
+            "message-export",
+            """
+            select * from backend_ai.conversation_message where conversation_id = ? order by created_at asc
+            """,
+            "export-read",
+            true);
+
+    static final CqlQuery INSERT = new CqlQuery(
+            "message-insert",
+            """
+            insert into backend_ai.conversation_message (conversation_id, created_at, id, question, answer, truncated)
+            values (?, ?, ?, ?, ?, ?)
+            """,
+            "message-write",
+            true);
+
+    private final PreparedQueryExecutor executor;
+
+    public MessageRepositoryCustomImpl(PreparedQueryExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Flux<ConversationMessage> findContextWindowByConversationId(String conversationId, int maxWindow) {
+        return executor.select(CONTEXT_WINDOW, conversationId, maxWindow).map(MessageRepositoryCustomImpl::toMessage);
+    }
+
+    @Override
+    public Flux<ConversationMessage> findMessagesBy(String conversationId, Instant toTime, int limit) {
+        return executor.select(MESSAGES_BEFORE, conversationId, toTime, limit).map(MessageRepositoryCustomImpl::toMessage);
+    }
+
+    @Override
+    public Flux<ConversationMessage> findMessagesAfter(String conversationId, Instant fromTime, int limit) {
+        return executor.select(MESSAGES_AFTER, conversationId, fromTime, limit).map(MessageRepositoryCustomImpl::toMessage);
+    }
+
+    @Override
+    public Mono<CqlPage<ConversationMessage>> findMessagePage(String conversationId, PagingState pagingState, int pageSize) {
+        return executor.selectPage(MESSAGES_EXPORT, pagingState, pageSize, conversationId)
+                .map(page -> page.map(MessageRepositoryCustomImpl::toMessage));
+    }
+
+    @Override
+    public Mono<Void> insertAll(List<ConversationMessage> messages) {
+        return executor.executeBatch(INSERT, messages.stream()
+                .map(message -> new Object[]{
+                        message.getKey().getConversationId(),
+                        message.getKey().getCreatedAt(),
+                        message.getId(),
+                        message.getQuestion(),
+                        message.getAnswer(),
+                        message.isTruncated()
+                })
+                .toList());
+    }
+
+    static ConversationMessage toMessage(Row row) {
+        return new ConversationMessage(
+                new MessageKey(row.getString("conversation_id"), row.getInstant("created_at")),
+                row.getString("id"),
+                row.getString("question"),
+                row.getString("answer"),
+                row.getBoolean("truncated"));
+    }
+}
@@ -0,0 +1,14 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.ModelUsage;
+import org.aibles.backend_ai.entity.ModelUsageKey;
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * model_usage holds counters, they are incremented by {@link ModelUsageRepositoryCustom}.
+ */
+@Repository
+public interface ModelUsageRepository extends ReactiveCassandraRepository<ModelUsage, ModelUsageKey>,
+        ModelUsageRepositoryCustom {
+}
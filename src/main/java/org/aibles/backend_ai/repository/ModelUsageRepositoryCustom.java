@@ -0,0 +1,22 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.ModelUsage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ModelUsageRepositoryCustom {
+
+    /**
+     * Adds the counts of each usage to its counters, as a single counter batch. Only meant for usages of the
+     * same day.
+     */
+    Mono<Void> incrementAll(List<ModelUsage> usages);
+
+    /**
+     * Usage of every model on a day.
+     */
+    Flux<ModelUsage> findByDay(LocalDate day);
+}
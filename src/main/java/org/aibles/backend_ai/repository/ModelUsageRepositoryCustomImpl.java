@@ -0,0 +1,67 @@
+package org.aibles.backend_ai.repository;
+
+import com.datastax.oss.driver.api.core.cql.Row;
+import org.aibles.backend_ai.entity.ModelUsage;
+import org.aibles.backend_ai.entity.ModelUsageKey;
+import org.aibles.backend_ai.repository.cql.CqlQuery;
+import org.aibles.backend_ai.repository.cql.PreparedQueryExecutor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class ModelUsageRepositoryCustomImpl implements ModelUsageRepositoryCustom {
+
+    static final CqlQuery INCREMENT = new CqlQuery(
+            "model-usage-increment",
+            """
+            UPDATE backend_ai.model_usage
+            SET prompt_tokens = prompt_tokens + ?, completion_tokens = completion_tokens + ?, requests = requests + ?
+            WHERE day = ? AND model = ?
+            """,
+            "message-write",
+            false);
+
+    static final CqlQuery USAGE_OF_DAY = new CqlQuery(
+            "model-usage-day",
+            """
+            SELECT * FROM backend_ai.model_usage WHERE day = ?
+            """,
+            "list-read",
+            true);
+
+    private final PreparedQueryExecutor executor;
+
+    public ModelUsageRepositoryCustomImpl(PreparedQueryExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Mono<Void> incrementAll(List<ModelUsage> usages) {
+        return executor.executeCounterBatch(INCREMENT, usages.stream()
+                .map(usage -> new Object[]{
+                        usage.getPromptTokens(),
+                        usage.getCompletionTokens(),
+                        usage.getRequests(),
+                        usage.getKey().getDay(),
+                        usage.getKey().getModel()
+                })
+                .toList());
+    }
+
+    @Override
+    public Flux<ModelUsage> findByDay(LocalDate day) {
+        return executor.select(USAGE_OF_DAY, day)
+                .map(ModelUsageRepositoryCustomImpl::toUsage);
+    }
+
+    static ModelUsage toUsage(Row row) {
+        return ModelUsage.builder()
+                .key(new ModelUsageKey(row.getLocalDate("day"), row.getString("model")))
+                .promptTokens(row.getLong("prompt_tokens"))
+                .completionTokens(row.getLong("completion_tokens"))
+                .requests(row.getLong("requests"))
+                .build();
+    }
+}
@@ -0,0 +1,10 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.CachedResponse;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ResponseCacheRepository extends ReactiveCrudRepository<CachedResponse, String>,
+        ResponseCacheRepositoryCustom {
+}
@@ -0,0 +1,13 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.CachedResponse;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+public interface ResponseCacheRepositoryCustom {
+
+    Mono<CachedResponse> findCached(String cacheKey);
+
+    Mono<Void> insertWithTtl(CachedResponse cachedResponse, Duration ttl);
+}
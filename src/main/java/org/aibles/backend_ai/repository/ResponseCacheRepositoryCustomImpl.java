@@ -0,0 +1,53 @@
+package org.aibles.backend_ai.repository;
+
+import org.aibles.backend_ai.entity.CachedResponse;
+import org.aibles.backend_ai.repository.cql.CqlQuery;
+import org.aibles.backend_ai.repository.cql.PreparedQueryExecutor;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+public class ResponseCacheRepositoryCustomImpl implements ResponseCacheRepositoryCustom {
+
+    static final CqlQuery CACHED_BY_KEY = new CqlQuery(
+            "response-cache-read",
+            """
+            SELECT * FROM backend_ai.response_cache WHERE cache_key = ?
+            """,
+            "metadata-read",
+            true);
+
+    static final CqlQuery INSERT_WITH_TTL = new CqlQuery(
+            "response-cache-insert",
+            """
+            INSERT INTO backend_ai.response_cache (cache_key, model, answer) VALUES (?, ?, ?) USING TTL ?
+            """,
+            "message-write",
+            true);
+
+    private final PreparedQueryExecutor executor;
+
+    public ResponseCacheRepositoryCustomImpl(PreparedQueryExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Mono<CachedResponse> findCached(String cacheKey) {
+        return executor.select(CACHED_BY_KEY, cacheKey)
+                .next()
+                .map(row -> CachedResponse.builder()
+                        .cacheKey(row.getString("cache_key"))
+                        .model(row.getString("model"))
+                        .answer(row.getString("answer"))
+                        .build());
+    }
+
+    @Override
+    public Mono<Void> insertWithTtl(CachedResponse cachedResponse, Duration ttl) {
+        return executor.execute(INSERT_WITH_TTL,
+                cachedResponse.getCacheKey(),
+                cachedResponse.getModel(),
+                cachedResponse.getAnswer(),
+                (int) ttl.toSeconds());
+    }
+}
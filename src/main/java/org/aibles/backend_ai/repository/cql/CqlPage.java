@@ -0,0 +1,16 @@
+package org.aibles.backend_ai.repository.cql;
+
+import com.datastax.oss.driver.api.core.cql.PagingState;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a paged select. pagingState fetches the page after it and is null on the last page.
+ */
+public record CqlPage<T>(List<T> rows, PagingState pagingState) {
+
+    public <R> CqlPage<R> map(Function<T, R> mapper) {
+        return new CqlPage<>(rows.stream().map(mapper).toList(), pagingState);
+    }
+}
@@ -0,0 +1,10 @@
+package org.aibles.backend_ai.repository.cql;
+
+/**
+ * A statement of the data access layer. The name is used to look up an execution profile override in
+ * backend-ai.cassandra.query-profiles, the profile itself is declared in cassandra-driver.conf.
+ * Tables are named with their keyspace, so a statement means the same whatever keyspace the session uses when
+ * it is prepared.
+ */
+public record CqlQuery(String name, String cql, String defaultProfile, boolean idempotent) {
+}
@@ -0,0 +1,12 @@
+package org.aibles.backend_ai.repository.cql;
+
+/**
+ * A paging state that was not returned by the query it is applied to: altered, or taken from another query or
+ * other bound values.
+ */
+public class InvalidPagingStateException extends IllegalArgumentException {
+
+    public InvalidPagingStateException(String query, Throwable cause) {
+        super("Paging state does not belong to query " + query, cause);
+    }
+}
@@ -0,0 +1,181 @@
+package org.aibles.backend_ai.repository.cql;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PagingState;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.CassandraQueryProperties;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link CqlQuery} statements as prepared statements. Each statement is prepared once per session,
+ * bound with its partition key so the driver routes it to a replica owning the token, and executed with
+ * the execution profile configured for its query name. Every execution is timed as cassandra.query.
+ */
+@Slf4j
+public class PreparedQueryExecutor {
+
+    private final CqlSession session;
+
+    private final CassandraQueryProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, CompletableFuture<PreparedStatement>> preparedStatements = new ConcurrentHashMap<>();
+
+    public PreparedQueryExecutor(CqlSession session, CassandraQueryProperties properties, MeterRegistry meterRegistry) {
+        this.session = session;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Flux<Row> select(CqlQuery query, Object... values) {
+        return timed(query, prepare(query).flatMapMany(preparedStatement ->
+                Flux.from(session.executeReactive(bind(query, preparedStatement, values)))));
+    }
+
+    /**
+     * Reads a single page of at most pageSize rows, starting at pagingState or at the first row when it is
+     * null. Callers fetch the next page with the returned paging state, so only one page is held at a time
+     * however many rows the query matches. Paging states are the driver's safe ones, they carry a hash of the
+     * query and its values and a state that does not match them fails with {@link InvalidPagingStateException}
+     * before anything is sent, so one altered or taken from another query cannot reach the coordinator.
+     */
+    public Mono<CqlPage<Row>> selectPage(CqlQuery query, PagingState pagingState, int pageSize, Object... values) {
+        return timed(query, prepare(query).flatMap(preparedStatement -> {
+            BoundStatement statement = bind(query, preparedStatement, values).setPageSize(pageSize);
+            if (pagingState != null) {
+                try {
+                    statement = statement.setPagingState(pagingState, session);
+                } catch (IllegalArgumentException e) {
+                    return Mono.error(new InvalidPagingStateException(query.name(), e));
+                }
+            }
+            return Mono.fromCompletionStage(session.executeAsync(statement))
+                    .map(resultSet -> {
+                        List<Row> rows = new ArrayList<>(resultSet.remaining());
+                        resultSet.currentPage().forEach(rows::add);
+                        return new CqlPage<>(rows,
+                                resultSet.hasMorePages() ? resultSet.getExecutionInfo().getSafePagingState() : null);
+                    });
+        }));
+    }
+
+    public Mono<Void> execute(CqlQuery query, Object... values) {
+        return timed(query, prepare(query).flatMap(preparedStatement ->
+                Mono.fromCompletionStage(session.executeAsync(bind(query, preparedStatement, values)))).then());
+    }
+
+    /**
+     * Executes a lightweight transaction and tells whether its IF condition held.
+     */
+    public Mono<Boolean> executeConditional(CqlQuery query, Object... values) {
+        return timed(query, prepare(query).flatMap(preparedStatement ->
+                Mono.fromCompletionStage(session.executeAsync(bind(query, preparedStatement, values)))
+                        .map(AsyncResultSet::wasApplied)));
+    }
+
+    /**
+     * Executes one statement per row of values as a single unlogged batch. Only meant for rows of the same
+     * partition, where the batch is applied as one mutation on one replica set.
+     */
+    public Mono<Void> executeBatch(CqlQuery query, List<Object[]> rows) {
+        return executeBatch(query, rows, BatchType.UNLOGGED);
+    }
+
+    /**
+     * Executes one counter update per row of values as a single counter batch. Counter updates are not
+     * idempotent, a batch that timed out may have been applied and must not be retried blindly.
+     */
+    public Mono<Void> executeCounterBatch(CqlQuery query, List<Object[]> rows) {
+        return executeBatch(query, rows, BatchType.COUNTER);
+    }
+
+    private Mono<Void> executeBatch(CqlQuery query, List<Object[]> rows, BatchType batchType) {
+        if (rows.size() == 1) {
+            return execute(query, rows.get(0));
+        }
+        return prepare(query).flatMap(preparedStatement -> {
+            BatchStatementBuilder batch = BatchStatement.builder(batchType)
+                    .setExecutionProfileName(profileOf(query))
+                    .setIdempotence(query.idempotent());
+            for (Object[] values : rows) {
+                batch.addStatement(preparedStatement.bind(values));
+            }
+            return Mono.fromCompletionStage(session.executeAsync(batch.build()));
+        }).then().transform(execution -> timed(query, execution));
+    }
+
+    /**
+     * Records the latency of a query from subscription until its last row is read, tagged by query name and
+     * outcome. Selects cancelled after enough rows count as cancelled rather than as failures.
+     */
+    private <T> Flux<T> timed(CqlQuery query, Flux<T> execution) {
+        return Flux.defer(() -> {
+            final long startedAt = System.nanoTime();
+            return execution.doFinally(signal ->
+                    latencyOf(query, signal).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private <T> Mono<T> timed(CqlQuery query, Mono<T> execution) {
+        return Mono.defer(() -> {
+            final long startedAt = System.nanoTime();
+            return execution.doFinally(signal ->
+                    latencyOf(query, signal).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private Timer latencyOf(CqlQuery query, SignalType signal) {
+        final String outcome = switch (signal) {
+            case ON_COMPLETE -> "success";
+            case CANCEL -> "cancelled";
+            default -> "error";
+        };
+        return Timer.builder("cassandra.query")
+                .description("Latency of prepared Cassandra queries")
+                .tag("query", query.name())
+                .tag("profile", profileOf(query))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Mono<PreparedStatement> prepare(CqlQuery query) {
+        return Mono.defer(() -> {
+            CompletableFuture<PreparedStatement> preparedStatement = preparedStatements.computeIfAbsent(query.cql(), cql -> {
+                log.info("(prepare)query : {}", query.name());
+                return session.prepareAsync(cql).toCompletableFuture();
+            });
+            return Mono.fromFuture(preparedStatement, true)
+                    .doOnError(e -> preparedStatements.remove(query.cql(), preparedStatement));
+        });
+    }
+
+    private BoundStatement bind(CqlQuery query, PreparedStatement preparedStatement, Object... values) {
+        return preparedStatement.bind(values)
+                .setExecutionProfileName(profileOf(query))
+                .setIdempotent(query.idempotent());
+    }
+
+    private String profileOf(CqlQuery query) {
+        return properties.getQueryProfiles().getOrDefault(query.name(), query.defaultProfile());
+    }
+}
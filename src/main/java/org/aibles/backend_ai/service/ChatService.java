@@ -3,12 +3,17 @@ package org.aibles.backend_ai.service;
 import org.aibles.backend_ai.dto.request.ConversationRequest;
 import org.aibles.backend_ai.dto.request.StartConversationRequest;
 import org.aibles.backend_ai.dto.response.ConversationDto;
-import reactor.core.publisher.Flux;
+import org.aibles.backend_ai.service.chatstream.replay.AnswerStream;
+import org.aibles.backend_ai.service.chatstream.replay.StreamEventId;
 import reactor.core.publisher.Mono;
 
 public interface ChatService {
 
     Mono<ConversationDto> startConversation(StartConversationRequest request);
 
-    Flux<String> streamAnswer(String conversationId, ConversationRequest request);
+    /**
+     * Streams the answer to a new prompt, or resumes the turn resumeFrom points to when it is still kept. The
+     * client tier, when known, sets the priority of the generation.
+     */
+    AnswerStream streamAnswer(String conversationId, ConversationRequest request, String tier, StreamEventId resumeFrom);
 }
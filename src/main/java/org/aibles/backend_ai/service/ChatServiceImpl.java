@@ -1,46 +1,75 @@
 package org.aibles.backend_ai.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.constant.AIModel;
+import org.aibles.backend_ai.dto.ModelContextWindow;
 import org.aibles.backend_ai.dto.request.ConversationRequest;
 import org.aibles.backend_ai.dto.request.StartConversationRequest;
 import org.aibles.backend_ai.dto.response.ConversationDto;
+import org.aibles.backend_ai.entity.Conversation;
+import org.aibles.backend_ai.service.cache.ResponseCache;
+import org.aibles.backend_ai.service.chatstream.ChatExecution;
+import org.aibles.backend_ai.service.chatstream.ChatStreamMetrics;
 import org.aibles.backend_ai.service.chatstream.ChatStreamRegistry;
+import org.aibles.backend_ai.service.chatstream.ChatStreamService;
+import org.aibles.backend_ai.service.chatstream.admission.ModelAdmissionScheduler;
+import org.aibles.backend_ai.service.chatstream.replay.AnswerStream;
+import org.aibles.backend_ai.service.chatstream.replay.StreamEventId;
+import org.aibles.backend_ai.service.chatstream.replay.TurnReplay;
+import org.aibles.backend_ai.service.chatstream.replay.TurnReplayRegistry;
+import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
-import org.springframework.ai.chat.model.ChatResponse;
-import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.ollama.OllamaChatModel;
-import org.springframework.ai.ollama.api.OllamaOptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 @Slf4j
 public class ChatServiceImpl implements ChatService {
 
-    private final OllamaChatModel chatModel;
-
     private final ConversationService conversationService;
 
     private final ChatStreamRegistry chatStreamRegistry;
 
-    private static final String DEFAULT_MODEL = "qwen2.5:3b";
+    private final ModelAdmissionScheduler admissionScheduler;
+
+    private final ResponseCache responseCache;
+
+    private final ChatStreamMetrics chatStreamMetrics;
+
+    private final ChatExecution chatExecution;
+
+    private final TurnReplayRegistry turnReplays;
+
+    private static final String TITLE_MODEL = AIModel.QWEN2_5.name();
+
+    private static final int PROVISIONAL_TITLE_LENGTH = 60;
 
-    public ChatServiceImpl(OllamaChatModel chatModel,
-                           ConversationService conversationService,
-                           ChatStreamRegistry chatStreamRegistry) {
-        this.chatModel = chatModel;
+    public ChatServiceImpl(ConversationService conversationService,
+                           ChatStreamRegistry chatStreamRegistry,
+                           ModelAdmissionScheduler admissionScheduler,
+                           ResponseCache responseCache,
+                           ChatStreamMetrics chatStreamMetrics,
+                           ChatExecution chatExecution,
+                           TurnReplayRegistry turnReplays) {
         this.conversationService = conversationService;
         this.chatStreamRegistry = chatStreamRegistry;
+        this.admissionScheduler = admissionScheduler;
+        this.responseCache = responseCache;
+        this.chatStreamMetrics = chatStreamMetrics;
+        this.chatExecution = chatExecution;
+        this.turnReplays = turnReplays;
     }
 
     @Override
     public Mono<ConversationDto> startConversation(StartConversationRequest request) {
         log.info("(startConversation)request : {}", request);
-        return generateTitlePrompt(request.getPromptMessage())
-                .flatMap(title -> conversationService.saveConversation(title, request.getModel()))
+        return conversationService.saveConversation(provisionalTitle(request.getPromptMessage()), request.getModel())
+                .doOnNext(conversation -> generateTitleInBackground(conversation, request.getPromptMessage()))
                 .flatMap(conversation -> Mono.just(ConversationDto.builder()
                         .id(conversation.getId())
                         .title(conversation.getTitle())
@@ -48,6 +77,23 @@ public class ChatServiceImpl implements ChatService {
                          .build()));
     }
 
+    private void generateTitleInBackground(Conversation conversation, String promptMessage) {
+        generateTitlePrompt(promptMessage)
+                .filter(title -> !title.isBlank())
+                .flatMap(title -> conversationService.updateConversationTitle(conversation, title.strip()))
+                .subscribe(
+                        null,
+                        error -> log.error("(generateTitleInBackground)conversationId : {}", conversation.getId(), error)
+                );
+    }
+
+    private static String provisionalTitle(String promptMessage) {
+        String title = promptMessage.strip().replaceAll("\\s+", " ");
+        return title.length() <= PROVISIONAL_TITLE_LENGTH
+                ? title
+                : title.substring(0, PROVISIONAL_TITLE_LENGTH).stripTrailing() + "...";
+    }
+
     private Mono<String> generateTitlePrompt(String promptMessage) {
         log.info("(generateTitlePrompt)promptMessage : {}", promptMessage);
 
@@ -58,46 +104,126 @@ public class ChatServiceImpl implements ChatService {
         SystemMessage systemMessage = new SystemMessage(titlePrompt);
         UserMessage userMessage = new UserMessage(promptMessage);
 
-        return chatModel.stream(new Prompt(List.of(systemMessage, userMessage),
-                        OllamaOptions.builder().model(DEFAULT_MODEL).build()))
-                .collectList().map(chatResponses -> {
-            if (chatResponses.isEmpty()) {
+        final List<Message> messages = List.of(systemMessage, userMessage);
+        return responseCache.streamTitle(messages,
+                        () -> chatExecution.onModelThread(
+                                () -> chatStreamRegistry.getChatStreamService(TITLE_MODEL).streamAnswer(messages)))
+                .collectList().map(tokens -> {
+            if (tokens.isEmpty()) {
                 return promptMessage;
             }
             final StringBuilder titleBuilder = new StringBuilder();
-            for (ChatResponse chatResponse : chatResponses) {
-                titleBuilder.append(chatResponse.getResult().getOutput().getText());
+            for (String token : tokens) {
+                titleBuilder.append(token);
             }
             return titleBuilder.toString();
         });
     }
 
     @Override
-    public Flux<String> streamAnswer(String conversationId, ConversationRequest request) {
-        log.info("(streamAnswer)conversationId : {}, request : {}", conversationId, request);
-        return conversationService.findConversationModel(conversationId)
-                .flatMap(model ->
-                        conversationService.generateContextWindow(conversationId, model, request.getPromptMessage())
-                )
-                .publishOn(Schedulers.boundedElastic())
+    public AnswerStream streamAnswer(String conversationId, ConversationRequest request, String tier, StreamEventId resumeFrom) {
+        log.info("(streamAnswer)conversationId : {}, request : {}, tier : {}, resumeFrom : {}", conversationId, request, tier, resumeFrom);
+        if (resumeFrom != null) {
+            Optional<AnswerStream> resumed = turnReplays.resume(conversationId, resumeFrom);
+            if (resumed.isPresent()) {
+                return resumed.get();
+            }
+            log.info("(streamAnswer)turn not resumable, generating again, turnId : {}", resumeFrom.turnId());
+        }
+        final String turnId = UUID.randomUUID().toString();
+        return new AnswerStream(turnId, 0, generateAnswer(conversationId, turnId, request, admissionScheduler.priorityOf(tier)));
+    }
+
+    private Flux<String> generateAnswer(String conversationId, String turnId, ConversationRequest request, Integer priority) {
+        return chatStreamMetrics.timeContextBuild(
+                        conversationService.findConversationModel(conversationId)
+                                .flatMap(model ->
+                                        conversationService.generateContextWindow(conversationId, model, request.getPromptMessage())
+                                ),
+                        ModelContextWindow::getModel)
                 .flatMapMany(
                         modelContextWindow -> {
-                            Flux<String> chatStreamResp =
-                                    chatStreamRegistry.getChatStreamService(modelContextWindow.getModel())
-                                            .streamAnswer(modelContextWindow.getMessages());
+                            Flux<String> chatStreamResp = responseCache.stream(
+                                    modelContextWindow.getModel(),
+                                    modelContextWindow.getMessages(),
+                                    () -> admissionScheduler.admit(
+                                            modelContextWindow.getModel(),
+                                            conversationId,
+                                            priority,
+                                            () -> chatExecution.onModelThread(() -> chatStreamRegistry
+                                                    .getChatStreamService(modelContextWindow.getModel())
+                                                    .streamAnswer(modelContextWindow.getMessages()))))
+                                    .contextWrite(Context.of(ChatStreamService.CONVERSATION_ID, conversationId));
+
+                            final String model = modelContextWindow.getModel();
+                            final TurnReplay turn = turnReplays.start(turnId, conversationId);
+                            final AnswerText answer = new AnswerText();
+                            Flux<String> generation = turnReplays.record(turn, chatStreamResp)
+                                    .doOnNext(answer::append)
+                                    .doOnComplete(() -> {
+                                        String text = answer.close();
+                                        if (text != null) {
+                                            save(conversationId, request, text, false);
+                                        }
+                                    })
+                                    .doOnCancel(() -> {
+                                        String text = answer.close();
+                                        if (text == null) {
+                                            return;
+                                        }
+                                        boolean partial = !text.isEmpty();
+                                        if (partial) {
+                                            save(conversationId, request, text, true);
+                                        }
+                                        chatStreamMetrics.generationCancelled(model, partial);
+                                    })
+                                    .doOnError(error -> log.error("(streamAnswer)answer not saved, conversationId : {}",
+                                            conversationId, error));
+
+                            return chatStreamMetrics.observe(ChatStreamMetrics.ANSWER,
+                                    model,
+                                    turnReplays.drive(turn, generation));
+                        }
+                );
+    }
 
-                            Flux<String> chatStreamMulticast = chatStreamResp.publish().refCount(2);
+    private void save(String conversationId, ConversationRequest request, String answer, boolean truncated) {
+        log.info("(save)conversationId : {}, truncated : {}", conversationId, truncated);
+        chatExecution.onSaveThread(conversationService.saveMessage(conversationId,
+                        request.getPromptMessage(),
+                        answer,
+                        truncated))
+                .subscribe(
+                        null,
+                        error -> log.error("(save)answer not saved, conversationId : {}", conversationId, error)
+                );
+    }
 
-                            chatStreamMulticast
-                                    .reduce(new StringBuilder(), StringBuilder::append)
-                                    .flatMap(answer ->
-                                            conversationService.saveMessage(conversationId,
-                                                    request.getPromptMessage(),
-                                                    answer.toString())).subscribeOn(Schedulers.boundedElastic())
-                                    .subscribe();
+    /**
+     * Answer text as generated so far. Tokens arrive on the model's thread while a cancel comes from the thread
+     * the client went away on, the text is taken once, by whichever of completion and cancel comes first.
+     */
+    private static final class AnswerText {
 
-                            return chatStreamMulticast;
-                        }
-                );
+        private final StringBuilder text = new StringBuilder();
+
+        private boolean closed;
+
+        synchronized void append(String token) {
+            if (!closed) {
+                text.append(token);
+            }
+        }
+
+        /**
+         * The text up to now, null when it was already taken.
+         */
+        synchronized String close() {
+            if (closed) {
+                return null;
+            }
+            closed = true;
+            return text.toString();
+        }
     }
 }
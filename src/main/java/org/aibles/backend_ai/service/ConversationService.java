@@ -1,8 +1,8 @@
 package org.aibles.backend_ai.service;
 
 import org.aibles.backend_ai.dto.ModelContextWindow;
-import org.aibles.backend_ai.dto.response.ConversationDto;
 import org.aibles.backend_ai.dto.response.ConversationMessageDto;
+import org.aibles.backend_ai.dto.response.ConversationPageDto;
 import org.aibles.backend_ai.entity.Conversation;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -13,7 +13,9 @@ public interface ConversationService {
 
     Mono<Conversation> saveConversation(String title, String model);
 
-    Flux<ConversationDto> findConversations(Instant toTine, int limit);
+    Mono<Void> updateConversationTitle(Conversation conversation, String title);
+
+    Mono<ConversationPageDto> findConversationPage(String cursor, Instant toTime, int limit);
 
     Mono<String> findConversationModel(String id);
 
@@ -21,5 +23,8 @@ public interface ConversationService {
 
     Mono<ModelContextWindow> generateContextWindow(String conversationId, String model, String newPromptMessage);
 
-    Mono<Void> saveMessage(String conversationId, String question, String answer);
+    /**
+     * Saves a turn, truncated marks an answer cut short because its client disconnected.
+     */
+    Mono<Void> saveMessage(String conversationId, String question, String answer, boolean truncated);
 }
@@ -1,27 +1,42 @@
 package org.aibles.backend_ai.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.ConversationPagingProperties;
 import org.aibles.backend_ai.dto.ModelContextWindow;
 import org.aibles.backend_ai.dto.response.ConversationDto;
 import org.aibles.backend_ai.dto.response.ConversationMessageDto;
+import org.aibles.backend_ai.dto.response.ConversationPageDto;
 import org.aibles.backend_ai.entity.*;
 import org.aibles.backend_ai.repository.ConversationMetadataRepo;
 import org.aibles.backend_ai.repository.ConversationRepository;
+import org.aibles.backend_ai.repository.ConversationSummaryRepository;
 import org.aibles.backend_ai.repository.MessageRepository;
-import org.springframework.ai.chat.messages.AssistantMessage;
+import org.aibles.backend_ai.service.bucket.ConversationBuckets;
+import org.aibles.backend_ai.service.bucket.ConversationCursor;
+import org.aibles.backend_ai.service.cache.ConversationContextCache;
+import org.aibles.backend_ai.service.cache.ConversationModelCache;
+import org.aibles.backend_ai.service.context.ContextTurn;
+import org.aibles.backend_ai.service.context.ContextWindowAssembler;
+import org.aibles.backend_ai.service.context.ConversationContext;
+import org.aibles.backend_ai.service.persistence.MessageWriteBehindQueue;
+import org.reactivestreams.Publisher;
 import org.springframework.ai.chat.messages.Message;
-import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Slf4j
@@ -33,30 +48,65 @@ public class ConversationServiceImpl implements ConversationService {
 
     private final MessageRepository messageRepository;
 
-    private static final int MAX_CONTEXT_MESSAGES = 15;
+    private final ConversationContextCache contextCache;
 
-    private static final DateTimeFormatter monthYearFormatter = DateTimeFormatter.ofPattern("MM-yyyy");
+    private final ConversationModelCache modelCache;
+
+    private final MessageWriteBehindQueue messageWriteQueue;
+
+    private final ConversationBuckets conversationBuckets;
+
+    private final ConversationPagingProperties pagingProperties;
+
+    private final ConversationSummaryRepository summaryRepository;
+
+    private final ContextWindowAssembler contextWindowAssembler;
+
+    public static final int MAX_CONTEXT_MESSAGES = 15;
+
+    private static final int SHARD_PREFETCH = 32;
+
+    private static final Comparator<Conversation> NEWEST_FIRST =
+            Comparator.comparing((Conversation conversation) -> conversation.getKey().getCreatedAt()).reversed();
 
     public ConversationServiceImpl(ConversationRepository conversationRepository,
                                    ConversationMetadataRepo conversationMetadataRepo,
-                                   MessageRepository messageRepository) {
+                                   MessageRepository messageRepository,
+                                   ConversationContextCache contextCache,
+                                   ConversationModelCache modelCache,
+                                   MessageWriteBehindQueue messageWriteQueue,
+                                   ConversationBuckets conversationBuckets,
+                                   ConversationPagingProperties pagingProperties,
+                                   ConversationSummaryRepository summaryRepository,
+                                   ContextWindowAssembler contextWindowAssembler) {
+        if (pagingProperties.getEarliestMonth() == null) {
+            throw new IllegalArgumentException("backend-ai.conversation-paging.earliest-month must be set");
+        }
         this.conversationRepository = conversationRepository;
         this.conversationMetadataRepo = conversationMetadataRepo;
         this.messageRepository = messageRepository;
+        this.contextCache = contextCache;
+        this.modelCache = modelCache;
+        this.messageWriteQueue = messageWriteQueue;
+        this.conversationBuckets = conversationBuckets;
+        this.pagingProperties = pagingProperties;
+        this.summaryRepository = summaryRepository;
+        this.contextWindowAssembler = contextWindowAssembler;
     }
 
     @Override
     public Mono<Conversation> saveConversation(String title, String model) {
         log.info("(saveConversation)title : {}", title);
 
-        final String monthBucket = YearMonth.from(LocalDateTime.now().atZone(ZoneOffset.UTC)).format(monthYearFormatter);
+        final Instant createdAt = Instant.now();
+        final String conversationId = UUID.randomUUID().toString();
         Conversation conversation = new Conversation();
         ConversationKey conversationKey = new ConversationKey();
-        conversationKey.setCreatedAt(Instant.now());
-        conversationKey.setMonthBucket(monthBucket);
+        conversationKey.setCreatedAt(createdAt);
+        conversationKey.setMonthBucket(conversationBuckets.bucketFor(ConversationBuckets.monthOf(createdAt), conversationId));
         conversation.setKey(conversationKey);
 
-        conversation.setId(UUID.randomUUID().toString());
+        conversation.setId(conversationId);
         conversation.setTitle(title);
         return conversationRepository.save(conversation).flatMap(savedConversation -> {
             ConversationMetadata metadata = ConversationMetadata
@@ -64,28 +114,168 @@ public class ConversationServiceImpl implements ConversationService {
                     .conversationId(conversation.getId())
                     .model(model)
                     .build();
-            return conversationMetadataRepo.save(metadata).thenReturn(savedConversation);
+            return conversationMetadataRepo.save(metadata)
+                    .doOnSuccess(savedMetadata -> {
+                        modelCache.put(metadata.getConversationId(), model);
+                        // a new conversation has no history, its first stream does not need to look for one
+                        contextCache.put(metadata.getConversationId(), ConversationContext.EMPTY);
+                    })
+                    .thenReturn(savedConversation);
         });
     }
 
     @Override
-    public Flux<ConversationDto> findConversations(Instant toTine, int limit) {
-        log.info("(findLatestConversations)toTime : {}, limit : {}", toTine, limit);
-        final String monthBucket = YearMonth.from(LocalDateTime.now().atZone(ZoneOffset.UTC)).format(monthYearFormatter);
-        return conversationRepository.findBy(monthBucket, toTine, limit).map(conversation ->
-                ConversationDto.builder()
-                        .id(conversation.getId())
-                        .title(conversation.getTitle())
-                        .createdAt(conversation.getKey().getCreatedAt())
-                        .build()
-        );
+    public Mono<Void> updateConversationTitle(Conversation conversation, String title) {
+        log.info("(updateConversationTitle)conversationId : {}, title : {}", conversation.getId(), title);
+        conversation.setTitle(title);
+        return conversationRepository.save(conversation).then();
+    }
+
+    @Override
+    public Mono<ConversationPageDto> findConversationPage(String cursor, Instant toTime, int limit) {
+        log.info("(findConversationPage)cursor : {}, toTime : {}, limit : {}", cursor, toTime, limit);
+        if (limit < 1 || limit > pagingProperties.getMaxPageSize()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + pagingProperties.getMaxPageSize()));
+        }
+        final ConversationCursor start;
+        try {
+            start = cursor != null
+                    ? ConversationCursor.decode(cursor)
+                    : ConversationCursor.startingAt(toTime != null ? toTime : Instant.now());
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+        return collectPage(start, limit, new ArrayList<>(limit), pagingProperties.getMaxMonthsPerPage());
+    }
+
+    /**
+     * Walks month buckets backwards until the page is full or maxMonthsPerPage buckets were read, so a page
+     * never costs more than maxMonthsPerPage * (shards + 1) partition reads.
+     */
+    private Mono<ConversationPageDto> collectPage(ConversationCursor cursor,
+                                                  int limit,
+                                                  List<Conversation> page,
+                                                  int monthsLeft) {
+        final YearMonth earliestMonth = pagingProperties.getEarliestMonth();
+        if (cursor.month().isBefore(earliestMonth)) {
+            return Mono.just(toPage(page, null));
+        }
+
+        final int missing = limit - page.size();
+        final YearMonth previousMonth = cursor.month().minusMonths(1);
+        final boolean prefetch = monthsLeft > 1
+                && !previousMonth.isBefore(earliestMonth)
+                && isNearMonthStart(cursor);
+
+        Mono<List<Conversation>> rows = prefetch
+                ? Mono.zip(
+                        findInMonth(cursor, missing),
+                        findInMonth(new ConversationCursor(previousMonth, cursor.before(), Set.of()), missing),
+                        (current, previous) -> {
+                            List<Conversation> both = new ArrayList<>(current.size() + previous.size());
+                            both.addAll(current);
+                            both.addAll(previous);
+                            return both;
+                        })
+                : findInMonth(cursor, missing);
+        final int monthsRead = prefetch ? 2 : 1;
+
+        return rows.flatMap(conversations -> {
+            for (Conversation conversation : conversations) {
+                if (page.size() == limit) {
+                    break;
+                }
+                page.add(conversation);
+            }
+            if (page.size() == limit) {
+                return Mono.just(toPage(page, cursorAfter(page, cursor).encode()));
+            }
+
+            ConversationCursor next = new ConversationCursor(cursor.month().minusMonths(monthsRead), cursor.before(), Set.of());
+            if (next.month().isBefore(earliestMonth)) {
+                return Mono.just(toPage(page, null));
+            }
+            if (monthsLeft <= monthsRead) {
+                return Mono.just(toPage(page, next.encode()));
+            }
+            return collectPage(next, limit, page, monthsLeft - monthsRead);
+        });
+    }
+
+    private Mono<List<Conversation>> findInMonth(ConversationCursor cursor, int limit) {
+        // rows already returned at exactly cursor.before() are read again and skipped
+        final int fetchSize = limit + cursor.seenIds().size();
+        List<Flux<Conversation>> shards = conversationBuckets.bucketsOf(cursor.month())
+                .stream()
+                .map(monthBucket -> conversationRepository.findBy(monthBucket, cursor.before(), fetchSize))
+                .toList();
+        return mergeNewestFirst(shards)
+                .filter(conversation -> !cursor.seenIds().contains(conversation.getId()))
+                .take(limit)
+                .collectList();
+    }
+
+    private boolean isNearMonthStart(ConversationCursor cursor) {
+        Instant monthStart = cursor.month().atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant monthEnd = cursor.month().plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        Instant readFrom = cursor.before().isBefore(monthEnd) ? cursor.before() : monthEnd;
+        return Duration.between(monthStart, readFrom).compareTo(pagingProperties.getPrefetchWindow()) < 0;
+    }
+
+    private static ConversationCursor cursorAfter(List<Conversation> page, ConversationCursor cursor) {
+        Instant last = page.get(page.size() - 1).getKey().getCreatedAt();
+        Set<String> seenIds = new HashSet<>();
+        if (last.equals(cursor.before())) {
+            seenIds.addAll(cursor.seenIds());
+        }
+        for (Conversation conversation : page) {
+            if (conversation.getKey().getCreatedAt().equals(last)) {
+                seenIds.add(conversation.getId());
+            }
+        }
+        return new ConversationCursor(ConversationBuckets.monthOf(last), last, seenIds);
+    }
+
+    private static ConversationPageDto toPage(List<Conversation> conversations, String nextCursor) {
+        return ConversationPageDto.builder()
+                .conversations(conversations.stream()
+                        .map(conversation -> ConversationDto.builder()
+                                .id(conversation.getId())
+                                .title(conversation.getTitle())
+                                .createdAt(conversation.getKey().getCreatedAt())
+                                .build())
+                        .toList())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Every shard is already sorted by created_at desc, a k-way merge of them keeps the newest first.
+     */
+    @SuppressWarnings("unchecked")
+    private static Flux<Conversation> mergeNewestFirst(List<Flux<Conversation>> shards) {
+        Publisher<Conversation>[] sources = shards.toArray(new Publisher[0]);
+        return Flux.mergeComparing(SHARD_PREFETCH, NEWEST_FIRST, sources);
     }
 
     @Override
     public Mono<String> findConversationModel(String id) {
         log.info("(findConversation)id : {}", id);
-        return conversationMetadataRepo.findById(id)
-                .flatMap(metadata -> Mono.just(metadata.getModel()));
+        return Mono.defer(() -> {
+            Optional<String> cachedModel = modelCache.getModel(id);
+            if (cachedModel.isPresent()) {
+                return Mono.just(cachedModel.get());
+            }
+            if (modelCache.isKnownMissing(id)) {
+                log.info("(findConversation)unknown conversation id : {}", id);
+                return Mono.empty();
+            }
+            return conversationMetadataRepo.findMetadata(id)
+                    .map(ConversationMetadata::getModel)
+                    .doOnNext(model -> modelCache.put(id, model))
+                    .switchIfEmpty(Mono.fromRunnable(() -> modelCache.markMissing(id)));
+        });
     }
 
     @Override
@@ -99,6 +289,7 @@ public class ConversationServiceImpl implements ConversationService {
                                 .createdAt(conversationMessage.getKey().getCreatedAt())
                                 .question(conversationMessage.getQuestion())
                                 .answer(conversationMessage.getAnswer())
+                                .truncated(conversationMessage.isTruncated())
                                 .build()
                 );
     }
@@ -107,21 +298,8 @@ public class ConversationServiceImpl implements ConversationService {
     public Mono<ModelContextWindow> generateContextWindow(String conversationId, String model, String newPromptMessage) {
         log.info("(generateContextPrompt)conversationId : {}, newPromptMessage : {}", conversationId, newPromptMessage);
 
-        Flux<ConversationMessage> contextWindow = messageRepository
-                .findContextWindowByConversationId(conversationId, MAX_CONTEXT_MESSAGES)
-                .sort(Comparator.comparing(ConversationMessage::getCreatedAt));
-
-        return contextWindow.collectList().map(conversationMessages -> {
-            List<Message> messages = new ArrayList<>();
-            UserMessage userMessage;
-            AssistantMessage assistantMessage;
-            for (ConversationMessage conversationMessage : conversationMessages) {
-                userMessage = new UserMessage(conversationMessage.getQuestion());
-                assistantMessage = new AssistantMessage(conversationMessage.getAnswer());
-                messages.add(userMessage);
-                messages.add(assistantMessage);
-            }
-            messages.add(new UserMessage(newPromptMessage));
+        return findContext(conversationId).map(context -> {
+            List<Message> messages = contextWindowAssembler.assemble(conversationId, model, context, newPromptMessage);
 
             ModelContextWindow modelContextWindow = new ModelContextWindow();
             modelContextWindow.setModel(model);
@@ -130,9 +308,41 @@ public class ConversationServiceImpl implements ConversationService {
         });
     }
 
+    private Mono<ConversationContext> findContext(String conversationId) {
+        return Mono.defer(() -> contextCache.get(conversationId)
+                .map(Mono::just)
+                .orElseGet(() -> loadContext(conversationId)));
+    }
+
+    private Mono<ConversationContext> loadContext(String conversationId) {
+        long ticket = contextCache.startLoad();
+        return Mono.zip(
+                        summaryRepository.findById(conversationId)
+                                .map(Optional::of)
+                                .defaultIfEmpty(Optional.empty()),
+                        messageRepository
+                                .findContextWindowByConversationId(conversationId, MAX_CONTEXT_MESSAGES)
+                                .collectList())
+                .map(summaryAndMessages -> {
+                    List<ConversationMessage> conversationMessages = summaryAndMessages.getT2();
+                    // rows come newest first, the prompt needs them oldest first
+                    Collections.reverse(conversationMessages);
+                    List<ContextTurn> turns = new ArrayList<>(conversationMessages.size());
+                    for (ConversationMessage conversationMessage : conversationMessages) {
+                        turns.add(contextWindowAssembler.turnOf(conversationMessage.getKey().getCreatedAt(),
+                                conversationMessage.getQuestion(),
+                                conversationMessage.getAnswer()));
+                    }
+                    // turns saved here may still wait in the write-behind queue, the cache adds them back
+                    return contextCache.putLoaded(conversationId, ticket,
+                            new ConversationContext(summaryAndMessages.getT1().orElse(null), turns));
+                });
+    }
+
     @Override
-    public Mono<Void> saveMessage(String conversationId, String question, String answer) {
-        log.info("(saveMessage)conversationId : {}, question : {}, answer : {}", conversationId, question, answer);
+    public Mono<Void> saveMessage(String conversationId, String question, String answer, boolean truncated) {
+        log.info("(saveMessage)conversationId : {}, question : {}, answer : {}, truncated : {}",
+                conversationId, question, answer, truncated);
         ConversationMessage conversationMessage = new ConversationMessage();
 
         MessageKey messageKey = new MessageKey();
@@ -143,7 +353,9 @@ public class ConversationServiceImpl implements ConversationService {
         conversationMessage.setId(UUID.randomUUID().toString());
         conversationMessage.setQuestion(question);
         conversationMessage.setAnswer(answer);
-        return messageRepository.save(conversationMessage).then();
+        conversationMessage.setTruncated(truncated);
+        contextCache.append(conversationId, contextWindowAssembler.turnOf(messageKey.getCreatedAt(), question, answer));
+        return messageWriteQueue.enqueue(conversationMessage);
     }
 
 }
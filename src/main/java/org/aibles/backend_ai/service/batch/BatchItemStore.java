@@ -0,0 +1,78 @@
+package org.aibles.backend_ai.service.batch;
+
+import org.aibles.backend_ai.configuration.properties.BatchProperties;
+import org.aibles.backend_ai.entity.BatchItem;
+import org.aibles.backend_ai.repository.BatchItemRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads and writes the items of a job. Reads go chunk by chunk and page by page, the next page is fetched once
+ * the previous one was consumed. Writes are split into one unlogged batch per chunk partition, each kept under
+ * maxBatchBytes.
+ */
+public class BatchItemStore {
+
+    private static final int ROW_OVERHEAD_BYTES = 64;
+
+    private static final Comparator<BatchItem> BY_INDEX = Comparator.comparingInt(item -> item.getKey().getItemIndex());
+
+    private final BatchItemRepository itemRepository;
+
+    private final BatchProperties properties;
+
+    public BatchItemStore(BatchItemRepository itemRepository, BatchProperties properties) {
+        this.itemRepository = itemRepository;
+        this.properties = properties;
+    }
+
+    Flux<BatchItem> scan(String jobId, int total) {
+        final int chunks = (total + BatchItem.ITEMS_PER_CHUNK - 1) / BatchItem.ITEMS_PER_CHUNK;
+        return Flux.range(0, chunks)
+                .concatMap(chunk -> itemRepository.findPage(jobId, chunk, null, properties.getPageSize())
+                        .expand(page -> page.pagingState() == null
+                                ? Mono.empty()
+                                : itemRepository.findPage(jobId, chunk, page.pagingState(), properties.getPageSize()))
+                        .concatMapIterable(page -> page.rows(), 1), 1);
+    }
+
+    /**
+     * Items of one call may belong to several chunks, batches run one after the other.
+     */
+    Mono<Void> write(List<BatchItem> items) {
+        final long maxBytes = properties.getMaxBatchBytes().toBytes();
+        List<List<BatchItem>> batches = new ArrayList<>();
+        List<BatchItem> batch = new ArrayList<>();
+        long batchBytes = 0;
+        for (BatchItem item : items.stream().sorted(BY_INDEX).toList()) {
+            long bytes = sizeOf(item);
+            boolean otherChunk = !batch.isEmpty() && batch.get(0).getKey().getChunk() != item.getKey().getChunk();
+            if (!batch.isEmpty() && (otherChunk || batchBytes + bytes > maxBytes)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(item);
+            batchBytes += bytes;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return Flux.fromIterable(batches)
+                .concatMap(rows -> itemRepository.insertAll(rows, properties.getRetention()))
+                .then();
+    }
+
+    private static long sizeOf(BatchItem item) {
+        return ROW_OVERHEAD_BYTES + utf8Length(item.getPrompt()) + utf8Length(item.getAnswer()) + utf8Length(item.getError());
+    }
+
+    private static int utf8Length(String text) {
+        return text == null ? 0 : text.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,327 @@
+package org.aibles.backend_ai.service.batch;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.BatchProperties;
+import org.aibles.backend_ai.configuration.properties.ModelRegistryProperties;
+import org.aibles.backend_ai.constant.BatchItemStatus;
+import org.aibles.backend_ai.constant.BatchJobStatus;
+import org.aibles.backend_ai.constant.ModelBackend;
+import org.aibles.backend_ai.entity.BatchItem;
+import org.aibles.backend_ai.entity.BatchJob;
+import org.aibles.backend_ai.repository.BatchJobRepository;
+import org.aibles.backend_ai.service.chatstream.ChatStreamRegistry;
+import org.aibles.backend_ai.service.chatstream.admission.ModelAdmissionScheduler;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the queued batch jobs. Every pollInterval, and right after a job is submitted, the runner looks at the
+ * active jobs and claims those whose lease expired with a conditional update, so a job is run by one instance
+ * at a time and resumed elsewhere when its owner dies. An instance runs one job per backend at a time, with up
+ * to the backend's concurrency prompts in flight, each admitted to the model at the batch priority.
+ * Results are written in bulk and the job's progress is saved with them. A resumed job skips the items that
+ * already have a result, items that were in flight when the owner died are run again.
+ */
+@Slf4j
+public class BatchJobRunner implements DisposableBean {
+
+    private final BatchJobRepository jobRepository;
+
+    private final BatchItemStore itemStore;
+
+    private final ChatStreamRegistry chatStreamRegistry;
+
+    private final ModelAdmissionScheduler admissionScheduler;
+
+    private final BatchProperties properties;
+
+    private final ModelRegistryProperties modelRegistryProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    private final ConcurrentMap<String, Disposable> running = new ConcurrentHashMap<>();
+
+    private final Set<String> busyLanes = ConcurrentHashMap.newKeySet();
+
+    private final Sinks.Many<Long> wakeUps = Sinks.many().multicast().directBestEffort();
+
+    private final Disposable polling;
+
+    public BatchJobRunner(BatchJobRepository jobRepository,
+                          BatchItemStore itemStore,
+                          ChatStreamRegistry chatStreamRegistry,
+                          ModelAdmissionScheduler admissionScheduler,
+                          BatchProperties properties,
+                          ModelRegistryProperties modelRegistryProperties,
+                          MeterRegistry meterRegistry) {
+        if (properties.getPriority() < 0 || properties.getPriority() >= admissionScheduler.defaultPriority()) {
+            throw new IllegalArgumentException("backend-ai.batch.priority must be between 0 and "
+                    + (admissionScheduler.defaultPriority() - 1) + ", below the priority of client streams");
+        }
+        this.jobRepository = jobRepository;
+        this.itemStore = itemStore;
+        this.chatStreamRegistry = chatStreamRegistry;
+        this.admissionScheduler = admissionScheduler;
+        this.properties = properties;
+        this.modelRegistryProperties = modelRegistryProperties;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("batch.jobs.running", running, ConcurrentMap::size)
+                .description("Batch jobs this instance is running")
+                .register(meterRegistry);
+        this.polling = properties.isEnabled()
+                ? Flux.merge(Flux.interval(properties.getPollInterval()), wakeUps.asFlux())
+                        .onBackpressureDrop()
+                        .concatMap(tick -> poll())
+                        .subscribe()
+                : Disposables.disposed();
+    }
+
+    /**
+     * Looks for work now instead of at the next poll.
+     */
+    public void wakeUp() {
+        wakeUps.tryEmitNext(0L);
+    }
+
+    private Mono<Void> poll() {
+        return jobRepository.findActiveIds()
+                .filter(jobId -> !running.containsKey(jobId))
+                .concatMap(jobRepository::findById)
+                .concatMap(this::tryClaim)
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("(poll)looking for batch jobs failed", e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> tryClaim(BatchJob job) {
+        if (BatchJobStatus.COMPLETED.name().equals(job.getStatus())) {
+            // its owner died between completing it and taking it off the active list
+            return jobRepository.deactivate(job.getId());
+        }
+        final Instant now = Instant.now();
+        if (job.getLeaseUntil() != null && job.getLeaseUntil().isAfter(now)) {
+            return Mono.empty();
+        }
+        final String lane = laneOf(job.getModel());
+        if (!busyLanes.add(lane)) {
+            return Mono.empty();
+        }
+        final Instant startedAt = job.getStartedAt() != null ? job.getStartedAt() : now;
+        return jobRepository.claim(job.getId(),
+                        owner,
+                        now.plus(properties.getLease()),
+                        job.getLeaseUntil(),
+                        startedAt,
+                        properties.getRetention())
+                .doOnNext(claimed -> {
+                    if (claimed) {
+                        start(job, lane);
+                    } else {
+                        busyLanes.remove(lane);
+                    }
+                })
+                .doOnError(e -> busyLanes.remove(lane))
+                .then();
+    }
+
+    private void start(BatchJob job, String lane) {
+        final int concurrency = properties.concurrencyOf(backendOf(job.getModel()));
+        final Progress progress = new Progress(job.getCompleted(), job.getFailed());
+        log.info("(start)jobId : {}, model : {}, total : {}, resumed at : {}, concurrency : {}",
+                job.getId(), job.getModel(), job.getTotal(), job.getCompleted() + job.getFailed(), concurrency);
+
+        Mono<Void> work = itemStore.scan(job.getId(), job.getTotal())
+                .filter(progress::pending)
+                .flatMap(item -> process(job, item), concurrency)
+                // fair backpressure: a flush due while the previous batch is still being written waits for it instead of
+                // failing the job with an overflow
+                .bufferTimeout(properties.getWriteBatchSize(), properties.getFlushInterval(), true)
+                .concatMap(results -> itemStore.write(results)
+                        .then(Mono.fromRunnable(() -> progress.record(results)))
+                        .then(saveProgress(job, progress)))
+                .then(Mono.defer(() -> jobRepository.complete(job.getId(),
+                        owner,
+                        progress.completed(),
+                        progress.failed(),
+                        properties.getRetention())))
+                .flatMap(completed -> completed ? jobRepository.deactivate(job.getId()) : Mono.error(new LeaseLostException()));
+
+        Mono<Void> heartbeat = Flux.interval(properties.getPollInterval())
+                .concatMap(tick -> saveProgress(job, progress).onErrorResume(e -> !(e instanceof LeaseLostException), e -> {
+                    log.warn("(heartbeat)jobId : {}, lease not renewed", job.getId(), e);
+                    return Mono.empty();
+                }))
+                .then();
+
+        Disposable run = Mono.firstWithSignal(work, heartbeat)
+                .doFinally(signalType -> {
+                    running.remove(job.getId());
+                    busyLanes.remove(lane);
+                    wakeUp();
+                })
+                .subscribe(
+                        unused -> {
+                        },
+                        e -> log.warn("(start)jobId : {}, stopped, the job is resumed once its lease expires", job.getId(), e),
+                        () -> log.info("(start)jobId : {}, completed : {}, failed : {}",
+                                job.getId(), progress.completed(), progress.failed()));
+        running.put(job.getId(), run);
+        if (run.isDisposed()) {
+            running.remove(job.getId(), run);
+        }
+    }
+
+    private Mono<BatchItem> process(BatchJob job, BatchItem item) {
+        return Mono.defer(() -> {
+            final long startedAt = System.nanoTime();
+            return admissionScheduler.admit(job.getModel(),
+                            job.getId(),
+                            properties.getPriority(),
+                            () -> chatStreamRegistry.getChatStreamService(job.getModel())
+                                    .streamAnswer(List.of(new UserMessage(item.getPrompt()))))
+                    .reduceWith(StringBuilder::new, StringBuilder::append)
+                    .map(StringBuilder::toString)
+                    .retryWhen(Retry.backoff(Math.max(properties.getMaxAttempts() - 1, 0), properties.getRetryBackoff()))
+                    .map(answer -> finished(job, item, BatchItemStatus.DONE, answer, null, startedAt))
+                    .onErrorResume(e -> {
+                        Throwable cause = Exceptions.isRetryExhausted(e) && e.getCause() != null ? e.getCause() : e;
+                        String error = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+                        log.warn("(process)jobId : {}, item : {}, failed : {}", job.getId(), item.getKey().getItemIndex(), error);
+                        return Mono.just(finished(job, item, BatchItemStatus.FAILED, null, error, startedAt));
+                    });
+        });
+    }
+
+    private BatchItem finished(BatchJob job, BatchItem item, BatchItemStatus status, String answer, String error, long startedAt) {
+        final long nanos = System.nanoTime() - startedAt;
+        Timer.builder("batch.item.latency")
+                .description("Time to answer one batch prompt, retries included")
+                .tag("model", job.getModel())
+                .tag("outcome", status.name().toLowerCase())
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder("batch.items")
+                .description("Batch prompts answered or given up on")
+                .tag("model", job.getModel())
+                .tag("outcome", status.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+        return item.toBuilder()
+                .status(status.name())
+                .answer(answer)
+                .error(error)
+                .latencyMs(TimeUnit.NANOSECONDS.toMillis(nanos))
+                .completedAt(Instant.now())
+                .build();
+    }
+
+    /**
+     * Renews the lease with the counts at subscription time.
+     */
+    private Mono<Void> saveProgress(BatchJob job, Progress progress) {
+        return Mono.defer(() -> jobRepository.saveProgress(job.getId(),
+                        owner,
+                        Instant.now().plus(properties.getLease()),
+                        progress.completed(),
+                        progress.failed(),
+                        properties.getRetention()))
+                .flatMap(renewed -> renewed ? Mono.<Void>empty() : Mono.error(new LeaseLostException()));
+    }
+
+    private ModelBackend backendOf(String model) {
+        ModelRegistryProperties.ModelDefinition definition = modelRegistryProperties.getModels().get(model);
+        return definition != null ? definition.getBackend() : null;
+    }
+
+    /**
+     * Jobs on the same lane are run one after the other: the backend of declared models, the model otherwise.
+     */
+    private String laneOf(String model) {
+        ModelBackend backend = backendOf(model);
+        return backend != null ? backend.name() : model;
+    }
+
+    @Override
+    public void destroy() {
+        polling.dispose();
+        running.values().forEach(Disposable::dispose);
+    }
+
+    /**
+     * Results of a job. Items found finished while scanning are counted again, so the counts also cover results
+     * written after the last saved progress of a previous owner. The saved counts never go backwards.
+     */
+    private static final class Progress {
+
+        private final int savedCompleted;
+
+        private final int savedFailed;
+
+        private final AtomicInteger completed = new AtomicInteger();
+
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private Progress(int savedCompleted, int savedFailed) {
+            this.savedCompleted = savedCompleted;
+            this.savedFailed = savedFailed;
+        }
+
+        private boolean pending(BatchItem item) {
+            if (BatchItemStatus.DONE.name().equals(item.getStatus())) {
+                completed.incrementAndGet();
+                return false;
+            }
+            if (BatchItemStatus.FAILED.name().equals(item.getStatus())) {
+                failed.incrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        private void record(List<BatchItem> results) {
+            for (BatchItem result : results) {
+                boolean done = BatchItemStatus.DONE.name().equals(result.getStatus());
+                (done ? completed : failed).incrementAndGet();
+            }
+        }
+
+        private int completed() {
+            return Math.max(savedCompleted, completed.get());
+        }
+
+        private int failed() {
+            return Math.max(savedFailed, failed.get());
+        }
+    }
+
+    private static final class LeaseLostException extends IllegalStateException {
+
+        private LeaseLostException() {
+            super("another instance took the batch job over");
+        }
+    }
+}
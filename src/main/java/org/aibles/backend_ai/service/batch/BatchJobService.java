@@ -0,0 +1,148 @@
+package org.aibles.backend_ai.service.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.BatchProperties;
+import org.aibles.backend_ai.constant.AIModel;
+import org.aibles.backend_ai.constant.BatchItemStatus;
+import org.aibles.backend_ai.constant.BatchJobStatus;
+import org.aibles.backend_ai.dto.response.BatchItemDto;
+import org.aibles.backend_ai.dto.response.BatchJobDto;
+import org.aibles.backend_ai.entity.BatchItem;
+import org.aibles.backend_ai.entity.BatchItemKey;
+import org.aibles.backend_ai.entity.BatchJob;
+import org.aibles.backend_ai.repository.BatchJobRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Submits batch jobs and reads their progress and results. Prompts are written to Cassandra as they are read
+ * from the request, the job is only listed for the runners once all of them are stored.
+ */
+@Slf4j
+public class BatchJobService {
+
+    private final BatchJobRepository jobRepository;
+
+    private final BatchItemStore itemStore;
+
+    private final BatchJobRunner runner;
+
+    private final BatchProperties properties;
+
+    public BatchJobService(BatchJobRepository jobRepository,
+                           BatchItemStore itemStore,
+                           BatchJobRunner runner,
+                           BatchProperties properties) {
+        this.jobRepository = jobRepository;
+        this.itemStore = itemStore;
+        this.runner = runner;
+        this.properties = properties;
+    }
+
+    /**
+     * Blank prompts are skipped.
+     */
+    public Mono<BatchJobDto> submit(String model, Flux<String> prompts) {
+        log.info("(submit)model : {}", model);
+        if (Arrays.stream(AIModel.values()).noneMatch(aiModel -> aiModel.name().equals(model))) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid ai model"));
+        }
+        final String jobId = UUID.randomUUID().toString();
+        return prompts
+                .filter(prompt -> !prompt.isBlank())
+                .index()
+                .<BatchItem>handle((indexed, sink) -> {
+                    if (indexed.getT1() >= properties.getMaxPrompts()) {
+                        sink.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                "A batch job holds at most " + properties.getMaxPrompts() + " prompts"));
+                        return;
+                    }
+                    sink.next(BatchItem.builder()
+                            .key(BatchItemKey.of(jobId, indexed.getT1().intValue()))
+                            .prompt(indexed.getT2())
+                            .status(BatchItemStatus.PENDING.name())
+                            .build());
+                })
+                .buffer(properties.getWriteBatchSize())
+                .concatMap(items -> itemStore.write(items).thenReturn(items.size()))
+                .reduce(0, Integer::sum)
+                .flatMap(total -> {
+                    if (total == 0) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "No prompts to run"));
+                    }
+                    final Instant now = Instant.now();
+                    BatchJob job = BatchJob.builder()
+                            .id(jobId)
+                            .model(model)
+                            .status(BatchJobStatus.QUEUED.name())
+                            .total(total)
+                            .createdAt(now)
+                            .updatedAt(now)
+                            .build();
+                    return jobRepository.create(job, properties.getRetention()).thenReturn(job);
+                })
+                .doOnNext(job -> {
+                    log.info("(submit)jobId : {}, model : {}, prompts : {}", job.getId(), model, job.getTotal());
+                    runner.wakeUp();
+                })
+                .map(BatchJobService::toDto);
+    }
+
+    public Mono<BatchJobDto> findJob(String jobId) {
+        log.info("(findJob)jobId : {}", jobId);
+        return findById(jobId).map(BatchJobService::toDto);
+    }
+
+    /**
+     * Results written so far, by prompt index. Items of a running job that are not answered yet are left out.
+     */
+    public Flux<BatchItemDto> findResults(String jobId) {
+        log.info("(findResults)jobId : {}", jobId);
+        return findById(jobId)
+                .flatMapMany(job -> itemStore.scan(job.getId(), job.getTotal()))
+                .filter(item -> !BatchItemStatus.PENDING.name().equals(item.getStatus()))
+                .map(item -> BatchItemDto.builder()
+                        .index(item.getKey().getItemIndex())
+                        .status(item.getStatus())
+                        .prompt(item.getPrompt())
+                        .answer(item.getAnswer())
+                        .error(item.getError())
+                        .latencyMs(item.getLatencyMs())
+                        .completedAt(item.getCompletedAt())
+                        .build());
+    }
+
+    private Mono<BatchJob> findById(String jobId) {
+        return jobRepository.findById(jobId)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Batch job not found")));
+    }
+
+    private static BatchJobDto toDto(BatchJob job) {
+        double throughput = 0;
+        if (job.getStartedAt() != null && job.getUpdatedAt() != null) {
+            long millis = Duration.between(job.getStartedAt(), job.getUpdatedAt()).toMillis();
+            if (millis > 0) {
+                throughput = (job.getCompleted() + job.getFailed()) * 1000.0 / millis;
+            }
+        }
+        return BatchJobDto.builder()
+                .id(job.getId())
+                .model(job.getModel())
+                .status(job.getStatus())
+                .total(job.getTotal())
+                .completed(job.getCompleted())
+                .failed(job.getFailed())
+                .throughput(throughput)
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .updatedAt(job.getUpdatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+package org.aibles.backend_ai.service.bucket;
+
+import org.aibles.backend_ai.configuration.properties.ConversationShardProperties;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Names the month_bucket partitions of the conversation table. A month is split into count shards,
+ * "MM-yyyy:shard", chosen by the conversation id. Rows written before sharding live in the plain
+ * "MM-yyyy" bucket.
+ */
+public class ConversationBuckets {
+
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("MM-yyyy");
+
+    private static final String SHARD_SEPARATOR = ":";
+
+    private final int shardCount;
+
+    private final boolean readLegacyBucket;
+
+    public ConversationBuckets(ConversationShardProperties properties) {
+        if (properties.getCount() < 1) {
+            throw new IllegalArgumentException("backend-ai.conversation-shards.count must be positive");
+        }
+        this.shardCount = properties.getCount();
+        this.readLegacyBucket = properties.isReadLegacyBucket();
+    }
+
+    public static YearMonth monthOf(Instant instant) {
+        return YearMonth.from(instant.atZone(ZoneOffset.UTC));
+    }
+
+    public String legacyBucket(YearMonth month) {
+        return month.format(MONTH_FORMATTER);
+    }
+
+    public String bucketFor(YearMonth month, String conversationId) {
+        return legacyBucket(month) + SHARD_SEPARATOR + Math.floorMod(conversationId.hashCode(), shardCount);
+    }
+
+    /**
+     * @return every partition that may hold conversations created in the month
+     */
+    public List<String> bucketsOf(YearMonth month) {
+        String legacyBucket = legacyBucket(month);
+        List<String> buckets = new ArrayList<>(shardCount + 1);
+        for (int shard = 0; shard < shardCount; shard++) {
+            buckets.add(legacyBucket + SHARD_SEPARATOR + shard);
+        }
+        if (readLegacyBucket) {
+            buckets.add(legacyBucket);
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,48 @@
+package org.aibles.backend_ai.service.bucket;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Position in the conversation list: the month bucket to read next, the created_at to read from
+ * (inclusive) and the ids already returned at exactly that instant. Clients only see the encoded form.
+ */
+public record ConversationCursor(YearMonth month, Instant before, Set<String> seenIds) {
+
+    private static final String FIELD_SEPARATOR = "|";
+
+    private static final String ID_SEPARATOR = ",";
+
+    public static ConversationCursor startingAt(Instant before) {
+        return new ConversationCursor(ConversationBuckets.monthOf(before), before, Set.of());
+    }
+
+    public String encode() {
+        String value = month + FIELD_SEPARATOR + before.toEpochMilli() + FIELD_SEPARATOR + String.join(ID_SEPARATOR, seenIds);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException when the value was not produced by {@link #encode()}
+     */
+    public static ConversationCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] fields = value.split("\\|", -1);
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Set<String> seenIds = fields[2].isEmpty()
+                    ? Set.of()
+                    : Arrays.stream(fields[2].split(ID_SEPARATOR)).collect(Collectors.toUnmodifiableSet());
+            return new ConversationCursor(YearMonth.parse(fields[0]), Instant.ofEpochMilli(Long.parseLong(fields[1])), seenIds);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.aibles.backend_ai.service.bucket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.ConversationShardProperties;
+import org.aibles.backend_ai.entity.Conversation;
+import org.aibles.backend_ai.entity.ConversationKey;
+import org.aibles.backend_ai.repository.ConversationRepository;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.YearMonth;
+
+/**
+ * Copies conversations of the unsharded month buckets into their shard and then deletes the legacy row.
+ * Each row is moved independently, so an interrupted run can simply be started again.
+ * The runner is always registered and does nothing unless migration.enabled is set, so the switch is read at
+ * startup and not frozen into an ahead-of-time build.
+ */
+@Slf4j
+public class LegacyBucketMigration implements ApplicationRunner {
+
+    private static final int CONCURRENCY = 16;
+
+    private final ConversationRepository conversationRepository;
+
+    private final ConversationBuckets conversationBuckets;
+
+    private final ConversationShardProperties.Migration properties;
+
+    public LegacyBucketMigration(ConversationRepository conversationRepository,
+                                 ConversationBuckets conversationBuckets,
+                                 ConversationShardProperties.Migration properties) {
+        this.conversationRepository = conversationRepository;
+        this.conversationBuckets = conversationBuckets;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        YearMonth currentMonth = ConversationBuckets.monthOf(Instant.now());
+        Long moved = Flux.range(0, properties.getMonths())
+                .map(currentMonth::minusMonths)
+                .concatMap(this::migrateMonth)
+                .reduce(0L, Long::sum)
+                .block();
+        log.info("(run)moved {} conversations out of legacy buckets", moved);
+    }
+
+    private Mono<Long> migrateMonth(YearMonth month) {
+        String legacyBucket = conversationBuckets.legacyBucket(month);
+        log.info("(migrateMonth)bucket : {}", legacyBucket);
+        return conversationRepository.findAllInBucket(legacyBucket)
+                .flatMap(conversation -> moveToShard(month, conversation), CONCURRENCY)
+                .count();
+    }
+
+    private Mono<Conversation> moveToShard(YearMonth month, Conversation legacy) {
+        Conversation sharded = new Conversation(
+                new ConversationKey(conversationBuckets.bucketFor(month, legacy.getId()), legacy.getKey().getCreatedAt()),
+                legacy.getId(),
+                legacy.getTitle());
+        return conversationRepository.save(sharded)
+                .then(conversationRepository.delete(legacy))
+                .thenReturn(sharded);
+    }
+}
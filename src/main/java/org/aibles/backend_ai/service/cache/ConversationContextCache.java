@@ -0,0 +1,163 @@
+package org.aibles.backend_ai.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.ContextCacheProperties;
+import org.aibles.backend_ai.service.context.ContextTurn;
+import org.aibles.backend_ai.service.context.ConversationContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the ready-built context (rolling summary and recent question/answer pairs, oldest first) of recently
+ * active conversations, so that building the next prompt does not need to read Cassandra again.
+ */
+@Slf4j
+public class ConversationContextCache {
+
+    private static final String CACHE_NAME = "conversation_context";
+
+    private static final int MESSAGE_OVERHEAD_BYTES = 64;
+
+    /**
+     * How long a turn saved on this instance is merged into contexts read from Cassandra, well beyond the time
+     * the write-behind queue takes to write it.
+     */
+    private static final Duration RECENT_TURNS_TTL = Duration.ofMinutes(1);
+
+    private final Cache<String, ConversationContext> cache;
+
+    /**
+     * Last turns saved on this instance per conversation, a read of Cassandra that raced their write misses them.
+     */
+    private final Cache<String, List<ContextTurn>> recentTurns;
+
+    /**
+     * Sequence number of the last invalidation of each conversation, loads started before it do not cache their result.
+     */
+    private final Cache<String, Long> invalidations;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final int maxTurns;
+
+    public ConversationContextCache(ContextCacheProperties properties, int maxTurns, MeterRegistry meterRegistry) {
+        this.maxTurns = maxTurns;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxMemory().toBytes())
+                .weigher((String conversationId, ConversationContext context) -> weigh(context))
+                // a window kept warm by reads would never pick up turns saved by other instances
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        this.recentTurns = Caffeine.newBuilder()
+                .expireAfterWrite(RECENT_TURNS_TTL)
+                .build();
+        this.invalidations = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTtl())
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public Optional<ConversationContext> get(String conversationId) {
+        return Optional.ofNullable(cache.getIfPresent(conversationId));
+    }
+
+    public void put(String conversationId, ConversationContext context) {
+        cache.put(conversationId, new ConversationContext(context.summary(), List.copyOf(context.turns())));
+    }
+
+    /**
+     * Ticket to take before reading a conversation's context from Cassandra, handed back to {@link #putLoaded}.
+     */
+    public long startLoad() {
+        return sequence.get();
+    }
+
+    /**
+     * Caches a context read from Cassandra, with the turns saved on this instance that the read missed.
+     * A conversation invalidated since the load started is left alone, the next miss reads it again.
+     *
+     * @return the context with the missed turns
+     */
+    public ConversationContext putLoaded(String conversationId, long ticket, ConversationContext context) {
+        ConversationContext merged = withTurns(context, missedTurns(context, recentTurns.getIfPresent(conversationId)));
+        cache.asMap().compute(conversationId, (id, cached) -> {
+            Long invalidated = invalidations.getIfPresent(id);
+            if (invalidated != null && invalidated > ticket) {
+                return cached;
+            }
+            // a turn appended since the merge above is in the recent turns by now
+            return withTurns(merged, missedTurns(merged, recentTurns.getIfPresent(id)));
+        });
+        return merged;
+    }
+
+    /**
+     * Appends a finished turn to a cached context. A conversation that is not cached keeps the turn aside for
+     * the next load, its read of Cassandra may run before the turn is written.
+     */
+    public void append(String conversationId, ContextTurn turn) {
+        // under the entry's lock, so that a load caching its result either sees the turn or is appended to
+        cache.asMap().compute(conversationId, (id, context) -> {
+            recentTurns.asMap().merge(id, List.of(turn), (turns, added) -> last(concat(turns, added)));
+            return context == null ? null : withTurns(context, List.of(turn));
+        });
+    }
+
+    public void invalidate(String conversationId) {
+        log.info("(invalidate)conversationId : {}", conversationId);
+        invalidations.put(conversationId, sequence.incrementAndGet());
+        cache.invalidate(conversationId);
+    }
+
+    private ConversationContext withTurns(ConversationContext context, List<ContextTurn> turns) {
+        if (turns.isEmpty()) {
+            return new ConversationContext(context.summary(), List.copyOf(context.turns()));
+        }
+        return new ConversationContext(context.summary(), last(concat(context.turns(), turns)));
+    }
+
+    private List<ContextTurn> last(List<ContextTurn> turns) {
+        int overflow = turns.size() - maxTurns;
+        return List.copyOf(overflow > 0 ? turns.subList(overflow, turns.size()) : turns);
+    }
+
+    private static List<ContextTurn> missedTurns(ConversationContext context, List<ContextTurn> recent) {
+        if (recent == null) {
+            return List.of();
+        }
+        Instant newest = context.turns().isEmpty() ? Instant.MIN : context.turns().get(context.turns().size() - 1).createdAt();
+        return recent.stream().filter(turn -> turn.createdAt().isAfter(newest)).toList();
+    }
+
+    private static List<ContextTurn> concat(List<ContextTurn> turns, List<ContextTurn> added) {
+        List<ContextTurn> all = new ArrayList<>(turns.size() + added.size());
+        all.addAll(turns);
+        all.addAll(added);
+        return all;
+    }
+
+    private static int weigh(ConversationContext context) {
+        long bytes = 0;
+        if (context.summary() != null) {
+            bytes += MESSAGE_OVERHEAD_BYTES + 2L * context.summary().getSummary().length();
+        }
+        for (ContextTurn turn : context.turns()) {
+            bytes += 2 * MESSAGE_OVERHEAD_BYTES + 2L * (length(turn.question()) + length(turn.answer()));
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+}
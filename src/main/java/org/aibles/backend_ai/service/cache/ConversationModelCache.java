@@ -0,0 +1,99 @@
+package org.aibles.backend_ai.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.ModelCacheProperties;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Near-cache of conversation_metadata. The model of a conversation never changes once written, so known
+ * entries only leave the cache by size or idleness. Ids that Cassandra does not know are kept as short-lived
+ * tombstones, and ids that could never have been issued by saveConversation are rejected without a lookup.
+ */
+@Slf4j
+public class ConversationModelCache {
+
+    private static final String CACHE_NAME = "conversation_model";
+
+    private static final String MISSING_CACHE_NAME = "conversation_model_missing";
+
+    private static final int UUID_LENGTH = 36;
+
+    private final Cache<String, String> models;
+
+    private final Cache<String, Boolean> missing;
+
+    private final Counter malformedIds;
+
+    public ConversationModelCache(ModelCacheProperties properties, MeterRegistry meterRegistry) {
+        this.models = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterAccess(properties.getTtl())
+                .recordStats()
+                .build();
+        this.missing = Caffeine.newBuilder()
+                .maximumSize(properties.getMissingMaxSize())
+                .expireAfterWrite(properties.getMissingTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, models, CACHE_NAME);
+        CaffeineCacheMetrics.monitor(meterRegistry, missing, MISSING_CACHE_NAME);
+        this.malformedIds = Counter.builder("conversation.id.rejected")
+                .description("Conversation ids rejected because they are not well formed")
+                .register(meterRegistry);
+    }
+
+    public Optional<String> getModel(String conversationId) {
+        return Optional.ofNullable(models.getIfPresent(conversationId));
+    }
+
+    /**
+     * @return true when the id is malformed or was recently looked up and not found
+     */
+    public boolean isKnownMissing(String conversationId) {
+        if (!isWellFormed(conversationId)) {
+            malformedIds.increment();
+            return true;
+        }
+        return missing.getIfPresent(conversationId) != null;
+    }
+
+    public void put(String conversationId, String model) {
+        models.put(conversationId, model);
+        missing.invalidate(conversationId);
+    }
+
+    public void markMissing(String conversationId) {
+        missing.put(conversationId, Boolean.TRUE);
+    }
+
+    public void invalidate(String conversationId) {
+        log.info("(invalidate)conversationId : {}", conversationId);
+        models.invalidate(conversationId);
+        missing.invalidate(conversationId);
+    }
+
+    public void invalidateAll() {
+        log.info("(invalidateAll)");
+        models.invalidateAll();
+        missing.invalidateAll();
+    }
+
+    private static boolean isWellFormed(String conversationId) {
+        if (conversationId == null || conversationId.length() != UUID_LENGTH) {
+            return false;
+        }
+        try {
+            UUID.fromString(conversationId);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
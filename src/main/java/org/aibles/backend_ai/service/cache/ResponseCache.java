@@ -0,0 +1,188 @@
+package org.aibles.backend_ai.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.ResponseCacheProperties;
+import org.aibles.backend_ai.entity.CachedResponse;
+import org.aibles.backend_ai.repository.ResponseCacheRepository;
+import org.springframework.ai.chat.messages.Message;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Answers keyed by a hash of the model and the normalized context window. A hit is replayed as a stream,
+ * identical requests arriving while an answer is still generating share that one generation.
+ * Only models listed in backend-ai.response-cache.models take part.
+ */
+@Slf4j
+public class ResponseCache {
+
+    private static final String CACHE_NAME = "chat_response";
+
+    private static final String TITLE_MODEL = "title";
+
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+    private final ResponseCacheProperties properties;
+
+    private final ResponseCacheRepository responseCacheRepository;
+
+    private final Cache<String, String> answers;
+
+    private final ConcurrentMap<String, InFlightAnswer> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter coalesced;
+
+    public ResponseCache(ResponseCacheProperties properties,
+                         ResponseCacheRepository responseCacheRepository,
+                         MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.responseCacheRepository = responseCacheRepository;
+        this.answers = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxMemory().toBytes())
+                .weigher((String key, String answer) -> ENTRY_OVERHEAD_BYTES + 2 * answer.length())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, answers, CACHE_NAME);
+        this.coalesced = Counter.builder("chat.response.coalesced")
+                .description("Requests that joined an identical generation already in flight")
+                .register(meterRegistry);
+    }
+
+    public Flux<String> stream(String model, List<Message> messages, Supplier<Flux<String>> generator) {
+        if (!properties.getModels().contains(model)) {
+            return generator.get();
+        }
+        return cachedOrShared(model, messages, generator);
+    }
+
+    public Flux<String> streamTitle(List<Message> messages, Supplier<Flux<String>> generator) {
+        if (!properties.isTitles()) {
+            return generator.get();
+        }
+        return cachedOrShared(TITLE_MODEL, messages, generator);
+    }
+
+    private Flux<String> cachedOrShared(String model, List<Message> messages, Supplier<Flux<String>> generator) {
+        final String key = keyOf(model, messages);
+        return Flux.defer(() -> {
+            String answer = answers.getIfPresent(key);
+            if (answer != null) {
+                return replay(answer);
+            }
+            return findPersisted(key)
+                    .map(this::replay)
+                    .defaultIfEmpty(Flux.defer(() -> joinOrGenerate(key, model, generator)))
+                    .flatMapMany(stream -> stream);
+        });
+    }
+
+    private Mono<String> findPersisted(String key) {
+        if (!properties.getPersisted().isEnabled()) {
+            return Mono.empty();
+        }
+        return responseCacheRepository.findCached(key)
+                .map(CachedResponse::getAnswer)
+                .doOnNext(answer -> answers.put(key, answer))
+                .onErrorResume(e -> {
+                    log.warn("(findPersisted)response cache read failed, key : {}", key, e);
+                    return Mono.empty();
+                });
+    }
+
+    private Flux<String> joinOrGenerate(String key, String model, Supplier<Flux<String>> generator) {
+        boolean[] started = new boolean[1];
+        InFlightAnswer answer = inFlight.computeIfAbsent(key, k -> {
+            started[0] = true;
+            return new InFlightAnswer(k, model, generator.get());
+        });
+        if (!started[0]) {
+            coalesced.increment();
+        }
+        return answer.shared;
+    }
+
+    private Flux<String> replay(String answer) {
+        final int chunkSize = Math.max(1, properties.getReplayChunkSize());
+        Flux<String> chunks = Flux.range(0, (answer.length() + chunkSize - 1) / chunkSize)
+                .map(chunk -> answer.substring(chunk * chunkSize, Math.min(answer.length(), (chunk + 1) * chunkSize)));
+        return properties.getReplayChunkDelay().isZero()
+                ? chunks
+                : chunks.delayElements(properties.getReplayChunkDelay());
+    }
+
+    private void store(String key, String model, String answer) {
+        if (answer.isBlank()) {
+            return;
+        }
+        answers.put(key, answer);
+        if (!properties.getPersisted().isEnabled()) {
+            return;
+        }
+        responseCacheRepository.insertWithTtl(
+                        CachedResponse.builder().cacheKey(key).model(model).answer(answer).build(),
+                        properties.getPersisted().getTtl())
+                .subscribe(
+                        null,
+                        error -> log.warn("(store)response cache write failed, key : {}", key, error)
+                );
+    }
+
+    static String keyOf(String model, List<Message> messages) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            for (Message message : messages) {
+                digest.update((byte) 0);
+                digest.update(message.getMessageType().getValue().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(normalize(message.getText()).getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : WHITESPACES.matcher(text.strip()).replaceAll(" ");
+    }
+
+    /**
+     * One generation shared by every identical request arriving before it ends. Late joiners receive the
+     * tokens produced so far. The entry leaves the in-flight map before subscribers see the end of the
+     * stream, so requests arriving afterwards hit the cache instead.
+     */
+    private final class InFlightAnswer {
+
+        private final Flux<String> shared;
+
+        private InFlightAnswer(String key, String model, Flux<String> generation) {
+            StringBuilder answer = new StringBuilder();
+            this.shared = generation
+                    .doOnNext(answer::append)
+                    .doOnComplete(() -> store(key, model, answer.toString()))
+                    .doOnTerminate(() -> inFlight.remove(key, this))
+                    .doOnCancel(() -> inFlight.remove(key, this))
+                    .replay()
+                    .refCount();
+        }
+    }
+}
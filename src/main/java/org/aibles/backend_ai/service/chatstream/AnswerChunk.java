@@ -0,0 +1,12 @@
+package org.aibles.backend_ai.service.chatstream;
+
+/**
+ * A piece of a streamed answer. usage is set on the chunks that carry the backend's token counts, usually the
+ * last one, and null on the others.
+ */
+public record AnswerChunk(String text, TokenUsage usage) {
+
+    public static AnswerChunk of(String text) {
+        return new AnswerChunk(text, null);
+    }
+}
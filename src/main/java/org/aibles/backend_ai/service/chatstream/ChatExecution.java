@@ -0,0 +1,58 @@
+package org.aibles.backend_ai.service.chatstream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.ExecutionProperties;
+import org.aibles.backend_ai.constant.ExecutionMode;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Threads the chat pipeline runs on. In {@link ExecutionMode#EVENT_LOOP} nothing hops: every stage runs on the
+ * Netty or Cassandra driver thread that signals it, so model adapters must not block. In
+ * {@link ExecutionMode#VIRTUAL_THREADS} model streams and answer saves are subscribed on a virtual thread each,
+ * a blocking adapter then parks its virtual thread instead of holding an event loop or a pooled thread.
+ */
+@Slf4j
+public class ChatExecution implements DisposableBean {
+
+    private final ExecutionMode mode;
+
+    private final Scheduler scheduler;
+
+    public ChatExecution(ExecutionProperties properties) {
+        this.mode = properties.getMode();
+        this.scheduler = mode == ExecutionMode.VIRTUAL_THREADS
+                ? Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "chat-virtual")
+                : null;
+        log.info("(ChatExecution)mode : {}", mode);
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    /**
+     * The stream is assembled and subscribed on the execution's thread, so adapters that block while building
+     * their request are covered as well.
+     */
+    public <T> Flux<T> onModelThread(Supplier<Flux<T>> stream) {
+        return scheduler == null ? stream.get() : Flux.defer(stream).subscribeOn(scheduler);
+    }
+
+    public <T> Mono<T> onSaveThread(Mono<T> save) {
+        return scheduler == null ? save : save.subscribeOn(scheduler);
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package org.aibles.backend_ai.service.chatstream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * Latency and throughput of token streams, tagged by model. The same stream meters are recorded for two
+ * stages: {@link #ANSWER} is the stream as the client sees it (cache hits and admission wait included),
+ * {@link #GENERATION} is the raw stream of the model backend.
+ */
+public class ChatStreamMetrics {
+
+    public static final String ANSWER = "chat.answer";
+
+    public static final String GENERATION = "chat.generation";
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private static final double FIRST_TOKEN_EWMA_WEIGHT = 0.1;
+
+    private static final double FIRST_TOKEN_HALF_LIFE_NANOS = Duration.ofSeconds(30).toNanos();
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, StreamMeters> streamMeters = new ConcurrentHashMap<>();
+
+    /**
+     * Moving average of the answers' time to first token over all models.
+     */
+    private final AtomicReference<FirstTokenAverage> answerFirstToken =
+            new AtomicReference<>(new FirstTokenAverage(0, System.nanoTime()));
+
+    public ChatStreamMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Times loading the conversation's model and building its context window, tagged by the model found.
+     */
+    public <T> Mono<T> timeContextBuild(Mono<T> contextBuild, Function<T, String> modelOf) {
+        return Mono.defer(() -> {
+            final Timer.Sample sample = Timer.start(meterRegistry);
+            return contextBuild
+                    .doOnNext(context -> sample.stop(contextBuildTimer(modelOf.apply(context), "success")))
+                    .doOnError(e -> sample.stop(contextBuildTimer("unknown", "error")));
+        });
+    }
+
+    public Flux<String> observe(String stage, String model, Flux<String> tokens) {
+        return observe(stage, model, tokens, Function.identity());
+    }
+
+    /**
+     * Observes a stream of answer chunks by their text.
+     */
+    public Flux<AnswerChunk> observeChunks(String stage, String model, Flux<AnswerChunk> chunks) {
+        return observe(stage, model, chunks, AnswerChunk::text);
+    }
+
+    private <T> Flux<T> observe(String stage, String model, Flux<T> tokens, Function<T, String> textOf) {
+        return Flux.defer(() -> {
+            final StreamObservation observation = new StreamObservation(
+                    streamMeters.computeIfAbsent(stage + ':' + model, key -> new StreamMeters(stage, model)),
+                    ANSWER.equals(stage) ? this::recordAnswerFirstToken : nanos -> {
+                    });
+            return tokens
+                    .doOnNext(token -> observation.onToken(textOf.apply(token)))
+                    .doFinally(observation::onFinally);
+        });
+    }
+
+    /**
+     * Moving average of the time to first token of answers, all models together. Zero until the first answer.
+     * It halves every 30 seconds without answers, so that streams shed for a slow first token are
+     * let through again once nothing confirms that answers are still slow.
+     */
+    public Duration recentAnswerFirstToken() {
+        return recentAnswerFirstToken(System.nanoTime());
+    }
+
+    Duration recentAnswerFirstToken(long now) {
+        return Duration.ofNanos((long) answerFirstToken.get().at(now));
+    }
+
+    /**
+     * Each answer weighs FIRST_TOKEN_EWMA_WEIGHT, or what the average lost since the previous answer when that
+     * is more, so that the first answer after a quiet period counts fully rather than a tenth of it. The very
+     * first answer is the average.
+     */
+    void recordAnswerFirstToken(long nanos, long now) {
+        answerFirstToken.getAndUpdate(previous -> {
+            double decay = previous.decayAt(now);
+            double average = previous.average() * decay;
+            double weight = previous.average() == 0 ? 1 : Math.max(FIRST_TOKEN_EWMA_WEIGHT, 1 - decay);
+            return new FirstTokenAverage(average + weight * (nanos - average), Math.max(now, previous.updatedAt()));
+        });
+    }
+
+    private void recordAnswerFirstToken(long nanos) {
+        recordAnswerFirstToken(nanos, System.nanoTime());
+    }
+
+    /**
+     * Counts a generation stopped because its clients went away, tagged whether a partial answer was saved.
+     */
+    public void generationCancelled(String model, boolean partialSaved) {
+        Counter.builder("chat.generation.cancelled")
+                .description("Generations cancelled after their clients disconnected")
+                .tag("model", model)
+                .tag("partial_saved", String.valueOf(partialSaved))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private Timer contextBuildTimer(String model, String outcome) {
+        return Timer.builder("chat.context.build")
+                .description("Time to load the conversation's model and build its context window")
+                .tag("model", model)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    static int utf8Length(String token) {
+        int bytes = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private final class StreamMeters {
+
+        private final String stage;
+
+        private final String model;
+
+        private final Timer firstToken;
+
+        private final Timer interToken;
+
+        private final Counter tokens;
+
+        private final Counter bytes;
+
+        private final DistributionSummary tokensPerSecond;
+
+        private final DistributionSummary bytesPerSecond;
+
+        private StreamMeters(String stage, String model) {
+            this.stage = stage;
+            this.model = model;
+            this.firstToken = Timer.builder(stage + ".first_token")
+                    .description("Time from subscription to the first token")
+                    .tag("model", model)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.interToken = Timer.builder(stage + ".inter_token")
+                    .description("Time between two consecutive tokens")
+                    .tag("model", model)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.tokens = Counter.builder(stage + ".tokens")
+                    .description("Tokens streamed")
+                    .tag("model", model)
+                    .register(meterRegistry);
+            this.bytes = Counter.builder(stage + ".bytes")
+                    .description("UTF-8 bytes streamed")
+                    .baseUnit("bytes")
+                    .tag("model", model)
+                    .register(meterRegistry);
+            this.tokensPerSecond = DistributionSummary.builder(stage + ".tokens.rate")
+                    .description("Tokens per second of a stream, from its first token to its end")
+                    .baseUnit("tokens/s")
+                    .tag("model", model)
+                    .register(meterRegistry);
+            this.bytesPerSecond = DistributionSummary.builder(stage + ".bytes.rate")
+                    .description("Bytes per second of a stream, from its first token to its end")
+                    .baseUnit("bytes/s")
+                    .tag("model", model)
+                    .register(meterRegistry);
+        }
+
+        private Timer duration(String outcome) {
+            return Timer.builder(stage + ".duration")
+                    .description("Time from subscription to the end of the stream")
+                    .tag("model", model)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+
+    private record FirstTokenAverage(double average, long updatedAt) {
+
+        private double at(long now) {
+            return average * decayAt(now);
+        }
+
+        private double decayAt(long now) {
+            return Math.pow(0.5, Math.max(now - updatedAt, 0) / FIRST_TOKEN_HALF_LIFE_NANOS);
+        }
+    }
+
+    /**
+     * State of one subscription. Tokens of a stream are signalled serially, so it needs no locking.
+     */
+    private static final class StreamObservation {
+
+        private final StreamMeters meters;
+
+        private final LongConsumer onFirstToken;
+
+        private final long subscribedAt = System.nanoTime();
+
+        private long firstTokenAt;
+
+        private long lastTokenAt;
+
+        private long tokenCount;
+
+        private long byteCount;
+
+        private StreamObservation(StreamMeters meters, LongConsumer onFirstToken) {
+            this.meters = meters;
+            this.onFirstToken = onFirstToken;
+        }
+
+        private void onToken(String token) {
+            final long now = System.nanoTime();
+            if (tokenCount == 0) {
+                firstTokenAt = now;
+                meters.firstToken.record(now - subscribedAt, TimeUnit.NANOSECONDS);
+                onFirstToken.accept(now - subscribedAt);
+            } else {
+                meters.interToken.record(now - lastTokenAt, TimeUnit.NANOSECONDS);
+            }
+            lastTokenAt = now;
+            final int tokenBytes = utf8Length(token);
+            tokenCount++;
+            byteCount += tokenBytes;
+            meters.tokens.increment();
+            meters.bytes.increment(tokenBytes);
+        }
+
+        private void onFinally(SignalType signal) {
+            final long now = System.nanoTime();
+            meters.duration(outcomeOf(signal)).record(now - subscribedAt, TimeUnit.NANOSECONDS);
+            if (tokenCount > 1 && lastTokenAt > firstTokenAt) {
+                final double seconds = (lastTokenAt - firstTokenAt) / NANOS_PER_SECOND;
+                meters.tokensPerSecond.record(tokenCount / seconds);
+                meters.bytesPerSecond.record(byteCount / seconds);
+            }
+        }
+
+        private static String outcomeOf(SignalType signal) {
+            return switch (signal) {
+                case ON_COMPLETE -> "completed";
+                case CANCEL -> "cancelled";
+                default -> "error";
+            };
+        }
+    }
+}
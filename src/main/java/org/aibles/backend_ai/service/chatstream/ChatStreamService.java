@@ -7,5 +7,17 @@ import java.util.List;
 
 public interface ChatStreamService {
 
-    Flux<String> streamAnswer(List<Message> messages);
+    /**
+     * Reactor context key of the conversation a stream answers, for backends that route by conversation.
+     */
+    String CONVERSATION_ID = "backend-ai.conversation-id";
+
+    /**
+     * The answer with the token usage the backend reports along with it.
+     */
+    Flux<AnswerChunk> stream(List<Message> messages);
+
+    default Flux<String> streamAnswer(List<Message> messages) {
+        return stream(messages).map(AnswerChunk::text);
+    }
 }
@@ -0,0 +1,152 @@
+package org.aibles.backend_ai.service.chatstream;
+
+import org.aibles.backend_ai.configuration.properties.SseFrameProperties;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers the tokens of a stream into larger frames, so that an answer is sent as tens of SSE events instead
+ * of thousands. A frame is sent once it reaches the frame size or once its oldest token has waited for the
+ * window. The first token is always sent alone, coalescing never adds to the time to first token.
+ */
+public class TokenFrameCoalescer {
+
+    private final SseFrameProperties properties;
+
+    private final Scheduler scheduler;
+
+    public TokenFrameCoalescer(SseFrameProperties properties) {
+        this.properties = properties;
+        this.scheduler = Schedulers.parallel();
+    }
+
+    /**
+     * Coalesces when the client asked for it with a window or a frame size, or when it is enabled for every
+     * stream. Values asked for are clamped to the configured maximums, missing ones take the defaults.
+     */
+    public Flux<String> coalesce(Flux<String> tokens, Integer windowMillis, Integer frameBytes) {
+        if (windowMillis == null && frameBytes == null && !properties.isEnabled()) {
+            return tokens;
+        }
+        final Duration window = windowMillis == null
+                ? properties.getWindow()
+                : clamp(Duration.ofMillis(Math.max(0, windowMillis)), properties.getMaxWindow());
+        final long frameSize = frameBytes == null
+                ? properties.getFrameSize().toBytes()
+                : Math.min(Math.max(0, frameBytes), properties.getMaxFrameSize().toBytes());
+        if (window.isZero() && frameSize <= 1) {
+            return tokens;
+        }
+        return Flux.create(sink -> tokens.subscribe(new FrameAssembler(sink, window, frameSize, scheduler.createWorker())));
+    }
+
+    private static Duration clamp(Duration value, Duration max) {
+        return value.compareTo(max) > 0 ? max : value;
+    }
+
+    /**
+     * Guarded by its own monitor: tokens arrive on the model's thread, window flushes on the timer's.
+     */
+    private static final class FrameAssembler implements CoreSubscriber<String> {
+
+        private final FluxSink<String> sink;
+
+        private final long windowNanos;
+
+        private final long frameSize;
+
+        private final Scheduler.Worker worker;
+
+        private final StringBuilder frame = new StringBuilder();
+
+        private long frameBytes;
+
+        private boolean firstSent;
+
+        private Disposable windowTimer;
+
+        private FrameAssembler(FluxSink<String> sink, Duration window, long frameSize, Scheduler.Worker worker) {
+            this.sink = sink;
+            this.windowNanos = window.toNanos();
+            this.frameSize = frameSize;
+            this.worker = worker;
+        }
+
+        /**
+         * The downstream context, so that the token stream sees the conversation id and whatever else the
+         * subscriber put into it.
+         */
+        @Override
+        public Context currentContext() {
+            return Context.of(sink.contextView());
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            sink.onDispose(() -> {
+                subscription.cancel();
+                worker.dispose();
+            });
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public synchronized void onNext(String token) {
+            if (!firstSent) {
+                firstSent = true;
+                sink.next(token);
+                return;
+            }
+            frame.append(token);
+            frameBytes += ChatStreamMetrics.utf8Length(token);
+            if (frameSize > 0 && frameBytes >= frameSize) {
+                flush();
+            } else if (windowTimer == null && windowNanos > 0) {
+                windowTimer = worker.schedule(this::onWindowEnd, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            synchronized (this) {
+                flush();
+            }
+            sink.error(error);
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (this) {
+                flush();
+            }
+            sink.complete();
+        }
+
+        private synchronized void onWindowEnd() {
+            windowTimer = null;
+            flush();
+        }
+
+        private void flush() {
+            if (windowTimer != null) {
+                windowTimer.dispose();
+                windowTimer = null;
+            }
+            if (frame.isEmpty()) {
+                return;
+            }
+            sink.next(frame.toString());
+            frame.setLength(0);
+            frameBytes = 0;
+        }
+    }
+}
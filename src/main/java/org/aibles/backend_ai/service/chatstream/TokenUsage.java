@@ -0,0 +1,37 @@
+package org.aibles.backend_ai.service.chatstream;
+
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+
+/**
+ * Tokens a backend reports for one generation.
+ */
+public record TokenUsage(long promptTokens, long completionTokens) {
+
+    /**
+     * @return the usage in a response's metadata, null when the response carries none
+     */
+    public static TokenUsage of(ChatResponse chatRsp) {
+        if (chatRsp == null || chatRsp.getMetadata() == null) {
+            return null;
+        }
+        Usage usage = chatRsp.getMetadata().getUsage();
+        if (usage == null) {
+            return null;
+        }
+        long promptTokens = usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+        long completionTokens = usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+        return promptTokens == 0 && completionTokens == 0 ? null : new TokenUsage(promptTokens, completionTokens);
+    }
+
+    /**
+     * Backends report running totals, on the last chunk or on several of them, so the largest count of each
+     * kind is the usage of the generation.
+     */
+    public TokenUsage max(TokenUsage other) {
+        if (other == null) {
+            return this;
+        }
+        return new TokenUsage(Math.max(promptTokens, other.promptTokens), Math.max(completionTokens, other.completionTokens));
+    }
+}
@@ -0,0 +1,22 @@
+package org.aibles.backend_ai.service.chatstream.admission;
+
+import lombok.Getter;
+
+@Getter
+public class AdmissionRejectedException extends RuntimeException {
+
+    public enum Reason {
+        QUEUE_FULL,
+        QUEUE_TIMEOUT
+    }
+
+    private final String model;
+
+    private final Reason reason;
+
+    public AdmissionRejectedException(String model, Reason reason) {
+        super("Model " + model + " is busy (" + reason.name().toLowerCase() + "), please retry later");
+        this.model = model;
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,74 @@
+package org.aibles.backend_ai.service.chatstream.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.AdmissionProperties;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Admits chat streams per model: at most maxInFlight generations run at once, further streams wait in a
+ * bounded queue and fail with {@link AdmissionRejectedException} when it is full or their wait times out.
+ */
+@Slf4j
+public class ModelAdmissionScheduler {
+
+    private final AdmissionProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, ModelBulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public ModelAdmissionScheduler(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        if (properties.getDefaultPriority() <= 0 || properties.getDefaultPriority() > properties.getMaxPriority()) {
+            throw new IllegalArgumentException("backend-ai.admission.default-priority must be between 1 and "
+                    + properties.getMaxPriority() + ", 0 is the priority of background work");
+        }
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Subscribes to the stream once a slot of the model is free and keeps the slot until the stream
+     * completes, fails or is cancelled.
+     */
+    public <T> Flux<T> admit(String model, String conversationId, Integer priority, Supplier<Flux<T>> stream) {
+        ModelBulkhead bulkhead = bulkheads.computeIfAbsent(model,
+                name -> new ModelBulkhead(name, properties.limitsOf(name), meterRegistry));
+        return Flux.usingWhen(
+                bulkhead.acquire(conversationId, clampPriority(priority)),
+                permit -> stream.get(),
+                permit -> Mono.fromRunnable(permit::release),
+                (permit, error) -> Mono.fromRunnable(permit::release),
+                permit -> Mono.fromRunnable(permit::release));
+    }
+
+    /**
+     * Priority of client streams that carry none, work queued behind clients must stay below it.
+     */
+    public int defaultPriority() {
+        return properties.getDefaultPriority();
+    }
+
+    /**
+     * Priority of a client stream, from the tier the gateway put in the tier header. Null when the header is
+     * not trusted or the tier has no priority configured, the stream then gets the default priority.
+     */
+    public Integer priorityOf(String tier) {
+        if (!properties.isTrustTierHeader() || tier == null) {
+            return null;
+        }
+        return properties.getTiers().get(tier);
+    }
+
+    private int clampPriority(Integer priority) {
+        if (priority == null) {
+            return properties.getDefaultPriority();
+        }
+        return Math.max(0, Math.min(priority, properties.getMaxPriority()));
+    }
+}
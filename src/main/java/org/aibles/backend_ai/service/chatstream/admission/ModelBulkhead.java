@@ -0,0 +1,237 @@
+package org.aibles.backend_ai.service.chatstream.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aibles.backend_ai.configuration.properties.AdmissionProperties;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-flight limit and waiting queue of one model. Waiters are served by priority, and within a priority
+ * round-robin over conversations, so one conversation sending many prompts cannot starve the others.
+ * All state is guarded by the bulkhead's monitor, sinks are only completed outside of it.
+ */
+class ModelBulkhead {
+
+    private final String model;
+
+    private final AdmissionProperties.Limits limits;
+
+    private final TreeMap<Integer, LinkedHashMap<String, ArrayDeque<Waiter>>> waiting = new TreeMap<>(Comparator.reverseOrder());
+
+    private int inFlight;
+
+    private int queued;
+
+    private final Timer waitTime;
+
+    private final Counter queueFull;
+
+    private final Counter queueTimeout;
+
+    ModelBulkhead(String model, AdmissionProperties.Limits limits, MeterRegistry meterRegistry) {
+        this.model = model;
+        this.limits = limits;
+        Gauge.builder("chat.admission.queue", this, ModelBulkhead::queued)
+                .description("Streams waiting for a generation slot")
+                .tag("model", model)
+                .register(meterRegistry);
+        Gauge.builder("chat.admission.in_flight", this, ModelBulkhead::inFlight)
+                .description("Streams currently generating")
+                .tag("model", model)
+                .register(meterRegistry);
+        this.waitTime = Timer.builder("chat.admission.wait")
+                .description("Time a stream waited for a generation slot")
+                .tag("model", model)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueFull = rejections(meterRegistry, AdmissionRejectedException.Reason.QUEUE_FULL);
+        this.queueTimeout = rejections(meterRegistry, AdmissionRejectedException.Reason.QUEUE_TIMEOUT);
+    }
+
+    private Counter rejections(MeterRegistry meterRegistry, AdmissionRejectedException.Reason reason) {
+        return Counter.builder("chat.admission.rejected")
+                .description("Streams rejected before generation started")
+                .tag("model", model)
+                .tag("reason", reason.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    Mono<AdmissionPermit> acquire(String conversationId, int priority) {
+        return Mono.create(sink -> {
+            final long enqueuedAt = System.nanoTime();
+            final Waiter waiter;
+            synchronized (this) {
+                if (inFlight < limits.getMaxInFlight() && queued == 0) {
+                    inFlight++;
+                    waiter = null;
+                } else if (queued >= limits.getMaxQueued()) {
+                    waiter = null;
+                    queueFull.increment();
+                    sink.error(new AdmissionRejectedException(model, AdmissionRejectedException.Reason.QUEUE_FULL));
+                    return;
+                } else {
+                    waiter = new Waiter(sink, conversationId, priority, enqueuedAt);
+                    waiting.computeIfAbsent(priority, p -> new LinkedHashMap<>())
+                            .computeIfAbsent(conversationId, id -> new ArrayDeque<>())
+                            .add(waiter);
+                    queued++;
+                }
+            }
+            if (waiter == null) {
+                waitTime.record(0, TimeUnit.NANOSECONDS);
+                sink.success(new AdmissionPermit(this));
+                return;
+            }
+            waiter.timeout = Schedulers.parallel().schedule(
+                    () -> expire(waiter),
+                    limits.getQueueTimeout().toMillis(),
+                    TimeUnit.MILLISECONDS);
+            sink.onCancel(() -> cancel(waiter));
+        });
+    }
+
+    void release() {
+        Waiter next;
+        synchronized (this) {
+            next = pollNext();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+            next.granted = true;
+        }
+        next.timeout.dispose();
+        waitTime.record(System.nanoTime() - next.enqueuedAt, TimeUnit.NANOSECONDS);
+        next.sink.success(new AdmissionPermit(this));
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            if (waiter.granted || !remove(waiter)) {
+                return;
+            }
+        }
+        queueTimeout.increment();
+        waiter.sink.error(new AdmissionRejectedException(model, AdmissionRejectedException.Reason.QUEUE_TIMEOUT));
+    }
+
+    private void cancel(Waiter waiter) {
+        boolean granted;
+        synchronized (this) {
+            granted = waiter.granted;
+            if (!granted) {
+                remove(waiter);
+            }
+        }
+        waiter.timeout.dispose();
+        if (granted) {
+            // the permit was handed over while the subscriber went away, pass it on
+            release();
+        }
+    }
+
+    private Waiter pollNext() {
+        Iterator<Map.Entry<Integer, LinkedHashMap<String, ArrayDeque<Waiter>>>> priorities = waiting.entrySet().iterator();
+        while (priorities.hasNext()) {
+            LinkedHashMap<String, ArrayDeque<Waiter>> conversations = priorities.next().getValue();
+            Iterator<Map.Entry<String, ArrayDeque<Waiter>>> turn = conversations.entrySet().iterator();
+            if (!turn.hasNext()) {
+                priorities.remove();
+                continue;
+            }
+            Map.Entry<String, ArrayDeque<Waiter>> first = turn.next();
+            Waiter waiter = first.getValue().poll();
+            turn.remove();
+            if (!first.getValue().isEmpty()) {
+                // the conversation goes to the back of its priority's round
+                conversations.put(first.getKey(), first.getValue());
+            }
+            if (conversations.isEmpty()) {
+                priorities.remove();
+            }
+            queued--;
+            return waiter;
+        }
+        return null;
+    }
+
+    private boolean remove(Waiter waiter) {
+        LinkedHashMap<String, ArrayDeque<Waiter>> conversations = waiting.get(waiter.priority);
+        if (conversations == null) {
+            return false;
+        }
+        ArrayDeque<Waiter> waiters = conversations.get(waiter.conversationId);
+        if (waiters == null || !waiters.remove(waiter)) {
+            return false;
+        }
+        if (waiters.isEmpty()) {
+            conversations.remove(waiter.conversationId);
+            if (conversations.isEmpty()) {
+                waiting.remove(waiter.priority);
+            }
+        }
+        queued--;
+        return true;
+    }
+
+    synchronized int queued() {
+        return queued;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    private static final class Waiter {
+
+        private final MonoSink<AdmissionPermit> sink;
+
+        private final String conversationId;
+
+        private final int priority;
+
+        private final long enqueuedAt;
+
+        private volatile Disposable timeout = () -> { };
+
+        private boolean granted;
+
+        private Waiter(MonoSink<AdmissionPermit> sink, String conversationId, int priority, long enqueuedAt) {
+            this.sink = sink;
+            this.conversationId = conversationId;
+            this.priority = priority;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    static final class AdmissionPermit {
+
+        private final ModelBulkhead bulkhead;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private AdmissionPermit(ModelBulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release();
+            }
+        }
+    }
+}
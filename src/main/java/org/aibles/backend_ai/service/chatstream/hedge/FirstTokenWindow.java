@@ -0,0 +1,42 @@
+package org.aibles.backend_ai.service.chatstream.hedge;
+
+import java.util.Arrays;
+
+/**
+ * The last few times to first token of a backend, in nanoseconds.
+ */
+final class FirstTokenWindow {
+
+    private final long[] samples;
+
+    private int next;
+
+    private int size;
+
+    FirstTokenWindow(int capacity) {
+        this.samples = new long[Math.max(1, capacity)];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Nearest-rank percentile of the window, or -1 when it is empty.
+     */
+    synchronized long percentile(double percentile) {
+        if (size == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(Math.min(1, Math.max(0, percentile)) * size);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
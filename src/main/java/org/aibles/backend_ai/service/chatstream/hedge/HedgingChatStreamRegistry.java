@@ -0,0 +1,168 @@
+package org.aibles.backend_ai.service.chatstream.hedge;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.HedgingProperties;
+import org.aibles.backend_ai.service.chatstream.AnswerChunk;
+import org.aibles.backend_ai.service.chatstream.ChatStreamRegistry;
+import org.aibles.backend_ai.service.chatstream.ChatStreamService;
+import org.aibles.backend_ai.service.chatstream.admission.ModelAdmissionScheduler;
+import org.springframework.ai.chat.messages.Message;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Hedges the streams of the models listed in backend-ai.hedging.models. When the primary backend has not
+ * produced its first token after the hedge delay, the same prompt is started on the secondary backend. The
+ * stream that produces a token first is kept and the other one is cancelled. A primary failing before the
+ * delay fails over to the secondary once the delay is over. The secondary stream is admitted by the secondary
+ * model's bulkhead at the lowest priority, like any other stream of that model, so hedges cannot overload it.
+ */
+@Slf4j
+public class HedgingChatStreamRegistry implements ChatStreamRegistry {
+
+    private static final int HEDGE_PRIORITY = 0;
+
+    private final ChatStreamRegistry delegate;
+
+    private final ModelAdmissionScheduler admissionScheduler;
+
+    private final HedgingProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, FirstTokenWindow> firstTokens = new ConcurrentHashMap<>();
+
+    public HedgingChatStreamRegistry(ChatStreamRegistry delegate,
+                                     ModelAdmissionScheduler admissionScheduler,
+                                     HedgingProperties properties,
+                                     MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.admissionScheduler = admissionScheduler;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ChatStreamService getChatStreamService(String modelName) {
+        ChatStreamService primary = delegate.getChatStreamService(modelName);
+        HedgingProperties.Hedge hedge = properties.isEnabled() ? properties.getModels().get(modelName) : null;
+        if (hedge == null || hedge.getSecondary() == null) {
+            return primary;
+        }
+        return messages -> hedged(modelName, primary, hedge, messages);
+    }
+
+    private Flux<AnswerChunk> hedged(String model, ChatStreamService primary, HedgingProperties.Hedge hedge, List<Message> messages) {
+        return Flux.deferContextual(context -> {
+            final FirstTokenWindow window = firstTokens.computeIfAbsent(model, name -> new FirstTokenWindow(hedge.getWindow()));
+            final Duration delay = delayOf(hedge, window);
+            final AtomicBoolean decided = new AtomicBoolean();
+            delayTimer(model).record(delay);
+
+            Flux<AnswerChunk> primaryLeg = leg(model, model, decided, window, () -> primary.stream(messages));
+            Flux<AnswerChunk> secondaryLeg = leg(model, hedge.getSecondary(), decided, null, () -> {
+                log.info("(hedged)model : {}, no first token after {}, starting : {}", model, delay, hedge.getSecondary());
+                launched(model, hedge.getSecondary()).increment();
+                return admissionScheduler.admit(hedge.getSecondary(),
+                        context.getOrDefault(ChatStreamService.CONVERSATION_ID, ""),
+                        HEDGE_PRIORITY,
+                        () -> delegate.getChatStreamService(hedge.getSecondary()).stream(messages));
+            }).delaySubscription(delay);
+
+            return Flux.firstWithValue(primaryLeg, secondaryLeg);
+        });
+    }
+
+    /**
+     * One side of the race. The first leg to produce a token is counted as the winner, a leg cancelled before
+     * that is counted as wasted work. The primary's times to first token feed the learned delay, a primary that
+     * lost is recorded with the time it had run, a lower bound of its real time to first token.
+     */
+    private Flux<AnswerChunk> leg(String primary,
+                             String backend,
+                             AtomicBoolean decided,
+                             FirstTokenWindow window,
+                             Supplier<Flux<AnswerChunk>> stream) {
+        return Flux.defer(() -> {
+            final long startedAt = System.nanoTime();
+            // the first chunk and a cancel can arrive on different threads, only one of them settles the leg
+            final AtomicBoolean waiting = new AtomicBoolean(true);
+            return stream.get()
+                    .doOnNext(chunk -> {
+                        if (waiting.compareAndSet(true, false)) {
+                            if (window != null) {
+                                window.record(System.nanoTime() - startedAt);
+                            }
+                            if (decided.compareAndSet(false, true)) {
+                                won(primary, backend).increment();
+                            }
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (waiting.compareAndSet(true, false)) {
+                            final long ran = System.nanoTime() - startedAt;
+                            if (window != null) {
+                                window.record(ran);
+                            }
+                            wasted(primary, backend).record(ran, TimeUnit.NANOSECONDS);
+                        }
+                    });
+        });
+    }
+
+    private static Duration delayOf(HedgingProperties.Hedge hedge, FirstTokenWindow window) {
+        Duration delay;
+        if (hedge.getDelay() != null) {
+            delay = hedge.getDelay();
+        } else if (window.size() < hedge.getMinSamples()) {
+            delay = hedge.getInitialDelay();
+        } else {
+            delay = Duration.ofNanos(window.percentile(hedge.getPercentile()));
+        }
+        if (delay.compareTo(hedge.getMinDelay()) < 0) {
+            return hedge.getMinDelay();
+        }
+        return delay.compareTo(hedge.getMaxDelay()) > 0 ? hedge.getMaxDelay() : delay;
+    }
+
+    private Timer delayTimer(String primary) {
+        return Timer.builder("chat.hedge.delay")
+                .description("Time a hedged stream waits for the primary's first token before starting the secondary")
+                .tag("primary", primary)
+                .register(meterRegistry);
+    }
+
+    private Counter launched(String primary, String secondary) {
+        return Counter.builder("chat.hedge.launched")
+                .description("Secondary streams started because the primary was slow to its first token")
+                .tag("primary", primary)
+                .tag("secondary", secondary)
+                .register(meterRegistry);
+    }
+
+    private Counter won(String primary, String winner) {
+        return Counter.builder("chat.hedge.won")
+                .description("Hedged streams by the backend that produced the first token")
+                .tag("primary", primary)
+                .tag("winner", winner)
+                .register(meterRegistry);
+    }
+
+    private Timer wasted(String primary, String loser) {
+        return Timer.builder("chat.hedge.wasted")
+                .description("Time a losing backend ran before it was cancelled")
+                .tag("primary", primary)
+                .tag("loser", loser)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,93 @@
+package org.aibles.backend_ai.service.chatstream.model;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.ModelRegistryProperties;
+import org.aibles.backend_ai.configuration.properties.ModelRegistryProperties.ModelDefinition;
+import org.aibles.backend_ai.constant.ModelBackend;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * The models declared in backend-ai.model-registry, when each of them last served traffic and how long their
+ * backends took to load them.
+ */
+@Slf4j
+public class ModelRegistry {
+
+    public static final String CAUSE_WARM_UP = "warm_up";
+
+    public static final String CAUSE_KEEP_ALIVE = "keep_alive";
+
+    public static final String CAUSE_TRAFFIC = "traffic";
+
+    private final ModelRegistryProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, Long> lastUsed = new ConcurrentHashMap<>();
+
+    public ModelRegistry(ModelRegistryProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        final long now = System.nanoTime();
+        // declared models count as used at startup, so they are kept resident for one active window
+        properties.getModels().keySet().forEach(name -> lastUsed.put(name, now));
+    }
+
+    public ModelDefinition definitionOf(String name) {
+        ModelDefinition definition = properties.getModels().get(name);
+        if (definition == null) {
+            throw new IllegalArgumentException("model " + name + " is not declared in " + ModelRegistryProperties.PREFIX);
+        }
+        return definition;
+    }
+
+    public Map<String, ModelDefinition> ollamaModels() {
+        return properties.getModels().entrySet().stream()
+                .filter(entry -> entry.getValue().getBackend() == ModelBackend.OLLAMA)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    public void used(String name) {
+        lastUsed.put(name, System.nanoTime());
+    }
+
+    /**
+     * Nanoseconds since the model last served traffic.
+     */
+    public long idleNanos(String name) {
+        return System.nanoTime() - lastUsed.getOrDefault(name, 0L);
+    }
+
+    public void recordLoad(String name, String cause, Duration loadDuration) {
+        if (loadDuration == null) {
+            return;
+        }
+        Timer.builder("model.load")
+                .description("Time a backend spent loading a model before answering")
+                .tag("model", name)
+                .tag("cause", cause)
+                .register(meterRegistry)
+                .record(loadDuration);
+        if (loadDuration.compareTo(properties.getColdLoadThreshold()) >= 0) {
+            log.info("(recordLoad)cold load, model : {}, cause : {}, duration : {}", name, cause, loadDuration);
+            Counter.builder("model.cold_loads")
+                    .description("Requests that found their model unloaded")
+                    .tag("model", name)
+                    .tag("cause", cause)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    static String keepAliveOf(ModelDefinition definition) {
+        return definition.getKeepAlive().toSeconds() + "s";
+    }
+}
@@ -0,0 +1,104 @@
+package org.aibles.backend_ai.service.chatstream.model;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.ModelRegistryProperties;
+import org.aibles.backend_ai.configuration.properties.ModelRegistryProperties.ModelDefinition;
+import org.aibles.backend_ai.service.chatstream.ollama.OllamaNodePool;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Loads the Ollama models on every node at startup and keeps them loaded while they serve traffic. An Ollama
+ * chat request without messages loads the model and renews its keep-alive without generating anything.
+ */
+@Slf4j
+public class ModelWarmer implements ApplicationRunner, DisposableBean {
+
+    private final ModelRegistry modelRegistry;
+
+    private final OllamaNodePool ollamaNodePool;
+
+    private final ModelRegistryProperties properties;
+
+    private Disposable keepAlive;
+
+    public ModelWarmer(ModelRegistry modelRegistry, OllamaNodePool ollamaNodePool, ModelRegistryProperties properties) {
+        this.modelRegistry = modelRegistry;
+        this.ollamaNodePool = ollamaNodePool;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        if (properties.getWarmUp().isEnabled()) {
+            Map<String, ModelDefinition> models = modelRegistry.ollamaModels();
+            log.info("(run)warming up : {}", models.keySet());
+            CompletableFuture<Void> loaded = Flux.fromIterable(models.entrySet())
+                    .flatMap(model -> load(model.getKey(), model.getValue(), ModelRegistry.CAUSE_WARM_UP))
+                    .then()
+                    .toFuture();
+            try {
+                loaded.get(properties.getWarmUp().getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                log.warn("(run)models still loading after {}", properties.getWarmUp().getTimeout());
+            } catch (ExecutionException e) {
+                log.warn("(run)warm up failed", e.getCause());
+            }
+        }
+        Duration interval = properties.getKeepAlive().getInterval();
+        this.keepAlive = Flux.interval(interval, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> keepAliveRound(interval))
+                .subscribe();
+    }
+
+    /**
+     * Pings the models that served traffic within the active window but not during the last interval.
+     */
+    private Mono<Void> keepAliveRound(Duration interval) {
+        final long activeWindow = properties.getKeepAlive().getActiveWindow().toNanos();
+        return Flux.fromIterable(modelRegistry.ollamaModels().entrySet())
+                .filter(model -> {
+                    long idle = modelRegistry.idleNanos(model.getKey());
+                    return idle >= interval.toNanos() && idle < activeWindow;
+                })
+                .flatMap(model -> load(model.getKey(), model.getValue(), ModelRegistry.CAUSE_KEEP_ALIVE))
+                .then();
+    }
+
+    private Mono<Void> load(String name, ModelDefinition definition, String cause) {
+        OllamaApi.ChatRequest request = OllamaApi.ChatRequest.builder(definition.getModel())
+                .messages(List.of())
+                .keepAlive(ModelRegistry.keepAliveOf(definition))
+                .stream(true)
+                .build();
+        return ollamaNodePool.onEveryNode((node, ollamaApi) -> ollamaApi.streamingChat(request)
+                        .last()
+                        .doOnNext(response -> {
+                            log.info("(load)model : {}, node : {}, cause : {}, load duration : {}",
+                                    name, node, cause, response.getLoadDuration());
+                            modelRegistry.recordLoad(name, cause, response.getLoadDuration());
+                        }))
+                .then();
+    }
+
+    @Override
+    public void destroy() {
+        if (keepAlive != null) {
+            keepAlive.dispose();
+        }
+    }
+}
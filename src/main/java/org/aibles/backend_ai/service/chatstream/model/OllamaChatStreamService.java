@@ -0,0 +1,72 @@
+package org.aibles.backend_ai.service.chatstream.model;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.ModelRegistryProperties.ModelDefinition;
+import org.aibles.backend_ai.service.chatstream.AnswerChunk;
+import org.aibles.backend_ai.service.chatstream.ChatStreamMetrics;
+import org.aibles.backend_ai.service.chatstream.ChatStreamService;
+import org.aibles.backend_ai.service.chatstream.TokenUsage;
+import org.aibles.backend_ai.service.chatstream.ollama.OllamaNodePool;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A model declared with the OLLAMA backend, served by the Ollama node pool.
+ */
+@Slf4j
+public class OllamaChatStreamService implements ChatStreamService {
+
+    private static final String LOAD_DURATION = "load-duration";
+
+    private final String name;
+
+    private final OllamaOptions options;
+
+    private final ModelRegistry modelRegistry;
+
+    private final OllamaNodePool ollamaNodePool;
+
+    private final ChatStreamMetrics chatStreamMetrics;
+
+    public OllamaChatStreamService(String name,
+                                   ModelRegistry modelRegistry,
+                                   OllamaNodePool ollamaNodePool,
+                                   ChatStreamMetrics chatStreamMetrics) {
+        ModelDefinition definition = modelRegistry.definitionOf(name);
+        this.name = name;
+        this.options = OllamaOptions.builder()
+                .model(definition.getModel())
+                .temperature(definition.getTemperature())
+                .keepAlive(ModelRegistry.keepAliveOf(definition))
+                .build();
+        this.modelRegistry = modelRegistry;
+        this.ollamaNodePool = ollamaNodePool;
+        this.chatStreamMetrics = chatStreamMetrics;
+    }
+
+    @Override
+    public Flux<AnswerChunk> stream(List<Message> messages) {
+        log.info("(stream)model : {}", name);
+        modelRegistry.used(name);
+        return chatStreamMetrics.observeChunks(ChatStreamMetrics.GENERATION,
+                name,
+                ollamaNodePool.stream(ollamaChatModel -> ollamaChatModel.stream(new Prompt(messages, options)))
+                        .doOnNext(this::recordLoad)
+                        .map(
+                                chatRsp -> new AnswerChunk(chatRsp.getResult().getOutput().getText(), TokenUsage.of(chatRsp))
+                        ));
+    }
+
+    private void recordLoad(ChatResponse chatRsp) {
+        Duration loadDuration = chatRsp.getMetadata().get(LOAD_DURATION);
+        if (loadDuration != null) {
+            modelRegistry.recordLoad(name, ModelRegistry.CAUSE_TRAFFIC, loadDuration);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.aibles.backend_ai.service.chatstream.model;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.ModelRegistryProperties.ModelDefinition;
+import org.aibles.backend_ai.service.chatstream.AnswerChunk;
+import org.aibles.backend_ai.service.chatstream.ChatStreamMetrics;
+import org.aibles.backend_ai.service.chatstream.ChatStreamService;
+import org.aibles.backend_ai.service.chatstream.TokenUsage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * A model declared with the OPENAI backend, served by an OpenAI compatible API such as DeepSeek's.
+ */
+@Slf4j
+public class OpenAiChatStreamService implements ChatStreamService {
+
+    private final String name;
+
+    private final OpenAiChatOptions options;
+
+    private final ModelRegistry modelRegistry;
+
+    private final OpenAiChatModel openAiChatModel;
+
+    private final ChatStreamMetrics chatStreamMetrics;
+
+    public OpenAiChatStreamService(String name,
+                                   ModelRegistry modelRegistry,
+                                   OpenAiChatModel openAiChatModel,
+                                   ChatStreamMetrics chatStreamMetrics) {
+        ModelDefinition definition = modelRegistry.definitionOf(name);
+        this.name = name;
+        this.options = OpenAiChatOptions.builder()
+                .model(definition.getModel())
+                .temperature(definition.getTemperature())
+                // OpenAI compatible APIs only send the token usage of a stream when asked to, in a last chunk
+                .streamUsage(true)
+                .build();
+        this.modelRegistry = modelRegistry;
+        this.openAiChatModel = openAiChatModel;
+        this.chatStreamMetrics = chatStreamMetrics;
+    }
+
+    @Override
+    public Flux<AnswerChunk> stream(List<Message> messages) {
+        log.info("(stream)model : {}", name);
+        modelRegistry.used(name);
+        return chatStreamMetrics.observeChunks(ChatStreamMetrics.GENERATION,
+                name,
+                openAiChatModel.stream(new Prompt(messages, options))
+                        .map(chatRsp -> new AnswerChunk(chatRsp.getResult() == null
+                                || chatRsp.getResult().getOutput() == null
+                                || chatRsp.getResult().getOutput().getText() == null
+                                ? ""
+                                : chatRsp.getResult().getOutput().getText(),
+                                TokenUsage.of(chatRsp))));
+    }
+}
@@ -0,0 +1,138 @@
+package org.aibles.backend_ai.service.chatstream.ollama;
+
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One Ollama server of the pool: its chat model, the streams it is serving and what the pool learned about it.
+ */
+final class OllamaNode {
+
+    private static final double FIRST_TOKEN_WEIGHT = 0.3;
+
+    private static final int FIRST_TOKEN_MIN_SAMPLES = 3;
+
+    private final String baseUrl;
+
+    private final long seed;
+
+    private final OllamaApi ollamaApi;
+
+    private final OllamaChatModel chatModel;
+
+    private final WebClient probeClient;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private volatile boolean healthy = true;
+
+    private volatile long ejectedUntil;
+
+    private double firstTokenNanos;
+
+    private int firstTokenSamples;
+
+    OllamaNode(String baseUrl, OllamaApi ollamaApi, OllamaChatModel chatModel, WebClient probeClient) {
+        this.baseUrl = baseUrl;
+        this.seed = mix(baseUrl.hashCode() * 0x9E3779B97F4A7C15L);
+        this.ollamaApi = ollamaApi;
+        this.chatModel = chatModel;
+        this.probeClient = probeClient;
+    }
+
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    OllamaApi getOllamaApi() {
+        return ollamaApi;
+    }
+
+    OllamaChatModel getChatModel() {
+        return chatModel;
+    }
+
+    WebClient getProbeClient() {
+        return probeClient;
+    }
+
+    int outstanding() {
+        return outstanding.get();
+    }
+
+    void acquire() {
+        outstanding.incrementAndGet();
+    }
+
+    void release() {
+        outstanding.decrementAndGet();
+    }
+
+    boolean isHealthy() {
+        return healthy;
+    }
+
+    boolean isAvailable(long now) {
+        return healthy && now - ejectedUntil >= 0;
+    }
+
+    /**
+     * Records a probe result, returns whether the node changed state.
+     */
+    boolean probed(boolean up) {
+        boolean changed = healthy != up;
+        healthy = up;
+        return changed;
+    }
+
+    /**
+     * Keeps the node out of rotation until the given time and until a probe passes after it.
+     */
+    synchronized void eject(long until) {
+        ejectedUntil = until;
+        healthy = false;
+        firstTokenNanos = 0;
+        firstTokenSamples = 0;
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * Folds a time to first token into the node's moving average and returns the new average, or 0 while there
+     * are too few samples to judge the node (a cold connection alone should not eject it).
+     */
+    synchronized double recordFirstToken(long nanos) {
+        firstTokenNanos = firstTokenSamples++ == 0
+                ? nanos
+                : FIRST_TOKEN_WEIGHT * nanos + (1 - FIRST_TOKEN_WEIGHT) * firstTokenNanos;
+        return firstTokenSamples < FIRST_TOKEN_MIN_SAMPLES ? 0 : firstTokenNanos;
+    }
+
+    void succeeded() {
+        consecutiveFailures.set(0);
+    }
+
+    int failed() {
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    /**
+     * Rendezvous score of this node for a key, the node with the highest score owns the key.
+     */
+    long score(String key) {
+        return mix(seed ^ key.hashCode() * 0xC2B2AE3D27D4EB4FL);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
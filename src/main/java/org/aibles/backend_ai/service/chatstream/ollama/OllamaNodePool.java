@@ -0,0 +1,237 @@
+package org.aibles.backend_ai.service.chatstream.ollama;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.OllamaPoolProperties;
+import org.aibles.backend_ai.service.chatstream.ChatStreamService;
+import org.reactivestreams.Publisher;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Ollama servers serving the same models. Each stream goes to the available node with the fewest outstanding
+ * streams. A stream carrying a conversation id in its context prefers the node owning the conversation by
+ * rendezvous hashing, so consecutive turns hit the same prompt cache, unless that node is busier than the least
+ * loaded one by more than affinity.maxImbalance.
+ * Nodes failing their /api/tags probe leave the rotation until a probe passes. Nodes that are slow to the first
+ * token or fail several streams in a row are ejected for ejection.duration, the last available node is never
+ * ejected.
+ */
+@Slf4j
+public class OllamaNodePool implements DisposableBean {
+
+    private static final String ROUTE_AFFINITY = "affinity";
+
+    private static final String ROUTE_LEAST_LOADED = "least_loaded";
+
+    private static final String ROUTE_FALLBACK = "fallback";
+
+    private final OllamaPoolProperties properties;
+
+    private final List<OllamaNode> nodes;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Disposable healthCheck;
+
+    public OllamaNodePool(OllamaPoolProperties properties,
+                          List<String> baseUrls,
+                          RestClient.Builder restClientBuilder,
+                          WebClient.Builder webClientBuilder,
+                          ObservationRegistry observationRegistry,
+                          MeterRegistry meterRegistry) {
+        if (baseUrls.isEmpty()) {
+            throw new IllegalArgumentException("an Ollama pool needs at least one node");
+        }
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.nodes = baseUrls.stream()
+                .map(baseUrl -> {
+                    OllamaApi ollamaApi = new OllamaApi(baseUrl, restClientBuilder.clone(), webClientBuilder.clone());
+                    return new OllamaNode(baseUrl,
+                            ollamaApi,
+                            OllamaChatModel.builder()
+                                    .ollamaApi(ollamaApi)
+                                    .observationRegistry(observationRegistry)
+                                    .build(),
+                            webClientBuilder.clone().baseUrl(baseUrl).build());
+                })
+                .toList();
+        for (OllamaNode node : nodes) {
+            Gauge.builder("ollama.node.outstanding", node, OllamaNode::outstanding)
+                    .description("Streams a node is serving")
+                    .tag("node", node.getBaseUrl())
+                    .register(meterRegistry);
+            Gauge.builder("ollama.node.available", node, n -> n.isAvailable(System.nanoTime()) ? 1 : 0)
+                    .description("1 while a node takes traffic, 0 while it is down or ejected")
+                    .tag("node", node.getBaseUrl())
+                    .register(meterRegistry);
+        }
+        log.info("(OllamaNodePool)nodes : {}", baseUrls);
+        this.healthCheck = Flux.interval(properties.getHealthCheck().getInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> Flux.fromIterable(nodes).flatMap(this::probe))
+                .subscribe();
+    }
+
+    /**
+     * Runs a call against the chat model of the node picked for it. The node is picked on subscription.
+     */
+    public <T> Flux<T> stream(Function<OllamaChatModel, Flux<T>> call) {
+        return Flux.deferContextual(context -> {
+            final OllamaNode node = select(context.getOrDefault(ChatStreamService.CONVERSATION_ID, null));
+            final long startedAt = System.nanoTime();
+            final boolean[] firstToken = {true};
+            node.acquire();
+            return Flux.defer(() -> call.apply(node.getChatModel()))
+                    .doOnNext(item -> {
+                        if (firstToken[0]) {
+                            firstToken[0] = false;
+                            onFirstToken(node, System.nanoTime() - startedAt);
+                        }
+                    })
+                    .doOnComplete(node::succeeded)
+                    .doOnError(error -> onFailure(node, error))
+                    .doFinally(signalType -> node.release());
+        });
+    }
+
+    /**
+     * Runs a call against every node that is not known to be down, for maintenance such as loading models.
+     * Failures are logged and skipped.
+     */
+    public <T> Flux<T> onEveryNode(BiFunction<String, OllamaApi, Publisher<T>> call) {
+        return Flux.fromIterable(nodes)
+                .filter(OllamaNode::isHealthy)
+                .flatMap(node -> Flux.from(call.apply(node.getBaseUrl(), node.getOllamaApi()))
+                        .onErrorResume(error -> {
+                            log.warn("(onEveryNode)node : {}, call failed", node.getBaseUrl(), error);
+                            return Flux.empty();
+                        }));
+    }
+
+    private OllamaNode select(String conversationId) {
+        final long now = System.nanoTime();
+        List<OllamaNode> candidates = nodes.stream().filter(node -> node.isAvailable(now)).toList();
+        if (candidates.isEmpty()) {
+            // nothing is known to be good, try the nodes that merely are not ejected, then any node
+            List<OllamaNode> healthy = nodes.stream().filter(OllamaNode::isHealthy).toList();
+            OllamaNode node = leastLoaded(healthy.isEmpty() ? nodes : healthy);
+            routed(node, ROUTE_FALLBACK);
+            return node;
+        }
+        OllamaNode leastLoaded = leastLoaded(candidates);
+        if (conversationId != null && properties.getAffinity().isEnabled()) {
+            OllamaNode owner = owner(candidates, conversationId);
+            if (owner.outstanding() - leastLoaded.outstanding() <= properties.getAffinity().getMaxImbalance()) {
+                routed(owner, ROUTE_AFFINITY);
+                return owner;
+            }
+        }
+        routed(leastLoaded, ROUTE_LEAST_LOADED);
+        return leastLoaded;
+    }
+
+    private static OllamaNode leastLoaded(List<OllamaNode> candidates) {
+        // starts at a random node so that ties do not always go to the first one
+        final int start = ThreadLocalRandom.current().nextInt(candidates.size());
+        OllamaNode best = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            OllamaNode node = candidates.get((start + i) % candidates.size());
+            if (best == null || node.outstanding() < best.outstanding()) {
+                best = node;
+            }
+        }
+        return best;
+    }
+
+    private static OllamaNode owner(List<OllamaNode> candidates, String conversationId) {
+        OllamaNode owner = null;
+        long ownerScore = 0;
+        for (OllamaNode node : candidates) {
+            long score = node.score(conversationId);
+            if (owner == null || score > ownerScore) {
+                owner = node;
+                ownerScore = score;
+            }
+        }
+        return owner;
+    }
+
+    private void onFirstToken(OllamaNode node, long nanos) {
+        double average = node.recordFirstToken(nanos);
+        if (average > properties.getEjection().getSlowFirstToken().toNanos()) {
+            eject(node, "slow");
+        }
+    }
+
+    private void onFailure(OllamaNode node, Throwable error) {
+        int failures = node.failed();
+        log.warn("(onFailure)node : {}, consecutive failures : {}", node.getBaseUrl(), failures, error);
+        if (failures >= properties.getEjection().getConsecutiveFailures()) {
+            eject(node, "failures");
+        }
+    }
+
+    private void eject(OllamaNode node, String reason) {
+        final long now = System.nanoTime();
+        synchronized (this) {
+            boolean otherAvailable = nodes.stream().anyMatch(other -> other != node && other.isAvailable(now));
+            if (!otherAvailable || !node.isAvailable(now)) {
+                return;
+            }
+            node.eject(now + properties.getEjection().getDuration().toNanos());
+        }
+        log.warn("(eject)node : {}, reason : {}, for : {}", node.getBaseUrl(), reason, properties.getEjection().getDuration());
+        Counter.builder("ollama.node.ejections")
+                .description("Nodes taken out of rotation for being slow or failing")
+                .tag("node", node.getBaseUrl())
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private Mono<Boolean> probe(OllamaNode node) {
+        return node.getProbeClient()
+                .get()
+                .uri("/api/tags")
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(properties.getHealthCheck().getTimeout())
+                .map(response -> true)
+                .onErrorReturn(false)
+                .doOnNext(up -> {
+                    if (node.probed(up)) {
+                        log.info("(probe)node : {}, healthy : {}", node.getBaseUrl(), up);
+                    }
+                });
+    }
+
+    private void routed(OllamaNode node, String route) {
+        Counter.builder("ollama.node.routed")
+                .description("Streams routed to a node, by the rule that picked it")
+                .tag("node", node.getBaseUrl())
+                .tag("route", route)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @Override
+    public void destroy() {
+        healthCheck.dispose();
+    }
+}
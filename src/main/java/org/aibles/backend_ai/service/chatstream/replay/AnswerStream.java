@@ -0,0 +1,9 @@
+package org.aibles.backend_ai.service.chatstream.replay;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Answer text of one turn, starting at offset characters into the answer.
+ */
+public record AnswerStream(String turnId, int offset, Flux<String> tokens) {
+}
@@ -0,0 +1,33 @@
+package org.aibles.backend_ai.service.chatstream.replay;
+
+/**
+ * Id of an SSE event of an answer: the turn it belongs to and the length of the answer text sent up to and
+ * including the event. A client reconnecting with it as Last-Event-ID receives the answer from that offset.
+ */
+public record StreamEventId(String turnId, int offset) {
+
+    private static final char SEPARATOR = ':';
+
+    public String format() {
+        return turnId + SEPARATOR + offset;
+    }
+
+    /**
+     * Returns null for a missing or malformed id, the stream then starts a new turn.
+     */
+    public static StreamEventId parse(String lastEventId) {
+        if (lastEventId == null) {
+            return null;
+        }
+        int separator = lastEventId.lastIndexOf(SEPARATOR);
+        if (separator <= 0 || separator == lastEventId.length() - 1) {
+            return null;
+        }
+        try {
+            int offset = Integer.parseInt(lastEventId.substring(separator + 1));
+            return offset < 0 ? null : new StreamEventId(lastEventId.substring(0, separator), offset);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
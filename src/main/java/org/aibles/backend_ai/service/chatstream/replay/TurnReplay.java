@@ -0,0 +1,236 @@
+package org.aibles.backend_ai.service.chatstream.replay;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Answer text of one turn as far as it is generated, and the streams attached to it. Tokens are appended and
+ * forwarded under the turn's monitor, so an attaching stream sees every token exactly once. The generation runs
+ * on its own subscription, when the last attached stream goes away the turn is abandoned and the registry's
+ * disconnect policy decides when the generation is cancelled. Resuming and cancelling are decided under the
+ * monitor too: a turn is either resumed or cancelled, never both.
+ */
+public class TurnReplay {
+
+    /**
+     * A resumed stream its caller never subscribes to stops keeping the turn after this long.
+     */
+    private static final Duration UNSUBSCRIBED_RESUME_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String turnId;
+
+    private final String conversationId;
+
+    private final int maxChars;
+
+    private final StringBuilder text = new StringBuilder();
+
+    // sinks detach themselves while being completed, iteration must tolerate it
+    private final List<FluxSink<String>> attached = new CopyOnWriteArrayList<>();
+
+    private boolean truncated;
+
+    private boolean done;
+
+    private boolean cancelled;
+
+    // resumed streams not subscribed yet, they keep the turn from being cancelled until they attach, go away or time out
+    private int resuming;
+
+    private Throwable error;
+
+    private final Disposable.Swap generation = Disposables.swap();
+
+    private Consumer<TurnReplay> onAbandoned;
+
+    private Disposable abandonTimer;
+
+    TurnReplay(String turnId, String conversationId, int maxChars) {
+        this.turnId = turnId;
+        this.conversationId = conversationId;
+        this.maxChars = maxChars;
+    }
+
+    public String getTurnId() {
+        return turnId;
+    }
+
+    String getConversationId() {
+        return conversationId;
+    }
+
+    synchronized int length() {
+        return text.length();
+    }
+
+    /**
+     * A turn that outgrew its size limit keeps feeding the streams already attached, it only cannot be
+     * replayed any more. Neither can a turn whose generation is being cancelled.
+     */
+    synchronized boolean isResumable() {
+        return !truncated && !cancelled;
+    }
+
+    synchronized void append(String token) {
+        if (!truncated) {
+            if (text.length() + token.length() > maxChars) {
+                truncated = true;
+                text.setLength(0);
+                text.trimToSize();
+            } else {
+                text.append(token);
+            }
+        }
+        for (FluxSink<String> sink : attached) {
+            sink.next(token);
+        }
+    }
+
+    synchronized void finish(Throwable error) {
+        if (done) {
+            return;
+        }
+        this.done = true;
+        this.error = error;
+        for (FluxSink<String> sink : attached) {
+            if (error == null) {
+                sink.complete();
+            } else {
+                sink.error(error);
+            }
+        }
+        attached.clear();
+    }
+
+    /**
+     * Replays the answer from offset and follows the generation until it ends. Empty when the turn cannot be
+     * resumed, the caller then generates the answer again.
+     */
+    synchronized Optional<AnswerStream> resume(int offset) {
+        if (!isResumable()) {
+            return Optional.empty();
+        }
+        resuming++;
+        final AtomicBoolean reserved = new AtomicBoolean(true);
+        final Disposable expiry = Schedulers.parallel().schedule(() -> release(reserved),
+                UNSUBSCRIBED_RESUME_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        final int from = Math.min(offset, text.length());
+        final Flux<String> tokens = attach(from, reserved, null)
+                .doFinally(signalType -> {
+                    expiry.dispose();
+                    release(reserved);
+                });
+        return Optional.of(new AnswerStream(turnId, from, tokens));
+    }
+
+    /**
+     * Attaches the first stream, then starts the generation, so the stream misses nothing even when the
+     * generation emits synchronously.
+     */
+    Flux<String> drive(Flux<String> tokens, Consumer<TurnReplay> onAbandoned) {
+        this.onAbandoned = onAbandoned;
+        // failures reach the attached streams through the turn, and are logged by the caller's pipeline
+        return attach(0, null, () -> generation.update(tokens.subscribe(null, error -> {
+        })));
+    }
+
+    /**
+     * Cancels the generation unless a stream attached or resumed in the meantime. Once decided, the turn
+     * refuses to be resumed, so disposing outside the monitor cannot race with a stream attaching.
+     */
+    void cancelIfAbandoned() {
+        synchronized (this) {
+            if (done || cancelled || !attached.isEmpty() || resuming > 0) {
+                return;
+            }
+            cancelled = true;
+        }
+        generation.dispose();
+    }
+
+    synchronized void cancelIfAbandonedAfter(Duration gracePeriod) {
+        if (abandonTimer != null) {
+            abandonTimer.dispose();
+        }
+        abandonTimer = Schedulers.parallel().schedule(this::cancelIfAbandoned, gracePeriod.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * An attached stream buffers what its client has not taken yet. Before the turn is truncated that is part of
+     * the turn's text, at most maxChars, afterwards a client lagging more than maxChars tokens behind fails
+     * instead of buffering the rest of the answer.
+     */
+    private Flux<String> attach(int offset, AtomicBoolean reserved, Runnable afterAttach) {
+        return Flux.<String>create(sink -> {
+            synchronized (this) {
+                if (reserved != null && reserved.compareAndSet(true, false)) {
+                    resuming--;
+                }
+                if (truncated) {
+                    sink.error(new IllegalStateException("turn " + turnId + " is too long to be resumed"));
+                    return;
+                }
+                int from = Math.min(offset, text.length());
+                if (from < text.length()) {
+                    sink.next(text.substring(from));
+                }
+                if (done) {
+                    if (error == null) {
+                        sink.complete();
+                    } else {
+                        sink.error(error);
+                    }
+                    return;
+                }
+                attached.add(sink);
+                if (abandonTimer != null) {
+                    abandonTimer.dispose();
+                    abandonTimer = null;
+                }
+                sink.onDispose(() -> detach(sink));
+            }
+            if (afterAttach != null) {
+                afterAttach.run();
+            }
+        }).onBackpressureBuffer(maxChars);
+    }
+
+    /**
+     * Gives up the reservation of a resumed stream that went away or timed out before attaching. The turn may
+     * have been left by every other stream meanwhile, its cancellation was put off for this one.
+     */
+    private void release(AtomicBoolean reserved) {
+        if (!reserved.compareAndSet(true, false)) {
+            return;
+        }
+        final boolean abandoned;
+        synchronized (this) {
+            resuming--;
+            abandoned = resuming == 0 && attached.isEmpty() && !done;
+        }
+        if (abandoned && onAbandoned != null) {
+            onAbandoned.accept(this);
+        }
+    }
+
+    private void detach(FluxSink<String> sink) {
+        final boolean abandoned;
+        synchronized (this) {
+            abandoned = attached.remove(sink) && attached.isEmpty() && !done;
+        }
+        if (abandoned && onAbandoned != null) {
+            onAbandoned.accept(this);
+        }
+    }
+}
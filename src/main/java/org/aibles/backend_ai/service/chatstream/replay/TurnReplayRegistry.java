@@ -0,0 +1,113 @@
+package org.aibles.backend_ai.service.chatstream.replay;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.DisconnectProperties;
+import org.aibles.backend_ai.configuration.properties.StreamReplayProperties;
+import org.aibles.backend_ai.constant.DisconnectPolicy;
+import reactor.core.publisher.Flux;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Turns that can be resumed, bounded by the estimated size of their answers and by age. A turn is weighed when
+ * it starts and again when it finishes. A turn whose last client left is handled per backend-ai.disconnect.
+ */
+@Slf4j
+public class TurnReplayRegistry {
+
+    private static final String CACHE_NAME = "stream_replay";
+
+    private static final int TURN_OVERHEAD_BYTES = 256;
+
+    private final Cache<String, TurnReplay> turns;
+
+    private final int maxTurnChars;
+
+    private final Counter resumed;
+
+    private final DisconnectProperties disconnectProperties;
+
+    public TurnReplayRegistry(StreamReplayProperties properties,
+                              DisconnectProperties disconnectProperties,
+                              MeterRegistry meterRegistry) {
+        this.disconnectProperties = disconnectProperties;
+        this.maxTurnChars = (int) Math.min(Integer.MAX_VALUE, properties.getMaxTurnSize().toBytes() / 2);
+        this.turns = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxMemory().toBytes())
+                .weigher((String turnId, TurnReplay turn) -> TURN_OVERHEAD_BYTES + 2 * turn.length())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, turns, CACHE_NAME);
+        this.resumed = Counter.builder("chat.stream.resumed")
+                .description("Streams resumed from a turn's replay buffer instead of generating again")
+                .register(meterRegistry);
+    }
+
+    public TurnReplay start(String turnId, String conversationId) {
+        TurnReplay turn = new TurnReplay(turnId, conversationId, maxTurnChars);
+        turns.put(turnId, turn);
+        return turn;
+    }
+
+    /**
+     * Records the generation of a turn so that it can be replayed while it runs and after it finished.
+     */
+    public Flux<String> record(TurnReplay turn, Flux<String> tokens) {
+        return tokens
+                .doOnNext(turn::append)
+                .doOnComplete(() -> finish(turn, null))
+                .doOnError(error -> finish(turn, error))
+                .doOnCancel(() -> finish(turn, new CancellationException("generation cancelled")));
+    }
+
+    /**
+     * Runs the recorded generation of a turn independently of its clients and attaches the first one. When every
+     * client has left, the generation is cancelled right away or after the grace period, unless a client resumes
+     * the turn before that.
+     */
+    public Flux<String> drive(TurnReplay turn, Flux<String> recorded) {
+        return turn.drive(recorded, this::abandoned);
+    }
+
+    /**
+     * Attaches to a turn of the conversation if it is still kept, was not truncated and is not being cancelled.
+     */
+    public Optional<AnswerStream> resume(String conversationId, StreamEventId eventId) {
+        TurnReplay turn = turns.getIfPresent(eventId.turnId());
+        if (turn == null || !turn.getConversationId().equals(conversationId)) {
+            return Optional.empty();
+        }
+        Optional<AnswerStream> answer = turn.resume(eventId.offset());
+        if (answer.isPresent()) {
+            log.info("(resume)conversationId : {}, turnId : {}, offset : {}", conversationId, eventId.turnId(), eventId.offset());
+            resumed.increment();
+        }
+        return answer;
+    }
+
+    private void abandoned(TurnReplay turn) {
+        log.info("(abandoned)turnId : {}, policy : {}", turn.getTurnId(), disconnectProperties.getPolicy());
+        if (disconnectProperties.getPolicy() == DisconnectPolicy.CANCEL || disconnectProperties.getGracePeriod().isZero()) {
+            turn.cancelIfAbandoned();
+        } else {
+            turn.cancelIfAbandonedAfter(disconnectProperties.getGracePeriod());
+        }
+    }
+
+    private void finish(TurnReplay turn, Throwable error) {
+        turn.finish(error);
+        if (error instanceof CancellationException || !turn.isResumable()) {
+            turns.asMap().remove(turn.getTurnId(), turn);
+        } else {
+            // weighs the finished answer and restarts its time to live
+            turns.asMap().replace(turn.getTurnId(), turn, turn);
+        }
+    }
+}
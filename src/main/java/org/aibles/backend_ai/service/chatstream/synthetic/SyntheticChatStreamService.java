@@ -0,0 +1,83 @@
+package org.aibles.backend_ai.service.chatstream.synthetic;
+
+import org.aibles.backend_ai.configuration.properties.SyntheticStreamProperties;
+import org.aibles.backend_ai.service.chatstream.AnswerChunk;
+import org.aibles.backend_ai.service.chatstream.ChatStreamMetrics;
+import org.aibles.backend_ai.service.chatstream.ChatStreamService;
+import org.aibles.backend_ai.service.chatstream.TokenUsage;
+import org.springframework.ai.chat.messages.Message;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stands in for a real model under load tests: answers with answerTokens tokens after firstTokenDelay, paced
+ * at tokensPerSecond, and fails a share of the streams midway.
+ */
+public class SyntheticChatStreamService implements ChatStreamService {
+
+    private static final String[] WORDS = {
+            " the", " context", " window", " keeps", " recent", " turns", " of", " a", " conversation", " and",
+            " drops", " older", " ones", " so", " prompts", " stay", " small", "."
+    };
+
+    private final String model;
+
+    private final SyntheticStreamProperties properties;
+
+    private final ChatStreamMetrics chatStreamMetrics;
+
+    public SyntheticChatStreamService(String model,
+                                      SyntheticStreamProperties properties,
+                                      ChatStreamMetrics chatStreamMetrics) {
+        this.model = model;
+        this.properties = properties;
+        this.chatStreamMetrics = chatStreamMetrics;
+    }
+
+    @Override
+    public Flux<AnswerChunk> stream(List<Message> messages) {
+        return chatStreamMetrics.observeChunks(ChatStreamMetrics.GENERATION, model, Flux.defer(() -> {
+            final SyntheticStreamProperties.Behavior behavior = properties.behaviorOf(model);
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final int tokens = Math.max(1, behavior.getAnswerTokens());
+            final int failAt = random.nextDouble() < behavior.getFailureRate() ? random.nextInt(tokens) : -1;
+            final long tokenIntervalNanos = (long) (1_000_000_000d / behavior.getTokensPerSecond());
+            final int offset = random.nextInt(WORDS.length);
+
+            return Flux.range(0, tokens).concatMap(index -> {
+                if (index == failAt) {
+                    return Mono.error(new IllegalStateException("synthetic failure of " + model + " at token " + index));
+                }
+                long nominalNanos = index == 0 ? behavior.getFirstTokenDelay().toNanos() : tokenIntervalNanos;
+                final String word = WORDS[(offset + index) % WORDS.length];
+                return Mono.delay(jittered(nominalNanos, behavior.getJitter()))
+                        .thenReturn(index == tokens - 1
+                                ? new AnswerChunk(word, new TokenUsage(promptTokensOf(messages), tokens))
+                                : AnswerChunk.of(word));
+            });
+        }));
+    }
+
+    /**
+     * About four characters per token, like the usage a real backend would report.
+     */
+    private static long promptTokensOf(List<Message> messages) {
+        long characters = 0;
+        for (Message message : messages) {
+            characters += message.getText() != null ? message.getText().length() : 0;
+        }
+        return Math.max(1, characters / 4);
+    }
+
+    private static Duration jittered(long nominalNanos, double jitter) {
+        if (jitter <= 0) {
+            return Duration.ofNanos(nominalNanos);
+        }
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return Duration.ofNanos((long) Math.max(0, nominalNanos * factor));
+    }
+}
@@ -0,0 +1,9 @@
+package org.aibles.backend_ai.service.context;
+
+import java.time.Instant;
+
+/**
+ * A question/answer pair of the context history with its prompt size, counted once when the turn is loaded.
+ */
+public record ContextTurn(Instant createdAt, String question, String answer, int tokens) {
+}
@@ -0,0 +1,103 @@
+package org.aibles.backend_ai.service.context;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aibles.backend_ai.configuration.properties.CompactionProperties;
+import org.aibles.backend_ai.entity.ConversationSummary;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds prompts within the model's token budget: the conversation's summary, then as many of the most recent
+ * turns outside the summary as fit, then the new question. A conversation whose turns no longer fit, or that
+ * collected triggerTurns turns outside its summary, is handed to the compactor.
+ */
+public class ContextWindowAssembler {
+
+    static final String SUMMARY_PREFIX = "Summary of the earlier conversation:\n";
+
+    private final CompactionProperties properties;
+
+    private final TokenEstimator tokenEstimator;
+
+    private final ConversationCompactor compactor;
+
+    private final MeterRegistry meterRegistry;
+
+    public ContextWindowAssembler(CompactionProperties properties,
+                                  TokenEstimator tokenEstimator,
+                                  ConversationCompactor compactor,
+                                  MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.tokenEstimator = tokenEstimator;
+        this.compactor = compactor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public ContextTurn turnOf(Instant createdAt, String question, String answer) {
+        return new ContextTurn(createdAt, question, answer,
+                tokenEstimator.countMessage(question) + tokenEstimator.countMessage(answer));
+    }
+
+    public List<Message> assemble(String conversationId, String model, ConversationContext context, String prompt) {
+        final int promptTokens = tokenEstimator.countMessage(prompt);
+        final ConversationSummary summary = context.summary();
+        final int summaryTokens = summary == null ? 0 : summary.getTokens();
+        final List<ContextTurn> unsummarized = context.unsummarized();
+
+        int remaining = properties.budgetOf(model) - promptTokens - summaryTokens;
+        int first = unsummarized.size();
+        while (first > 0 && unsummarized.get(first - 1).tokens() <= remaining) {
+            first--;
+            remaining -= unsummarized.get(first).tokens();
+        }
+        List<ContextTurn> included = unsummarized.subList(first, unsummarized.size());
+
+        List<Message> messages = new ArrayList<>(included.size() * 2 + 2);
+        int sent = promptTokens + summaryTokens;
+        if (summary != null) {
+            messages.add(new SystemMessage(SUMMARY_PREFIX + summary.getSummary()));
+        }
+        for (ContextTurn turn : included) {
+            messages.add(new UserMessage(turn.question()));
+            messages.add(new AssistantMessage(turn.answer()));
+            sent += turn.tokens();
+        }
+        messages.add(new UserMessage(prompt));
+
+        // what the unbudgeted window of the last turns would have sent
+        int unbudgeted = promptTokens;
+        for (ContextTurn turn : context.turns()) {
+            unbudgeted += turn.tokens();
+        }
+        promptTokens(model).record(sent);
+        savedTokens(model).record(Math.max(0, unbudgeted - sent));
+
+        if (first > 0 || unsummarized.size() >= properties.getTriggerTurns()) {
+            compactor.request(conversationId);
+        }
+        return messages;
+    }
+
+    private DistributionSummary promptTokens(String model) {
+        return DistributionSummary.builder("chat.context.tokens")
+                .description("Estimated prompt tokens sent per request")
+                .baseUnit("tokens")
+                .tag("model", model)
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary savedTokens(String model) {
+        return DistributionSummary.builder("chat.context.tokens.saved")
+                .description("Estimated prompt tokens saved against sending the last turns in full")
+                .baseUnit("tokens")
+                .tag("model", model)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,206 @@
+package org.aibles.backend_ai.service.context;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.CompactionProperties;
+import org.aibles.backend_ai.entity.ConversationMessage;
+import org.aibles.backend_ai.entity.ConversationSummary;
+import org.aibles.backend_ai.repository.ConversationSummaryRepository;
+import org.aibles.backend_ai.repository.MessageRepository;
+import org.aibles.backend_ai.service.cache.ConversationContextCache;
+import org.aibles.backend_ai.service.chatstream.ChatStreamRegistry;
+import org.aibles.backend_ai.service.chatstream.ChatStreamService;
+import org.aibles.backend_ai.service.chatstream.admission.ModelAdmissionScheduler;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Folds the older turns of conversations into their rolling summary. Conversations are marked due while
+ * their prompts are built and compacted by a background round every interval. A run folds the turns after
+ * the summary, except the keepRecentTurns most recent ones, into a new summary written by the compaction
+ * model. It waits for an admission slot of that model at the lowest priority.
+ */
+@Slf4j
+public class ConversationCompactor implements DisposableBean {
+
+    private static final int FETCH_TURNS = 64;
+
+    private static final int BACKGROUND_PRIORITY = 0;
+
+    private final CompactionProperties properties;
+
+    private final MessageRepository messageRepository;
+
+    private final ConversationSummaryRepository summaryRepository;
+
+    private final ChatStreamRegistry chatStreamRegistry;
+
+    private final ModelAdmissionScheduler admissionScheduler;
+
+    private final ConversationContextCache contextCache;
+
+    private final TokenEstimator tokenEstimator;
+
+    private final Set<String> due = ConcurrentHashMap.newKeySet();
+
+    private final Disposable rounds;
+
+    private final Counter compactions;
+
+    private final Counter failures;
+
+    private final DistributionSummary foldedTurns;
+
+    public ConversationCompactor(CompactionProperties properties,
+                                 MessageRepository messageRepository,
+                                 ConversationSummaryRepository summaryRepository,
+                                 ChatStreamRegistry chatStreamRegistry,
+                                 ModelAdmissionScheduler admissionScheduler,
+                                 ConversationContextCache contextCache,
+                                 TokenEstimator tokenEstimator,
+                                 MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.messageRepository = messageRepository;
+        this.summaryRepository = summaryRepository;
+        this.chatStreamRegistry = chatStreamRegistry;
+        this.admissionScheduler = admissionScheduler;
+        this.contextCache = contextCache;
+        this.tokenEstimator = tokenEstimator;
+        this.compactions = Counter.builder("conversation.compaction")
+                .description("Summaries rewritten by the compactor")
+                .register(meterRegistry);
+        this.failures = Counter.builder("conversation.compaction.failures")
+                .description("Compaction runs that failed and left the summary as it was")
+                .register(meterRegistry);
+        this.foldedTurns = DistributionSummary.builder("conversation.compaction.turns")
+                .description("Turns folded into a summary by one compaction run")
+                .register(meterRegistry);
+        this.rounds = properties.isEnabled()
+                ? Flux.interval(properties.getInterval(), properties.getInterval())
+                        .onBackpressureDrop()
+                        .concatMap(tick -> round())
+                        .subscribe()
+                : Disposables.disposed();
+    }
+
+    public void request(String conversationId) {
+        if (properties.isEnabled()) {
+            due.add(conversationId);
+        }
+    }
+
+    private Mono<Void> round() {
+        List<String> conversationIds = new ArrayList<>(due);
+        due.removeAll(conversationIds);
+        return Flux.fromIterable(conversationIds)
+                .flatMap(this::compact, properties.getConcurrency())
+                .then();
+    }
+
+    Mono<Void> compact(String conversationId) {
+        return summaryRepository.findById(conversationId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(previous -> messageRepository
+                        .findMessagesAfter(conversationId,
+                                previous.map(ConversationSummary::getCoveredUntil).orElse(Instant.EPOCH),
+                                FETCH_TURNS)
+                        .collectList()
+                        .flatMap(turns -> fold(conversationId, previous.orElse(null), turns)))
+                .onErrorResume(e -> {
+                    log.warn("(compact)conversationId : {}, summary left unchanged", conversationId, e);
+                    failures.increment();
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> fold(String conversationId, ConversationSummary previous, List<ConversationMessage> turns) {
+        // with a full page there are more turns after it, so all of the page can go
+        final int foldable = turns.size() < FETCH_TURNS ? turns.size() - properties.getKeepRecentTurns() : turns.size();
+        if (foldable <= 0) {
+            return Mono.empty();
+        }
+        List<ConversationMessage> toFold = new ArrayList<>();
+        int transcriptTokens = 0;
+        for (ConversationMessage turn : turns.subList(0, foldable)) {
+            int tokens = tokenEstimator.countMessage(turn.getQuestion()) + tokenEstimator.countMessage(turn.getAnswer());
+            if (!toFold.isEmpty() && transcriptTokens + tokens > properties.getMaxFoldTokens()) {
+                break;
+            }
+            toFold.add(turn);
+            transcriptTokens += tokens;
+        }
+        final boolean backlogLeft = toFold.size() < foldable || turns.size() == FETCH_TURNS;
+        final Instant coveredUntil = toFold.get(toFold.size() - 1).getKey().getCreatedAt();
+        final int coveredTurns = (previous == null ? 0 : previous.getCoveredTurns()) + toFold.size();
+        log.info("(fold)conversationId : {}, turns : {}, transcript tokens : {}", conversationId, toFold.size(), transcriptTokens);
+
+        List<Message> prompt = summaryPrompt(previous, toFold);
+        return admissionScheduler.admit(properties.getModel(),
+                        conversationId,
+                        BACKGROUND_PRIORITY,
+                        () -> chatStreamRegistry.getChatStreamService(properties.getModel()).streamAnswer(prompt))
+                .contextWrite(Context.of(ChatStreamService.CONVERSATION_ID, conversationId))
+                .reduce(new StringBuilder(), StringBuilder::append)
+                .map(summary -> summary.toString().strip())
+                .filter(summary -> !summary.isEmpty())
+                .flatMap(summary -> summaryRepository.save(ConversationSummary.builder()
+                        .conversationId(conversationId)
+                        .summary(summary)
+                        .coveredUntil(coveredUntil)
+                        .coveredTurns(coveredTurns)
+                        .tokens(tokenEstimator.countMessage(ContextWindowAssembler.SUMMARY_PREFIX + summary))
+                        .updatedAt(Instant.now())
+                        .build()))
+                .doOnNext(saved -> {
+                    contextCache.invalidate(conversationId);
+                    compactions.increment();
+                    foldedTurns.record(toFold.size());
+                    if (backlogLeft) {
+                        due.add(conversationId);
+                    }
+                })
+                .then();
+    }
+
+    private List<Message> summaryPrompt(ConversationSummary previous, List<ConversationMessage> toFold) {
+        StringBuilder transcript = new StringBuilder();
+        if (previous != null) {
+            transcript.append("Summary so far:\n").append(previous.getSummary()).append("\n\n");
+        }
+        transcript.append("New turns:\n");
+        for (ConversationMessage turn : toFold) {
+            transcript.append("User: ").append(turn.getQuestion()).append('\n');
+            transcript.append("Assistant: ").append(turn.getAnswer()).append("\n\n");
+        }
+        return List.of(
+                new SystemMessage("""
+                        You maintain the running summary of a conversation between a user and an assistant. \
+                        Merge the new turns into the summary so far. Keep facts, names, numbers, decisions, open \
+                        questions and the user's preferences, drop small talk and repetition. Write at most %d \
+                        words of plain prose and answer with the summary only."""
+                        .formatted(properties.getSummaryWords())),
+                new UserMessage(transcript.toString()));
+    }
+
+    @Override
+    public void destroy() {
+        rounds.dispose();
+    }
+}
@@ -0,0 +1,26 @@
+package org.aibles.backend_ai.service.context;
+
+import org.aibles.backend_ai.entity.ConversationSummary;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * What a prompt of a conversation is built from: its rolling summary, if there is one yet, and its recent
+ * turns, oldest first.
+ */
+public record ConversationContext(ConversationSummary summary, List<ContextTurn> turns) {
+
+    public static final ConversationContext EMPTY = new ConversationContext(null, List.of());
+
+    /**
+     * Turns the summary does not cover yet, oldest first.
+     */
+    public List<ContextTurn> unsummarized() {
+        if (summary == null || summary.getCoveredUntil() == null) {
+            return turns;
+        }
+        Instant coveredUntil = summary.getCoveredUntil();
+        return turns.stream().filter(turn -> turn.createdAt().isAfter(coveredUntil)).toList();
+    }
+}
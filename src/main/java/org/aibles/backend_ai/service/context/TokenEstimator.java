@@ -0,0 +1,30 @@
+package org.aibles.backend_ai.service.context;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+
+/**
+ * Counts prompt tokens with the cl100k_base BPE vocabulary. The served models use their own vocabularies, for
+ * English and code cl100k_base lands within a few percent of them, which is close enough to budget a prompt.
+ */
+public class TokenEstimator {
+
+    /**
+     * Tokens the chat template adds around every message (role markers and separators).
+     */
+    static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    public int count(String text) {
+        return text == null || text.isEmpty() ? 0 : encoding.countTokens(text);
+    }
+
+    /**
+     * Tokens one message with this text takes in a prompt.
+     */
+    public int countMessage(String text) {
+        return MESSAGE_OVERHEAD_TOKENS + count(text);
+    }
+}
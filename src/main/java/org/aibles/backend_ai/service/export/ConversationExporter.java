@@ -0,0 +1,245 @@
+package org.aibles.backend_ai.service.export;
+
+import com.datastax.oss.driver.api.core.cql.PagingState;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.ConversationPagingProperties;
+import org.aibles.backend_ai.configuration.properties.ExportProperties;
+import org.aibles.backend_ai.constant.ExportLineType;
+import org.aibles.backend_ai.dto.response.ExportLineDto;
+import org.aibles.backend_ai.entity.Conversation;
+import org.aibles.backend_ai.entity.ConversationMessage;
+import org.aibles.backend_ai.repository.ConversationRepository;
+import org.aibles.backend_ai.repository.MessageRepository;
+import org.aibles.backend_ai.repository.cql.CqlPage;
+import org.aibles.backend_ai.repository.cql.InvalidPagingStateException;
+import org.aibles.backend_ai.service.bucket.ConversationBuckets;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Streams whole conversations as export lines. Rows are read page by page with the Cassandra paging state and
+ * the next page is only requested once the client has taken the rows before it, so an export holds a bounded
+ * number of pages whatever the size of the history. Every line carries a cursor that resumes the export right
+ * after it.
+ */
+@Slf4j
+public class ConversationExporter {
+
+    private final ConversationRepository conversationRepository;
+
+    private final MessageRepository messageRepository;
+
+    private final ConversationBuckets conversationBuckets;
+
+    private final ExportProperties properties;
+
+    private final ConversationPagingProperties pagingProperties;
+
+    private final Counter conversationLines;
+
+    private final Counter messageLines;
+
+    public ConversationExporter(ConversationRepository conversationRepository,
+                                MessageRepository messageRepository,
+                                ConversationBuckets conversationBuckets,
+                                ExportProperties properties,
+                                ConversationPagingProperties pagingProperties,
+                                MeterRegistry meterRegistry) {
+        this.conversationRepository = conversationRepository;
+        this.messageRepository = messageRepository;
+        this.conversationBuckets = conversationBuckets;
+        this.properties = properties;
+        this.pagingProperties = pagingProperties;
+        this.conversationLines = lines(meterRegistry, ExportLineType.CONVERSATION);
+        this.messageLines = lines(meterRegistry, ExportLineType.MESSAGE);
+    }
+
+    /**
+     * Every message of a conversation, oldest first.
+     */
+    public Flux<ExportLineDto> exportConversation(String conversationId, String cursor) {
+        log.info("(exportConversation)conversationId : {}, cursor : {}", conversationId, cursor);
+        final ExportCursor start;
+        try {
+            start = cursor != null ? decode(cursor) : ExportCursor.ofConversation(properties.getPageSize());
+            if (start.month() != null || start.messages() == null) {
+                throw new IllegalArgumentException("Cursor of a range export");
+            }
+        } catch (IllegalArgumentException e) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+        return messages(conversationId, start.messages(), start.pageSize())
+                .map(message -> messageLine(message.row(), start.withMessages(message.position().next())));
+    }
+
+    /**
+     * Every conversation created in [fromTime, toTime), each followed by its messages. Month buckets are read
+     * from the newest, and the shards of a month one after the other, so conversations come newest first
+     * within a shard but are not ordered across shards.
+     */
+    public Flux<ExportLineDto> exportConversations(Instant fromTime, Instant toTime, String cursor) {
+        log.info("(exportConversations)fromTime : {}, toTime : {}, cursor : {}", fromTime, toTime, cursor);
+        if (!fromTime.isBefore(toTime)) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "fromTime must be before toTime"));
+        }
+        final YearMonth lastMonth = ConversationBuckets.monthOf(toTime.minusMillis(1));
+        final YearMonth firstMonth = max(ConversationBuckets.monthOf(fromTime), pagingProperties.getEarliestMonth());
+        if (firstMonth.plusMonths(properties.getMaxMonths()).isBefore(lastMonth.plusMonths(1))) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "An export covers at most " + properties.getMaxMonths() + " months"));
+        }
+        if (lastMonth.isBefore(firstMonth)) {
+            return Flux.empty();
+        }
+        final ExportCursor start;
+        try {
+            start = cursor != null ? decode(cursor) : ExportCursor.ofRange(properties.getPageSize(), lastMonth);
+            if (start.month() == null || start.conversations() == null
+                    || start.month().isAfter(lastMonth) || start.month().isBefore(firstMonth)) {
+                throw new IllegalArgumentException("Cursor out of the requested range");
+            }
+        } catch (IllegalArgumentException e) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+        }
+
+        return Flux.<YearMonth, YearMonth>generate(() -> start.month(), (month, sink) -> {
+                    sink.next(month);
+                    if (!month.isAfter(firstMonth)) {
+                        sink.complete();
+                    }
+                    return month.minusMonths(1);
+                })
+                .concatMap(month -> {
+                    final List<String> buckets = conversationBuckets.bucketsOf(month);
+                    final boolean resumedMonth = month.equals(start.month());
+                    final int firstBucket = resumedMonth ? start.bucket() : 0;
+                    return Flux.range(firstBucket, Math.max(buckets.size() - firstBucket, 0))
+                            .concatMap(bucket -> {
+                                final boolean resumed = resumedMonth && bucket == firstBucket;
+                                return bucket(buckets.get(bucket), fromTime, toTime,
+                                        start.at(month, bucket, null, null),
+                                        resumed ? start.conversations() : PagePosition.START,
+                                        resumed ? start.messages() : null);
+                            }, 1);
+                }, 1);
+    }
+
+    /**
+     * The conversations of one bucket. The first one continues at resumeMessages when it is set, its
+     * conversation line was sent before the cursor was taken.
+     */
+    private Flux<ExportLineDto> bucket(String bucket,
+                                       Instant fromTime,
+                                       Instant toTime,
+                                       ExportCursor at,
+                                       PagePosition conversationsFrom,
+                                       PagePosition resumeMessages) {
+        return paged(conversationsFrom, at.pageSize(),
+                (pagingState, pageSize) -> conversationRepository.findPageBetween(bucket, fromTime, toTime, pagingState, pageSize))
+                .concatMap(conversation -> {
+                    final boolean resumed = resumeMessages != null && conversation.position().equals(conversationsFrom);
+                    final ExportCursor current = at.withConversations(conversation.position());
+                    final String conversationId = conversation.row().getId();
+                    Flux<ExportLineDto> messageLines = messages(conversationId,
+                            resumed ? resumeMessages : PagePosition.START,
+                            at.pageSize())
+                            .map(message -> messageLine(message.row(), current.withMessages(message.position().next())));
+                    return resumed
+                            ? messageLines
+                            : Flux.concat(Mono.fromSupplier(() -> conversationLine(conversation.row(),
+                                    current.withMessages(PagePosition.START))), messageLines);
+                }, 1);
+    }
+
+    private Flux<Positioned<ConversationMessage>> messages(String conversationId, PagePosition from, int pageSize) {
+        return paged(from, pageSize,
+                (pagingState, size) -> messageRepository.findMessagePage(conversationId, pagingState, size));
+    }
+
+    /**
+     * Reads the rows from a position onwards, one page per request. A page is fetched when the rows of the
+     * previous one are consumed, at most prefetchPages ahead. The first paging state comes from the client's
+     * cursor, one that does not belong to the query is a bad request.
+     */
+    private <T> Flux<Positioned<T>> paged(PagePosition from,
+                                          int pageSize,
+                                          BiFunction<PagingState, Integer, Mono<CqlPage<T>>> fetch) {
+        return fetch.apply(from.pagingState(), pageSize)
+                .onErrorMap(InvalidPagingStateException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e))
+                .map(page -> new Fetched<>(from.pagingState(), page, from.offset()))
+                .expand(fetched -> fetched.page().pagingState() == null
+                        ? Mono.empty()
+                        : fetch.apply(fetched.page().pagingState(), pageSize)
+                                .map(page -> new Fetched<>(fetched.page().pagingState(), page, 0)))
+                .concatMapIterable(fetched -> {
+                    List<T> rows = fetched.page().rows();
+                    List<Positioned<T>> positioned = new ArrayList<>(Math.max(rows.size() - fetched.skip(), 0));
+                    for (int offset = fetched.skip(); offset < rows.size(); offset++) {
+                        positioned.add(new Positioned<>(rows.get(offset), new PagePosition(fetched.pagingState(), offset)));
+                    }
+                    return positioned;
+                }, properties.getPrefetchPages());
+    }
+
+    private ExportCursor decode(String cursor) {
+        ExportCursor decoded = ExportCursor.decode(cursor);
+        // the page size of a cursor decides how many rows one read returns, it cannot exceed the configured one
+        if (decoded.pageSize() > properties.getPageSize()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return decoded;
+    }
+
+    private ExportLineDto conversationLine(Conversation conversation, ExportCursor cursor) {
+        conversationLines.increment();
+        return ExportLineDto.builder()
+                .type(ExportLineType.CONVERSATION)
+                .conversationId(conversation.getId())
+                .title(conversation.getTitle())
+                .createdAt(conversation.getKey().getCreatedAt())
+                .cursor(cursor.encode())
+                .build();
+    }
+
+    private ExportLineDto messageLine(ConversationMessage message, ExportCursor cursor) {
+        messageLines.increment();
+        return ExportLineDto.builder()
+                .type(ExportLineType.MESSAGE)
+                .conversationId(message.getKey().getConversationId())
+                .id(message.getId())
+                .question(message.getQuestion())
+                .answer(message.getAnswer())
+                .truncated(message.isTruncated())
+                .createdAt(message.getKey().getCreatedAt())
+                .cursor(cursor.encode())
+                .build();
+    }
+
+    private static YearMonth max(YearMonth first, YearMonth second) {
+        return first.isAfter(second) ? first : second;
+    }
+
+    private static Counter lines(MeterRegistry meterRegistry, ExportLineType type) {
+        return Counter.builder("conversation.export.lines")
+                .description("Lines written by conversation exports")
+                .tag("type", type.name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    private record Fetched<T>(PagingState pagingState, CqlPage<T> page, int skip) {
+    }
+
+    private record Positioned<T>(T row, PagePosition position) {
+    }
+}
@@ -0,0 +1,124 @@
+package org.aibles.backend_ai.service.export;
+
+import com.datastax.oss.driver.api.core.cql.PagingState;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.YearMonth;
+import java.util.Base64;
+
+/**
+ * Position in an export. Conversation exports only use messages, the position of the next message to send.
+ * Range exports walk month buckets from the newest, month and bucket name the partition being read and
+ * conversations the conversation being exported. messages is null until its conversation line was sent.
+ * pageSize is kept so that offsets still point at the same rows when the configured page size changes.
+ * Clients only see the encoded form. Paging states are stored in the driver's safe form, which the executor
+ * checks against the query and values it is applied to, a client cannot send an arbitrary one to Cassandra.
+ */
+public record ExportCursor(int pageSize,
+                           YearMonth month,
+                           int bucket,
+                           PagePosition conversations,
+                           PagePosition messages) {
+
+    private static final byte VERSION = 2;
+
+    public static ExportCursor ofConversation(int pageSize) {
+        return new ExportCursor(pageSize, null, 0, null, PagePosition.START);
+    }
+
+    public static ExportCursor ofRange(int pageSize, YearMonth month) {
+        return new ExportCursor(pageSize, month, 0, PagePosition.START, null);
+    }
+
+    public ExportCursor at(YearMonth month, int bucket, PagePosition conversations, PagePosition messages) {
+        return new ExportCursor(pageSize, month, bucket, conversations, messages);
+    }
+
+    public ExportCursor withConversations(PagePosition conversations) {
+        return new ExportCursor(pageSize, month, bucket, conversations, null);
+    }
+
+    public ExportCursor withMessages(PagePosition messages) {
+        return new ExportCursor(pageSize, month, bucket, conversations, messages);
+    }
+
+    public String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(pageSize);
+            out.writeBoolean(month != null);
+            if (month != null) {
+                out.writeInt(month.getYear());
+                out.writeByte(month.getMonthValue());
+                out.writeInt(bucket);
+            }
+            writePosition(out, conversations);
+            writePosition(out, messages);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @throws IllegalArgumentException when the value was not produced by {@link #encode()}
+     */
+    public static ExportCursor decode(String cursor) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+            if (in.readByte() != VERSION) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            int pageSize = in.readInt();
+            YearMonth month = null;
+            int bucket = 0;
+            if (in.readBoolean()) {
+                month = YearMonth.of(in.readInt(), in.readByte());
+                bucket = in.readInt();
+            }
+            PagePosition conversations = readPosition(in);
+            PagePosition messages = readPosition(in);
+            if (pageSize < 1 || bucket < 0 || in.available() > 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new ExportCursor(pageSize, month, bucket, conversations, messages);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private static void writePosition(DataOutputStream out, PagePosition position) throws IOException {
+        out.writeBoolean(position != null);
+        if (position == null) {
+            return;
+        }
+        out.writeInt(position.offset());
+        byte[] state = position.pagingState() == null ? null : position.pagingState().toBytes();
+        out.writeInt(state == null ? -1 : state.length);
+        if (state != null) {
+            out.write(state);
+        }
+    }
+
+    private static PagePosition readPosition(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int offset = in.readInt();
+        int length = in.readInt();
+        if (offset < 0 || length < -1 || length > in.available()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (length == -1) {
+            return new PagePosition(null, offset);
+        }
+        byte[] state = new byte[length];
+        in.readFully(state);
+        return new PagePosition(PagingState.fromBytes(state), offset);
+    }
+}
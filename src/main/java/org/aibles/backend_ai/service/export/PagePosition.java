@@ -0,0 +1,16 @@
+package org.aibles.backend_ai.service.export;
+
+import com.datastax.oss.driver.api.core.cql.PagingState;
+
+/**
+ * A row of a paged select: the paging state that fetches its page (null for the first page) and its index in
+ * that page.
+ */
+public record PagePosition(PagingState pagingState, int offset) {
+
+    public static final PagePosition START = new PagePosition(null, 0);
+
+    public PagePosition next() {
+        return new PagePosition(pagingState, offset + 1);
+    }
+}
@@ -0,0 +1,172 @@
+package org.aibles.backend_ai.service.persistence;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.MessageWriteProperties;
+import org.aibles.backend_ai.entity.ConversationMessage;
+import org.aibles.backend_ai.repository.MessageRepository;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+import reactor.util.retry.Retry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind stage for finished answers. Messages are queued in a bounded buffer, flushed every
+ * flushInterval or maxBatchSize messages, grouped per conversation partition and written as one
+ * unlogged batch per partition. Inserts are keyed by (conversation_id, created_at), so retrying a
+ * failed write is idempotent.
+ * Answers finish on many event-loop threads at once, so the sink is fed through a multi-producer queue and
+ * emitting never waits for another producer.
+ */
+@Slf4j
+public class MessageWriteBehindQueue implements DisposableBean {
+
+    private final MessageRepository messageRepository;
+
+    private final MessageWriteProperties properties;
+
+    private final Sinks.Many<ConversationMessage> sink;
+
+    /**
+     * Messages emitted and not yet written or dropped, buffered and in flight, bounded by queueCapacity.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final CountDownLatch drained = new CountDownLatch(1);
+
+    private final Disposable subscription;
+
+    private final DistributionSummary batchSize;
+
+    private final Timer writeLatency;
+
+    private final Counter overflowed;
+
+    private final Counter dropped;
+
+    public MessageWriteBehindQueue(MessageRepository messageRepository,
+                                   MessageWriteProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.properties = properties;
+        // the unicast sink drains its queue under a work-in-progress counter, an MPSC queue is then enough to
+        // accept concurrent producers without the serialized sink's FAIL_NON_SERIALIZED
+        this.sink = Sinks.unsafe().many().unicast()
+                .onBackpressureBuffer(Queues.<ConversationMessage>unboundedMultiproducer().get());
+
+        Gauge.builder("conversation.message.write.queue", pending, AtomicInteger::get)
+                .description("Finished answers waiting to be written")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("conversation.message.write.batch.size")
+                .description("Messages written by one partition batch")
+                .register(meterRegistry);
+        this.writeLatency = Timer.builder("conversation.message.write.latency")
+                .description("Latency of one partition batch, retries included")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.overflowed = Counter.builder("conversation.message.write.overflow")
+                .description("Messages written by the caller because the queue was full or closed")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("conversation.message.write.dropped")
+                .description("Messages lost after all retries failed")
+                .register(meterRegistry);
+
+        // fair backpressure: a flush due while every write slot is busy waits for a slot instead of failing
+        // with an overflow, which would cancel the sink
+        this.subscription = sink.asFlux()
+                .bufferTimeout(properties.getMaxBatchSize(), properties.getFlushInterval(), true)
+                .flatMap(this::writeBatch, properties.getConcurrency())
+                .doFinally(signalType -> drained.countDown())
+                .subscribe(null, error -> {
+                    int lost = pending.getAndSet(0);
+                    log.error("(MessageWriteBehindQueue)write pipeline stopped, {} queued messages lost, later messages are written by their callers",
+                            lost, error);
+                    dropped.increment(lost);
+                });
+    }
+
+    /**
+     * Queues a message for writing. When the queue is full the returned Mono performs the write itself,
+     * which slows the caller down instead of losing the message.
+     */
+    public Mono<Void> enqueue(ConversationMessage message) {
+        return Mono.defer(() -> {
+            Sinks.EmitResult result = Sinks.EmitResult.FAIL_OVERFLOW;
+            if (pending.incrementAndGet() <= properties.getQueueCapacity()) {
+                result = sink.tryEmitNext(message);
+            }
+            if (result.isSuccess()) {
+                return Mono.empty();
+            }
+            pending.decrementAndGet();
+            log.warn("(enqueue)write queue rejected message, result : {}", result);
+            overflowed.increment();
+            return writePartition(List.of(message));
+        });
+    }
+
+    /**
+     * Share of the queue capacity taken by messages not written yet, those of batches being written included.
+     */
+    public double backlogRatio() {
+        return (double) pending.get() / properties.getQueueCapacity();
+    }
+
+    private Mono<Void> writeBatch(List<ConversationMessage> messages) {
+        Map<String, List<ConversationMessage>> partitions = new LinkedHashMap<>();
+        for (ConversationMessage message : messages) {
+            partitions.computeIfAbsent(message.getKey().getConversationId(), id -> new ArrayList<>())
+                    .add(message);
+        }
+        return Flux.fromIterable(partitions.values())
+                .flatMap(this::writePartition)
+                .then()
+                .doFinally(signalType -> pending.addAndGet(-messages.size()));
+    }
+
+    private Mono<Void> writePartition(List<ConversationMessage> messages) {
+        Mono<Void> write = Mono.defer(() -> messageRepository.insertAll(messages));
+
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return write
+                    .retryWhen(Retry.backoff(properties.getMaxRetries(), properties.getRetryBackoff()))
+                    .doOnSuccess(ignored -> {
+                        sample.stop(writeLatency);
+                        batchSize.record(messages.size());
+                    })
+                    .onErrorResume(e -> {
+                        log.error("(writePartition)dropping {} messages of conversation {}",
+                                messages.size(), messages.get(0).getKey().getConversationId(), e);
+                        dropped.increment(messages.size());
+                        return Mono.empty();
+                    });
+        });
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        log.info("(destroy)flushing {} queued messages", pending.get());
+        sink.tryEmitComplete();
+        if (!drained.await(properties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("(destroy)write queue not drained after {}, {} messages left",
+                    properties.getShutdownTimeout(), pending.get());
+            subscription.dispose();
+        }
+    }
+}
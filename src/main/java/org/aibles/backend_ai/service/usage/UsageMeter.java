@@ -0,0 +1,228 @@
+package org.aibles.backend_ai.service.usage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.UsageProperties;
+import org.aibles.backend_ai.entity.ConversationUsage;
+import org.aibles.backend_ai.entity.ConversationUsageKey;
+import org.aibles.backend_ai.entity.ModelUsage;
+import org.aibles.backend_ai.entity.ModelUsageKey;
+import org.aibles.backend_ai.repository.ConversationUsageRepository;
+import org.aibles.backend_ai.repository.ModelUsageRepository;
+import org.aibles.backend_ai.service.chatstream.TokenUsage;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the tokens used per conversation, model and UTC day in memory and adds them to the Cassandra counters
+ * every flushInterval, or sooner when maxPendingKeys counts are waiting. A flush writes one counter batch per
+ * conversation partition and per day of model_usage, so a busy conversation costs one write per flush instead
+ * of one per answer. Counts of a batch that failed are put back and written by the next flush. Counter updates
+ * are not idempotent: a batch that timed out after it was applied is counted twice.
+ */
+@Slf4j
+public class UsageMeter implements DisposableBean {
+
+    private final ConversationUsageRepository conversationUsageRepository;
+
+    private final ModelUsageRepository modelUsageRepository;
+
+    private final UsageProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Counts not written yet. A key without conversation holds the model's count of the day.
+     */
+    private final ConcurrentMap<UsageKey, Counts> pending = new ConcurrentHashMap<>();
+
+    private final Sinks.Many<Long> flushRequests = Sinks.many().multicast().directBestEffort();
+
+    private final Sinks.Empty<Void> stopped = Sinks.empty();
+
+    private final CountDownLatch drained = new CountDownLatch(1);
+
+    private final Disposable flushing;
+
+    private final Counter writtenBatches;
+
+    private final Counter failedBatches;
+
+    public UsageMeter(ConversationUsageRepository conversationUsageRepository,
+                      ModelUsageRepository modelUsageRepository,
+                      UsageProperties properties,
+                      MeterRegistry meterRegistry) {
+        this.conversationUsageRepository = conversationUsageRepository;
+        this.modelUsageRepository = modelUsageRepository;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("usage.pending", pending, Map::size)
+                .description("Usage counts waiting to be written")
+                .register(meterRegistry);
+        this.writtenBatches = Counter.builder("usage.flush.batches")
+                .description("Counter batches written by usage flushes")
+                .tag("outcome", "success")
+                .register(meterRegistry);
+        this.failedBatches = Counter.builder("usage.flush.batches")
+                .description("Counter batches written by usage flushes")
+                .tag("outcome", "error")
+                .register(meterRegistry);
+        // on shutdown the flush under way completes and a last one writes what is left
+        this.flushing = properties.isEnabled()
+                ? Flux.merge(Flux.interval(properties.getFlushInterval(), properties.getFlushInterval()), flushRequests.asFlux())
+                        .takeUntilOther(stopped.asMono())
+                        .onBackpressureDrop()
+                        .concatMap(tick -> flush())
+                        .concatWith(flush())
+                        .doFinally(signalType -> drained.countDown())
+                        .subscribe()
+                : Disposables.disposed();
+    }
+
+    /**
+     * Counts one generation. usage is null when the backend reported none, the request is still counted.
+     *
+     * @param conversationId null for generations outside a conversation, such as batch jobs
+     */
+    public void record(String conversationId, String model, TokenUsage usage) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        final Counts counts = usage != null
+                ? new Counts(usage.promptTokens(), usage.completionTokens(), 1)
+                : new Counts(0, 0, 1);
+        final LocalDate day = LocalDate.now(ZoneOffset.UTC);
+        if (conversationId != null) {
+            pending.merge(new UsageKey(conversationId, model, day), counts, Counts::plus);
+        }
+        pending.merge(new UsageKey(null, model, day), counts, Counts::plus);
+        tokens(model, "prompt").increment(counts.promptTokens());
+        tokens(model, "completion").increment(counts.completionTokens());
+        if (pending.size() >= properties.getMaxPendingKeys()) {
+            flushRequests.tryEmitNext(0L);
+        }
+    }
+
+    Mono<Void> flush() {
+        return Mono.defer(() -> {
+            Map<String, List<Map.Entry<UsageKey, Counts>>> conversations = new LinkedHashMap<>();
+            Map<LocalDate, List<Map.Entry<UsageKey, Counts>>> days = new LinkedHashMap<>();
+            for (UsageKey key : pending.keySet()) {
+                // removing the key takes every count merged into it so far, later ones start a new entry
+                Counts counts = pending.remove(key);
+                if (counts == null) {
+                    continue;
+                }
+                if (key.conversationId() != null) {
+                    conversations.computeIfAbsent(key.conversationId(), id -> new ArrayList<>()).add(Map.entry(key, counts));
+                } else {
+                    days.computeIfAbsent(key.day(), day -> new ArrayList<>()).add(Map.entry(key, counts));
+                }
+            }
+            if (conversations.isEmpty() && days.isEmpty()) {
+                return Mono.empty();
+            }
+            log.debug("(flush)conversations : {}, days : {}", conversations.size(), days.size());
+            return Flux.concat(
+                            Flux.fromIterable(conversations.values())
+                                    .concatMapIterable(this::batches)
+                                    .map(batch -> write(batch, conversationUsageRepository.incrementAll(batch.stream()
+                                            .map(UsageMeter::toConversationUsage)
+                                            .toList()))),
+                            Flux.fromIterable(days.values())
+                                    .concatMapIterable(this::batches)
+                                    .map(batch -> write(batch, modelUsageRepository.incrementAll(batch.stream()
+                                            .map(UsageMeter::toModelUsage)
+                                            .toList()))))
+                    .flatMap(write -> write, properties.getConcurrency())
+                    .then();
+        });
+    }
+
+    private List<List<Map.Entry<UsageKey, Counts>>> batches(List<Map.Entry<UsageKey, Counts>> partition) {
+        List<List<Map.Entry<UsageKey, Counts>>> batches = new ArrayList<>();
+        for (int from = 0; from < partition.size(); from += properties.getMaxBatchSize()) {
+            batches.add(partition.subList(from, Math.min(from + properties.getMaxBatchSize(), partition.size())));
+        }
+        return batches;
+    }
+
+    private Mono<Void> write(List<Map.Entry<UsageKey, Counts>> batch, Mono<Void> increment) {
+        return increment
+                .doOnSuccess(unused -> writtenBatches.increment())
+                .onErrorResume(e -> {
+                    log.warn("(write)usage of {} kept for the next flush, first key : {}", batch.size(), batch.get(0).getKey(), e);
+                    failedBatches.increment();
+                    batch.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(), Counts::plus));
+                    return Mono.empty();
+                });
+    }
+
+    private Counter tokens(String model, String type) {
+        return Counter.builder("usage.tokens")
+                .description("Tokens reported by the model backends")
+                .tag("model", model)
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+
+    private static ConversationUsage toConversationUsage(Map.Entry<UsageKey, Counts> entry) {
+        final UsageKey key = entry.getKey();
+        return ConversationUsage.builder()
+                .key(new ConversationUsageKey(key.conversationId(), key.day(), key.model()))
+                .promptTokens(entry.getValue().promptTokens())
+                .completionTokens(entry.getValue().completionTokens())
+                .requests(entry.getValue().requests())
+                .build();
+    }
+
+    private static ModelUsage toModelUsage(Map.Entry<UsageKey, Counts> entry) {
+        final UsageKey key = entry.getKey();
+        return ModelUsage.builder()
+                .key(new ModelUsageKey(key.day(), key.model()))
+                .promptTokens(entry.getValue().promptTokens())
+                .completionTokens(entry.getValue().completionTokens())
+                .requests(entry.getValue().requests())
+                .build();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        log.info("(destroy)flushing {} usage counts", pending.size());
+        stopped.tryEmitEmpty();
+        if (!drained.await(properties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("(destroy)usage not flushed after {}, {} counts lost", properties.getShutdownTimeout(), pending.size());
+            flushing.dispose();
+        }
+    }
+
+    private record UsageKey(String conversationId, String model, LocalDate day) {
+    }
+
+    private record Counts(long promptTokens, long completionTokens, long requests) {
+
+        private Counts plus(Counts other) {
+            return new Counts(promptTokens + other.promptTokens, completionTokens + other.completionTokens, requests + other.requests);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.aibles.backend_ai.service.usage;
+
+import org.aibles.backend_ai.service.chatstream.AnswerChunk;
+import org.aibles.backend_ai.service.chatstream.ChatStreamRegistry;
+import org.aibles.backend_ai.service.chatstream.ChatStreamService;
+import org.aibles.backend_ai.service.chatstream.TokenUsage;
+import reactor.core.publisher.Flux;
+
+/**
+ * Hands the token usage that the model backends report with their answers to the {@link UsageMeter}, under
+ * the model that generated them and the conversation found in the Reactor context, if any. It wraps the
+ * backends themselves, so each leg of a hedged stream is counted under its own model. A stream cancelled
+ * before its usage arrived is counted as a request without tokens.
+ */
+public class UsageMeteringChatStreamRegistry implements ChatStreamRegistry {
+
+    private final ChatStreamRegistry delegate;
+
+    private final UsageMeter usageMeter;
+
+    public UsageMeteringChatStreamRegistry(ChatStreamRegistry delegate, UsageMeter usageMeter) {
+        this.delegate = delegate;
+        this.usageMeter = usageMeter;
+    }
+
+    @Override
+    public ChatStreamService getChatStreamService(String modelName) {
+        ChatStreamService backend = delegate.getChatStreamService(modelName);
+        return messages -> Flux.deferContextual(context -> {
+            final String conversationId = context.getOrDefault(ChatStreamService.CONVERSATION_ID, null);
+            // chunks of a stream are signalled serially
+            final TokenUsage[] reported = {null};
+            return backend.stream(messages)
+                    .doOnNext(chunk -> {
+                        if (chunk.usage() != null) {
+                            reported[0] = chunk.usage().max(reported[0]);
+                        }
+                    })
+                    .doFinally(signalType -> usageMeter.record(conversationId, modelName, reported[0]));
+        });
+    }
+}
@@ -0,0 +1,119 @@
+package org.aibles.backend_ai.service.usage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aibles.backend_ai.configuration.properties.UsageProperties;
+import org.aibles.backend_ai.dto.response.UsageDto;
+import org.aibles.backend_ai.dto.response.UsageReportDto;
+import org.aibles.backend_ai.repository.ConversationUsageRepository;
+import org.aibles.backend_ai.repository.ModelUsageRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Reads the token usage written by the {@link UsageMeter}. Days are UTC days, toDay defaults to today and
+ * fromDay to toDay.
+ */
+@Slf4j
+public class UsageService {
+
+    private final ConversationUsageRepository conversationUsageRepository;
+
+    private final ModelUsageRepository modelUsageRepository;
+
+    private final UsageProperties properties;
+
+    public UsageService(ConversationUsageRepository conversationUsageRepository,
+                        ModelUsageRepository modelUsageRepository,
+                        UsageProperties properties) {
+        this.conversationUsageRepository = conversationUsageRepository;
+        this.modelUsageRepository = modelUsageRepository;
+        this.properties = properties;
+    }
+
+    /**
+     * Usage of every model, newest day first.
+     */
+    public Mono<UsageReportDto> findUsage(LocalDate fromDay, LocalDate toDay) {
+        log.info("(findUsage)fromDay : {}, toDay : {}", fromDay, toDay);
+        final LocalDate to = toDay != null ? toDay : LocalDate.now(ZoneOffset.UTC);
+        final LocalDate from = fromDay != null ? fromDay : to;
+        return checkRange(from, to)
+                .thenMany(Flux.range(0, (int) ChronoUnit.DAYS.between(from, to) + 1)
+                        .concatMap(daysBack -> modelUsageRepository.findByDay(to.minusDays(daysBack))))
+                .map(usage -> toDto(usage.getKey().getDay(),
+                        usage.getKey().getModel(),
+                        usage.getPromptTokens(),
+                        usage.getCompletionTokens(),
+                        usage.getRequests()))
+                .collectList()
+                .map(usage -> toReport(null, from, to, usage));
+    }
+
+    /**
+     * Usage of a conversation, newest day first.
+     */
+    public Mono<UsageReportDto> findConversationUsage(String conversationId, LocalDate fromDay, LocalDate toDay) {
+        log.info("(findConversationUsage)conversationId : {}, fromDay : {}, toDay : {}", conversationId, fromDay, toDay);
+        final LocalDate to = toDay != null ? toDay : LocalDate.now(ZoneOffset.UTC);
+        final LocalDate from = fromDay != null ? fromDay : to;
+        return checkRange(from, to)
+                .thenMany(conversationUsageRepository.findBetween(conversationId, from, to))
+                .map(usage -> toDto(usage.getKey().getDay(),
+                        usage.getKey().getModel(),
+                        usage.getPromptTokens(),
+                        usage.getCompletionTokens(),
+                        usage.getRequests()))
+                .collectList()
+                .map(usage -> toReport(conversationId, from, to, usage));
+    }
+
+    private Mono<Void> checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "fromDay must not be after toDay"));
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= properties.getMaxQueryDays()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "A usage query covers at most " + properties.getMaxQueryDays() + " days"));
+        }
+        return Mono.empty();
+    }
+
+    private static UsageDto toDto(LocalDate day, String model, long promptTokens, long completionTokens, long requests) {
+        return UsageDto.builder()
+                .day(day)
+                .model(model)
+                .promptTokens(promptTokens)
+                .completionTokens(completionTokens)
+                .totalTokens(promptTokens + completionTokens)
+                .requests(requests)
+                .build();
+    }
+
+    private static UsageReportDto toReport(String conversationId, LocalDate from, LocalDate to, List<UsageDto> usage) {
+        long promptTokens = 0;
+        long completionTokens = 0;
+        long requests = 0;
+        for (UsageDto day : usage) {
+            promptTokens += day.getPromptTokens();
+            completionTokens += day.getCompletionTokens();
+            requests += day.getRequests();
+        }
+        return UsageReportDto.builder()
+                .conversationId(conversationId)
+                .fromDay(from)
+                .toDay(to)
+                .promptTokens(promptTokens)
+                .completionTokens(completionTokens)
+                .totalTokens(promptTokens + completionTokens)
+                .requests(requests)
+                .usage(usage)
+                .build();
+    }
+}
@@ -0,0 +1,283 @@
+package org.aibles.backend_ai.configuration.schema;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.SchemaProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SchemaMigratorTest {
+
+    private static final String CREATE_A = "CREATE TABLE IF NOT EXISTS a";
+
+    private static final String CREATE_B = "CREATE TABLE IF NOT EXISTS b";
+
+    private static final String ALTER_A = "ALTER TABLE a ADD c TEXT";
+
+    private static final String CREATE_D = "CREATE TABLE IF NOT EXISTS d";
+
+    private static final List<SchemaMigration> MIGRATIONS = List.of(
+            new SchemaMigration(1, "tables", List.of(CREATE_A, CREATE_B)),
+            new SchemaMigration(2, "column", List.of(ALTER_A)),
+            new SchemaMigration(3, "table", List.of(CREATE_D)));
+
+    private FakeCassandra cassandra;
+
+    private SchemaProperties properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        cassandra = new FakeCassandra();
+        properties = new SchemaProperties();
+        properties.setLockPollInterval(Duration.ofMillis(5));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void releasedMigrationsAreNumberedFromOneWithoutGaps() {
+        for (int i = 0; i < SchemaMigrations.ALL.size(); i++) {
+            assertEquals(i + 1, SchemaMigrations.ALL.get(i).version());
+        }
+    }
+
+    @Test
+    void bootstrapsAnEmptyClusterAndAppliesEveryMigrationInOrderUnderTheLock() throws InterruptedException {
+        cassandra.keyspace = false;
+
+        migrator().afterPropertiesSet();
+
+        assertTrue(cassandra.executed.containsAll(SchemaMigrations.BOOTSTRAP.stream().map(String::strip).toList()));
+        List<String> migration = cassandra.executed.subList(cassandra.executed.indexOf("lock"), cassandra.executed.size());
+        assertEquals(List.of("lock", "read version",
+                CREATE_A, CREATE_B, "version 1",
+                ALTER_A, "version 2",
+                CREATE_D, "version 3",
+                "unlock"), migration);
+        assertEquals(List.of(1, 2, 3), new ArrayList<>(cassandra.versions));
+        assertNull(cassandra.lockOwner);
+        assertEquals(1, migrations("migrated"));
+    }
+
+    @Test
+    void appliesOnlyThePendingMigrations() throws InterruptedException {
+        cassandra.versions.add(1);
+
+        migrator().afterPropertiesSet();
+
+        assertEquals(List.of(ALTER_A, CREATE_D), cassandra.ddl());
+        assertEquals(List.of(1, 2, 3), new ArrayList<>(cassandra.versions));
+    }
+
+    @Test
+    void runsNoDdlAndTakesNoLockWhenTheSchemaIsCurrent() throws InterruptedException {
+        cassandra.versions.addAll(List.of(1, 2, 3));
+
+        migrator().afterPropertiesSet();
+
+        assertEquals(List.of("read version", "USE backend_ai"), cassandra.executed);
+        assertEquals(1, migrations("current"));
+    }
+
+    @Test
+    void refusesAnOlderSchemaWhenMigrationIsOff() {
+        cassandra.versions.add(1);
+        properties.setMigrate(false);
+
+        assertThrows(IllegalStateException.class, () -> migrator().afterPropertiesSet());
+        assertEquals(List.of("read version"), cassandra.executed);
+    }
+
+    @Test
+    void waitsForTheLockAndSkipsWhatTheOtherInstanceApplied() throws InterruptedException {
+        cassandra.lockOwner = "other";
+        cassandra.onLockBusy = attempts -> {
+            if (attempts == 3) {
+                cassandra.versions.addAll(List.of(1, 2, 3));
+                cassandra.lockOwner = null;
+            }
+        };
+
+        migrator().afterPropertiesSet();
+
+        assertTrue(cassandra.ddl().isEmpty());
+        assertNull(cassandra.lockOwner);
+    }
+
+    @Test
+    void givesUpWhenTheLockIsHeldPastTheTimeout() {
+        properties.setLockTimeout(Duration.ofMillis(50));
+        cassandra.lockOwner = "other";
+
+        assertThrows(IllegalStateException.class, () -> migrator().afterPropertiesSet());
+        assertTrue(cassandra.ddl().isEmpty());
+        assertEquals("other", cassandra.lockOwner);
+    }
+
+    @Test
+    void releasesTheLockWhenAMigrationFailsAndResumesAtIt() throws InterruptedException {
+        cassandra.failing = ALTER_A;
+
+        assertThrows(IllegalStateException.class, () -> migrator().afterPropertiesSet());
+        assertEquals(List.of(1), new ArrayList<>(cassandra.versions));
+        assertNull(cassandra.lockOwner);
+
+        cassandra.failing = null;
+        cassandra.executed.clear();
+        migrator().afterPropertiesSet();
+
+        assertEquals(List.of(ALTER_A, CREATE_D), cassandra.ddl());
+        assertEquals(List.of(1, 2, 3), new ArrayList<>(cassandra.versions));
+    }
+
+    @Test
+    void instancesStartingTogetherApplyEachMigrationOnce() throws InterruptedException {
+        cassandra.keyspace = false;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> instances = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            SchemaMigrator migrator = migrator();
+            Thread instance = new Thread(() -> {
+                try {
+                    migrator.afterPropertiesSet();
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            instance.start();
+            instances.add(instance);
+        }
+        for (Thread instance : instances) {
+            instance.join();
+        }
+
+        assertNull(failure.get());
+        assertEquals(List.of(CREATE_A, CREATE_B, ALTER_A, CREATE_D), cassandra.ddl());
+        assertEquals(List.of(1, 2, 3), new ArrayList<>(cassandra.versions));
+    }
+
+    private SchemaMigrator migrator() {
+        return new SchemaMigrator(cassandra.session(), MIGRATIONS, properties, meterRegistry);
+    }
+
+    private long migrations(String outcome) {
+        return meterRegistry.get("schema.migration").tag("outcome", outcome).timer().count();
+    }
+
+    /**
+     * The tables of the migrator: schema_version and schema_lock, with the lock taken and released the way the
+     * lightweight transactions do. Statements are recorded as run, the migrator's own ones by a short name.
+     */
+    private static final class FakeCassandra {
+
+        private final List<String> executed = new ArrayList<>();
+
+        private final TreeSet<Integer> versions = new TreeSet<>();
+
+        private boolean keyspace = true;
+
+        private String lockOwner;
+
+        private int busyAttempts;
+
+        private IntConsumer onLockBusy = attempts -> {
+        };
+
+        private String failing;
+
+        private synchronized List<String> ddl() {
+            return executed.stream()
+                    .filter(statement -> MIGRATIONS.stream().anyMatch(migration -> migration.statements().contains(statement)))
+                    .toList();
+        }
+
+        private CqlSession session() {
+            return (CqlSession) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{CqlSession.class},
+                    (proxy, method, args) -> {
+                        if (!method.getName().equals("execute")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        return args[0] instanceof SimpleStatement statement
+                                ? execute(statement.getQuery().strip(), statement.getPositionalValues())
+                                : execute(((String) args[0]).strip(), List.of());
+                    });
+        }
+
+        private synchronized ResultSet execute(String query, List<Object> values) {
+            if (query.startsWith("SELECT version")) {
+                executed.add("read version");
+                if (!keyspace) {
+                    throw new InvalidQueryException(null, "Keyspace backend_ai does not exist");
+                }
+                return resultSet(versions.isEmpty() ? null : row(versions.last()), true);
+            }
+            if (query.startsWith("INSERT INTO schema_version")) {
+                executed.add("version " + values.get(1));
+                versions.add((Integer) values.get(1));
+                return resultSet(null, true);
+            }
+            if (query.startsWith("INSERT INTO schema_lock")) {
+                if (lockOwner != null) {
+                    onLockBusy.accept(++busyAttempts);
+                    return resultSet(null, false);
+                }
+                executed.add("lock");
+                lockOwner = (String) values.get(1);
+                return resultSet(null, true);
+            }
+            if (query.startsWith("DELETE FROM schema_lock")) {
+                boolean owner = values.get(1).equals(lockOwner);
+                if (owner) {
+                    executed.add("unlock");
+                    lockOwner = null;
+                }
+                return resultSet(null, owner);
+            }
+            if (query.equals(failing)) {
+                throw new IllegalStateException("Cannot add existing column c");
+            }
+            if (query.startsWith("CREATE KEYSPACE")) {
+                keyspace = true;
+            }
+            executed.add(query);
+            return resultSet(null, true);
+        }
+
+        private static ResultSet resultSet(Row row, boolean applied) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "one" -> row;
+                        case "wasApplied" -> applied;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        private static Row row(int version) {
+            return (Row) Proxy.newProxyInstance(Row.class.getClassLoader(), new Class<?>[]{Row.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("getInt") && "version".equals(args[0])) {
+                            return version;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+}
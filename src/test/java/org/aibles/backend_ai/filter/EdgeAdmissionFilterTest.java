@@ -0,0 +1,186 @@
+package org.aibles.backend_ai.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.EdgeProperties;
+import org.aibles.backend_ai.configuration.properties.MessageWriteProperties;
+import org.aibles.backend_ai.service.chatstream.ChatStreamMetrics;
+import org.aibles.backend_ai.service.persistence.MessageWriteBehindQueue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EdgeAdmissionFilterTest {
+
+    private static final InetSocketAddress CLIENT = new InetSocketAddress("10.0.0.1", 40000);
+
+    private static final WebFilterChain SERVED = exchange -> Mono.empty();
+
+    private EdgeProperties properties;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new EdgeProperties();
+        properties.setRead(new EdgeProperties.Limits(1000, 1000, 100));
+        properties.setStream(new EdgeProperties.Limits(1, 1, 100));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void classifiesRequestsByRouteRatherThanMethod() {
+        EdgeAdmissionFilter filter = filter();
+
+        assertNull(serve(filter, MockServerHttpRequest.post("/api/v1/conversations/abc:stream")));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, serve(filter, MockServerHttpRequest.post("/api/v1/batches")));
+        // a write that starts no generation is limited as a read
+        assertNull(serve(filter, MockServerHttpRequest.delete("/api/v1/conversations/abc")));
+        assertNull(serve(filter, MockServerHttpRequest.post("/api/v1/conversations:start")));
+        assertNull(serve(filter, MockServerHttpRequest.get("/api/v1/conversations/abc:export")));
+        assertEquals(1.0, rejected("stream"), 0);
+        assertEquals(0.0, rejected("read"), 0);
+    }
+
+    @Test
+    void limitsByRemoteAddressWhateverClientTheHeaderNames() {
+        EdgeAdmissionFilter filter = filter();
+
+        assertNull(serve(filter, stream("first")));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, serve(filter, stream("second")));
+    }
+
+    @Test
+    void limitsByTheClientHeaderWhenItIsTrusted() {
+        properties.setTrustClientHeader(true);
+        EdgeAdmissionFilter filter = filter();
+
+        assertNull(serve(filter, stream("first")));
+        assertNull(serve(filter, stream("second")));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, serve(filter, stream("first")));
+    }
+
+    @Test
+    void refusesWithRetryAfterWhenTheBucketIsEmpty() {
+        EdgeAdmissionFilter filter = filter();
+        serve(filter, stream("first"));
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(stream("first"));
+        filter.filter(exchange, SERVED).block();
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exchange.getResponse().getStatusCode());
+        assertEquals("1", exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(0.0, inFlight("stream"), 0);
+    }
+
+    @Test
+    void refusesOverTheInFlightCapAndFreesTheSlotWhenServed() {
+        properties.setRead(new EdgeProperties.Limits(1000, 1000, 1));
+        EdgeAdmissionFilter filter = filter();
+
+        Disposable held = filter.filter(MockServerWebExchange.from(read()), exchange -> Mono.never()).subscribe();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, serve(filter, read()));
+
+        held.dispose();
+        assertEquals(0.0, inFlight("read"), 0);
+        assertNull(serve(filter, read()));
+    }
+
+    @Test
+    void concurrentRequestsNeverExceedTheInFlightCap() throws InterruptedException {
+        final int maxInFlight = 5;
+        properties.setRead(new EdgeProperties.Limits(1_000_000, 1_000_000, maxInFlight));
+        EdgeAdmissionFilter filter = filter();
+        AtomicInteger served = new AtomicInteger();
+        WebFilterChain holding = exchange -> {
+            served.incrementAndGet();
+            return Mono.never();
+        };
+        List<Disposable> held = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int request = 0; request < 100; request++) {
+                    Disposable disposable = filter.filter(MockServerWebExchange.from(read()), holding).subscribe();
+                    synchronized (held) {
+                        held.add(disposable);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(maxInFlight, served.get());
+        assertEquals(maxInFlight, inFlight("read"), 0);
+        held.forEach(Disposable::dispose);
+        assertEquals(0.0, inFlight("read"), 0);
+    }
+
+    @Test
+    void passesEverythingOutsideTheApi() {
+        properties.setStream(new EdgeProperties.Limits(1, 1, 0));
+        EdgeAdmissionFilter filter = filter();
+
+        assertNull(serve(filter, MockServerHttpRequest.post("/actuator/health").remoteAddress(CLIENT)));
+    }
+
+    private EdgeAdmissionFilter filter() {
+        return new EdgeAdmissionFilter(properties,
+                new ChatStreamMetrics(meterRegistry),
+                new MessageWriteBehindQueue(null, new MessageWriteProperties(), meterRegistry),
+                meterRegistry);
+    }
+
+    private static HttpStatus serve(EdgeAdmissionFilter filter, MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, SERVED).block();
+        return (HttpStatus) exchange.getResponse().getStatusCode();
+    }
+
+    private MockServerHttpRequest.BaseBuilder<?> stream(String clientId) {
+        return MockServerHttpRequest.post("/api/v1/conversations:startStream")
+                .header(properties.getClientHeader(), clientId)
+                .remoteAddress(CLIENT);
+    }
+
+    private static MockServerHttpRequest.BaseBuilder<?> read() {
+        return MockServerHttpRequest.get("/api/v1/conversations").remoteAddress(CLIENT);
+    }
+
+    private double rejected(String edgeClass) {
+        return meterRegistry.find("edge.rejected").tag("class", edgeClass).counters()
+                .stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+
+    private double inFlight(String edgeClass) {
+        return meterRegistry.get("edge.in_flight").tag("class", edgeClass).gauge().value();
+    }
+}
@@ -0,0 +1,78 @@
+package org.aibles.backend_ai.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void startsWithTheBurstAndThenTellsTheWait() {
+        TokenBucket bucket = new TokenBucket(1, 3, 0);
+
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(SECOND, bucket.tryAcquire(0));
+        assertEquals(SECOND / 4, bucket.tryAcquire(3 * SECOND / 4));
+    }
+
+    @Test
+    void refillsAtTheRate() {
+        TokenBucket bucket = new TokenBucket(2, 1, 0);
+        assertEquals(0, bucket.tryAcquire(0));
+
+        assertTrue(bucket.tryAcquire(SECOND / 4) > 0);
+        assertEquals(0, bucket.tryAcquire(SECOND / 2));
+    }
+
+    @Test
+    void neverHoldsMoreThanTheBurst() {
+        TokenBucket bucket = new TokenBucket(10, 2, 0);
+        final long later = TimeUnit.HOURS.toNanos(1);
+
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(0, bucket.tryAcquire(later));
+        assertTrue(bucket.tryAcquire(later) > 0);
+    }
+
+    @Test
+    void concurrentRequestsTakeNoMoreThanTheBurst() throws InterruptedException {
+        final int burst = 100;
+        TokenBucket bucket = new TokenBucket(1, burst, 0);
+        AtomicInteger taken = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int attempt = 0; attempt < 1000; attempt++) {
+                    if (bucket.tryAcquire(0) == 0) {
+                        taken.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(burst, taken.get());
+    }
+}
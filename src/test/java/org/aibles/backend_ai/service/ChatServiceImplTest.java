@@ -0,0 +1,123 @@
+package org.aibles.backend_ai.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.AdmissionProperties;
+import org.aibles.backend_ai.configuration.properties.DisconnectProperties;
+import org.aibles.backend_ai.configuration.properties.ExecutionProperties;
+import org.aibles.backend_ai.configuration.properties.ResponseCacheProperties;
+import org.aibles.backend_ai.configuration.properties.StreamReplayProperties;
+import org.aibles.backend_ai.constant.DisconnectPolicy;
+import org.aibles.backend_ai.dto.ModelContextWindow;
+import org.aibles.backend_ai.dto.request.ConversationRequest;
+import org.aibles.backend_ai.service.cache.ResponseCache;
+import org.aibles.backend_ai.service.chatstream.AnswerChunk;
+import org.aibles.backend_ai.service.chatstream.ChatExecution;
+import org.aibles.backend_ai.service.chatstream.ChatStreamMetrics;
+import org.aibles.backend_ai.service.chatstream.ChatStreamRegistry;
+import org.aibles.backend_ai.service.chatstream.admission.ModelAdmissionScheduler;
+import org.aibles.backend_ai.service.chatstream.replay.TurnReplayRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatServiceImplTest {
+
+    private static final String MODEL = "QWEN2_5";
+
+    private static final String TOKEN = "token ";
+
+    private final BlockingQueue<SavedMessage> saved = new LinkedBlockingQueue<>();
+
+    private final Scheduler modelThread = Schedulers.newSingle("model");
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        modelThread.dispose();
+    }
+
+    @Test
+    void savesTheCompleteAnswerOnce() throws InterruptedException {
+        ChatService chatService = chatService(Flux.just("Hello", " ", "world"));
+
+        List<String> tokens = chatService.streamAnswer("conversation", new ConversationRequest("Hi"), null, null)
+                .tokens()
+                .collectList()
+                .block();
+
+        assertEquals(List.of("Hello", " ", "world"), tokens);
+        assertEquals(new SavedMessage("Hi", "Hello world", false), saved.poll(1, TimeUnit.SECONDS));
+        assertNull(saved.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void savesAWholePrefixWhenCancelledWhileTokensAreEmitted() throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            ChatService chatService = chatService(Flux.<String>generate(sink -> sink.next(TOKEN)));
+            CountDownLatch received = new CountDownLatch(100);
+
+            Disposable client = chatService.streamAnswer("conversation", new ConversationRequest("Hi"), null, null)
+                    .tokens()
+                    .subscribe(token -> received.countDown());
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+            // the model thread is still emitting while the client goes away
+            client.dispose();
+
+            SavedMessage message = saved.poll(5, TimeUnit.SECONDS);
+            assertNotNull(message);
+            assertTrue(message.truncated());
+            assertTrue(message.answer().length() >= TOKEN.length());
+            assertEquals(TOKEN.repeat(message.answer().length() / TOKEN.length()), message.answer());
+            assertNull(saved.poll(50, TimeUnit.MILLISECONDS));
+        }
+        assertEquals(50.0, meterRegistry.get("chat.generation.cancelled").tag("partial_saved", "true").counter().count(), 0);
+    }
+
+    private ChatService chatService(Flux<String> answer) {
+        DisconnectProperties disconnectProperties = new DisconnectProperties();
+        disconnectProperties.setPolicy(DisconnectPolicy.CANCEL);
+        ChatStreamRegistry chatStreamRegistry = model -> messages -> answer
+                .map(text -> new AnswerChunk(text, null))
+                .subscribeOn(modelThread);
+        return new ChatServiceImpl(conversationService(),
+                chatStreamRegistry,
+                new ModelAdmissionScheduler(new AdmissionProperties(), meterRegistry),
+                new ResponseCache(new ResponseCacheProperties(), null, meterRegistry),
+                new ChatStreamMetrics(meterRegistry),
+                new ChatExecution(new ExecutionProperties()),
+                new TurnReplayRegistry(new StreamReplayProperties(), disconnectProperties, meterRegistry));
+    }
+
+    private ConversationService conversationService() {
+        return (ConversationService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ConversationService.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findConversationModel" -> Mono.just(MODEL);
+                    case "generateContextWindow" -> Mono.just(new ModelContextWindow(MODEL, List.of()));
+                    case "saveMessage" -> Mono.fromRunnable(() ->
+                            saved.add(new SavedMessage((String) args[1], (String) args[2], (Boolean) args[3])));
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private record SavedMessage(String question, String answer, boolean truncated) {
+    }
+}
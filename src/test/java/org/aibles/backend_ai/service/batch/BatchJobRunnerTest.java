@@ -0,0 +1,44 @@
+package org.aibles.backend_ai.service.batch;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.AdmissionProperties;
+import org.aibles.backend_ai.configuration.properties.BatchProperties;
+import org.aibles.backend_ai.configuration.properties.ModelRegistryProperties;
+import org.aibles.backend_ai.service.chatstream.admission.ModelAdmissionScheduler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchJobRunnerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ModelAdmissionScheduler admissionScheduler =
+            new ModelAdmissionScheduler(new AdmissionProperties(), meterRegistry);
+
+    @Test
+    void defaultsBelowClientStreamsAndAboveCompaction() {
+        BatchProperties properties = new BatchProperties();
+
+        assertTrue(properties.getPriority() > 0);
+        assertTrue(properties.getPriority() < admissionScheduler.defaultPriority());
+        runner(properties);
+    }
+
+    @Test
+    void rejectsABatchPriorityThatCompetesWithClientStreams() {
+        BatchProperties properties = new BatchProperties();
+        properties.setPriority(admissionScheduler.defaultPriority());
+
+        assertThrows(IllegalArgumentException.class, () -> runner(properties));
+        properties.setPriority(-1);
+        assertThrows(IllegalArgumentException.class, () -> runner(properties));
+    }
+
+    private BatchJobRunner runner(BatchProperties properties) {
+        properties.setEnabled(false);
+        return new BatchJobRunner(null, null, null, admissionScheduler, properties,
+                new ModelRegistryProperties(), meterRegistry);
+    }
+}
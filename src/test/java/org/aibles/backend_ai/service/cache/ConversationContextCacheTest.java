@@ -0,0 +1,88 @@
+package org.aibles.backend_ai.service.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.ContextCacheProperties;
+import org.aibles.backend_ai.service.context.ContextTurn;
+import org.aibles.backend_ai.service.context.ConversationContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversationContextCacheTest {
+
+    private static final String CONVERSATION_ID = "conversation";
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private ConversationContextCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ConversationContextCache(new ContextCacheProperties(), 3, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void appendsToACachedContextKeepingTheLastTurns() {
+        cache.put(CONVERSATION_ID, new ConversationContext(null, List.of(turn(0), turn(1), turn(2))));
+
+        cache.append(CONVERSATION_ID, turn(3));
+
+        assertEquals(List.of(turn(1), turn(2), turn(3)), cache.get(CONVERSATION_ID).orElseThrow().turns());
+    }
+
+    @Test
+    void keepsATurnAppendedWhileTheContextWasLoading() {
+        long ticket = cache.startLoad();
+        // saved while the load reads Cassandra, the read did not see it
+        cache.append(CONVERSATION_ID, turn(1));
+
+        ConversationContext loaded = cache.putLoaded(CONVERSATION_ID, ticket, new ConversationContext(null, List.of(turn(0))));
+
+        assertEquals(List.of(turn(0), turn(1)), loaded.turns());
+        assertEquals(List.of(turn(0), turn(1)), cache.get(CONVERSATION_ID).orElseThrow().turns());
+    }
+
+    @Test
+    void keepsATurnNotWrittenYetWhenTheContextIsLoadedLater() {
+        cache.append(CONVERSATION_ID, turn(1));
+
+        // the write-behind queue has not written the turn when the next prompt reads Cassandra
+        ConversationContext loaded = cache.putLoaded(CONVERSATION_ID, cache.startLoad(),
+                new ConversationContext(null, List.of(turn(0))));
+
+        assertEquals(List.of(turn(0), turn(1)), loaded.turns());
+    }
+
+    @Test
+    void doesNotAddTurnsTheLoadAlreadyRead() {
+        cache.append(CONVERSATION_ID, turn(1));
+
+        ConversationContext loaded = cache.putLoaded(CONVERSATION_ID, cache.startLoad(),
+                new ConversationContext(null, List.of(turn(0), turn(1))));
+
+        assertEquals(List.of(turn(0), turn(1)), loaded.turns());
+    }
+
+    @Test
+    void doesNotCacheALoadStartedBeforeAnInvalidation() {
+        long ticket = cache.startLoad();
+        cache.invalidate(CONVERSATION_ID);
+
+        cache.putLoaded(CONVERSATION_ID, ticket, new ConversationContext(null, List.of(turn(0))));
+
+        assertTrue(cache.get(CONVERSATION_ID).isEmpty());
+
+        cache.putLoaded(CONVERSATION_ID, cache.startLoad(), new ConversationContext(null, List.of(turn(0))));
+
+        assertEquals(List.of(turn(0)), cache.get(CONVERSATION_ID).orElseThrow().turns());
+    }
+
+    private static ContextTurn turn(int index) {
+        return new ContextTurn(START.plusSeconds(index), "question " + index, "answer " + index, 10);
+    }
+}
@@ -0,0 +1,57 @@
+package org.aibles.backend_ai.service.chatstream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatStreamMetricsTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    private final ChatStreamMetrics metrics = new ChatStreamMetrics(new SimpleMeterRegistry());
+
+    @Test
+    void startsAtTheFirstAnswer() {
+        final long now = System.nanoTime();
+        assertEquals(Duration.ZERO, metrics.recentAnswerFirstToken(now));
+
+        metrics.recordAnswerFirstToken(4 * SECOND, now);
+
+        assertEquals(Duration.ofSeconds(4), metrics.recentAnswerFirstToken(now));
+    }
+
+    @Test
+    void movesByATenthPerAnswerUnderSteadyTraffic() {
+        final long now = System.nanoTime();
+        metrics.recordAnswerFirstToken(4 * SECOND, now);
+
+        metrics.recordAnswerFirstToken(SECOND, now);
+
+        assertEquals(Duration.ofMillis(3700), metrics.recentAnswerFirstToken(now));
+    }
+
+    @Test
+    void halvesEveryThirtySecondsWithoutAnswers() {
+        final long now = System.nanoTime();
+        metrics.recordAnswerFirstToken(8 * SECOND, now);
+
+        assertEquals(Duration.ofSeconds(4), metrics.recentAnswerFirstToken(now + 30 * SECOND));
+        assertEquals(Duration.ofSeconds(1), metrics.recentAnswerFirstToken(now + 90 * SECOND));
+        assertTrue(metrics.recentAnswerFirstToken(now + 600 * SECOND).toMillis() < 1);
+    }
+
+    @Test
+    void countsTheFirstAnswerAfterAQuietPeriodFully() {
+        final long now = System.nanoTime();
+        metrics.recordAnswerFirstToken(8 * SECOND, now);
+
+        final long later = now + 600 * SECOND;
+        metrics.recordAnswerFirstToken(2 * SECOND, later);
+
+        assertEquals(2000, metrics.recentAnswerFirstToken(later).toMillis(), 1);
+    }
+}
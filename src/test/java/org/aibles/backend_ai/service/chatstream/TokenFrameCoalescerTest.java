@@ -0,0 +1,82 @@
+package org.aibles.backend_ai.service.chatstream;
+
+import org.aibles.backend_ai.configuration.properties.SseFrameProperties;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TokenFrameCoalescerTest {
+
+    private final SseFrameProperties properties = new SseFrameProperties();
+
+    @Test
+    void leavesTheStreamAloneUnlessAskedFor() {
+        Flux<String> tokens = Flux.just("a", "b");
+
+        assertSame(tokens, new TokenFrameCoalescer(properties).coalesce(tokens, null, null));
+    }
+
+    @Test
+    void sendsTheFirstTokenAloneThenFramesOfTheAskedSize() {
+        StepVerifier.create(new TokenFrameCoalescer(properties)
+                        .coalesce(Flux.just("a", "bc", "de", "fgh", "i"), 10_000, 5))
+                .expectNext("a", "bcdefgh", "i")
+                .verifyComplete();
+    }
+
+    @Test
+    void sendsAFrameOnceItsOldestTokenWaitedForTheWindow() {
+        StepVerifier.withVirtualTime(() -> new TokenFrameCoalescer(properties)
+                        .coalesce(Flux.just("a", "b", "c")
+                                .concatWith(Flux.just("d").delaySubscription(Duration.ofMillis(100)))
+                                .concatWith(Flux.never()), 50, 1024))
+                .expectNext("a")
+                .expectNoEvent(Duration.ofMillis(49))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext("bc")
+                .expectNoEvent(Duration.ofMillis(99))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext("d")
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void clampsTheWindowToTheConfiguredMaximum() {
+        properties.setMaxWindow(Duration.ofMillis(200));
+
+        StepVerifier.withVirtualTime(() -> new TokenFrameCoalescer(properties)
+                        .coalesce(Flux.just("a", "b").concatWith(Flux.never()), 60_000, 1024))
+                .expectNext("a")
+                .expectNoEvent(Duration.ofMillis(199))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext("b")
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void sendsThePendingFrameBeforeAnError() {
+        StepVerifier.create(new TokenFrameCoalescer(properties)
+                        .coalesce(Flux.just("a", "b", "c").concatWith(Flux.error(new IllegalStateException("boom"))),
+                                10_000, 1024))
+                .expectNext("a", "bc")
+                .verifyError(IllegalStateException.class);
+    }
+
+    @Test
+    void passesTheSubscriberContextToTheTokenStream() {
+        Flux<String> tokens = Flux.deferContextual(context -> Flux.just("conversation", context.get("conversationId")));
+
+        StepVerifier.create(new TokenFrameCoalescer(properties)
+                        .coalesce(tokens, 10_000, 1024)
+                        .contextWrite(Context.of("conversationId", "42")))
+                .expectNext("conversation", "42")
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,95 @@
+package org.aibles.backend_ai.service.chatstream.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.AdmissionProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ModelAdmissionSchedulerTest {
+
+    private static final String MODEL = "QWEN2_5";
+
+    private AdmissionProperties properties;
+
+    private MeterRegistry meterRegistry;
+
+    private ModelAdmissionScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AdmissionProperties();
+        properties.getDefaults().setMaxInFlight(1);
+        properties.setTiers(Map.of("premium", 8));
+        meterRegistry = new SimpleMeterRegistry();
+        scheduler = new ModelAdmissionScheduler(properties, meterRegistry);
+    }
+
+    @Test
+    void releasesTheSlotWhenTheStreamIsCancelled() {
+        StepVerifier.create(scheduler.admit(MODEL, "a", null, Flux::never))
+                .expectSubscription()
+                .then(() -> assertEquals(1.0, inFlight(), 0))
+                .thenCancel()
+                .verify();
+
+        assertEquals(0.0, inFlight(), 0);
+        StepVerifier.create(scheduler.admit(MODEL, "b", null, () -> Flux.just("token")))
+                .expectNext("token")
+                .verifyComplete();
+    }
+
+    @Test
+    void releasesTheSlotWhenTheStreamFails() {
+        StepVerifier.create(scheduler.admit(MODEL, "a", null, () -> Flux.error(new IllegalStateException("boom"))))
+                .verifyError(IllegalStateException.class);
+
+        assertEquals(0.0, inFlight(), 0);
+    }
+
+    @Test
+    void admitsClientStreamsWithoutATierBeforeBackgroundWork() {
+        List<String> admitted = new ArrayList<>();
+        Sinks.Empty<Void> running = Sinks.empty();
+        scheduler.admit(MODEL, "running", null, () -> running.asMono().flux()).subscribe();
+        scheduler.admit(MODEL, "compaction", 0, () -> Flux.just("compaction")).subscribe(admitted::add);
+        scheduler.admit(MODEL, "client", null, () -> Flux.just("client")).subscribe(admitted::add);
+
+        running.tryEmitEmpty();
+
+        assertEquals(List.of("client", "compaction"), admitted);
+    }
+
+    @Test
+    void rejectsADefaultPriorityNotAboveBackgroundWork() {
+        properties.setDefaultPriority(0);
+
+        assertThrows(IllegalArgumentException.class, () -> new ModelAdmissionScheduler(properties, meterRegistry));
+    }
+
+    @Test
+    void ignoresTheTierHeaderUnlessItIsTrusted() {
+        assertNull(scheduler.priorityOf("premium"));
+
+        properties.setTrustTierHeader(true);
+
+        assertEquals(8, scheduler.priorityOf("premium"));
+        assertNull(scheduler.priorityOf("unknown"));
+        assertNull(scheduler.priorityOf(null));
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("chat.admission.in_flight").tag("model", MODEL).gauge().value();
+    }
+}
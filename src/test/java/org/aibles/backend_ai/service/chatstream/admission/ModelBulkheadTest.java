@@ -0,0 +1,134 @@
+package org.aibles.backend_ai.service.chatstream.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.AdmissionProperties;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ModelBulkheadTest {
+
+    private static final Duration QUEUE_TIMEOUT = Duration.ofSeconds(10);
+
+    @Test
+    void admitsRightAwayWhileSlotsAreFree() {
+        ModelBulkhead bulkhead = bulkhead(2, 4);
+
+        bulkhead.acquire("a", 0).block();
+        bulkhead.acquire("b", 0).block();
+
+        assertEquals(2, bulkhead.inFlight());
+        assertEquals(0, bulkhead.queued());
+    }
+
+    @Test
+    void servesHigherPriorityFirst() {
+        ModelBulkhead bulkhead = bulkhead(1, 4);
+        ModelBulkhead.AdmissionPermit running = bulkhead.acquire("running", 0).block();
+        List<String> admitted = new ArrayList<>();
+        List<ModelBulkhead.AdmissionPermit> permits = new ArrayList<>();
+        for (String[] waiter : new String[][]{{"low", "1"}, {"high", "5"}, {"middle", "3"}}) {
+            bulkhead.acquire(waiter[0], Integer.parseInt(waiter[1])).subscribe(permit -> {
+                admitted.add(waiter[0]);
+                permits.add(permit);
+            });
+        }
+        assertEquals(3, bulkhead.queued());
+
+        running.release();
+        permits.get(0).release();
+        permits.get(1).release();
+
+        assertEquals(List.of("high", "middle", "low"), admitted);
+    }
+
+    @Test
+    void takesTurnsBetweenConversationsOfOnePriority() {
+        ModelBulkhead bulkhead = bulkhead(1, 8);
+        ModelBulkhead.AdmissionPermit running = bulkhead.acquire("running", 0).block();
+        List<String> admitted = new ArrayList<>();
+        List<ModelBulkhead.AdmissionPermit> permits = new ArrayList<>();
+        for (String conversationId : List.of("a", "a", "a", "b", "c")) {
+            bulkhead.acquire(conversationId, 0).subscribe(permit -> {
+                admitted.add(conversationId);
+                permits.add(permit);
+            });
+        }
+
+        running.release();
+        for (int i = 0; i < 4; i++) {
+            permits.get(i).release();
+        }
+
+        assertEquals(List.of("a", "b", "c", "a", "a"), admitted);
+    }
+
+    @Test
+    void rejectsWhenTheQueueIsFull() {
+        ModelBulkhead bulkhead = bulkhead(1, 1);
+        bulkhead.acquire("a", 0).block();
+        bulkhead.acquire("b", 0).subscribe();
+
+        StepVerifier.create(bulkhead.acquire("c", 0))
+                .expectErrorMatches(error -> error instanceof AdmissionRejectedException rejected
+                        && rejected.getReason() == AdmissionRejectedException.Reason.QUEUE_FULL)
+                .verify();
+        assertEquals(1, bulkhead.queued());
+    }
+
+    @Test
+    void rejectsAWaiterAfterTheQueueTimeout() {
+        ModelBulkhead bulkhead = bulkhead(1, 4);
+        bulkhead.acquire("a", 0).block();
+
+        StepVerifier.withVirtualTime(() -> bulkhead.acquire("b", 0))
+                .expectSubscription()
+                .expectNoEvent(QUEUE_TIMEOUT.minusMillis(1))
+                .thenAwait(Duration.ofMillis(1))
+                .expectErrorMatches(error -> error instanceof AdmissionRejectedException rejected
+                        && rejected.getReason() == AdmissionRejectedException.Reason.QUEUE_TIMEOUT)
+                .verify();
+        assertEquals(0, bulkhead.queued());
+        assertEquals(1, bulkhead.inFlight());
+    }
+
+    @Test
+    void cancelledWaiterLeavesTheQueue() {
+        ModelBulkhead bulkhead = bulkhead(1, 4);
+        ModelBulkhead.AdmissionPermit running = bulkhead.acquire("a", 0).block();
+        Disposable waiter = bulkhead.acquire("b", 0).subscribe();
+        assertEquals(1, bulkhead.queued());
+
+        waiter.dispose();
+        running.release();
+
+        assertEquals(0, bulkhead.queued());
+        assertEquals(0, bulkhead.inFlight());
+    }
+
+    @Test
+    void releasingAPermitTwiceFreesOneSlot() {
+        ModelBulkhead bulkhead = bulkhead(2, 4);
+        ModelBulkhead.AdmissionPermit first = bulkhead.acquire("a", 0).block();
+        bulkhead.acquire("b", 0).block();
+
+        first.release();
+        first.release();
+
+        assertEquals(1, bulkhead.inFlight());
+    }
+
+    private static ModelBulkhead bulkhead(int maxInFlight, int maxQueued) {
+        AdmissionProperties.Limits limits = new AdmissionProperties.Limits();
+        limits.setMaxInFlight(maxInFlight);
+        limits.setMaxQueued(maxQueued);
+        limits.setQueueTimeout(QUEUE_TIMEOUT);
+        return new ModelBulkhead("test-model", limits, new SimpleMeterRegistry());
+    }
+}
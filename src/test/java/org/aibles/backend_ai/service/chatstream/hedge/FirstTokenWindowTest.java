@@ -0,0 +1,52 @@
+package org.aibles.backend_ai.service.chatstream.hedge;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FirstTokenWindowTest {
+
+    @Test
+    void emptyWindowHasNoPercentile() {
+        FirstTokenWindow window = new FirstTokenWindow(4);
+
+        assertEquals(0, window.size());
+        assertEquals(-1, window.percentile(0.9));
+    }
+
+    @Test
+    void takesTheNearestRankPercentile() {
+        FirstTokenWindow window = new FirstTokenWindow(10);
+        for (long nanos : new long[]{50, 10, 40, 20, 30, 100, 90, 60, 80, 70}) {
+            window.record(nanos);
+        }
+
+        assertEquals(10, window.percentile(0));
+        assertEquals(50, window.percentile(0.5));
+        assertEquals(90, window.percentile(0.9));
+        assertEquals(100, window.percentile(1));
+        assertEquals(100, window.percentile(1.5));
+    }
+
+    @Test
+    void keepsOnlyTheLatestSamples() {
+        FirstTokenWindow window = new FirstTokenWindow(3);
+        for (long nanos = 1; nanos <= 5; nanos++) {
+            window.record(nanos * 100);
+        }
+
+        assertEquals(3, window.size());
+        assertEquals(300, window.percentile(0));
+        assertEquals(500, window.percentile(1));
+    }
+
+    @Test
+    void holdsAtLeastOneSample() {
+        FirstTokenWindow window = new FirstTokenWindow(0);
+        window.record(7);
+        window.record(9);
+
+        assertEquals(1, window.size());
+        assertEquals(9, window.percentile(0.5));
+    }
+}
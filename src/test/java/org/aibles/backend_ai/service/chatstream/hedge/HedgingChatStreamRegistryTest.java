@@ -0,0 +1,115 @@
+package org.aibles.backend_ai.service.chatstream.hedge;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.AdmissionProperties;
+import org.aibles.backend_ai.configuration.properties.HedgingProperties;
+import org.aibles.backend_ai.service.chatstream.AnswerChunk;
+import org.aibles.backend_ai.service.chatstream.ChatStreamRegistry;
+import org.aibles.backend_ai.service.chatstream.ChatStreamService;
+import org.aibles.backend_ai.service.chatstream.admission.ModelAdmissionScheduler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HedgingChatStreamRegistryTest {
+
+    private static final String PRIMARY = "DEEPSEEK_V3";
+
+    private static final String SECONDARY = "QWEN2_5";
+
+    private static final Duration DELAY = Duration.ofSeconds(1);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AdmissionProperties admissionProperties = new AdmissionProperties();
+
+    private final AtomicInteger secondaryStarted = new AtomicInteger();
+
+    private Supplier<Flux<AnswerChunk>> primaryAnswer;
+
+    private ModelAdmissionScheduler admissionScheduler;
+
+    @BeforeEach
+    void setUp() {
+        AdmissionProperties.Limits secondaryLimits = new AdmissionProperties.Limits();
+        secondaryLimits.setMaxInFlight(1);
+        admissionProperties.setModels(Map.of(SECONDARY, secondaryLimits));
+        admissionScheduler = new ModelAdmissionScheduler(admissionProperties, meterRegistry);
+    }
+
+    @Test
+    void keepsAPrimaryThatAnswersWithinTheDelay() {
+        primaryAnswer = () -> Flux.just(chunk("primary")).delaySubscription(DELAY.minusMillis(1));
+
+        StepVerifier.withVirtualTime(() -> hedgedStream().stream(List.of()))
+                .thenAwait(DELAY)
+                .expectNext(chunk("primary"))
+                .verifyComplete();
+
+        assertEquals(0, secondaryStarted.get());
+        assertEquals(1.0, meterRegistry.get("chat.hedge.won").tag("winner", PRIMARY).counter().count(), 0);
+    }
+
+    @Test
+    void startsTheSecondaryWhenThePrimaryIsSlow() {
+        primaryAnswer = Flux::never;
+
+        StepVerifier.withVirtualTime(() -> hedgedStream().stream(List.of()))
+                .expectNoEvent(DELAY.minusMillis(1))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNext(chunk("secondary"))
+                .verifyComplete();
+
+        assertEquals(1, secondaryStarted.get());
+        assertEquals(1.0, meterRegistry.get("chat.hedge.won").tag("winner", SECONDARY).counter().count(), 0);
+        assertEquals(1, meterRegistry.get("chat.hedge.wasted").tag("loser", PRIMARY).timer().count());
+    }
+
+    @Test
+    void secondaryWaitsForASlotOfItsModel() {
+        primaryAnswer = () -> Flux.just(chunk("primary")).delaySubscription(DELAY.multipliedBy(3));
+
+        StepVerifier.withVirtualTime(() -> {
+                    // a client stream holds the secondary model's only slot
+                    admissionScheduler.admit(SECONDARY, "other", null, Flux::never).subscribe();
+                    return hedgedStream().stream(List.of());
+                })
+                .thenAwait(DELAY.multipliedBy(3))
+                .expectNext(chunk("primary"))
+                .verifyComplete();
+
+        assertEquals(0, secondaryStarted.get());
+        assertEquals(0.0, meterRegistry.get("chat.admission.queue").tag("model", SECONDARY).gauge().value());
+    }
+
+    private ChatStreamService hedgedStream() {
+        HedgingProperties.Hedge hedge = new HedgingProperties.Hedge();
+        hedge.setSecondary(SECONDARY);
+        hedge.setDelay(DELAY);
+        HedgingProperties properties = new HedgingProperties();
+        properties.setEnabled(true);
+        properties.setModels(Map.of(PRIMARY, hedge));
+        ChatStreamRegistry delegate = model -> PRIMARY.equals(model)
+                ? messages -> Flux.defer(primaryAnswer)
+                : messages -> Flux.defer(() -> {
+                    secondaryStarted.incrementAndGet();
+                    return Flux.just(chunk("secondary"));
+                });
+        return new HedgingChatStreamRegistry(delegate, admissionScheduler, properties, meterRegistry)
+                .getChatStreamService(PRIMARY);
+    }
+
+    private static AnswerChunk chunk(String text) {
+        return new AnswerChunk(text, null);
+    }
+}
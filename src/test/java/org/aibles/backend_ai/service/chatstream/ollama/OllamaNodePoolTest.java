@@ -0,0 +1,329 @@
+package org.aibles.backend_ai.service.chatstream.ollama;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.aibles.backend_ai.configuration.properties.OllamaPoolProperties;
+import org.aibles.backend_ai.service.chatstream.ChatStreamService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.util.context.Context;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the pool against two stub Ollama servers answering /api/tags and streaming /api/chat.
+ */
+class OllamaNodePoolTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    private final OllamaPoolProperties properties = new OllamaPoolProperties();
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private StubNode first;
+
+    private StubNode second;
+
+    private OllamaNodePool pool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        first = new StubNode();
+        second = new StubNode();
+        properties.getHealthCheck().setInterval(Duration.ofMillis(50));
+        properties.getHealthCheck().setTimeout(Duration.ofSeconds(1));
+        properties.getAffinity().setEnabled(false);
+        properties.getEjection().setDuration(Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.destroy();
+        }
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void routesToTheNodeWithTheFewestOutstandingStreams() {
+        pool = pool();
+        CountDownLatch finish = new CountDownLatch(1);
+        first.holdUntil(finish);
+        second.holdUntil(finish);
+
+        for (int i = 0; i < 4; i++) {
+            answer(null).subscribe();
+        }
+
+        await(() -> first.chats() + second.chats() == 4);
+        assertEquals(2, first.chats());
+        assertEquals(2, second.chats());
+        finish.countDown();
+        await(() -> outstanding(first) + outstanding(second) == 0);
+    }
+
+    @Test
+    void keepsAConversationOnTheNodeOwningIt() {
+        properties.getAffinity().setEnabled(true);
+        pool = pool();
+
+        for (int i = 0; i < 10; i++) {
+            answer("conversation").blockLast(WAIT);
+        }
+
+        assertTrue(first.chats() == 10 || second.chats() == 10, first.chats() + " / " + second.chats());
+        for (int i = 0; i < 40; i++) {
+            answer("conversation-" + i).blockLast(WAIT);
+        }
+        assertTrue(first.chats() > 10 && second.chats() > 10, first.chats() + " / " + second.chats());
+    }
+
+    @Test
+    void takesANodeFailingItsProbeOutUntilAProbePasses() {
+        pool = pool();
+        second.down(true);
+        await(() -> available(second) == 0);
+
+        for (int i = 0; i < 10; i++) {
+            answer(null).blockLast(WAIT);
+        }
+        assertEquals(10, first.chats());
+        assertEquals(0, second.chats());
+
+        second.down(false);
+        await(() -> available(second) == 1);
+        for (int i = 0; i < 20; i++) {
+            answer(null).blockLast(WAIT);
+        }
+        assertTrue(second.chats() > 0);
+    }
+
+    @Test
+    void ejectsANodeSlowToTheFirstToken() {
+        properties.getEjection().setSlowFirstToken(Duration.ofMillis(200));
+        pool = pool();
+        second.firstTokenDelay(Duration.ofMillis(400));
+
+        // three samples are needed to judge a node
+        for (int i = 0; i < 40 && second.chats() < 3; i++) {
+            answer(null).blockLast(WAIT);
+        }
+        assertEquals(3, second.chats());
+        assertEquals(0.0, available(second));
+        assertEquals(1.0, meterRegistry.get("ollama.node.ejections")
+                .tag("node", second.baseUrl())
+                .tag("reason", "slow")
+                .counter()
+                .count(), 0);
+
+        int firstChats = first.chats();
+        for (int i = 0; i < 10; i++) {
+            answer(null).blockLast(WAIT);
+        }
+        assertEquals(firstChats + 10, first.chats());
+        assertEquals(3, second.chats());
+    }
+
+    @Test
+    void readmitsAnEjectedNodeOnceTheEjectionEndsAndAProbePasses() {
+        properties.getEjection().setSlowFirstToken(Duration.ofMillis(200));
+        properties.getEjection().setDuration(Duration.ofMillis(500));
+        pool = pool();
+        second.firstTokenDelay(Duration.ofMillis(400));
+        for (int i = 0; i < 40 && available(second) == 1; i++) {
+            answer(null).blockLast(WAIT);
+        }
+        assertEquals(0.0, available(second));
+
+        second.firstTokenDelay(Duration.ZERO);
+        await(() -> available(second) == 1);
+
+        int secondChats = second.chats();
+        for (int i = 0; i < 20; i++) {
+            answer(null).blockLast(WAIT);
+        }
+        assertTrue(second.chats() > secondChats);
+    }
+
+    @Test
+    void neverEjectsTheLastAvailableNode() {
+        properties.getEjection().setConsecutiveFailures(1);
+        pool = pool();
+        second.down(true);
+        await(() -> available(second) == 0);
+        first.failChats(true);
+
+        for (int i = 0; i < 3; i++) {
+            answer(null).onErrorComplete().blockLast(WAIT);
+        }
+
+        assertEquals(1.0, available(first));
+        assertEquals(3, first.chats());
+    }
+
+    private OllamaNodePool pool() {
+        return new OllamaNodePool(properties,
+                List.of(first.baseUrl(), second.baseUrl()),
+                RestClient.builder(),
+                WebClient.builder(),
+                ObservationRegistry.NOOP,
+                meterRegistry);
+    }
+
+    private Flux<String> answer(String conversationId) {
+        Flux<String> answer = pool.stream(chatModel -> chatModel.stream(new Prompt("Hello"))
+                .map(response -> response.getResult().getOutput().getText()));
+        return conversationId == null
+                ? answer
+                : answer.contextWrite(Context.of(ChatStreamService.CONVERSATION_ID, conversationId));
+    }
+
+    private double outstanding(StubNode node) {
+        return meterRegistry.get("ollama.node.outstanding").tag("node", node.baseUrl()).gauge().value();
+    }
+
+    private double available(StubNode node) {
+        return meterRegistry.get("ollama.node.available").tag("node", node.baseUrl()).gauge().value();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        final long deadline = System.nanoTime() + WAIT.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("condition not met within " + WAIT);
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * An Ollama server as far as the pool sees it: /api/tags for the probe and a two-token /api/chat stream.
+     */
+    private static final class StubNode implements AutoCloseable {
+
+        private static final String TOKEN = """
+                {"model":"stub","created_at":"2025-01-01T00:00:00Z","message":{"role":"assistant","content":"%s"},"done":false}
+                """;
+
+        private static final String DONE = """
+                {"model":"stub","created_at":"2025-01-01T00:00:00Z","message":{"role":"assistant","content":""},"done":true,"done_reason":"stop","eval_count":2,"prompt_eval_count":1}
+                """;
+
+        private final HttpServer server;
+
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+
+        private final AtomicInteger chats = new AtomicInteger();
+
+        private volatile boolean down;
+
+        private volatile boolean failChats;
+
+        private volatile Duration firstTokenDelay = Duration.ZERO;
+
+        private volatile CountDownLatch hold = new CountDownLatch(0);
+
+        private StubNode() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(executor);
+            server.createContext("/api/tags", this::tags);
+            server.createContext("/api/chat", this::chat);
+            server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        int chats() {
+            return chats.get();
+        }
+
+        void down(boolean down) {
+            this.down = down;
+        }
+
+        void failChats(boolean failChats) {
+            this.failChats = failChats;
+        }
+
+        void firstTokenDelay(Duration delay) {
+            this.firstTokenDelay = delay;
+        }
+
+        void holdUntil(CountDownLatch latch) {
+            this.hold = latch;
+        }
+
+        private void tags(HttpExchange exchange) throws IOException {
+            respond(exchange, down ? 503 : 200, "{\"models\":[]}");
+        }
+
+        private void chat(HttpExchange exchange) throws IOException {
+            exchange.getRequestBody().readAllBytes();
+            chats.incrementAndGet();
+            if (failChats) {
+                respond(exchange, 500, "{\"error\":\"stub failure\"}");
+                return;
+            }
+            try {
+                Thread.sleep(firstTokenDelay.toMillis());
+                exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    body.write(TOKEN.formatted("Hi").getBytes(StandardCharsets.UTF_8));
+                    body.flush();
+                    hold.await(WAIT.toMillis(), TimeUnit.MILLISECONDS);
+                    body.write(TOKEN.formatted(" there").getBytes(StandardCharsets.UTF_8));
+                    body.write(DONE.getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
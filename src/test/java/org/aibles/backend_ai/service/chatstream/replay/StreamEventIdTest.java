@@ -0,0 +1,33 @@
+package org.aibles.backend_ai.service.chatstream.replay;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StreamEventIdTest {
+
+    @Test
+    void parsesWhatItFormats() {
+        StreamEventId id = new StreamEventId("9b2f6c1e-turn", 42);
+
+        assertEquals(id, StreamEventId.parse(id.format()));
+    }
+
+    @Test
+    void splitsOnTheLastSeparator() {
+        assertEquals(new StreamEventId("a:b", 7), StreamEventId.parse("a:b:7"));
+    }
+
+    @Test
+    void ignoresMissingAndMalformedIds() {
+        assertNull(StreamEventId.parse(null));
+        assertNull(StreamEventId.parse(""));
+        assertNull(StreamEventId.parse("turn"));
+        assertNull(StreamEventId.parse(":12"));
+        assertNull(StreamEventId.parse("turn:"));
+        assertNull(StreamEventId.parse("turn:abc"));
+        assertNull(StreamEventId.parse("turn:-1"));
+        assertNull(StreamEventId.parse("turn:99999999999"));
+    }
+}
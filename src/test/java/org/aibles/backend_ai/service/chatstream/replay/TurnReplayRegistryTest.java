@@ -0,0 +1,67 @@
+package org.aibles.backend_ai.service.chatstream.replay;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.DisconnectProperties;
+import org.aibles.backend_ai.configuration.properties.StreamReplayProperties;
+import org.aibles.backend_ai.constant.DisconnectPolicy;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TurnReplayRegistryTest {
+
+    private final Sinks.Many<String> model = Sinks.many().unicast().onBackpressureBuffer();
+
+    private final DisconnectProperties disconnectProperties = new DisconnectProperties();
+
+    private final TurnReplayRegistry registry = new TurnReplayRegistry(new StreamReplayProperties(),
+            disconnectProperties,
+            new SimpleMeterRegistry());
+
+    @Test
+    void resumesOnlyTurnsOfTheSameConversation() {
+        TurnReplay turn = registry.start("turn", "conversation");
+        registry.drive(turn, registry.record(turn, model.asFlux())).subscribe();
+        model.tryEmitNext("Hello");
+
+        assertTrue(registry.resume("other", new StreamEventId("turn", 0)).isEmpty());
+        assertTrue(registry.resume("conversation", new StreamEventId("unknown", 0)).isEmpty());
+        StepVerifier.create(registry.resume("conversation", new StreamEventId("turn", 2)).orElseThrow().tokens())
+                .expectNext("llo")
+                .then(() -> model.tryEmitComplete())
+                .verifyComplete();
+    }
+
+    @Test
+    void cancelledTurnIsNotResumed() {
+        disconnectProperties.setPolicy(DisconnectPolicy.CANCEL);
+        TurnReplay turn = registry.start("turn", "conversation");
+        Disposable client = registry.drive(turn, registry.record(turn, model.asFlux())).subscribe();
+        model.tryEmitNext("Hello");
+
+        client.dispose();
+
+        assertTrue(registry.resume("conversation", new StreamEventId("turn", 5)).isEmpty());
+    }
+
+    @Test
+    void turnResumedWithinTheGracePeriodKeepsGenerating() {
+        disconnectProperties.setGracePeriod(Duration.ofSeconds(30));
+
+        StepVerifier.withVirtualTime(() -> {
+                    TurnReplay turn = registry.start("turn", "conversation");
+                    registry.drive(turn, registry.record(turn, model.asFlux())).subscribe().dispose();
+                    return registry.resume("conversation", new StreamEventId("turn", 0)).orElseThrow().tokens();
+                })
+                .thenAwait(Duration.ofSeconds(31))
+                .then(() -> model.tryEmitNext("still generating"))
+                .expectNext("still generating")
+                .thenCancel()
+                .verify();
+    }
+}
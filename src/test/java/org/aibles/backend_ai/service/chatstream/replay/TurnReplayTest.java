@@ -0,0 +1,209 @@
+package org.aibles.backend_ai.service.chatstream.replay;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TurnReplayTest {
+
+    private final Sinks.Many<String> model = Sinks.many().unicast().onBackpressureBuffer();
+
+    private final AtomicBoolean generationCancelled = new AtomicBoolean();
+
+    private final AtomicInteger abandoned = new AtomicInteger();
+
+    @Test
+    void firstStreamSeesEveryTokenOfTheGeneration() {
+        TurnReplay turn = new TurnReplay("turn", "conversation", 100);
+
+        StepVerifier.create(turn.drive(recorded(turn, Flux.just("Hello", " ", "world")), t -> { }))
+                .expectNext("Hello", " ", "world")
+                .verifyComplete();
+    }
+
+    @Test
+    void resumedStreamReplaysFromTheOffsetThenFollows() {
+        TurnReplay turn = new TurnReplay("turn", "conversation", 100);
+        Disposable first = drive(turn).subscribe();
+        model.tryEmitNext("Hello");
+        model.tryEmitNext(" wor");
+
+        AnswerStream resumed = turn.resume(3).orElseThrow();
+
+        assertEquals(3, resumed.offset());
+        StepVerifier.create(resumed.tokens())
+                .expectNext("lo wor")
+                .then(() -> model.tryEmitNext("ld"))
+                .expectNext("ld")
+                .then(() -> model.tryEmitComplete())
+                .verifyComplete();
+        first.dispose();
+    }
+
+    @Test
+    void resumingPastTheEndStartsAtTheEnd() {
+        TurnReplay turn = new TurnReplay("turn", "conversation", 100);
+        drive(turn).subscribe();
+        model.tryEmitNext("Hi");
+
+        assertEquals(2, turn.resume(10).orElseThrow().offset());
+    }
+
+    @Test
+    void finishedTurnIsReplayedAndCompletes() {
+        TurnReplay turn = new TurnReplay("turn", "conversation", 100);
+        drive(turn).subscribe();
+        model.tryEmitNext("Hello");
+        model.tryEmitComplete();
+
+        StepVerifier.create(turn.resume(0).orElseThrow().tokens())
+                .expectNext("Hello")
+                .verifyComplete();
+    }
+
+    @Test
+    void cancelsTheGenerationWhenTheLastStreamLeaves() {
+        TurnReplay turn = new TurnReplay("turn", "conversation", 100);
+        Disposable first = drive(turn).subscribe();
+
+        first.dispose();
+        assertEquals(1, abandoned.get());
+        turn.cancelIfAbandoned();
+
+        assertTrue(generationCancelled.get());
+        assertFalse(turn.isResumable());
+        assertTrue(turn.resume(0).isEmpty());
+    }
+
+    @Test
+    void keepsGeneratingWhileAStreamIsAttached() {
+        TurnReplay turn = new TurnReplay("turn", "conversation", 100);
+        Disposable first = drive(turn).subscribe();
+        Disposable second = turn.resume(0).orElseThrow().tokens().subscribe();
+
+        first.dispose();
+        turn.cancelIfAbandoned();
+
+        assertFalse(generationCancelled.get());
+        second.dispose();
+        turn.cancelIfAbandoned();
+        assertTrue(generationCancelled.get());
+    }
+
+    @Test
+    void resumedStreamNotSubscribedYetKeepsTheTurn() {
+        TurnReplay turn = new TurnReplay("turn", "conversation", 100);
+        Disposable first = drive(turn).subscribe();
+        model.tryEmitNext("Hello");
+        AnswerStream resumed = turn.resume(5).orElseThrow();
+
+        first.dispose();
+        turn.cancelIfAbandoned();
+
+        assertFalse(generationCancelled.get());
+        List<String> tokens = new ArrayList<>();
+        resumed.tokens().subscribe(tokens::add);
+        model.tryEmitNext("!");
+        assertEquals(List.of("!"), tokens);
+    }
+
+    @Test
+    void resumedStreamNeverSubscribedStopsKeepingTheTurn() {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            TurnReplay turn = new TurnReplay("turn", "conversation", 100);
+            Disposable first = drive(turn).subscribe();
+            model.tryEmitNext("Hello");
+            turn.resume(5).orElseThrow();
+
+            first.dispose();
+            turn.cancelIfAbandoned();
+            assertFalse(generationCancelled.get());
+            assertEquals(1, abandoned.get());
+
+            scheduler.advanceTimeBy(Duration.ofSeconds(30));
+
+            // left again once the resume lapsed, so the disconnect policy gets another say
+            assertEquals(2, abandoned.get());
+            turn.cancelIfAbandoned();
+            assertTrue(generationCancelled.get());
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @Test
+    void resumedStreamThatAttachedAndLeftDoesNotHoldTheTurn() {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            TurnReplay turn = new TurnReplay("turn", "conversation", 100);
+            Disposable first = drive(turn).subscribe();
+            model.tryEmitNext("Hello");
+            Disposable resumed = turn.resume(5).orElseThrow().tokens().subscribe();
+
+            first.dispose();
+            resumed.dispose();
+            scheduler.advanceTimeBy(Duration.ofSeconds(30));
+
+            // abandoned once, by the last stream leaving, the resume attached and has nothing left to release
+            assertEquals(1, abandoned.get());
+            turn.cancelIfAbandoned();
+            assertTrue(generationCancelled.get());
+        } finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @Test
+    void truncatedTurnKeepsFeedingItsStreamsButCannotBeResumed() {
+        TurnReplay turn = new TurnReplay("turn", "conversation", 4);
+        List<String> tokens = new ArrayList<>();
+        drive(turn).subscribe(tokens::add);
+
+        model.tryEmitNext("abc");
+        model.tryEmitNext("defg");
+
+        assertEquals(List.of("abc", "defg"), tokens);
+        assertFalse(turn.isResumable());
+        assertTrue(turn.resume(0).isEmpty());
+    }
+
+    @Test
+    void streamLaggingMoreThanATurnBehindFails() {
+        TurnReplay turn = new TurnReplay("turn", "conversation", 4);
+
+        StepVerifier.create(drive(turn), 0)
+                .then(() -> {
+                    for (int i = 0; i < 6; i++) {
+                        model.tryEmitNext("token");
+                    }
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(4)
+                .verifyError();
+    }
+
+    private Flux<String> drive(TurnReplay turn) {
+        return turn.drive(recorded(turn, model.asFlux()), t -> abandoned.incrementAndGet());
+    }
+
+    private Flux<String> recorded(TurnReplay turn, Flux<String> tokens) {
+        return tokens
+                .doOnNext(turn::append)
+                .doOnComplete(() -> turn.finish(null))
+                .doOnCancel(() -> generationCancelled.set(true));
+    }
+}
@@ -0,0 +1,99 @@
+package org.aibles.backend_ai.service.export;
+
+import com.datastax.oss.driver.api.core.cql.PagingState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.ConversationPagingProperties;
+import org.aibles.backend_ai.configuration.properties.ConversationShardProperties;
+import org.aibles.backend_ai.configuration.properties.ExportProperties;
+import org.aibles.backend_ai.entity.ConversationMessage;
+import org.aibles.backend_ai.entity.MessageKey;
+import org.aibles.backend_ai.repository.ConversationRepository;
+import org.aibles.backend_ai.repository.MessageRepository;
+import org.aibles.backend_ai.repository.cql.CqlPage;
+import org.aibles.backend_ai.repository.cql.InvalidPagingStateException;
+import org.aibles.backend_ai.service.bucket.ConversationBuckets;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConversationExporterTest {
+
+    private static final String CONVERSATION_ID = "conversation";
+
+    private final PagingState issued = ExportCursorTest.pagingState(1, 2, 3);
+
+    private final ConversationExporter exporter = new ConversationExporter(
+            proxy(ConversationRepository.class, null),
+            proxy(MessageRepository.class, issued),
+            new ConversationBuckets(new ConversationShardProperties()),
+            new ExportProperties(),
+            new ConversationPagingProperties(),
+            new SimpleMeterRegistry());
+
+    @Test
+    void resumesFromTheCursorOfALine() {
+        String cursor = exporter.exportConversation(CONVERSATION_ID, null).blockFirst().getCursor();
+
+        StepVerifier.create(exporter.exportConversation(CONVERSATION_ID, cursor))
+                .assertNext(line -> assertEquals("message-1", line.getId()))
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    void rejectsCursorsThatAreNotOneOfOurs() {
+        StepVerifier.create(exporter.exportConversation(CONVERSATION_ID, "not a cursor"))
+                .expectErrorMatches(ConversationExporterTest::isBadRequest)
+                .verify();
+    }
+
+    @Test
+    void rejectsPagingStatesTheQueryDoesNotAccept() {
+        String cursor = ExportCursor.ofConversation(new ExportProperties().getPageSize())
+                .withMessages(new PagePosition(ExportCursorTest.pagingState(4, 5, 6), 0))
+                .encode();
+
+        StepVerifier.create(exporter.exportConversation(CONVERSATION_ID, cursor))
+                .expectErrorMatches(ConversationExporterTest::isBadRequest)
+                .verify();
+    }
+
+    private static boolean isBadRequest(Throwable error) {
+        return error instanceof ResponseStatusException status && status.getStatusCode().value() == 400;
+    }
+
+    /**
+     * Two pages of one message each. Like the driver, the message page only accepts the paging state it handed
+     * out.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, PagingState issued) {
+        return (T) Proxy.newProxyInstance(ConversationExporterTest.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("findMessagePage")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    PagingState pagingState = (PagingState) args[1];
+                    if (pagingState == null) {
+                        return Mono.just(new CqlPage<>(List.of(message(0)), issued));
+                    }
+                    if (!Arrays.equals(pagingState.toBytes(), issued.toBytes())) {
+                        return Mono.error(new InvalidPagingStateException("messages-export", new IllegalArgumentException()));
+                    }
+                    return Mono.just(new CqlPage<>(List.of(message(1)), null));
+                });
+    }
+
+    private static ConversationMessage message(int index) {
+        return new ConversationMessage(new MessageKey(CONVERSATION_ID, Instant.EPOCH.plusSeconds(index)),
+                "message-" + index, "question", "answer", false);
+    }
+}
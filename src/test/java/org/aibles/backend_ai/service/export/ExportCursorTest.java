@@ -0,0 +1,115 @@
+package org.aibles.backend_ai.service.export;
+
+import com.datastax.oss.driver.api.core.cql.PagingState;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExportCursorTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2025, 3);
+
+    // where the paging state of messages starts in a conversation cursor:
+    // version, page size, no month, no conversations, messages present, offset, length
+    private static final int MESSAGES_STATE_AT = 1 + 4 + 1 + 1 + 1 + 4 + 4;
+
+    @Test
+    void decodesWhatItEncodesForAConversation() {
+        PagingState state = pagingState(1, 2, 3);
+        ExportCursor cursor = ExportCursor.ofConversation(50).withMessages(new PagePosition(state, 7));
+
+        ExportCursor decoded = ExportCursor.decode(cursor.encode());
+
+        assertEquals(50, decoded.pageSize());
+        assertNull(decoded.month());
+        assertNull(decoded.conversations());
+        assertEquals(7, decoded.messages().offset());
+        assertArrayEquals(state.toBytes(), decoded.messages().pagingState().toBytes());
+    }
+
+    @Test
+    void decodesWhatItEncodesForARange() {
+        PagingState state = pagingState(9, 8);
+        ExportCursor cursor = ExportCursor.ofRange(20, MONTH)
+                .at(MONTH.minusMonths(1), 3, new PagePosition(state, 4), PagePosition.START);
+
+        ExportCursor decoded = ExportCursor.decode(cursor.encode());
+
+        assertEquals(MONTH.minusMonths(1), decoded.month());
+        assertEquals(3, decoded.bucket());
+        assertEquals(4, decoded.conversations().offset());
+        assertArrayEquals(state.toBytes(), decoded.conversations().pagingState().toBytes());
+        assertEquals(PagePosition.START, decoded.messages());
+    }
+
+    @Test
+    void rejectsAPagingStateThatIsNotASafeOne() {
+        byte[] bytes = bytesOf(ExportCursor.ofConversation(50).withMessages(new PagePosition(pagingState(1, 2, 3), 0)));
+        // a raw paging state longer than the bytes that follow it
+        bytes[MESSAGES_STATE_AT] = 0x7f;
+
+        assertThrows(IllegalArgumentException.class, () -> ExportCursor.decode(encoded(bytes)));
+    }
+
+    @Test
+    void rejectsCursorsOfAnotherVersion() {
+        byte[] bytes = bytesOf(ExportCursor.ofConversation(50));
+        bytes[0] = 1;
+
+        assertThrows(IllegalArgumentException.class, () -> ExportCursor.decode(encoded(bytes)));
+    }
+
+    @Test
+    void rejectsTruncatedAndTrailingBytes() {
+        byte[] bytes = bytesOf(ExportCursor.ofConversation(50).withMessages(new PagePosition(pagingState(1, 2, 3), 0)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> ExportCursor.decode(encoded(Arrays.copyOf(bytes, bytes.length - 1))));
+        assertThrows(IllegalArgumentException.class,
+                () -> ExportCursor.decode(encoded(Arrays.copyOf(bytes, bytes.length + 1))));
+    }
+
+    @Test
+    void rejectsNegativeValuesAndGarbage() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ExportCursor.decode(ExportCursor.ofConversation(0).encode()));
+        assertThrows(IllegalArgumentException.class,
+                () -> ExportCursor.decode(ExportCursor.ofConversation(50).withMessages(new PagePosition(null, -1)).encode()));
+        assertThrows(IllegalArgumentException.class,
+                () -> ExportCursor.decode(ExportCursor.ofRange(50, MONTH).at(MONTH, -1, PagePosition.START, null).encode()));
+        assertThrows(IllegalArgumentException.class, () -> ExportCursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> ExportCursor.decode(""));
+    }
+
+    /**
+     * A paging state in the driver's serialized form: raw state and hash, each preceded by its length, then the
+     * protocol version.
+     */
+    static PagingState pagingState(int... raw) {
+        byte[] hash = new byte[16];
+        ByteBuffer bytes = ByteBuffer.allocate(2 + 2 + raw.length + hash.length + 2)
+                .putShort((short) raw.length)
+                .putShort((short) hash.length);
+        for (int value : raw) {
+            bytes.put((byte) value);
+        }
+        bytes.put(hash).putShort((short) 5);
+        return PagingState.fromBytes(bytes.array());
+    }
+
+    private static byte[] bytesOf(ExportCursor cursor) {
+        return Base64.getUrlDecoder().decode(cursor.encode());
+    }
+
+    private static String encoded(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
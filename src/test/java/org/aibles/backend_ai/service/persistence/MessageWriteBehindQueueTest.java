@@ -0,0 +1,118 @@
+package org.aibles.backend_ai.service.persistence;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.MessageWriteProperties;
+import org.aibles.backend_ai.entity.ConversationMessage;
+import org.aibles.backend_ai.entity.MessageKey;
+import org.aibles.backend_ai.repository.MessageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageWriteBehindQueueTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<ConversationMessage> written = new CopyOnWriteArrayList<>();
+
+    private final Sinks.Empty<Void> writesReleased = Sinks.empty();
+
+    private boolean failing;
+
+    private MessageWriteProperties properties;
+
+    private MessageWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MessageWriteProperties();
+        properties.setQueueCapacity(100);
+        properties.setMaxBatchSize(4);
+        properties.setFlushInterval(Duration.ofMillis(5));
+        properties.setConcurrency(2);
+        properties.setMaxRetries(0);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writesReleased.tryEmitEmpty();
+        queue.destroy();
+    }
+
+    @Test
+    void keepsTheQueueWhileEveryWriteSlotIsBusy() throws InterruptedException {
+        queue = queue();
+        for (int i = 0; i < 10; i++) {
+            // a refused message is written by its caller, which would wait on the held writes
+            queue.enqueue(message("conversation-" + i)).subscribe();
+            // several flushes come due while both slots wait on their writes
+            Thread.sleep(10);
+        }
+
+        // messages of the batches being written still count as backlog
+        assertEquals(0.1, queue.backlogRatio(), 1e-9);
+
+        writesReleased.tryEmitEmpty();
+        await(() -> written.size() == 10);
+        queue.enqueue(message("later")).block();
+        await(() -> written.size() == 11);
+
+        assertEquals(0.0, queue.backlogRatio(), 0);
+        assertEquals(0.0, meterRegistry.get("conversation.message.write.overflow").counter().count(), 0);
+        assertEquals(0.0, meterRegistry.get("conversation.message.write.dropped").counter().count(), 0);
+    }
+
+    @Test
+    void countsMessagesDroppedAfterTheRetries() throws InterruptedException {
+        failing = true;
+        queue = queue();
+        writesReleased.tryEmitEmpty();
+
+        queue.enqueue(message("a")).block();
+        queue.enqueue(message("b")).block();
+
+        await(() -> meterRegistry.get("conversation.message.write.dropped").counter().count() == 2);
+        assertEquals(0.0, queue.backlogRatio(), 0);
+    }
+
+    private MessageWriteBehindQueue queue() {
+        MessageRepository repository = (MessageRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MessageRepository.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("insertAll")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    List<ConversationMessage> messages = (List<ConversationMessage>) args[0];
+                    return writesReleased.asMono().then(failing
+                            ? Mono.error(new IllegalStateException("write timed out"))
+                            : Mono.fromRunnable(() -> written.addAll(messages)));
+                });
+        return new MessageWriteBehindQueue(repository, properties, meterRegistry);
+    }
+
+    private static ConversationMessage message(String conversationId) {
+        return new ConversationMessage(new MessageKey(conversationId, Instant.now()), conversationId,
+                "question", "answer", false);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.aibles.backend_ai.service.usage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aibles.backend_ai.configuration.properties.UsageProperties;
+import org.aibles.backend_ai.entity.ConversationUsage;
+import org.aibles.backend_ai.entity.ModelUsage;
+import org.aibles.backend_ai.repository.ConversationUsageRepository;
+import org.aibles.backend_ai.repository.ModelUsageRepository;
+import org.aibles.backend_ai.service.chatstream.TokenUsage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UsageMeterTest {
+
+    private static final String MODEL = "QWEN2_5";
+
+    private final List<List<ConversationUsage>> conversationBatches = new CopyOnWriteArrayList<>();
+
+    private final List<List<ModelUsage>> modelBatches = new CopyOnWriteArrayList<>();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final AtomicInteger conversationFailures = new AtomicInteger();
+
+    private final CountDownLatch modelWritten = new CountDownLatch(1);
+
+    private UsageProperties properties;
+
+    private UsageMeter meter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new UsageProperties();
+        // flushes are triggered by the tests
+        properties.setFlushInterval(Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (meter != null) {
+            meter.destroy();
+        }
+    }
+
+    @Test
+    void writesOneBatchPerConversationAndOnePerDayOfModels() {
+        meter = meter();
+        meter.record("a", MODEL, new TokenUsage(10, 20));
+        meter.record("a", MODEL, new TokenUsage(1, 2));
+        meter.record("b", MODEL, new TokenUsage(5, 5));
+
+        meter.flush().block();
+
+        assertEquals(2, conversationBatches.size());
+        ConversationUsage a = usageOf("a");
+        assertEquals(11, a.getPromptTokens());
+        assertEquals(22, a.getCompletionTokens());
+        assertEquals(2, a.getRequests());
+        assertEquals(1, modelBatches.size());
+        ModelUsage model = modelBatches.get(0).get(0);
+        assertEquals(16, model.getPromptTokens());
+        assertEquals(27, model.getCompletionTokens());
+        assertEquals(3, model.getRequests());
+    }
+
+    @Test
+    void countsGenerationsWithoutReportedUsage() {
+        meter = meter();
+        meter.record("a", MODEL, null);
+        meter.record(null, MODEL, null);
+
+        meter.flush().block();
+
+        assertEquals(1, usageOf("a").getRequests());
+        assertEquals(0, usageOf("a").getPromptTokens());
+        assertEquals(2, modelBatches.get(0).get(0).getRequests());
+    }
+
+    @Test
+    void splitsAPartitionIntoBatchesOfMaxBatchSize() {
+        properties.setMaxBatchSize(2);
+        meter = meter();
+        for (int model = 0; model < 5; model++) {
+            meter.record("a", "model-" + model, new TokenUsage(1, 1));
+        }
+
+        meter.flush().block();
+
+        assertEquals(3, conversationBatches.size());
+        assertEquals(3, modelBatches.size());
+    }
+
+    @Test
+    void writesNothingWhenNothingWasRecorded() {
+        meter = meter();
+
+        meter.flush().block();
+
+        assertTrue(conversationBatches.isEmpty());
+        assertTrue(modelBatches.isEmpty());
+    }
+
+    @Test
+    void putsAFailedBatchBackForTheNextFlush() {
+        meter = meter();
+        meter.record("a", MODEL, new TokenUsage(10, 20));
+        conversationFailures.set(1);
+
+        meter.flush().block();
+
+        assertTrue(conversationBatches.isEmpty());
+        assertEquals(1, modelBatches.size());
+
+        meter.record("a", MODEL, new TokenUsage(1, 2));
+        meter.flush().block();
+
+        assertEquals(1, conversationBatches.size());
+        ConversationUsage a = usageOf("a");
+        assertEquals(11, a.getPromptTokens());
+        assertEquals(22, a.getCompletionTokens());
+        assertEquals(2, a.getRequests());
+        // the model counts were written by the first flush and are not written again with the retry
+        assertEquals(2, modelBatches.size());
+        assertEquals(1, modelBatches.get(1).get(0).getRequests());
+        assertEquals(1.0, failedBatches(), 0);
+    }
+
+    @Test
+    void flushesEarlyOnceMaxPendingKeysAreWaiting() throws InterruptedException {
+        properties.setMaxPendingKeys(2);
+        meter = meter();
+
+        meter.record("a", MODEL, new TokenUsage(1, 1));
+
+        assertTrue(modelWritten.await(5, TimeUnit.SECONDS));
+        assertEquals(1, usageOf("a").getRequests());
+    }
+
+    @Test
+    void writesWhatIsLeftOnShutdown() throws InterruptedException {
+        meter = meter();
+        meter.record("a", MODEL, new TokenUsage(1, 1));
+
+        meter.destroy();
+        meter = null;
+
+        assertEquals(1, usageOf("a").getRequests());
+        assertEquals(1, modelBatches.size());
+    }
+
+    @Test
+    void recordsNothingWhenDisabled() {
+        properties.setEnabled(false);
+        meter = meter();
+        meter.record("a", MODEL, new TokenUsage(1, 1));
+
+        meter.flush().block();
+
+        assertTrue(conversationBatches.isEmpty());
+        assertTrue(modelBatches.isEmpty());
+    }
+
+    private UsageMeter meter() {
+        return new UsageMeter(conversationUsageRepository(), modelUsageRepository(), properties, registry);
+    }
+
+    private double failedBatches() {
+        return registry.get("usage.flush.batches").tag("outcome", "error").counter().count();
+    }
+
+    private ConversationUsage usageOf(String conversationId) {
+        return conversationBatches.stream()
+                .flatMap(List::stream)
+                .filter(usage -> usage.getKey().getConversationId().equals(conversationId))
+                .reduce((first, second) -> second)
+                .orElseThrow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConversationUsageRepository conversationUsageRepository() {
+        return (ConversationUsageRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ConversationUsageRepository.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("incrementAll")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return Mono.defer(() -> {
+                        if (conversationFailures.getAndUpdate(failures -> Math.max(failures - 1, 0)) > 0) {
+                            return Mono.error(new IllegalStateException("write timed out"));
+                        }
+                        conversationBatches.add(List.copyOf((List<ConversationUsage>) args[0]));
+                        return Mono.empty();
+                    });
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private ModelUsageRepository modelUsageRepository() {
+        return (ModelUsageRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ModelUsageRepository.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("incrementAll")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return Mono.fromRunnable(() -> {
+                        modelBatches.add(List.copyOf((List<ModelUsage>) args[0]));
+                        modelWritten.countDown();
+                    });
+                });
+    }
+}